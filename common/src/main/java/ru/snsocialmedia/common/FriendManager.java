@@ -6,6 +6,8 @@ import java.util.UUID;
 import java.util.logging.Logger;
 
 import ru.snsocialmedia.common.database.FriendRepository;
+import ru.snsocialmedia.common.models.friend.FriendSuggestion;
+import ru.snsocialmedia.common.models.friend.Friendship;
 
 /**
  * Менеджер для управления друзьями и запросами на дружбу
@@ -41,6 +43,12 @@ public class FriendManager {
             return false;
         }
 
+        // Проверяем лимит друзей по графу в памяти, без запроса к базе данных
+        if (hasReachedFriendLimit(senderId) || hasReachedFriendLimit(receiverId)) {
+            logger.info("Достигнут лимит друзей для запроса от " + senderId + " к " + receiverId);
+            return false;
+        }
+
         // Проверяем, не существует ли уже запрос на дружбу от этого игрока
         if (repository.existsFriendRequest(senderId, receiverId)) {
             logger.info("Запрос на дружбу от " + senderId + " к " + receiverId + " уже существует");
@@ -76,6 +84,12 @@ public class FriendManager {
             return false;
         }
 
+        // Лимит мог быть достигнут, пока запрос ожидал ответа
+        if (hasReachedFriendLimit(receiverId) || hasReachedFriendLimit(senderId)) {
+            logger.info("Достигнут лимит друзей, дружба между " + receiverId + " и " + senderId + " не создана");
+            return false;
+        }
+
         // Создаем дружбу
         UUID friendshipId = UUID.randomUUID();
         Date friendshipDate = new Date();
@@ -83,6 +97,12 @@ public class FriendManager {
 
         if (success) {
             logger.info("Дружба между " + receiverId + " и " + senderId + " создана успешно");
+
+            // Обновляем граф друзей в памяти
+            ru.snsocialmedia.common.managers.FriendManager graph = graph();
+            if (graph != null) {
+                graph.registerFriendship(new Friendship(friendshipId, receiverId, senderId, friendshipDate, false));
+            }
             return true;
         } else {
             logger.warning("Не удалось создать дружбу между " + receiverId + " и " + senderId);
@@ -133,7 +153,15 @@ public class FriendManager {
             return false;
         }
 
-        return repository.deleteFriendship(playerId, friendId);
+        if (!repository.deleteFriendship(playerId, friendId)) {
+            return false;
+        }
+
+        ru.snsocialmedia.common.managers.FriendManager graph = graph();
+        if (graph != null) {
+            graph.removeFriendship(playerId, friendId);
+        }
+        return true;
     }
 
     /**
@@ -155,4 +183,64 @@ public class FriendManager {
     public List<UUID> getPendingFriendRequests(UUID playerId) {
         return repository.getPendingFriendRequests(playerId);
     }
-}
\ No newline at end of file
+
+    /**
+     * Получает предложения дружбы по графу друзей в памяти
+     *
+     * @param playerId ID игрока
+     * @param limit    максимальное количество предложений
+     * @return список предложений или пустой список, если граф не загружен
+     */
+    public List<FriendSuggestion> getFriendSuggestions(UUID playerId, int limit) {
+        ru.snsocialmedia.common.managers.FriendManager graph = graph();
+        return graph != null ? graph.getFriendSuggestions(playerId, limit) : List.of();
+    }
+
+    /**
+     * Получает количество друзей игрока
+     *
+     * @param playerId ID игрока
+     * @return количество друзей
+     */
+    public int getFriendCount(UUID playerId) {
+        ru.snsocialmedia.common.managers.FriendManager graph = graph();
+        return graph != null ? graph.getFriendCount(playerId) : repository.getPlayerFriends(playerId).size();
+    }
+
+    /**
+     * Проверяет, достиг ли игрок максимального количества друзей
+     *
+     * @param playerId ID игрока
+     * @return true, если лимит достигнут
+     */
+    public boolean hasReachedFriendLimit(UUID playerId) {
+        ru.snsocialmedia.common.managers.FriendManager graph = graph();
+        return graph != null && graph.hasReachedFriendLimit(playerId);
+    }
+
+    /**
+     * Получает максимальное количество друзей
+     *
+     * @return лимит друзей или 0, если граф не загружен
+     */
+    public int getMaxFriends() {
+        ru.snsocialmedia.common.managers.FriendManager graph = graph();
+        return graph != null ? graph.getMaxFriends() : 0;
+    }
+
+    /**
+     * Получает общих друзей двух игроков
+     *
+     * @param player1Id ID первого игрока
+     * @param player2Id ID второго игрока
+     * @return список ID общих друзей
+     */
+    public List<UUID> getMutualFriends(UUID player1Id, UUID player2Id) {
+        ru.snsocialmedia.common.managers.FriendManager graph = graph();
+        return graph != null ? graph.getMutualFriends(player1Id, player2Id) : List.of();
+    }
+
+    private ru.snsocialmedia.common.managers.FriendManager graph() {
+        return ru.snsocialmedia.common.managers.FriendManager.getInstance();
+    }
+}
@@ -144,6 +144,8 @@ public class SQLQueries {
 
         public static final String SELECT_PLAYER_FRIENDSHIPS = "SELECT * FROM friendships WHERE player1_id = ? OR player2_id = ?";
 
+        public static final String SELECT_ALL_FRIENDSHIPS = "SELECT id, player1_id, player2_id, friendship_date, favorite FROM friendships";
+
         // Запросы для пати
         public static final String INSERT_PARTY = "INSERT INTO parties (id, leader, creation_date, open, current_server) "
                         +
@@ -180,4 +182,25 @@ public class SQLQueries {
         public static final String DELETE_PARTY_SETTING = "DELETE FROM party_settings WHERE party_id = ? AND setting_key = ?";
 
         public static final String SELECT_PARTY_SETTINGS = "SELECT * FROM party_settings WHERE party_id = ?";
+
+        public static final String UPSERT_PARTY = "INSERT INTO parties (id, leader, creation_date, open, current_server) "
+                        + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE leader = VALUES(leader), "
+                        + "open = VALUES(open), current_server = VALUES(current_server)";
+
+        public static final String UPSERT_PARTY_MEMBER = "INSERT INTO party_members (party_id, player_id, role) VALUES (?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE role = VALUES(role)";
+
+        public static final String INSERT_IGNORE_PARTY_INVITE = "INSERT IGNORE INTO party_invites (party_id, player_id) VALUES (?, ?)";
+
+        public static final String UPSERT_PARTY_SETTING = "INSERT INTO party_settings (party_id, setting_key, setting_value) VALUES (?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE setting_value = VALUES(setting_value)";
+
+        // Все данные пати одним потоком: сначала строка пати (kind = 0), затем
+        // участники (1), приглашения (2) и настройки (3)
+        public static final String SELECT_ALL_PARTY_DATA = "SELECT 0 AS kind, id AS party_id, leader AS ref, NULL AS value, "
+                        + "creation_date, open, current_server FROM parties "
+                        + "UNION ALL SELECT 1, party_id, player_id, role, NULL, NULL, NULL FROM party_members "
+                        + "UNION ALL SELECT 2, party_id, player_id, NULL, NULL, NULL, NULL FROM party_invites "
+                        + "UNION ALL SELECT 3, party_id, setting_key, setting_value, NULL, NULL, NULL FROM party_settings "
+                        + "ORDER BY party_id, kind";
 }
\ No newline at end of file
@@ -1,9 +1,14 @@
 package ru.snsocialmedia.common.managers;
 
 import ru.snsocialmedia.common.database.DatabaseManager;
+import ru.snsocialmedia.common.database.DatabaseUtils;
+import ru.snsocialmedia.common.database.SQLQueries;
 import ru.snsocialmedia.common.models.friend.FriendRequest;
 import ru.snsocialmedia.common.models.friend.FriendRequestStatus;
+import ru.snsocialmedia.common.models.friend.FriendSuggestion;
 import ru.snsocialmedia.common.models.friend.Friendship;
+import ru.snsocialmedia.common.utils.IdRegistry;
+import ru.snsocialmedia.common.utils.IntObjectMap;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -20,12 +25,20 @@ import java.util.stream.Collectors;
  */
 public class FriendManager {
 
+    private static final int[] NO_FRIENDS = new int[0];
+    private static final int DEFAULT_MAX_FRIENDS = 100;
+
     private static FriendManager instance;
     private final Logger logger;
-    private final Map<UUID, Set<Friendship>> playerFriendships = new ConcurrentHashMap<>();
+    // Идентификатор игрока -> отсортированный список друзей (см. IdRegistry)
+    private final IntObjectMap<FriendLinks> playerFriendships = new IntObjectMap<>();
+    private final IdRegistry playerIds = IdRegistry.players();
+    private final Object graphLock = new Object();
+    private final FriendSuggestionEngine suggestionEngine = new FriendSuggestionEngine(this::friendIdsOf);
     private final Map<UUID, Set<FriendRequest>> playerRequests = new ConcurrentHashMap<>();
     private final Map<UUID, FriendRequest> requests = new ConcurrentHashMap<>();
     private final Map<UUID, Friendship> friendships = new ConcurrentHashMap<>();
+    private volatile int maxFriends = DEFAULT_MAX_FRIENDS;
 
     private FriendManager(Logger logger) {
         this.logger = logger;
@@ -58,7 +71,44 @@ public class FriendManager {
     private void loadFriendData() {
         logger.info("Загрузка данных о друзьях из базы данных...");
 
-        // TODO: Реализовать загрузку данных о друзьях из базы данных
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        if (dbManager == null || !dbManager.isConnected()) {
+            logger.warning("База данных недоступна, граф друзей не загружен");
+            return;
+        }
+
+        try (Connection connection = dbManager.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SQLQueries.SELECT_ALL_FRIENDSHIPS);
+                ResultSet resultSet = statement.executeQuery()) {
+
+            int count = 0;
+            while (resultSet.next()) {
+                Friendship friendship = new Friendship(
+                        DatabaseUtils.getUUID(resultSet, "id"),
+                        DatabaseUtils.getUUID(resultSet, "player1_id"),
+                        DatabaseUtils.getUUID(resultSet, "player2_id"),
+                        DatabaseUtils.getDate(resultSet, "friendship_date"),
+                        resultSet.getBoolean("favorite"));
+
+                friendships.put(friendship.getId(), friendship);
+                linkFriends(friendship);
+                count++;
+            }
+
+            logger.info("Загружено дружеских связей: " + count);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при загрузке данных о друзьях", e);
+        }
+    }
+
+    /**
+     * Добавляет в граф дружбу, уже сохраненную в базе данных другим компонентом
+     *
+     * @param friendship Сохраненная дружба
+     */
+    public void registerFriendship(Friendship friendship) {
+        friendships.put(friendship.getId(), friendship);
+        linkFriends(friendship);
     }
 
     /**
@@ -74,6 +124,11 @@ public class FriendManager {
             return null;
         }
 
+        // Проверяем лимит друзей у обоих игроков
+        if (hasReachedFriendLimit(senderId) || hasReachedFriendLimit(receiverId)) {
+            return null;
+        }
+
         // Проверяем, не существует ли уже запрос от этого игрока
         for (FriendRequest request : getPlayerIncomingRequests(receiverId)) {
             if (request.getSenderId().equals(senderId) && request.getStatus() == FriendRequestStatus.PENDING) {
@@ -121,6 +176,11 @@ public class FriendManager {
             return null;
         }
 
+        // Лимит мог быть достигнут, пока запрос ожидал ответа
+        if (hasReachedFriendLimit(request.getSenderId()) || hasReachedFriendLimit(request.getReceiverId())) {
+            return null;
+        }
+
         // Принимаем запрос
         request.accept();
         saveFriendRequest(request);
@@ -133,8 +193,7 @@ public class FriendManager {
             friendships.put(friendship.getId(), friendship);
 
             // Добавляем дружбу в списки игроков
-            playerFriendships.computeIfAbsent(request.getSenderId(), k -> new HashSet<>()).add(friendship);
-            playerFriendships.computeIfAbsent(request.getReceiverId(), k -> new HashSet<>()).add(friendship);
+            linkFriends(friendship);
 
             return friendship;
         }
@@ -185,15 +244,7 @@ public class FriendManager {
         }
 
         // Удаляем дружбу из списков игроков
-        Set<Friendship> player1Friendships = playerFriendships.get(friendship.getPlayer1Id());
-        if (player1Friendships != null) {
-            player1Friendships.remove(friendship);
-        }
-
-        Set<Friendship> player2Friendships = playerFriendships.get(friendship.getPlayer2Id());
-        if (player2Friendships != null) {
-            player2Friendships.remove(friendship);
-        }
+        unlinkFriends(friendship);
 
         // Удаляем дружбу из кэша
         friendships.remove(friendshipId);
@@ -227,18 +278,19 @@ public class FriendManager {
      * @return Дружба или null, если игроки не являются друзьями
      */
     public Friendship getFriendship(UUID player1Id, UUID player2Id) {
-        Set<Friendship> player1Friendships = playerFriendships.get(player1Id);
-        if (player1Friendships == null) {
+        int player1 = playerIds.indexOf(player1Id);
+        int player2 = playerIds.indexOf(player2Id);
+        if (player1 < 0 || player2 < 0) {
             return null;
         }
 
-        for (Friendship friendship : player1Friendships) {
-            if (friendship.involvesPlayer(player2Id)) {
-                return friendship;
-            }
+        FriendLinks links = playerFriendships.get(player1);
+        if (links == null) {
+            return null;
         }
 
-        return null;
+        int index = Arrays.binarySearch(links.ids, player2);
+        return index >= 0 ? links.friendships[index] : null;
     }
 
     /**
@@ -259,14 +311,95 @@ public class FriendManager {
      * @return Список UUID друзей игрока
      */
     public List<UUID> getPlayerFriends(UUID playerId) {
-        Set<Friendship> friendships = playerFriendships.get(playerId);
-        if (friendships == null) {
+        FriendLinks links = linksOf(playerId);
+        if (links == null) {
             return new ArrayList<>();
         }
 
-        return friendships.stream()
-                .map(friendship -> friendship.getOtherPlayer(playerId))
-                .collect(Collectors.toList());
+        List<UUID> friends = new ArrayList<>(links.ids.length);
+        for (int friendId : links.ids) {
+            friends.add(playerIds.uuidOf(friendId));
+        }
+        return friends;
+    }
+
+    /**
+     * Получает количество друзей игрока без обращения к базе данных
+     *
+     * @param playerId UUID игрока
+     * @return Количество друзей
+     */
+    public int getFriendCount(UUID playerId) {
+        FriendLinks links = linksOf(playerId);
+        return links != null ? links.ids.length : 0;
+    }
+
+    /**
+     * Проверяет, достиг ли игрок максимального количества друзей
+     *
+     * @param playerId UUID игрока
+     * @return true, если новых друзей добавить нельзя
+     */
+    public boolean hasReachedFriendLimit(UUID playerId) {
+        int limit = maxFriends;
+        return limit > 0 && getFriendCount(playerId) >= limit;
+    }
+
+    /**
+     * Устанавливает максимальное количество друзей
+     *
+     * @param maxFriends Лимит друзей, 0 или меньше - без ограничения
+     */
+    public void setMaxFriends(int maxFriends) {
+        this.maxFriends = maxFriends;
+    }
+
+    /**
+     * Получает максимальное количество друзей
+     *
+     * @return Лимит друзей
+     */
+    public int getMaxFriends() {
+        return maxFriends;
+    }
+
+    /**
+     * Получает общих друзей двух игроков
+     *
+     * @param player1Id UUID первого игрока
+     * @param player2Id UUID второго игрока
+     * @return Список UUID общих друзей
+     */
+    public List<UUID> getMutualFriends(UUID player1Id, UUID player2Id) {
+        FriendLinks first = linksOf(player1Id);
+        FriendLinks second = linksOf(player2Id);
+        if (first == null || second == null) {
+            return new ArrayList<>();
+        }
+
+        int[] common = FriendSuggestionEngine.intersection(first.ids, second.ids);
+        List<UUID> mutual = new ArrayList<>(common.length);
+        for (int friendId : common) {
+            mutual.add(playerIds.uuidOf(friendId));
+        }
+        return mutual;
+    }
+
+    /**
+     * Получает количество общих друзей двух игроков
+     *
+     * @param player1Id UUID первого игрока
+     * @param player2Id UUID второго игрока
+     * @return Количество общих друзей
+     */
+    public int getMutualFriendCount(UUID player1Id, UUID player2Id) {
+        FriendLinks first = linksOf(player1Id);
+        FriendLinks second = linksOf(player2Id);
+        if (first == null || second == null) {
+            return 0;
+        }
+
+        return FriendSuggestionEngine.intersectionSize(first.ids, second.ids);
     }
 
     /**
@@ -323,4 +456,125 @@ public class FriendManager {
 
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Возвращает предложения дружбы: игроков, не являющихся друзьями, по убыванию
+     * числа общих друзей с учетом общей гильдии и пати
+     *
+     * @param playerId UUID игрока
+     * @param limit    Максимальное количество предложений
+     * @return Список предложений
+     */
+    public List<FriendSuggestion> getFriendSuggestions(UUID playerId, int limit) {
+        return suggestionEngine.suggest(playerId, limit);
+    }
+
+    /**
+     * Возвращает отсортированные идентификаторы друзей игрока. Массив общий и не
+     * должен изменяться.
+     */
+    int[] friendIdsOf(int player) {
+        FriendLinks links = playerFriendships.get(player);
+        return links != null ? links.ids : NO_FRIENDS;
+    }
+
+    private FriendLinks linksOf(UUID playerId) {
+        int player = playerIds.indexOf(playerId);
+        return player >= 0 ? playerFriendships.get(player) : null;
+    }
+
+    private void linkFriends(Friendship friendship) {
+        int player1 = playerIds.intern(friendship.getPlayer1Id());
+        int player2 = playerIds.intern(friendship.getPlayer2Id());
+
+        synchronized (graphLock) {
+            playerFriendships.put(player1, FriendLinks.with(playerFriendships.get(player1), player2, friendship));
+            playerFriendships.put(player2, FriendLinks.with(playerFriendships.get(player2), player1, friendship));
+        }
+        suggestionEngine.invalidateAround(player1, player2);
+    }
+
+    private void unlinkFriends(Friendship friendship) {
+        int player1 = playerIds.indexOf(friendship.getPlayer1Id());
+        int player2 = playerIds.indexOf(friendship.getPlayer2Id());
+        if (player1 < 0 || player2 < 0) {
+            return;
+        }
+
+        synchronized (graphLock) {
+            unlink(player1, player2);
+            unlink(player2, player1);
+        }
+        suggestionEngine.invalidateAround(player1, player2);
+    }
+
+    private void unlink(int player, int friend) {
+        FriendLinks links = FriendLinks.without(playerFriendships.get(player), friend);
+        if (links == null) {
+            playerFriendships.remove(player);
+        } else {
+            playerFriendships.put(player, links);
+        }
+    }
+
+    /**
+     * Неизменяемый список друзей игрока: отсортированные идентификаторы и
+     * соответствующие им дружбы. При изменении создается новый экземпляр, поэтому
+     * читатели работают без блокировок.
+     */
+    private static final class FriendLinks {
+        private final int[] ids;
+        private final Friendship[] friendships;
+
+        private FriendLinks(int[] ids, Friendship[] friendships) {
+            this.ids = ids;
+            this.friendships = friendships;
+        }
+
+        private static FriendLinks with(FriendLinks current, int friend, Friendship friendship) {
+            int[] ids = current != null ? current.ids : new int[0];
+            Friendship[] friendships = current != null ? current.friendships : new Friendship[0];
+
+            int index = Arrays.binarySearch(ids, friend);
+            if (index >= 0) {
+                Friendship[] updated = friendships.clone();
+                updated[index] = friendship;
+                return new FriendLinks(ids, updated);
+            }
+
+            int insertAt = -(index + 1);
+            int[] newIds = new int[ids.length + 1];
+            Friendship[] newFriendships = new Friendship[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, insertAt);
+            System.arraycopy(friendships, 0, newFriendships, 0, insertAt);
+            newIds[insertAt] = friend;
+            newFriendships[insertAt] = friendship;
+            System.arraycopy(ids, insertAt, newIds, insertAt + 1, ids.length - insertAt);
+            System.arraycopy(friendships, insertAt, newFriendships, insertAt + 1, ids.length - insertAt);
+            return new FriendLinks(newIds, newFriendships);
+        }
+
+        private static FriendLinks without(FriendLinks current, int friend) {
+            if (current == null) {
+                return null;
+            }
+
+            int index = Arrays.binarySearch(current.ids, friend);
+            if (index < 0) {
+                return current;
+            }
+            if (current.ids.length == 1) {
+                return null;
+            }
+
+            int length = current.ids.length - 1;
+            int[] newIds = new int[length];
+            Friendship[] newFriendships = new Friendship[length];
+            System.arraycopy(current.ids, 0, newIds, 0, index);
+            System.arraycopy(current.friendships, 0, newFriendships, 0, index);
+            System.arraycopy(current.ids, index + 1, newIds, index, length - index);
+            System.arraycopy(current.friendships, index + 1, newFriendships, index, length - index);
+            return new FriendLinks(newIds, newFriendships);
+        }
+    }
+}
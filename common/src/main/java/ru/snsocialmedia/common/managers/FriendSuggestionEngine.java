@@ -0,0 +1,329 @@
+package ru.snsocialmedia.common.managers;
+
+import ru.snsocialmedia.common.models.friend.FriendSuggestion;
+import ru.snsocialmedia.common.models.guild.Guild;
+import ru.snsocialmedia.common.models.guild.GuildMemberMap;
+import ru.snsocialmedia.common.models.party.Party;
+import ru.snsocialmedia.common.utils.IdRegistry;
+import ru.snsocialmedia.common.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Подбор предложений дружбы по графу друзей.
+ * <p>
+ * Кандидаты - друзья друзей, а также участники общей гильдии и пати. Число
+ * общих друзей считается пересечением отсортированных массивов смежности
+ * галопирующим поиском, лучшие кандидаты отбираются ограниченной кучей. Результат
+ * кешируется для каждого игрока и сбрасывается при изменении графа рядом с ним;
+ * бонусы за гильдию и пати дополнительно ограничены временем жизни кеша.
+ */
+final class FriendSuggestionEngine {
+
+    static final int MUTUAL_FRIEND_WEIGHT = 10;
+    static final int SHARED_GUILD_BONUS = 15;
+    static final int SHARED_PARTY_BONUS = 8;
+
+    private static final long CACHE_TTL_MILLIS = 60_000L;
+    private static final int[] NO_IDS = new int[0];
+
+    private final IntFunction<int[]> adjacency;
+    private final IdRegistry playerIds = IdRegistry.players();
+    private final IntObjectMap<CachedSuggestions> cache = new IntObjectMap<>();
+    private final AtomicLong graphVersion = new AtomicLong();
+
+    /**
+     * @param adjacency Возвращает отсортированные идентификаторы друзей игрока;
+     *                  массив не изменяется
+     */
+    FriendSuggestionEngine(IntFunction<int[]> adjacency) {
+        this.adjacency = adjacency;
+    }
+
+    /**
+     * Возвращает предложения дружбы для игрока
+     *
+     * @param playerId UUID игрока
+     * @param limit    Максимальное количество предложений
+     * @return Предложения по убыванию оценки
+     */
+    List<FriendSuggestion> suggest(UUID playerId, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        int player = playerIds.intern(playerId);
+        long now = System.currentTimeMillis();
+
+        CachedSuggestions cached = cache.get(player);
+        if (cached != null && cached.expiresAt > now && cached.limit >= limit) {
+            return cached.suggestions.size() > limit ? cached.suggestions.subList(0, limit) : cached.suggestions;
+        }
+
+        long version = graphVersion.get();
+        List<FriendSuggestion> suggestions = Collections.unmodifiableList(compute(playerId, player, limit));
+
+        // Если граф изменился во время расчета, результат может быть устаревшим
+        if (graphVersion.get() == version) {
+            cache.put(player, new CachedSuggestions(suggestions, limit, now + CACHE_TTL_MILLIS));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Сбрасывает кеш игроков, чьи предложения зависят от связи между двумя
+     * игроками: их самих и их друзей
+     *
+     * @param player1 Идентификатор первого игрока
+     * @param player2 Идентификатор второго игрока
+     */
+    void invalidateAround(int player1, int player2) {
+        graphVersion.incrementAndGet();
+        invalidateNeighbourhood(player1);
+        invalidateNeighbourhood(player2);
+    }
+
+    /**
+     * Полностью очищает кеш предложений
+     */
+    void invalidateAll() {
+        graphVersion.incrementAndGet();
+        cache.clear();
+    }
+
+    private void invalidateNeighbourhood(int player) {
+        cache.remove(player);
+        for (int friend : adjacency.apply(player)) {
+            cache.remove(friend);
+        }
+    }
+
+    private List<FriendSuggestion> compute(UUID playerId, int player, int limit) {
+        int[] friends = adjacency.apply(player);
+        int[] guildMembers = guildMembersOf(playerId);
+        int[] partyMembers = partyMembersOf(playerId);
+
+        int[] candidates = collectCandidates(friends, guildMembers, partyMembers);
+        long[] heap = new long[Math.min(limit, Math.max(candidates.length, 1))];
+        int heapSize = 0;
+
+        int previous = -1;
+        for (int candidate : candidates) {
+            if (candidate == previous || candidate == player) {
+                continue;
+            }
+            previous = candidate;
+            if (Arrays.binarySearch(friends, candidate) >= 0) {
+                continue;
+            }
+
+            int score = score(friends, candidate, guildMembers, partyMembers);
+            if (score <= 0) {
+                continue;
+            }
+
+            long key = heapKey(score, candidate);
+            if (heapSize < heap.length) {
+                heap[heapSize] = key;
+                siftUp(heap, heapSize++);
+            } else if (key > heap[0]) {
+                heap[0] = key;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        long[] ranked = Arrays.copyOf(heap, heapSize);
+        Arrays.sort(ranked);
+
+        List<FriendSuggestion> suggestions = new ArrayList<>(heapSize);
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            int candidate = Integer.MAX_VALUE - (int) ranked[i];
+            UUID candidateId = playerIds.uuidOf(candidate);
+            if (candidateId != null) {
+                suggestions.add(new FriendSuggestion(candidateId,
+                        intersectionSize(friends, adjacency.apply(candidate)),
+                        Arrays.binarySearch(guildMembers, candidate) >= 0,
+                        Arrays.binarySearch(partyMembers, candidate) >= 0,
+                        (int) (ranked[i] >>> 32)));
+            }
+        }
+        return suggestions;
+    }
+
+    private int score(int[] friends, int candidate, int[] guildMembers, int[] partyMembers) {
+        int score = intersectionSize(friends, adjacency.apply(candidate)) * MUTUAL_FRIEND_WEIGHT;
+        if (Arrays.binarySearch(guildMembers, candidate) >= 0) {
+            score += SHARED_GUILD_BONUS;
+        }
+        if (Arrays.binarySearch(partyMembers, candidate) >= 0) {
+            score += SHARED_PARTY_BONUS;
+        }
+        return score;
+    }
+
+    /**
+     * Собирает отсортированный массив кандидатов с повторами: друзья друзей,
+     * участники гильдии и пати
+     */
+    private int[] collectCandidates(int[] friends, int[] guildMembers, int[] partyMembers) {
+        int[][] friendsOfFriends = new int[friends.length][];
+        int total = guildMembers.length + partyMembers.length;
+        for (int i = 0; i < friends.length; i++) {
+            friendsOfFriends[i] = adjacency.apply(friends[i]);
+            total += friendsOfFriends[i].length;
+        }
+
+        int[] candidates = new int[total];
+        int position = 0;
+        for (int[] ids : friendsOfFriends) {
+            System.arraycopy(ids, 0, candidates, position, ids.length);
+            position += ids.length;
+        }
+        System.arraycopy(guildMembers, 0, candidates, position, guildMembers.length);
+        position += guildMembers.length;
+        System.arraycopy(partyMembers, 0, candidates, position, partyMembers.length);
+
+        Arrays.sort(candidates);
+        return candidates;
+    }
+
+    private int[] guildMembersOf(UUID playerId) {
+        GuildManager guildManager = GuildManager.getInstance();
+        Guild guild = guildManager != null ? guildManager.getPlayerGuild(playerId) : null;
+        if (guild == null) {
+            return NO_IDS;
+        }
+        if (guild.getMembers() instanceof GuildMemberMap) {
+            return ((GuildMemberMap) guild.getMembers()).toIdArray();
+        }
+        return toSortedIds(guild.getMembers().keySet());
+    }
+
+    private int[] partyMembersOf(UUID playerId) {
+        PartyManager partyManager = PartyManager.getInstance();
+        Party party = partyManager != null ? partyManager.getPlayerParty(playerId) : null;
+        return party != null ? toSortedIds(party.getMembers().keySet()) : NO_IDS;
+    }
+
+    private int[] toSortedIds(Iterable<UUID> members) {
+        List<UUID> snapshot = new ArrayList<>();
+        members.forEach(snapshot::add);
+
+        int[] ids = new int[snapshot.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = playerIds.intern(snapshot.get(i));
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Размер пересечения двух отсортированных массивов. Меньший массив
+     * перебирается, в большем позиция ищется экспоненциальным шагом с
+     * последующим бинарным поиском, поэтому стоимость - O(m log(n/m)).
+     */
+    static int intersectionSize(int[] first, int[] second) {
+        return intersect(first, second, null);
+    }
+
+    /**
+     * Пересечение двух отсортированных массивов тем же галопирующим поиском
+     *
+     * @return Отсортированный массив общих элементов
+     */
+    static int[] intersection(int[] first, int[] second) {
+        int[] common = new int[Math.min(first.length, second.length)];
+        int count = intersect(first, second, common);
+        return count == common.length ? common : Arrays.copyOf(common, count);
+    }
+
+    private static int intersect(int[] first, int[] second, int[] output) {
+        int[] small = first.length <= second.length ? first : second;
+        int[] large = small == first ? second : first;
+
+        int count = 0;
+        int low = 0;
+        for (int value : small) {
+            if (low >= large.length) {
+                break;
+            }
+
+            int bound = 1;
+            while (low + bound < large.length && large[low + bound] < value) {
+                bound <<= 1;
+            }
+
+            int index = Arrays.binarySearch(large, low + (bound >> 1), Math.min(low + bound + 1, large.length), value);
+            if (index >= 0) {
+                if (output != null) {
+                    output[count] = value;
+                }
+                count++;
+                low = index + 1;
+            } else {
+                low = -(index + 1);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Ключ кучи: оценка в старших битах, при равенстве выше игрок с меньшим
+     * идентификатором
+     */
+    private static long heapKey(int score, int candidate) {
+        return ((long) score << 32) | (Integer.MAX_VALUE - candidate);
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        long key = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= key) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = key;
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        long key = heap[0];
+        int index = 0;
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (key <= heap[child]) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = key;
+    }
+
+    /**
+     * Кешированный результат для игрока
+     */
+    private static final class CachedSuggestions {
+        private final List<FriendSuggestion> suggestions;
+        private final int limit;
+        private final long expiresAt;
+
+        private CachedSuggestions(List<FriendSuggestion> suggestions, int limit, long expiresAt) {
+            this.suggestions = suggestions;
+            this.limit = limit;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package ru.snsocialmedia.common.managers;
+
+import ru.snsocialmedia.common.models.guild.GuildChatEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * История чата гильдии.
+ * <p>
+ * Последние сообщения каждой гильдии хранятся в кольцевом буфере для
+ * мгновенного показа при входе. На диск сообщения пишутся в сегменты
+ * {@code <guildId>/<начало сегмента>.seg}, открытые только на дозапись. Запись
+ * выполняется пакетами в отдельном потоке, поэтому обработка чата не ждет
+ * ввода-вывода. Сегменты ротируются по времени, устаревшие удаляются при
+ * компактизации.
+ */
+public class GuildChatHistory {
+
+    private static final String SEGMENT_EXTENSION = ".seg";
+
+    private final Path directory;
+    private final int bufferSize;
+    private final long segmentDurationMillis;
+    private final long retentionMillis;
+    private final Logger logger;
+
+    private final Map<UUID, ChatRing> rings = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<GuildChatEntry> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    // Открытые сегменты, доступны только из потока записи
+    private final Map<UUID, OpenSegment> openSegments = new HashMap<>();
+
+    private final ScheduledExecutorService writer;
+
+    /**
+     * Создает историю чата гильдий
+     *
+     * @param directory             Директория для сегментов
+     * @param bufferSize            Количество сообщений в памяти на гильдию
+     * @param segmentDurationMillis Длительность одного сегмента
+     * @param retentionMillis       Время хранения сегментов
+     * @param flushIntervalMillis   Интервал пакетной записи на диск
+     * @param logger                Логгер
+     */
+    public GuildChatHistory(Path directory, int bufferSize, long segmentDurationMillis, long retentionMillis,
+            long flushIntervalMillis, Logger logger) {
+        this.directory = directory;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.segmentDurationMillis = Math.max(60_000L, segmentDurationMillis);
+        this.retentionMillis = Math.max(this.segmentDurationMillis, retentionMillis);
+        this.logger = logger;
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SNSocialMedia-GuildChatHistory");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось создать директорию истории чата гильдий", e);
+        }
+
+        long flushInterval = Math.max(50L, flushIntervalMillis);
+        writer.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        writer.scheduleWithFixedDelay(this::compact, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Добавляет сообщение в историю. Не выполняет ввод-вывод.
+     *
+     * @param guildId    ID гильдии
+     * @param senderId   UUID отправителя
+     * @param senderName Имя отправителя
+     * @param message    Текст сообщения
+     */
+    public void record(UUID guildId, UUID senderId, String senderName, String message) {
+        GuildChatEntry entry = new GuildChatEntry(guildId, senderId, senderName, message, System.currentTimeMillis());
+        rings.computeIfAbsent(guildId, id -> new ChatRing(bufferSize)).add(entry);
+        pendingWrites.offer(entry);
+    }
+
+    /**
+     * Возвращает последние сообщения гильдии в хронологическом порядке
+     *
+     * @param guildId ID гильдии
+     * @param limit   Максимальное количество сообщений
+     * @return Список сообщений
+     */
+    public List<GuildChatEntry> getRecent(UUID guildId, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        ChatRing ring = rings.computeIfAbsent(guildId, id -> new ChatRing(bufferSize));
+        if (!ring.isWarmed()) {
+            warmUp(guildId, ring);
+        }
+        return ring.tail(limit);
+    }
+
+    /**
+     * Удаляет историю гильдии из памяти и с диска
+     *
+     * @param guildId ID гильдии
+     */
+    public void deleteGuild(UUID guildId) {
+        rings.remove(guildId);
+        if (writer.isShutdown()) {
+            return;
+        }
+        writer.execute(() -> {
+            closeSegment(guildId);
+            deleteDirectory(directory.resolve(guildId.toString()));
+        });
+    }
+
+    /**
+     * Записывает оставшиеся сообщения и останавливает поток записи
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+        for (UUID guildId : new ArrayList<>(openSegments.keySet())) {
+            closeSegment(guildId);
+        }
+    }
+
+    /**
+     * Пакетно записывает накопленные сообщения в сегменты
+     */
+    private void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+
+        // Группируем сообщения по гильдиям, чтобы писать одним вызовом на сегмент
+        Map<UUID, ByteArrayOutputStream> batches = new HashMap<>();
+        Map<UUID, Long> batchSegments = new HashMap<>();
+        GuildChatEntry entry;
+        while ((entry = pendingWrites.poll()) != null) {
+            long segmentStart = segmentStart(entry.getTimestamp());
+            Long currentSegment = batchSegments.get(entry.getGuildId());
+            if (currentSegment != null && currentSegment != segmentStart) {
+                // Сообщение попало в следующий сегмент - дописываем накопленное в старый
+                writeBatch(entry.getGuildId(), currentSegment, batches.remove(entry.getGuildId()));
+            }
+            batchSegments.put(entry.getGuildId(), segmentStart);
+
+            try {
+                encode(entry, batches.computeIfAbsent(entry.getGuildId(), id -> new ByteArrayOutputStream()));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Не удалось сериализовать сообщение чата гильдии", e);
+            }
+        }
+
+        for (Map.Entry<UUID, ByteArrayOutputStream> batch : batches.entrySet()) {
+            writeBatch(batch.getKey(), batchSegments.get(batch.getKey()), batch.getValue());
+        }
+    }
+
+    private void writeBatch(UUID guildId, long segmentStart, ByteArrayOutputStream batch) {
+        if (batch == null || batch.size() == 0) {
+            return;
+        }
+
+        try {
+            FileChannel channel = segmentChannel(guildId, segmentStart);
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Ошибка при записи истории чата гильдии " + guildId, e);
+            closeSegment(guildId);
+        }
+    }
+
+    private FileChannel segmentChannel(UUID guildId, long segmentStart) throws IOException {
+        OpenSegment segment = openSegments.get(guildId);
+        if (segment != null && segment.start == segmentStart) {
+            return segment.channel;
+        }
+
+        // Ротация: закрываем предыдущий сегмент и открываем новый
+        closeSegment(guildId);
+
+        Path guildDirectory = directory.resolve(guildId.toString());
+        Files.createDirectories(guildDirectory);
+        FileChannel channel = FileChannel.open(guildDirectory.resolve(segmentStart + SEGMENT_EXTENSION),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        openSegments.put(guildId, new OpenSegment(segmentStart, channel));
+        return channel;
+    }
+
+    private void closeSegment(UUID guildId) {
+        OpenSegment segment = openSegments.remove(guildId);
+        if (segment != null) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Не удалось закрыть сегмент истории чата гильдии " + guildId, e);
+            }
+        }
+    }
+
+    /**
+     * Удаляет устаревшие сегменты и пустые директории гильдий
+     */
+    private void compact() {
+        long threshold = segmentStart(System.currentTimeMillis() - retentionMillis);
+
+        try (DirectoryStream<Path> guildDirectories = Files.newDirectoryStream(directory)) {
+            for (Path guildDirectory : guildDirectories) {
+                if (!Files.isDirectory(guildDirectory)) {
+                    continue;
+                }
+
+                boolean empty = true;
+                for (Path segment : listSegments(guildDirectory)) {
+                    if (segmentStartOf(segment) < threshold) {
+                        Files.deleteIfExists(segment);
+                    } else {
+                        empty = false;
+                    }
+                }
+
+                UUID guildId = parseGuildId(guildDirectory);
+                if (empty && (guildId == null || !openSegments.containsKey(guildId))) {
+                    Files.deleteIfExists(guildDirectory);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Ошибка при компактизации истории чата гильдий", e);
+        }
+    }
+
+    /**
+     * Догружает в буфер сообщения, записанные до текущего запуска
+     */
+    private void warmUp(UUID guildId, ChatRing ring) {
+        if (!ring.beginWarmUp()) {
+            return;
+        }
+
+        // Диск читается без блокировки буфера, чтобы не задерживать запись новых сообщений
+        if (!ring.isFull()) {
+            long before = Math.min(ring.oldestTimestamp(), System.currentTimeMillis());
+            List<Path> segments = listSegments(directory.resolve(guildId.toString()));
+            List<GuildChatEntry> loaded = new ArrayList<>();
+
+            // Читаем сегменты с конца, пока не наберем нужное количество
+            for (int i = segments.size() - 1; i >= 0 && loaded.size() < bufferSize; i--) {
+                loaded.addAll(0, readSegment(guildId, segments.get(i), before));
+            }
+
+            int from = Math.max(0, loaded.size() - bufferSize);
+            ring.prepend(loaded.subList(from, loaded.size()));
+        }
+
+        ring.markWarmed();
+    }
+
+    private List<GuildChatEntry> readSegment(UUID guildId, Path segment, long before) {
+        List<GuildChatEntry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(segment)))) {
+            while (true) {
+                int length = in.readInt();
+                byte[] record = new byte[length];
+                in.readFully(record);
+
+                GuildChatEntry entry = decode(guildId, record);
+                if (entry.getTimestamp() < before) {
+                    entries.add(entry);
+                }
+            }
+        } catch (EOFException e) {
+            // Конец сегмента или недописанная запись после аварийной остановки
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Не удалось прочитать сегмент истории чата " + segment, e);
+        }
+        return entries;
+    }
+
+    private void encode(GuildChatEntry entry, ByteArrayOutputStream target) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeLong(entry.getTimestamp());
+            out.writeLong(entry.getSenderId().getMostSignificantBits());
+            out.writeLong(entry.getSenderId().getLeastSignificantBits());
+            out.writeUTF(entry.getSenderName());
+            out.writeUTF(entry.getMessage());
+        }
+
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(record.size());
+        record.writeTo(out);
+        out.flush();
+    }
+
+    private GuildChatEntry decode(UUID guildId, byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            long timestamp = in.readLong();
+            UUID senderId = new UUID(in.readLong(), in.readLong());
+            String senderName = in.readUTF();
+            String message = in.readUTF();
+            return new GuildChatEntry(guildId, senderId, senderName, message, timestamp);
+        }
+    }
+
+    private List<Path> listSegments(Path guildDirectory) {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(guildDirectory)) {
+            return segments;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(guildDirectory, "*" + SEGMENT_EXTENSION)) {
+            for (Path segment : stream) {
+                if (segmentStartOf(segment) >= 0) {
+                    segments.add(segment);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Не удалось получить список сегментов " + guildDirectory, e);
+        }
+
+        segments.sort((a, b) -> Long.compare(segmentStartOf(a), segmentStartOf(b)));
+        return segments;
+    }
+
+    private void deleteDirectory(Path guildDirectory) {
+        try {
+            for (Path segment : listSegments(guildDirectory)) {
+                Files.deleteIfExists(segment);
+            }
+            Files.deleteIfExists(guildDirectory);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Не удалось удалить историю чата " + guildDirectory, e);
+        }
+    }
+
+    private long segmentStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, segmentDurationMillis);
+    }
+
+    private static long segmentStartOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1L;
+        }
+    }
+
+    private static UUID parseGuildId(Path guildDirectory) {
+        try {
+            return UUID.fromString(guildDirectory.getFileName().toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class OpenSegment {
+        private final long start;
+        private final FileChannel channel;
+
+        private OpenSegment(long start, FileChannel channel) {
+            this.start = start;
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Кольцевой буфер последних сообщений гильдии
+     */
+    private static final class ChatRing {
+        private final GuildChatEntry[] entries;
+        private int head;
+        private int size;
+        private final AtomicBoolean warming = new AtomicBoolean();
+        private volatile boolean warmed;
+
+        private ChatRing(int capacity) {
+            this.entries = new GuildChatEntry[capacity];
+        }
+
+        private synchronized void add(GuildChatEntry entry) {
+            entries[(head + size) % entries.length] = entry;
+            if (size < entries.length) {
+                size++;
+            } else {
+                head = (head + 1) % entries.length;
+            }
+        }
+
+        /**
+         * Добавляет более старые сообщения в начало, пока есть свободное место
+         */
+        private synchronized void prepend(List<GuildChatEntry> older) {
+            for (int i = older.size() - 1; i >= 0 && size < entries.length; i--) {
+                head = (head - 1 + entries.length) % entries.length;
+                entries[head] = older.get(i);
+                size++;
+            }
+        }
+
+        private synchronized List<GuildChatEntry> tail(int limit) {
+            int count = Math.min(limit, size);
+            List<GuildChatEntry> result = new ArrayList<>(count);
+            for (int i = size - count; i < size; i++) {
+                result.add(entries[(head + i) % entries.length]);
+            }
+            return result;
+        }
+
+        private synchronized long oldestTimestamp() {
+            return size == 0 ? Long.MAX_VALUE : entries[head].getTimestamp();
+        }
+
+        private synchronized boolean isFull() {
+            return size == entries.length;
+        }
+
+        private boolean beginWarmUp() {
+            return warming.compareAndSet(false, true);
+        }
+
+        private boolean isWarmed() {
+            return warmed;
+        }
+
+        private void markWarmed() {
+            warmed = true;
+        }
+    }
+}
@@ -2,8 +2,11 @@ package ru.snsocialmedia.common.managers;
 
 import ru.snsocialmedia.common.database.DatabaseManager;
 import ru.snsocialmedia.common.models.guild.Guild;
+import ru.snsocialmedia.common.models.guild.GuildChatEntry;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,6 +23,9 @@ public class GuildChatManager {
     // Карта для хранения состояния режима чата гильдии для каждого игрока
     private final Map<UUID, Boolean> guildChatEnabled = new ConcurrentHashMap<>();
 
+    // История чата гильдий, null если отключена
+    private volatile GuildChatHistory chatHistory;
+
     public GuildChatManager(DatabaseManager dbManager, GuildManager guildManager, Logger logger) {
         this.dbManager = dbManager;
         this.guildManager = guildManager;
@@ -93,11 +99,52 @@ public class GuildChatManager {
 
         logger.info("Отправка сообщения в чат гильдии " + guild.getName() + " от " + senderName + ": " + message);
 
+        GuildChatHistory history = chatHistory;
+        if (history != null) {
+            history.record(guildId, senderId, senderName, message);
+        }
+
         // Здесь должен быть код для отправки сообщения всем членам гильдии через прокси
         // В рамках демонстрации просто возвращаем true
         return true;
     }
 
+    /**
+     * Устанавливает хранилище истории чата гильдий
+     * 
+     * @param chatHistory История чата или null, чтобы отключить запись
+     */
+    public void setChatHistory(GuildChatHistory chatHistory) {
+        this.chatHistory = chatHistory;
+    }
+
+    /**
+     * Возвращает последние сообщения чата гильдии
+     * 
+     * @param guildId ID гильдии
+     * @param limit   Максимальное количество сообщений
+     * @return Сообщения в хронологическом порядке
+     */
+    public List<GuildChatEntry> getRecentMessages(UUID guildId, int limit) {
+        GuildChatHistory history = chatHistory;
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        return history.getRecent(guildId, limit);
+    }
+
+    /**
+     * Удаляет историю чата удаленной гильдии
+     * 
+     * @param guildId ID гильдии
+     */
+    public void deleteHistory(UUID guildId) {
+        GuildChatHistory history = chatHistory;
+        if (history != null) {
+            history.deleteGuild(guildId);
+        }
+    }
+
     /**
      * Выключает режим чата гильдии для игрока при выходе из игры
      * 
@@ -113,4 +160,15 @@ public class GuildChatManager {
     public void clearCache() {
         guildChatEnabled.clear();
     }
+
+    /**
+     * Останавливает запись истории чата, дописывая накопленные сообщения
+     */
+    public void shutdown() {
+        GuildChatHistory history = chatHistory;
+        chatHistory = null;
+        if (history != null) {
+            history.close();
+        }
+    }
 }
\ No newline at end of file
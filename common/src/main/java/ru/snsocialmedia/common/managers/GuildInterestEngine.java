@@ -0,0 +1,136 @@
+package ru.snsocialmedia.common.managers;
+
+import java.util.Locale;
+
+/**
+ * Правила начисления процентов на баланс хранилищ гильдий.
+ * <p>
+ * В режиме {@link Mode#EAGER} проценты начисляются по расписанию одним
+ * UPDATE сразу для всех гильдий. В режиме {@link Mode#LAZY} расписание не
+ * нужно: в guild_storage хранится время последнего начисления, и проценты за
+ * все прошедшие периоды начисляются сложным процентом при чтении хранилища.
+ * Суммы считаются в младших единицах и округляются вниз.
+ */
+public final class GuildInterestEngine {
+
+    /**
+     * Режим начисления процентов
+     */
+    public enum Mode {
+        /**
+         * Начисление по расписанию одним запросом
+         */
+        EAGER,
+
+        /**
+         * Начисление при чтении хранилища
+         */
+        LAZY;
+
+        /**
+         * Находит режим по значению из конфигурации
+         *
+         * @param value        Значение из конфигурации
+         * @param defaultValue Режим, если значение не распознано
+         * @return Режим начисления
+         */
+        public static Mode fromConfig(String value, Mode defaultValue) {
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return defaultValue;
+            }
+        }
+    }
+
+    private final Mode mode;
+    private final double rate;
+    private final long periodMillis;
+
+    /**
+     * @param mode         Режим начисления
+     * @param rate         Ставка за один период (например, 0.01 для 1%)
+     * @param periodMillis Длительность периода в миллисекундах
+     */
+    public GuildInterestEngine(Mode mode, double rate, long periodMillis) {
+        this.mode = mode;
+        this.rate = rate;
+        this.periodMillis = Math.max(periodMillis, 1000L);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /**
+     * @return true, если проценты начисляются при чтении хранилища
+     */
+    public boolean isLazy() {
+        return mode == Mode.LAZY && rate > 0;
+    }
+
+    /**
+     * Считает количество полных периодов с последнего начисления
+     *
+     * @param lastAccruedAt Время последнего начисления (0, если начислений не было)
+     * @param now           Текущее время
+     * @return Количество полных периодов
+     */
+    public long periodsSince(long lastAccruedAt, long now) {
+        if (lastAccruedAt <= 0 || now <= lastAccruedAt) {
+            return 0;
+        }
+        return (now - lastAccruedAt) / periodMillis;
+    }
+
+    /**
+     * Считает проценты за несколько периодов сложным процентом
+     *
+     * @param money   Баланс в младших единицах
+     * @param periods Количество периодов
+     * @return Проценты в младших единицах
+     */
+    public long interestFor(long money, long periods) {
+        if (money <= 0) {
+            return 0;
+        }
+        return (long) Math.floor(money * factorFor(periods));
+    }
+
+    /**
+     * Считает долю баланса, начисляемую за несколько периодов сложным
+     * процентом
+     *
+     * @param periods Количество периодов
+     * @return Множитель: проценты = FLOOR(баланс * множитель)
+     */
+    public double factorFor(long periods) {
+        if (periods <= 0 || rate <= 0) {
+            return 0.0;
+        }
+        return periods == 1 ? rate : Math.pow(1.0 + rate, periods) - 1.0;
+    }
+
+    /**
+     * Сдвигает время последнего начисления на целое число периодов, чтобы
+     * неполный период не терялся
+     *
+     * @param lastAccruedAt Время последнего начисления
+     * @param periods       Количество начисленных периодов
+     * @return Новое время последнего начисления
+     */
+    public long advance(long lastAccruedAt, long periods) {
+        return lastAccruedAt + periods * periodMillis;
+    }
+}
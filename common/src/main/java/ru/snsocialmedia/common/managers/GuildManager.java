@@ -8,6 +8,8 @@ import ru.snsocialmedia.common.models.guild.GuildMember;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
 import ru.snsocialmedia.common.managers.GuildStorageManager;
+import ru.snsocialmedia.common.utils.IdRegistry;
+import ru.snsocialmedia.common.utils.IntObjectMap;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -27,7 +29,9 @@ public class GuildManager {
     private static GuildManager instance;
     private final Logger logger;
     private final Map<UUID, Guild> guilds = new ConcurrentHashMap<>();
-    private final Map<UUID, UUID> playerGuilds = new ConcurrentHashMap<>();
+    // Идентификатор игрока (см. IdRegistry) -> UUID гильдии
+    private final IntObjectMap<UUID> playerGuilds = new IntObjectMap<>();
+    private final IdRegistry playerIds = IdRegistry.players();
     private final Map<UUID, Boolean> guildChatMode = new ConcurrentHashMap<>();
     private final DatabaseManager dbManager;
     private final GuildStorageManager guildStorageManager;
@@ -115,7 +119,7 @@ public class GuildManager {
                     guilds.put(guildId, guild);
 
                     // Добавляем лидера в мапу связей игрок-гильдия
-                    playerGuilds.put(leaderId, guildId);
+                    bindPlayerGuild(leaderId, guildId);
 
                     count++;
                 }
@@ -161,7 +165,7 @@ public class GuildManager {
                         guild.getMembers().put(playerId, role);
 
                         // Добавляем связь игрок-гильдия в кеш
-                        playerGuilds.put(playerId, guild.getId());
+                        bindPlayerGuild(playerId, guild.getId());
                     }
 
                     logger.info(
@@ -184,7 +188,7 @@ public class GuildManager {
      * @return Созданная гильдия или null, если создание не удалось
      */
     public Guild createGuild(String name, String tag, UUID leaderId, String description) {
-        if (playerGuilds.containsKey(leaderId)) {
+        if (hasGuild(leaderId)) {
             return null; // Игрок уже состоит в гильдии
         }
 
@@ -197,7 +201,7 @@ public class GuildManager {
         Guild guild = new Guild(name, tag, leaderId);
         guild.setDescription(description);
         guilds.put(guild.getId(), guild);
-        playerGuilds.put(leaderId, guild.getId());
+        bindPlayerGuild(leaderId, guild.getId());
 
         // Создаем хранилище гильдии
         GuildStorage storage = guildStorageManager.createStorage(guild, 10); // Начальное количество слотов - 10
@@ -234,7 +238,7 @@ public class GuildManager {
         }
 
         for (UUID playerId : guild.getMembers().keySet()) {
-            playerGuilds.remove(playerId);
+            unbindPlayerGuild(playerId);
         }
 
         // TODO: Реализовать удаление гильдии из базы данных
@@ -274,7 +278,11 @@ public class GuildManager {
      * @return Гильдия или null, если игрок не состоит в гильдии
      */
     public Guild getPlayerGuild(UUID playerId) {
-        UUID guildId = playerGuilds.get(playerId);
+        int player = playerIds.indexOf(playerId);
+        if (player < 0) {
+            return null;
+        }
+        UUID guildId = playerGuilds.get(player);
         return guildId != null ? guilds.get(guildId) : null;
     }
 
@@ -288,12 +296,12 @@ public class GuildManager {
      */
     public boolean addPlayerToGuild(UUID guildId, UUID playerId, GuildRole role) {
         Guild guild = guilds.get(guildId);
-        if (guild == null || playerGuilds.containsKey(playerId)) {
+        if (guild == null || hasGuild(playerId)) {
             return false;
         }
 
         guild.addMember(playerId, role);
-        playerGuilds.put(playerId, guildId);
+        bindPlayerGuild(playerId, guildId);
         return true;
     }
 
@@ -310,7 +318,7 @@ public class GuildManager {
             return false;
         }
 
-        playerGuilds.remove(playerId);
+        unbindPlayerGuild(playerId);
         return true;
     }
 
@@ -553,10 +561,29 @@ public class GuildManager {
             return;
         }
 
-        playerGuilds.put(playerId, guildId);
+        bindPlayerGuild(playerId, guildId);
         logger.info("Добавлена связь игрок-гильдия: " + playerId + " -> " + guildId);
     }
 
+    /**
+     * Проверяет, состоит ли игрок в какой-либо гильдии
+     */
+    private boolean hasGuild(UUID playerId) {
+        int player = playerIds.indexOf(playerId);
+        return player >= 0 && playerGuilds.get(player) != null;
+    }
+
+    private void bindPlayerGuild(UUID playerId, UUID guildId) {
+        playerGuilds.put(playerIds.intern(playerId), guildId);
+    }
+
+    private void unbindPlayerGuild(UUID playerId) {
+        int player = playerIds.indexOf(playerId);
+        if (player >= 0) {
+            playerGuilds.remove(player);
+        }
+    }
+
     private void createTablesIfNotExist() {
         // Реализуем создание таблиц в базе данных, если они не существуют
         try {
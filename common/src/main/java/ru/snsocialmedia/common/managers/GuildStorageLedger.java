@@ -0,0 +1,477 @@
+package ru.snsocialmedia.common.managers;
+
+import ru.snsocialmedia.common.database.DatabaseManager;
+import ru.snsocialmedia.common.models.guild.GuildStorage;
+import ru.snsocialmedia.common.models.guild.StorageLedgerEntry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Журнал операций с хранилищами гильдий.
+ * <p>
+ * Каждая операция (внесение и снятие предметов и денег, перевод, улучшение,
+ * проценты) добавляется строкой в таблицу guild_storage_journal с
+ * последовательным номером. Записи пишутся пакетом в той же транзакции, что и
+ * само изменение хранилища, поэтому журнал не расходится с данными. Раз в
+ * несколько записей сохраняется снимок хранилища: состояние восстанавливается
+ * из последнего снимка и записей журнала после него. История читается
+ * постранично по номеру записи, без OFFSET.
+ */
+public class GuildStorageLedger {
+
+    private static final String INSERT_ENTRY = "INSERT INTO guild_storage_journal "
+            + "(guild_id, actor_id, actor_name, type, item_type, amount, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_ACTOR_NAME_LENGTH = 16;
+
+    private final DatabaseManager databaseManager;
+    private final Logger logger;
+    private final int snapshotEvery;
+
+    // ID гильдии -> количество записей с последнего снимка
+    private final Map<UUID, Integer> entriesSinceSnapshot = new ConcurrentHashMap<>();
+
+    // ID игрока -> ник на момент операции; задается платформой
+    private volatile Function<UUID, String> actorNameResolver = actorId -> null;
+
+    GuildStorageLedger(DatabaseManager databaseManager, Logger logger, int snapshotEvery) {
+        this.databaseManager = databaseManager;
+        this.logger = logger;
+        this.snapshotEvery = Math.max(snapshotEvery, 1);
+    }
+
+    /**
+     * Создает таблицы журнала и снимков
+     */
+    void createTables() {
+        String[] statements = {
+                "CREATE TABLE IF NOT EXISTS guild_storage_journal (" +
+                        "seq BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                        "guild_id CHAR(36) NOT NULL, " +
+                        "actor_id CHAR(36) NULL, " +
+                        "actor_name VARCHAR(16) NULL, " +
+                        "type VARCHAR(16) NOT NULL, " +
+                        "item_type VARCHAR(100) NULL, " +
+                        "amount BIGINT NOT NULL, " +
+                        "created_at BIGINT NOT NULL, " +
+                        "INDEX idx_guild_storage_journal_guild (guild_id, seq)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS guild_storage_snapshots (" +
+                        "guild_id CHAR(36) NOT NULL, " +
+                        "seq BIGINT NOT NULL, " +
+                        "created_at BIGINT NOT NULL, " +
+                        "max_slots INT NOT NULL, " +
+                        "money BIGINT NOT NULL, " +
+                        "PRIMARY KEY (guild_id, seq)" +
+                        ")",
+                "CREATE TABLE IF NOT EXISTS guild_storage_snapshot_items (" +
+                        "guild_id CHAR(36) NOT NULL, " +
+                        "seq BIGINT NOT NULL, " +
+                        "item_type VARCHAR(100) NOT NULL, " +
+                        "amount INT NOT NULL, " +
+                        "item_data BLOB NULL, " +
+                        "PRIMARY KEY (guild_id, seq, item_type), " +
+                        "FOREIGN KEY (guild_id, seq) REFERENCES guild_storage_snapshots(guild_id, seq) " +
+                        "ON DELETE CASCADE" +
+                        ")"
+        };
+
+        try (Connection connection = databaseManager.getConnection();
+                Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось создать таблицы журнала хранилищ гильдий", e);
+        }
+    }
+
+    /**
+     * Задает способ получения ника игрока, выполнившего операцию. Ник
+     * сохраняется вместе с записью журнала, чтобы история показывала его и
+     * для игроков не в сети.
+     *
+     * @param resolver Функция ID игрока -> ник или null, если ник неизвестен
+     */
+    public void setActorNameResolver(Function<UUID, String> resolver) {
+        this.actorNameResolver = resolver != null ? resolver : actorId -> null;
+    }
+
+    /**
+     * Открывает пакет записей в транзакции вызывающего кода. Записи попадают в
+     * базу данных при {@link Batch#execute()} и фиксируются вместе с
+     * транзакцией.
+     *
+     * @param connection Соединение с открытой транзакцией
+     * @return Пакет записей
+     */
+    Batch batch(Connection connection) throws SQLException {
+        return new Batch(connection.prepareStatement(INSERT_ENTRY), actorNameResolver);
+    }
+
+    /**
+     * Записывает начисление процентов всем гильдиям одним запросом. Должен
+     * выполняться в той же транзакции и до UPDATE, начисляющего проценты, с
+     * той же границей времени последнего начисления.
+     *
+     * @param connection   Соединение с открытой транзакцией
+     * @param interestRate Процентная ставка
+     * @param now          Время начисления
+     * @param accruedUntil Учитываются хранилища, проценты которым начислены не
+     *                     позже этого времени
+     * @return Количество записей
+     */
+    int recordInterest(Connection connection, double interestRate, long now, long accruedUntil)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO guild_storage_journal (guild_id, actor_id, actor_name, type, item_type, amount, created_at) " +
+                        "SELECT guild_id, NULL, NULL, ?, NULL, FLOOR(money * ?), ? FROM guild_storage " +
+                        "WHERE FLOOR(money * ?) > 0 AND last_accrued_at <= ?")) {
+            statement.setString(1, StorageLedgerEntry.Type.INTEREST.name());
+            statement.setDouble(2, interestRate);
+            statement.setLong(3, now);
+            statement.setDouble(4, interestRate);
+            statement.setLong(5, accruedUntil);
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Учитывает зафиксированные записи и сохраняет снимки хранилищ, для
+     * которых накопилось достаточно записей. Снимок берет отдельное соединение,
+     * поэтому вызывается после того, как соединение операции возвращено в пул.
+     *
+     * @param batch Зафиксированный пакет записей или null
+     */
+    void committed(Batch batch) {
+        if (batch == null) {
+            return;
+        }
+        for (Map.Entry<UUID, Integer> entry : batch.counts.entrySet()) {
+            UUID guildId = entry.getKey();
+            int count = entriesSinceSnapshot.merge(guildId, entry.getValue(), Integer::sum);
+            if (count >= snapshotEvery && snapshot(guildId)) {
+                entriesSinceSnapshot.remove(guildId);
+            }
+        }
+    }
+
+    /**
+     * Сохраняет снимок текущего состояния хранилища и удаляет предыдущие снимки
+     *
+     * @param guildId ID гильдии
+     * @return true, если снимок сохранен
+     */
+    public boolean snapshot(UUID guildId) {
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int maxSlots;
+                long money;
+                // Блокировка строки хранилища упорядочивает снимок с изменениями
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT max_slots, money FROM guild_storage WHERE guild_id = ? FOR UPDATE")) {
+                    statement.setString(1, guildId.toString());
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        if (!resultSet.next()) {
+                            connection.rollback();
+                            return false;
+                        }
+                        maxSlots = resultSet.getInt("max_slots");
+                        money = resultSet.getLong("money");
+                    }
+                }
+
+                long seq;
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT COALESCE(MAX(seq), 0) FROM guild_storage_journal WHERE guild_id = ?")) {
+                    statement.setString(1, guildId.toString());
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        seq = resultSet.getLong(1);
+                    }
+                }
+
+                try (PreparedStatement insertSnapshot = connection.prepareStatement(
+                        "INSERT IGNORE INTO guild_storage_snapshots (guild_id, seq, created_at, max_slots, money) " +
+                                "VALUES (?, ?, ?, ?, ?)");
+                        PreparedStatement insertItems = connection.prepareStatement(
+                                "INSERT IGNORE INTO guild_storage_snapshot_items " +
+                                        "(guild_id, seq, item_type, amount, item_data) " +
+                                        "SELECT guild_id, ?, item_type, amount, item_data FROM guild_storage_items " +
+                                        "WHERE guild_id = ?");
+                        PreparedStatement deleteOld = connection.prepareStatement(
+                                "DELETE FROM guild_storage_snapshots WHERE guild_id = ? AND seq < ?")) {
+                    insertSnapshot.setString(1, guildId.toString());
+                    insertSnapshot.setLong(2, seq);
+                    insertSnapshot.setLong(3, System.currentTimeMillis());
+                    insertSnapshot.setInt(4, maxSlots);
+                    insertSnapshot.setLong(5, money);
+                    insertSnapshot.executeUpdate();
+
+                    insertItems.setLong(1, seq);
+                    insertItems.setString(2, guildId.toString());
+                    insertItems.executeUpdate();
+
+                    deleteOld.setString(1, guildId.toString());
+                    deleteOld.setLong(2, seq);
+                    deleteOld.executeUpdate();
+                }
+
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось сохранить снимок хранилища гильдии " + guildId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Восстанавливает состояние хранилища из последнего снимка и записей
+     * журнала после него
+     *
+     * @param guildId ID гильдии
+     * @return Восстановленное хранилище или null, если восстановить не удалось
+     */
+    public GuildStorage reconstruct(UUID guildId) {
+        try (Connection connection = databaseManager.getConnection()) {
+            long fromSeq = 0;
+            boolean fromSnapshot = false;
+            int maxSlots = 0;
+            long money = 0;
+            Map<String, Integer> items = new HashMap<>();
+            Map<String, byte[]> itemData = new HashMap<>();
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT seq, max_slots, money FROM guild_storage_snapshots WHERE guild_id = ? " +
+                            "ORDER BY seq DESC LIMIT 1")) {
+                statement.setString(1, guildId.toString());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        fromSnapshot = true;
+                        fromSeq = resultSet.getLong("seq");
+                        maxSlots = resultSet.getInt("max_slots");
+                        money = resultSet.getLong("money");
+                    }
+                }
+            }
+
+            if (fromSnapshot) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT item_type, amount, item_data FROM guild_storage_snapshot_items " +
+                                "WHERE guild_id = ? AND seq = ?")) {
+                    statement.setString(1, guildId.toString());
+                    statement.setLong(2, fromSeq);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            String itemType = resultSet.getString("item_type");
+                            items.put(itemType, resultSet.getInt("amount"));
+                            byte[] data = resultSet.getBytes("item_data");
+                            if (data != null) {
+                                itemData.put(itemType, data);
+                            }
+                        }
+                    }
+                }
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT type, item_type, amount FROM guild_storage_journal WHERE guild_id = ? AND seq > ? " +
+                            "ORDER BY seq")) {
+                statement.setString(1, guildId.toString());
+                statement.setLong(2, fromSeq);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        StorageLedgerEntry.Type type = parseType(resultSet.getString("type"));
+                        if (type == null) {
+                            continue;
+                        }
+                        long amount = resultSet.getLong("amount");
+                        switch (type) {
+                            case CREATE:
+                            case UPGRADE:
+                                maxSlots = (int) amount;
+                                break;
+                            case ITEM_DEPOSIT:
+                            case ITEM_WITHDRAW:
+                                items.merge(resultSet.getString("item_type"), (int) amount, Integer::sum);
+                                break;
+                            case MONEY_SET:
+                                money = amount;
+                                break;
+                            default:
+                                money += amount;
+                                break;
+                        }
+                    }
+                }
+            }
+
+            // Журнал не хранит шаблоны предметов: для предметов, внесенных
+            // после снимка, шаблон берется из текущего содержимого хранилища
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT item_type, item_data FROM guild_storage_items " +
+                            "WHERE guild_id = ? AND item_data IS NOT NULL")) {
+                statement.setString(1, guildId.toString());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        itemData.putIfAbsent(resultSet.getString("item_type"), resultSet.getBytes("item_data"));
+                    }
+                }
+            }
+
+            // Лимит слотов не проверяется: восстанавливается фактическое состояние
+            GuildStorage storage = new GuildStorage(guildId, Integer.MAX_VALUE);
+            storage.setMoneyMinor(money);
+            for (Map.Entry<String, Integer> item : items.entrySet()) {
+                if (item.getValue() > 0) {
+                    storage.addItem(item.getKey(), item.getValue(), itemData.get(item.getKey()));
+                }
+            }
+            storage.setMaxSlots(maxSlots);
+            storage.clearChanges();
+            return storage;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось восстановить хранилище гильдии " + guildId + " из журнала", e);
+            return null;
+        }
+    }
+
+    /**
+     * Получает страницу истории операций, от новых к старым
+     *
+     * @param guildId   ID гильдии
+     * @param beforeSeq Номер записи, до которой читать (0 - с самой новой)
+     * @param limit     Размер страницы
+     * @return Записи журнала; номер последней записи - курсор следующей страницы
+     */
+    public List<StorageLedgerEntry> getHistory(UUID guildId, long beforeSeq, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<StorageLedgerEntry> entries = new ArrayList<>(limit);
+        try (Connection connection = databaseManager.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT seq, actor_id, actor_name, type, item_type, amount, created_at FROM guild_storage_journal " +
+                                "WHERE guild_id = ? AND seq < ? ORDER BY seq DESC LIMIT ?")) {
+            statement.setString(1, guildId.toString());
+            statement.setLong(2, beforeSeq > 0 ? beforeSeq : Long.MAX_VALUE);
+            statement.setInt(3, limit);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String actorId = resultSet.getString("actor_id");
+                    entries.add(new StorageLedgerEntry(
+                            resultSet.getLong("seq"),
+                            guildId,
+                            actorId != null ? UUID.fromString(actorId) : null,
+                            resultSet.getString("actor_name"),
+                            parseType(resultSet.getString("type")),
+                            resultSet.getString("item_type"),
+                            resultSet.getLong("amount"),
+                            resultSet.getLong("created_at")));
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось загрузить историю хранилища гильдии " + guildId, e);
+            return Collections.emptyList();
+        }
+        return entries;
+    }
+
+    private static StorageLedgerEntry.Type parseType(String value) {
+        try {
+            return StorageLedgerEntry.Type.valueOf(value);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Пакет записей журнала одной транзакции
+     */
+    static final class Batch implements AutoCloseable {
+        private final PreparedStatement statement;
+        private final Function<UUID, String> actorNameResolver;
+        private final Map<UUID, Integer> counts = new HashMap<>();
+        private final long now = System.currentTimeMillis();
+
+        private Batch(PreparedStatement statement, Function<UUID, String> actorNameResolver) {
+            this.statement = statement;
+            this.actorNameResolver = actorNameResolver;
+        }
+
+        /**
+         * Добавляет запись в пакет
+         */
+        void add(UUID guildId, UUID actorId, StorageLedgerEntry.Type type, String itemType, long amount)
+                throws SQLException {
+            statement.setString(1, guildId.toString());
+            String actorName = actorId != null ? resolveActorName(actorId) : null;
+            if (actorId != null) {
+                statement.setString(2, actorId.toString());
+            } else {
+                statement.setNull(2, Types.CHAR);
+            }
+            if (actorName != null) {
+                statement.setString(3, actorName);
+            } else {
+                statement.setNull(3, Types.VARCHAR);
+            }
+            statement.setString(4, type.name());
+            if (itemType != null) {
+                statement.setString(5, itemType);
+            } else {
+                statement.setNull(5, Types.VARCHAR);
+            }
+            statement.setLong(6, amount);
+            statement.setLong(7, now);
+            statement.addBatch();
+            counts.merge(guildId, 1, Integer::sum);
+        }
+
+        private String resolveActorName(UUID actorId) {
+            String name = actorNameResolver.apply(actorId);
+            if (name == null || name.isEmpty()) {
+                return null;
+            }
+            return name.length() > MAX_ACTOR_NAME_LENGTH ? name.substring(0, MAX_ACTOR_NAME_LENGTH) : name;
+        }
+
+        /**
+         * Отправляет накопленные записи в базу данных
+         */
+        void execute() throws SQLException {
+            if (!counts.isEmpty()) {
+                statement.executeBatch();
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            statement.close();
+        }
+    }
+}
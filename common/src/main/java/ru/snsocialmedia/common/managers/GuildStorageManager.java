@@ -7,22 +7,71 @@ import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import ru.snsocialmedia.common.database.DatabaseManager;
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
+import ru.snsocialmedia.common.models.guild.StorageLedgerEntry;
 
 /**
- * Менеджер для управления хранилищем гильдии
+ * Менеджер для управления хранилищем гильдии.
+ * <p>
+ * Баланс хранится в столбце BIGINT в младших единицах
+ * ({@link GuildStorage#MONEY_SCALE}). Пополнение, снятие и перевод выполняются
+ * относительными обновлениями в базе данных ({@code money = money + ?}, снятие
+ * - только при достаточном балансе), поэтому одновременные операции с разных
+ * серверов не перезаписывают друг друга. Новый баланс возвращается тем же
+ * запросом и обновляет кэш. Каждое изменение записывается в журнал
+ * {@link GuildStorageLedger} в той же транзакции.
  */
 public class GuildStorageManager {
 
     private static GuildStorageManager instance;
     private final DatabaseManager databaseManager;
     private final Logger logger;
-    private final Map<UUID, GuildStorage> guildStorageCache = new HashMap<>();
+    // Кэш читается и из асинхронных задач меню Spigot
+    private final Map<UUID, GuildStorage> guildStorageCache = new ConcurrentHashMap<>();
+    // Блокировки хранилищ: проверка, изменение и сохранение одного хранилища
+    // выполняются по очереди, так как задачи меню меняют общий объект из кэша
+    private final Map<UUID, Object> storageLocks = new ConcurrentHashMap<>();
+
+    // LAST_INSERT_ID(expr) запоминает новый баланс для соединения, и он
+    // читается без повторного обращения к строке
+    private static final String DEPOSIT_MONEY =
+            "UPDATE guild_storage SET money = LAST_INSERT_ID(money + ?) WHERE guild_id = ?";
+    private static final String WITHDRAW_MONEY =
+            "UPDATE guild_storage SET money = LAST_INSERT_ID(money - ?) WHERE guild_id = ? AND money >= ?";
+    private static final String SELECT_UPDATED_MONEY = "SELECT LAST_INSERT_ID()";
+
+    // Правила начисления процентов; null, если проценты не начисляются
+    private volatile GuildInterestEngine interestEngine;
+
+    // Количество записей журнала между снимками хранилища
+    private static final int LEDGER_SNAPSHOT_EVERY = 200;
+    private final GuildStorageLedger ledger;
+
+    // Сколько раз сохранение повторяется после конфликта версий
+    private static final int MAX_SAVE_RETRIES = 3;
+
+    // Статистика конфликтов версий при сохранении
+    private final AtomicLong versionedSaves = new AtomicLong();
+    private final AtomicLong versionConflicts = new AtomicLong();
+    private final AtomicLong rebasedSaves = new AtomicLong();
+    private final AtomicLong rejectedSaves = new AtomicLong();
+
+    /**
+     * Результат одной попытки сохранения
+     */
+    private enum SaveResult {
+        SAVED,
+        CONFLICT,
+        FAILED
+    }
 
     /**
      * Конструктор
@@ -33,7 +82,20 @@ public class GuildStorageManager {
     public GuildStorageManager(DatabaseManager databaseManager, Logger logger) {
         this.databaseManager = databaseManager;
         this.logger = logger;
+        this.ledger = new GuildStorageLedger(databaseManager, logger, LEDGER_SNAPSHOT_EVERY);
         createTablesIfNotExist();
+        ledger.createTables();
+        addColumnIfMissing("guild_storage_journal", "actor_name", "VARCHAR(16) NULL");
+        addColumnIfMissing("guild_storage_snapshot_items", "item_data", "BLOB NULL");
+    }
+
+    /**
+     * Получает журнал операций с хранилищами
+     *
+     * @return Журнал операций
+     */
+    public GuildStorageLedger getLedger() {
+        return ledger;
     }
 
     /**
@@ -69,19 +131,25 @@ public class GuildStorageManager {
                         "CREATE TABLE IF NOT EXISTS guild_storage (" +
                                 "guild_id CHAR(36) PRIMARY KEY, " +
                                 "max_slots INT NOT NULL DEFAULT 10, " +
-                                "money DOUBLE NOT NULL DEFAULT 0.0" +
+                                "money BIGINT NOT NULL DEFAULT 0, " +
+                                "last_accrued_at BIGINT NOT NULL DEFAULT 0" +
                                 ")")) {
             statement.executeUpdate();
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Не удалось создать таблицу guild_storage", e);
         }
 
+        migrateMoneyColumn();
+        addColumnIfMissing("guild_storage", "last_accrued_at", "BIGINT NOT NULL DEFAULT 0");
+        addColumnIfMissing("guild_storage", "version", "BIGINT NOT NULL DEFAULT 0");
+
         try (Connection connection = databaseManager.getConnection();
                 PreparedStatement statement = connection.prepareStatement(
                         "CREATE TABLE IF NOT EXISTS guild_storage_items (" +
                                 "guild_id CHAR(36) NOT NULL, " +
                                 "item_type VARCHAR(100) NOT NULL, " +
                                 "amount INT NOT NULL, " +
+                                "item_data BLOB NULL, " +
                                 "PRIMARY KEY (guild_id, item_type), " +
                                 "FOREIGN KEY (guild_id) REFERENCES guild_storage(guild_id) ON DELETE CASCADE" +
                                 ")")) {
@@ -89,6 +157,80 @@ public class GuildStorageManager {
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Не удалось создать таблицу guild_storage_items", e);
         }
+
+        // Закодированный шаблон предмета с метаданными; null для обычных предметов
+        addColumnIfMissing("guild_storage_items", "item_data", "BLOB NULL");
+    }
+
+    /**
+     * Переводит столбец money из дробного числа монет в целое число младших
+     * единиц, если таблица создана старой версией плагина
+     */
+    private void migrateMoneyColumn() {
+        try (Connection connection = databaseManager.getConnection();
+                PreparedStatement typeStatement = connection.prepareStatement(
+                        "SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS " +
+                                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'guild_storage' " +
+                                "AND COLUMN_NAME = 'money'")) {
+            String dataType;
+            try (ResultSet resultSet = typeStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return;
+                }
+                dataType = resultSet.getString(1);
+            }
+            if ("bigint".equalsIgnoreCase(dataType)) {
+                return;
+            }
+
+            try (PreparedStatement convertStatement = connection.prepareStatement(
+                    "UPDATE guild_storage SET money = ROUND(money * " + GuildStorage.MONEY_SCALE + ")");
+                    PreparedStatement alterStatement = connection.prepareStatement(
+                            "ALTER TABLE guild_storage MODIFY money BIGINT NOT NULL DEFAULT 0")) {
+                convertStatement.executeUpdate();
+                alterStatement.executeUpdate();
+            }
+            logger.info("Баланс хранилищ гильдий переведен в целые младшие единицы");
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось перевести столбец money таблицы guild_storage в BIGINT", e);
+        }
+    }
+
+    /**
+     * Добавляет столбец в таблицу хранилищ, если таблица создана старой
+     * версией плагина
+     */
+    private void addColumnIfMissing(String table, String column, String definition) {
+        try (Connection connection = databaseManager.getConnection();
+                PreparedStatement checkStatement = connection.prepareStatement(
+                        "SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS " +
+                                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            checkStatement.setString(1, table);
+            checkStatement.setString(2, column);
+            try (ResultSet resultSet = checkStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    return;
+                }
+            }
+
+            try (PreparedStatement alterStatement = connection.prepareStatement(
+                    "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition)) {
+                alterStatement.executeUpdate();
+            }
+            logger.info("В таблицу " + table + " добавлен столбец " + column);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось добавить столбец " + column + " в таблицу " + table, e);
+        }
+    }
+
+    /**
+     * Устанавливает правила начисления процентов
+     *
+     * @param interestEngine Правила начисления или null, чтобы отключить
+     *                       начисление при чтении
+     */
+    public void setInterestEngine(GuildInterestEngine interestEngine) {
+        this.interestEngine = interestEngine;
     }
 
     /**
@@ -101,14 +243,28 @@ public class GuildStorageManager {
     public GuildStorage createStorage(Guild guild, int maxSlots) {
         UUID guildId = guild.getId();
         GuildStorage storage = new GuildStorage(guildId, maxSlots);
+        storage.setLastAccruedAt(System.currentTimeMillis());
 
-        try (Connection connection = databaseManager.getConnection();
-                PreparedStatement statement = connection.prepareStatement(
-                        "INSERT INTO guild_storage (guild_id, max_slots, money) VALUES (?, ?, ?)")) {
-            statement.setString(1, guildId.toString());
-            statement.setInt(2, maxSlots);
-            statement.setDouble(3, 0.0);
-            statement.executeUpdate();
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO guild_storage (guild_id, max_slots, money, last_accrued_at) VALUES (?, ?, ?, ?)");
+                    GuildStorageLedger.Batch journal = ledger.batch(connection)) {
+                statement.setString(1, guildId.toString());
+                statement.setInt(2, maxSlots);
+                statement.setLong(3, 0L);
+                statement.setLong(4, storage.getLastAccruedAt());
+                statement.executeUpdate();
+
+                journal.add(guildId, null, StorageLedgerEntry.Type.CREATE, null, maxSlots);
+                journal.execute();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
 
             guildStorageCache.put(guildId, storage);
             logger.info("Создано хранилище для гильдии " + guild.getName());
@@ -127,94 +283,360 @@ public class GuildStorageManager {
      */
     public GuildStorage loadStorage(UUID guildId) {
         // Проверяем кэш
-        if (guildStorageCache.containsKey(guildId)) {
-            return guildStorageCache.get(guildId);
+        GuildStorage cached = guildStorageCache.get(guildId);
+        if (cached != null) {
+            accrueInterestOnRead(cached);
+            return cached;
         }
 
+        GuildStorage loaded = null;
+        GuildStorageLedger.Batch committedJournal = null;
         try (Connection connection = databaseManager.getConnection();
                 PreparedStatement storageStatement = connection.prepareStatement(
-                        "SELECT max_slots, money FROM guild_storage WHERE guild_id = ?")) {
+                        "SELECT max_slots, money, last_accrued_at, version FROM guild_storage WHERE guild_id = ?")) {
             storageStatement.setString(1, guildId.toString());
             ResultSet storageResult = storageStatement.executeQuery();
 
             if (storageResult.next()) {
                 int maxSlots = storageResult.getInt("max_slots");
-                double money = storageResult.getDouble("money");
+                long money = storageResult.getLong("money");
 
                 GuildStorage storage = new GuildStorage(guildId, maxSlots);
-                storage.setMoney(money);
+                storage.setMoneyMinor(money);
+                storage.setLastAccruedAt(storageResult.getLong("last_accrued_at"));
+                storage.setVersion(storageResult.getLong("version"));
 
                 // Загружаем предметы
                 try (PreparedStatement itemsStatement = connection.prepareStatement(
-                        "SELECT item_type, amount FROM guild_storage_items WHERE guild_id = ?")) {
+                        "SELECT item_type, amount, item_data FROM guild_storage_items WHERE guild_id = ?")) {
                     itemsStatement.setString(1, guildId.toString());
                     ResultSet itemsResult = itemsStatement.executeQuery();
 
                     while (itemsResult.next()) {
                         String itemType = itemsResult.getString("item_type");
                         int amount = itemsResult.getInt("amount");
-                        storage.addItem(itemType, amount);
+                        storage.addItem(itemType, amount, itemsResult.getBytes("item_data"));
                     }
                 }
 
+                // Загруженное состояние совпадает с базой данных
+                storage.clearChanges();
+                committedJournal = accrueInterest(connection, storage);
+
                 guildStorageCache.put(guildId, storage);
-                return storage;
+                loaded = storage;
             }
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Не удалось загрузить хранилище для гильдии " + guildId, e);
+            return null;
         }
 
-        return null;
+        ledger.committed(committedJournal);
+        return loaded;
     }
 
     /**
-     * Сохраняет хранилище гильдии в базу данных
+     * Сохраняет изменения хранилища гильдии в базу данных.
+     * <p>
+     * Записываются только изменившиеся с прошлого сохранения данные: размер
+     * хранилища, относительное изменение баланса и по одной строке на каждый
+     * затронутый тип предмета (вставка или обновление количества либо
+     * удаление). Все изменения пишутся пакетами в одной транзакции. Если в базе
+     * данных денег меньше, чем требует снятие, транзакция отменяется, а баланс
+     * в кэше заменяется значением из базы данных.
+     * <p>
+     * Если хранилище успело измениться с другого сервера, изменения переносятся
+     * на актуальное состояние и сохранение повторяется (до
+     * {@link #MAX_SAVE_RETRIES} раз). Если перенести их нельзя, например
+     * предметы уже сняты, изменения отбрасываются и возвращается false.
      *
      * @param storage Хранилище гильдии
      * @return true, если операция успешна
      */
     public boolean saveStorage(GuildStorage storage) {
+        return saveStorage(storage, null);
+    }
+
+    /**
+     * Сохраняет изменения хранилища гильдии и записывает их в журнал от имени
+     * игрока
+     *
+     * @param storage Хранилище гильдии
+     * @param actorId UUID игрока, выполнившего операцию, или null
+     * @return true, если операция успешна
+     * @see #saveStorage(GuildStorage)
+     */
+    public boolean saveStorage(GuildStorage storage, UUID actorId) {
+        synchronized (lockFor(storage.getGuildId())) {
+            for (int attempt = 0;; attempt++) {
+                SaveResult result = trySaveStorage(storage, actorId);
+                if (result != SaveResult.CONFLICT) {
+                    return result == SaveResult.SAVED;
+                }
+
+                versionConflicts.incrementAndGet();
+                if (attempt == MAX_SAVE_RETRIES || !rebaseStorage(storage)) {
+                    rejectedSaves.incrementAndGet();
+                    return false;
+                }
+                rebasedSaves.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Изменяет хранилище гильдии и сохраняет изменения под блокировкой этого
+     * хранилища. Операция получает хранилище из кэша, проверяет условия и
+     * изменяет его; пока она и сохранение не завершены, другие изменения этого
+     * хранилища на сервере ждут. Если операция вернула false или сохранение не
+     * удалось, хранилище удаляется из кэша, чтобы несохраненные изменения не
+     * попали в следующее сохранение.
+     *
+     * @param guildId   ID гильдии
+     * @param actorId   UUID игрока для журнала операций или null
+     * @param operation Проверка и изменение хранилища; false отменяет операцию
+     * @return true, если изменения сохранены
+     */
+    public boolean modifyStorage(UUID guildId, UUID actorId, Predicate<GuildStorage> operation) {
+        synchronized (lockFor(guildId)) {
+            GuildStorage storage = loadStorage(guildId);
+            if (storage == null) {
+                return false;
+            }
+
+            if (operation.test(storage) && saveStorage(storage, actorId)) {
+                return true;
+            }
+            clearCache(guildId);
+            return false;
+        }
+    }
+
+    private Object lockFor(UUID guildId) {
+        return storageLocks.computeIfAbsent(guildId, id -> new Object());
+    }
+
+    /**
+     * Выполняет одну попытку сохранения. Если изменились предметы или размер,
+     * версия строки guild_storage увеличивается только при совпадении с
+     * версией, от которой сделаны изменения; иначе возвращается
+     * {@link SaveResult#CONFLICT}, а изменения остаются несохраненными.
+     * Изменения только баланса версию не проверяют: баланс меняется
+     * относительным обновлением и не может быть перезаписан.
+     */
+    private SaveResult trySaveStorage(GuildStorage storage, UUID actorId) {
         UUID guildId = storage.getGuildId();
+        boolean headerChanged = storage.drainHeaderChanged();
+        Map<String, Integer> itemChanges = storage.drainItemChanges();
+        long moneyDelta = storage.drainMoneyDelta();
+        if (!headerChanged && itemChanges.isEmpty() && moneyDelta == 0) {
+            return SaveResult.SAVED;
+        }
+
+        boolean versioned = headerChanged || !itemChanges.isEmpty();
+        long newVersion = storage.getVersion() + 1;
+        GuildStorageLedger.Batch committedJournal = null;
         try (Connection connection = databaseManager.getConnection()) {
-            // Обновляем основную информацию о хранилище
-            try (PreparedStatement statement = connection.prepareStatement(
-                    "UPDATE guild_storage SET max_slots = ?, money = ? WHERE guild_id = ?")) {
-                statement.setInt(1, storage.getMaxSlots());
-                statement.setDouble(2, storage.getMoney());
-                statement.setString(3, guildId.toString());
-                statement.executeUpdate();
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement updateStatement = connection.prepareStatement(
+                    "UPDATE guild_storage SET max_slots = ?, version = ? WHERE guild_id = ? AND version = ?");
+                    PreparedStatement upsertStatement = connection.prepareStatement(
+                            "INSERT INTO guild_storage_items (guild_id, item_type, amount, item_data) " +
+                                    "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE amount = VALUES(amount), " +
+                                    "item_data = COALESCE(VALUES(item_data), item_data)");
+                    PreparedStatement deleteStatement = connection.prepareStatement(
+                            "DELETE FROM guild_storage_items WHERE guild_id = ? AND item_type = ?");
+                    GuildStorageLedger.Batch journal = ledger.batch(connection)) {
+
+                if (versioned) {
+                    versionedSaves.incrementAndGet();
+                    updateStatement.setInt(1, storage.getMaxSlots());
+                    updateStatement.setLong(2, newVersion);
+                    updateStatement.setString(3, guildId.toString());
+                    updateStatement.setLong(4, storage.getVersion());
+                    if (updateStatement.executeUpdate() == 0) {
+                        // Хранилище изменено с другого сервера
+                        connection.rollback();
+                        storage.markChanged(itemChanges, headerChanged, moneyDelta);
+                        logger.fine("Конфликт версий хранилища гильдии " + guildId + " (версия "
+                                + storage.getVersion() + ")");
+                        return SaveResult.CONFLICT;
+                    }
+                    if (headerChanged) {
+                        journal.add(guildId, actorId, StorageLedgerEntry.Type.UPGRADE, null, storage.getMaxSlots());
+                    }
+                }
+
+                if (moneyDelta != 0) {
+                    Long balance = applyMoneyDelta(connection, guildId, moneyDelta);
+                    if (balance == null) {
+                        // Снятие не прошло: деньги уже сняты с другого сервера
+                        connection.rollback();
+                        storage.markChanged(itemChanges, headerChanged, 0);
+                        storage.setMoneyMinor(selectMoney(connection, guildId));
+                        logger.warning("Недостаточно денег в хранилище гильдии " + guildId
+                                + " для сохранения снятия, баланс обновлен из базы данных");
+                        return SaveResult.FAILED;
+                    }
+                    storage.refreshMoney(balance);
+                    journal.add(guildId, actorId, moneyDelta > 0 ? StorageLedgerEntry.Type.MONEY_DEPOSIT
+                            : StorageLedgerEntry.Type.MONEY_WITHDRAW, null, moneyDelta);
+                }
+
+                boolean hasUpserts = false;
+                boolean hasDeletes = false;
+                for (Map.Entry<String, Integer> change : itemChanges.entrySet()) {
+                    String itemType = change.getKey();
+                    int delta = change.getValue();
+                    if (delta != 0) {
+                        journal.add(guildId, actorId, delta > 0 ? StorageLedgerEntry.Type.ITEM_DEPOSIT
+                                : StorageLedgerEntry.Type.ITEM_WITHDRAW, itemType, delta);
+                    }
+
+                    int amount = storage.getItemAmount(itemType);
+                    if (amount > 0) {
+                        upsertStatement.setString(1, guildId.toString());
+                        upsertStatement.setString(2, itemType);
+                        upsertStatement.setInt(3, amount);
+                        upsertStatement.setBytes(4, storage.getItemData(itemType));
+                        upsertStatement.addBatch();
+                        hasUpserts = true;
+                    } else {
+                        deleteStatement.setString(1, guildId.toString());
+                        deleteStatement.setString(2, itemType);
+                        deleteStatement.addBatch();
+                        hasDeletes = true;
+                    }
+                }
+
+                if (hasUpserts) {
+                    upsertStatement.executeBatch();
+                }
+                if (hasDeletes) {
+                    deleteStatement.executeBatch();
+                }
+                journal.execute();
+
+                connection.commit();
+                committedJournal = journal;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
 
-            // Удаляем все предметы и вставляем заново
-            try (PreparedStatement deleteStatement = connection.prepareStatement(
-                    "DELETE FROM guild_storage_items WHERE guild_id = ?")) {
-                deleteStatement.setString(1, guildId.toString());
-                deleteStatement.executeUpdate();
+            if (versioned) {
+                storage.markSaved(newVersion);
             }
+        } catch (SQLException e) {
+            // Изменения будут записаны при следующем сохранении
+            storage.markChanged(itemChanges, headerChanged, moneyDelta);
+            logger.log(Level.SEVERE, "Не удалось сохранить хранилище для гильдии " + guildId, e);
+            return SaveResult.FAILED;
+        }
+
+        ledger.committed(committedJournal);
+        logger.fine("Сохранено хранилище для гильдии " + guildId + ": изменено типов предметов "
+                + itemChanges.size());
+        return SaveResult.SAVED;
+    }
 
-            // Вставляем предметы
-            Map<String, Integer> items = storage.getItems();
-            if (!items.isEmpty()) {
-                try (PreparedStatement insertStatement = connection.prepareStatement(
-                        "INSERT INTO guild_storage_items (guild_id, item_type, amount) VALUES (?, ?, ?)")) {
-                    for (Map.Entry<String, Integer> entry : items.entrySet()) {
-                        insertStatement.setString(1, guildId.toString());
-                        insertStatement.setString(2, entry.getKey());
-                        insertStatement.setInt(3, entry.getValue());
-                        insertStatement.addBatch();
+    /**
+     * Загружает актуальное состояние хранилища после конфликта версий и
+     * переносит на него несохраненные изменения. Если изменения больше не
+     * применимы, они отбрасываются, а в кэше остается состояние из базы данных.
+     *
+     * @return true, если сохранение можно повторить
+     */
+    private boolean rebaseStorage(GuildStorage storage) {
+        UUID guildId = storage.getGuildId();
+        try (Connection connection = databaseManager.getConnection()) {
+            int maxSlots;
+            long version;
+            long money;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT max_slots, money, version FROM guild_storage WHERE guild_id = ?")) {
+                statement.setString(1, guildId.toString());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return false;
                     }
-                    insertStatement.executeBatch();
+                    maxSlots = resultSet.getInt("max_slots");
+                    money = resultSet.getLong("money");
+                    version = resultSet.getLong("version");
                 }
             }
 
-            logger.info("Сохранено хранилище для гильдии " + guildId);
-            return true;
+            Map<String, Integer> items = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT item_type, amount, item_data FROM guild_storage_items WHERE guild_id = ?")) {
+                statement.setString(1, guildId.toString());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        String itemType = resultSet.getString("item_type");
+                        items.put(itemType, resultSet.getInt("amount"));
+                        byte[] data = resultSet.getBytes("item_data");
+                        if (data != null && storage.getItemData(itemType) == null) {
+                            storage.setItemData(itemType, data);
+                        }
+                    }
+                }
+            }
+
+            storage.refreshMoney(money);
+            if (storage.rebase(maxSlots, items, version)) {
+                return true;
+            }
+
+            storage.setMoneyMinor(money);
+            storage.reset(maxSlots, items, version);
+            logger.warning("Изменения хранилища гильдии " + guildId
+                    + " отклонены: оно уже изменено с другого сервера");
+            return false;
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Не удалось сохранить хранилище для гильдии " + guildId, e);
+            logger.log(Level.SEVERE, "Не удалось перезагрузить хранилище для гильдии " + guildId, e);
             return false;
         }
     }
 
+    /**
+     * @return Количество сохранений с проверкой версии
+     */
+    public long getVersionedSaves() {
+        return versionedSaves.get();
+    }
+
+    /**
+     * @return Количество конфликтов версий
+     */
+    public long getVersionConflicts() {
+        return versionConflicts.get();
+    }
+
+    /**
+     * @return Доля сохранений с проверкой версии, закончившихся конфликтом
+     */
+    public double getConflictRate() {
+        long saves = versionedSaves.get();
+        return saves == 0 ? 0.0 : (double) versionConflicts.get() / saves;
+    }
+
+    /**
+     * Формирует краткую сводку по конфликтам версий для логов
+     *
+     * @return Строка вида "сохранений: 100, конфликтов: 2 (2.0%), ..."
+     */
+    public String describeConcurrencyMetrics() {
+        return "сохранений: " + versionedSaves.get()
+                + ", конфликтов: " + versionConflicts.get()
+                + String.format(" (%.1f%%)", getConflictRate() * 100)
+                + ", повторено: " + rebasedSaves.get()
+                + ", отклонено: " + rejectedSaves.get();
+    }
+
+
     /**
      * Удаляет хранилище гильдии
      *
@@ -230,6 +652,7 @@ public class GuildStorageManager {
 
             if (result > 0) {
                 guildStorageCache.remove(guildId);
+                storageLocks.remove(guildId);
                 logger.info("Удалено хранилище для гильдии " + guildId);
                 return true;
             }
@@ -248,36 +671,34 @@ public class GuildStorageManager {
      * @return true, если операция успешна
      */
     public boolean upgradeStorage(Guild guild, int addSlots) {
-        if (addSlots <= 0) {
-            return false;
-        }
+        return upgradeStorage(guild, addSlots, null);
+    }
 
-        UUID guildId = guild.getId();
-        GuildStorage storage = loadStorage(guildId);
-        if (storage == null) {
+    /**
+     * Увеличивает размер хранилища гильдии от имени игрока
+     *
+     * @param guild    Гильдия
+     * @param addSlots Количество добавляемых слотов
+     * @param actorId  UUID игрока для журнала операций или null
+     * @return true, если операция успешна
+     */
+    public boolean upgradeStorage(Guild guild, int addSlots, UUID actorId) {
+        if (addSlots <= 0) {
             return false;
         }
 
-        int newMaxSlots = storage.getMaxSlots() + addSlots;
-        storage.setMaxSlots(newMaxSlots);
-
-        try (Connection connection = databaseManager.getConnection();
-                PreparedStatement statement = connection.prepareStatement(
-                        "UPDATE guild_storage SET max_slots = ? WHERE guild_id = ?")) {
-            statement.setInt(1, newMaxSlots);
-            statement.setString(2, guildId.toString());
-            int result = statement.executeUpdate();
-
-            if (result > 0) {
-                logger.info(
-                        "Увеличен размер хранилища для гильдии " + guild.getName() + " до " + newMaxSlots + " слотов");
-                return true;
-            }
-            return false;
-        } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Не удалось увеличить размер хранилища для гильдии " + guild.getName(), e);
-            return false;
+        // Размер записывается вместе с записью журнала об улучшении
+        int[] maxSlots = new int[1];
+        if (modifyStorage(guild.getId(), actorId, storage -> {
+            storage.increaseMaxSlots(addSlots);
+            maxSlots[0] = storage.getMaxSlots();
+            return true;
+        })) {
+            logger.info("Увеличен размер хранилища для гильдии " + guild.getName() + " до "
+                    + maxSlots[0] + " слотов");
+            return true;
         }
+        return false;
     }
 
     /**
@@ -309,7 +730,10 @@ public class GuildStorageManager {
     }
 
     /**
-     * Обновляет количество денег в хранилище гильдии
+     * Устанавливает баланс хранилища гильдии. Используется для
+     * административной установки баланса; обычные операции должны идти через
+     * {@link #depositMoney(UUID, long)}, {@link #withdrawMoney(UUID, long)} и
+     * {@link #transferMoney(UUID, UUID, long)}.
      *
      * @param guild Гильдия
      * @param money Новое количество денег
@@ -326,74 +750,234 @@ public class GuildStorageManager {
             return false;
         }
 
-        storage.setMoney(money);
+        long moneyMinor = GuildStorage.toMinorUnits(money);
 
-        try (Connection connection = databaseManager.getConnection();
-                PreparedStatement statement = connection.prepareStatement(
-                        "UPDATE guild_storage SET money = ? WHERE guild_id = ?")) {
-            statement.setDouble(1, money);
-            statement.setString(2, guildId.toString());
-            int result = statement.executeUpdate();
+        GuildStorageLedger.Batch committedJournal;
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE guild_storage SET money = ? WHERE guild_id = ?");
+                    GuildStorageLedger.Batch journal = ledger.batch(connection)) {
+                statement.setLong(1, moneyMinor);
+                statement.setString(2, guildId.toString());
+                if (statement.executeUpdate() == 0) {
+                    connection.rollback();
+                    return false;
+                }
 
-            if (result > 0) {
-                logger.info("Обновлен баланс хранилища для гильдии " + guild.getName() + ": " + money);
-                updateCache(storage);
-                return true;
+                journal.add(guildId, null, StorageLedgerEntry.Type.MONEY_SET, null, moneyMinor);
+                journal.execute();
+                connection.commit();
+                committedJournal = journal;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
-            return false;
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Не удалось обновить баланс хранилища для гильдии " + guild.getName(), e);
             return false;
         }
+
+        ledger.committed(committedJournal);
+        storage.setMoneyMinor(moneyMinor);
+        logger.info("Обновлен баланс хранилища для гильдии " + guild.getName() + ": " + money);
+        updateCache(storage);
+        return true;
+    }
+
+    /**
+     * Пополняет баланс хранилища гильдии
+     *
+     * @param guildId     ID гильдии
+     * @param amountMinor Сумма в младших единицах
+     * @return Новый баланс в младших единицах или null, если операция не удалась
+     */
+    public Long depositMoney(UUID guildId, long amountMinor) {
+        return depositMoney(guildId, amountMinor, null);
+    }
+
+    /**
+     * Пополняет баланс хранилища гильдии от имени игрока
+     *
+     * @param guildId     ID гильдии
+     * @param amountMinor Сумма в младших единицах
+     * @param actorId     UUID игрока для журнала операций или null
+     * @return Новый баланс в младших единицах или null, если операция не удалась
+     */
+    public Long depositMoney(UUID guildId, long amountMinor, UUID actorId) {
+        if (amountMinor <= 0) {
+            return null;
+        }
+        return changeMoney(guildId, amountMinor, actorId);
+    }
+
+    /**
+     * Снимает деньги с баланса хранилища гильдии, если их достаточно
+     *
+     * @param guildId     ID гильдии
+     * @param amountMinor Сумма в младших единицах
+     * @return Новый баланс в младших единицах или null, если денег недостаточно
+     *         или операция не удалась
+     */
+    public Long withdrawMoney(UUID guildId, long amountMinor) {
+        return withdrawMoney(guildId, amountMinor, null);
+    }
+
+    /**
+     * Снимает деньги с баланса хранилища гильдии от имени игрока, если их
+     * достаточно
+     *
+     * @param guildId     ID гильдии
+     * @param amountMinor Сумма в младших единицах
+     * @param actorId     UUID игрока для журнала операций или null
+     * @return Новый баланс в младших единицах или null, если денег недостаточно
+     *         или операция не удалась
+     */
+    public Long withdrawMoney(UUID guildId, long amountMinor, UUID actorId) {
+        if (amountMinor <= 0) {
+            return null;
+        }
+        return changeMoney(guildId, -amountMinor, actorId);
+    }
+
+    /**
+     * Переводит деньги между хранилищами двух гильдий одной транзакцией
+     *
+     * @param fromGuildId ID гильдии-отправителя
+     * @param toGuildId   ID гильдии-получателя
+     * @param amountMinor Сумма в младших единицах
+     * @return true, если перевод выполнен
+     */
+    public boolean transferMoney(UUID fromGuildId, UUID toGuildId, long amountMinor) {
+        return transferMoney(fromGuildId, toGuildId, amountMinor, null);
+    }
+
+    /**
+     * Переводит деньги между хранилищами двух гильдий от имени игрока
+     *
+     * @param fromGuildId ID гильдии-отправителя
+     * @param toGuildId   ID гильдии-получателя
+     * @param amountMinor Сумма в младших единицах
+     * @param actorId     UUID игрока для журнала операций или null
+     * @return true, если перевод выполнен
+     */
+    public boolean transferMoney(UUID fromGuildId, UUID toGuildId, long amountMinor, UUID actorId) {
+        if (amountMinor <= 0 || fromGuildId.equals(toGuildId)) {
+            return false;
+        }
+
+        long fromBalance;
+        long toBalance;
+        GuildStorageLedger.Batch committedJournal;
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+            try (GuildStorageLedger.Batch journal = ledger.batch(connection)) {
+                Long fromUpdated = applyMoneyDelta(connection, fromGuildId, -amountMinor);
+                if (fromUpdated == null) {
+                    connection.rollback();
+                    return false;
+                }
+                Long toUpdated = applyMoneyDelta(connection, toGuildId, amountMinor);
+                if (toUpdated == null) {
+                    connection.rollback();
+                    return false;
+                }
+                journal.add(fromGuildId, actorId, StorageLedgerEntry.Type.TRANSFER_OUT, null, -amountMinor);
+                journal.add(toGuildId, actorId, StorageLedgerEntry.Type.TRANSFER_IN, null, amountMinor);
+                journal.execute();
+                connection.commit();
+                committedJournal = journal;
+                fromBalance = fromUpdated;
+                toBalance = toUpdated;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось перевести деньги из хранилища гильдии " + fromGuildId
+                    + " в хранилище гильдии " + toGuildId, e);
+            return false;
+        }
+
+        ledger.committed(committedJournal);
+        refreshCachedMoney(fromGuildId, fromBalance);
+        refreshCachedMoney(toGuildId, toBalance);
+        logger.info("Переведено " + GuildStorage.fromMinorUnits(amountMinor) + " из хранилища гильдии "
+                + fromGuildId + " в хранилище гильдии " + toGuildId);
+        return true;
     }
 
     /**
-     * Начисляет проценты на баланс всех гильдий
+     * Начисляет проценты на баланс всех гильдий одним запросом. Проценты
+     * получают только хранилища, которым они не начислялись в течение периода:
+     * время последнего начисления проверяется в базе данных, поэтому при
+     * запуске задачи на нескольких серверах или после перезапуска проценты за
+     * период начисляются один раз.
      * 
      * @param interestRate Процентная ставка (например, 0.05 для 5%)
+     * @param periodMillis Длительность периода начисления в миллисекундах
      * @return Количество обновленных гильдий
      */
-    public int applyInterest(double interestRate) {
+    public int applyInterest(double interestRate, long periodMillis) {
         if (interestRate <= 0) {
             return 0;
         }
 
-        int updatedGuilds = 0;
+        long now = System.currentTimeMillis();
+        long accruedUntil = now - periodMillis;
+        try (Connection connection = databaseManager.getConnection()) {
+            int updatedGuilds;
+            connection.setAutoCommit(false);
+            try (PreparedStatement lockStatement = connection.prepareStatement(
+                    "SELECT guild_id FROM guild_storage WHERE money > 0 AND last_accrued_at <= ? FOR UPDATE");
+                    PreparedStatement statement = connection.prepareStatement(
+                            "UPDATE guild_storage SET money = money + FLOOR(money * ?), last_accrued_at = ? " +
+                                    "WHERE money > 0 AND last_accrued_at <= ?")) {
+                // Строки блокируются до записи журнала: другой сервер ждет
+                // окончания транзакции и уже не находит строк для начисления
+                lockStatement.setLong(1, accruedUntil);
+                try (ResultSet resultSet = lockStatement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        connection.rollback();
+                        return 0;
+                    }
+                }
+
+                // Записи журнала считаются по балансу до начисления
+                ledger.recordInterest(connection, interestRate, now, accruedUntil);
+                statement.setDouble(1, interestRate);
+                statement.setLong(2, now);
+                statement.setLong(3, accruedUntil);
+                updatedGuilds = statement.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
 
-        try (Connection connection = databaseManager.getConnection();
-                PreparedStatement selectStatement = connection.prepareStatement(
-                        "SELECT guild_id, money FROM guild_storage WHERE money > 0");
-                PreparedStatement updateStatement = connection.prepareStatement(
-                        "UPDATE guild_storage SET money = ? WHERE guild_id = ?")) {
-
-            ResultSet resultSet = selectStatement.executeQuery();
-
-            while (resultSet.next()) {
-                String guildIdStr = resultSet.getString("guild_id");
-                double money = resultSet.getDouble("money");
-
-                // Рассчитываем проценты
-                double interest = money * interestRate;
-                double newMoney = money + interest;
-
-                // Обновляем баланс в базе данных
-                updateStatement.setDouble(1, newMoney);
-                updateStatement.setString(2, guildIdStr);
-                int result = updateStatement.executeUpdate();
-
-                if (result > 0) {
-                    updatedGuilds++;
-
-                    // Обновляем кеш, если гильдия находится в нем
-                    UUID guildId = UUID.fromString(guildIdStr);
-                    if (guildStorageCache.containsKey(guildId)) {
-                        GuildStorage storage = guildStorageCache.get(guildId);
-                        storage.setMoney(newMoney);
+            // В кэше обновляются только хранилища, которым начислены проценты
+            // этим запросом
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT guild_id, money FROM guild_storage WHERE last_accrued_at = ?")) {
+                statement.setLong(1, now);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        GuildStorage storage = guildStorageCache.get(UUID.fromString(resultSet.getString("guild_id")));
+                        if (storage != null) {
+                            storage.refreshMoney(resultSet.getLong("money"));
+                            storage.setLastAccruedAt(now);
+                        }
                     }
                 }
             }
 
-            logger.info("Начислены проценты (" + (interestRate * 100) + "%) для " + updatedGuilds + " гильдий");
+            logger.fine("Начислены проценты (" + (interestRate * 100) + "%) для " + updatedGuilds + " гильдий");
             return updatedGuilds;
         } catch (SQLException e) {
             logger.log(Level.SEVERE, "Ошибка при начислении процентов на баланс гильдий", e);
@@ -402,42 +986,225 @@ public class GuildStorageManager {
     }
 
     /**
-     * Увеличивает размер хранилища гильдии по ID гильдии
+     * Начисляет проценты при чтении хранилища из кэша, если с последнего
+     * начисления прошел хотя бы один период
+     */
+    private void accrueInterestOnRead(GuildStorage storage) {
+        GuildInterestEngine engine = interestEngine;
+        long lastAccruedAt = storage.getLastAccruedAt();
+        if (engine == null || !engine.isLazy()
+                || lastAccruedAt > 0 && engine.periodsSince(lastAccruedAt, System.currentTimeMillis()) == 0) {
+            return;
+        }
+
+        GuildStorageLedger.Batch committedJournal;
+        try (Connection connection = databaseManager.getConnection()) {
+            committedJournal = accrueInterest(connection, storage);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Не удалось начислить проценты для гильдии " + storage.getGuildId(), e);
+            return;
+        }
+        ledger.committed(committedJournal);
+    }
+
+    /**
+     * Начисляет проценты за прошедшие периоды в режиме начисления при чтении.
+     * Время последнего начисления проверяется при блокировке строки и в
+     * условии UPDATE, поэтому одновременное чтение с нескольких серверов
+     * начисляет проценты один раз. Проценты считаются в базе данных от
+     * текущего баланса строки, а не от баланса в кэше, который мог устареть.
      *
-     * @param guildId  ID гильдии
-     * @param addSlots Количество добавляемых слотов
-     * @return true, если операция успешна
+     * @return Зафиксированные записи журнала или null, если проценты не
+     *         начислены; передаются в журнал после возврата соединения в пул
      */
-    public boolean expandGuildStorage(UUID guildId, int addSlots) {
-        if (addSlots <= 0) {
-            return false;
+    private GuildStorageLedger.Batch accrueInterest(Connection connection, GuildStorage storage)
+            throws SQLException {
+        GuildInterestEngine engine = interestEngine;
+        if (engine == null || !engine.isLazy()) {
+            return null;
         }
 
-        GuildStorage storage = loadStorage(guildId);
-        if (storage == null) {
-            logger.warning("Не удалось найти хранилище для гильдии " + guildId + " для расширения");
-            return false;
+        long now = System.currentTimeMillis();
+        long lastAccruedAt = storage.getLastAccruedAt();
+        long periods = engine.periodsSince(lastAccruedAt, now);
+        if (lastAccruedAt > 0 && periods == 0) {
+            return null;
         }
 
-        int newMaxSlots = storage.getMaxSlots() + addSlots;
-        storage.setMaxSlots(newMaxSlots);
+        // Для хранилищ без начислений отсчет начинается с текущего момента
+        double factor = lastAccruedAt > 0 ? engine.factorFor(periods) : 0.0;
+        long accruedAt = lastAccruedAt > 0 ? engine.advance(lastAccruedAt, periods) : now;
 
-        try (Connection connection = databaseManager.getConnection();
+        GuildStorageLedger.Batch committedJournal = null;
+        connection.setAutoCommit(false);
+        try (PreparedStatement lockStatement = connection.prepareStatement(
+                "SELECT money FROM guild_storage WHERE guild_id = ? AND last_accrued_at = ? FOR UPDATE");
                 PreparedStatement statement = connection.prepareStatement(
-                        "UPDATE guild_storage SET max_slots = ? WHERE guild_id = ?")) {
-            statement.setInt(1, newMaxSlots);
-            statement.setString(2, guildId.toString());
-            int result = statement.executeUpdate();
+                        "UPDATE guild_storage SET money = LAST_INSERT_ID(money + FLOOR(money * ?)), " +
+                                "last_accrued_at = ? WHERE guild_id = ? AND last_accrued_at = ?");
+                GuildStorageLedger.Batch journal = ledger.batch(connection)) {
+            // Баланс до начисления нужен только для записи журнала; строка
+            // заблокирована до конца транзакции
+            Long moneyBefore = null;
+            lockStatement.setString(1, storage.getGuildId().toString());
+            lockStatement.setLong(2, lastAccruedAt);
+            try (ResultSet resultSet = lockStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    moneyBefore = resultSet.getLong("money");
+                }
+            }
 
-            if (result > 0) {
-                logger.info("Увеличен размер хранилища для гильдии " + guildId + " до " + newMaxSlots + " слотов");
-                updateCache(storage);
-                return true;
+            statement.setDouble(1, factor);
+            statement.setLong(2, accruedAt);
+            statement.setString(3, storage.getGuildId().toString());
+            statement.setLong(4, lastAccruedAt);
+
+            if (moneyBefore != null && statement.executeUpdate() > 0) {
+                long balance;
+                try (PreparedStatement selectStatement = connection.prepareStatement(SELECT_UPDATED_MONEY);
+                        ResultSet resultSet = selectStatement.executeQuery()) {
+                    balance = resultSet.next() ? resultSet.getLong(1) : moneyBefore;
+                }
+                long interest = balance - moneyBefore;
+                if (interest > 0) {
+                    journal.add(storage.getGuildId(), null, StorageLedgerEntry.Type.INTEREST, null, interest);
+                    journal.execute();
+                }
+                connection.commit();
+                committedJournal = journal;
+
+                storage.refreshMoney(balance);
+                storage.setLastAccruedAt(accruedAt);
+            } else {
+                connection.rollback();
             }
-            return false;
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, "Не удалось увеличить размер хранилища для гильдии " + guildId, e);
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        if (committedJournal != null) {
+            return committedJournal;
+        }
+
+        // Проценты уже начислены другим сервером - берем актуальные значения
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT money, last_accrued_at FROM guild_storage WHERE guild_id = ?")) {
+            statement.setString(1, storage.getGuildId().toString());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    storage.refreshMoney(resultSet.getLong("money"));
+                    storage.setLastAccruedAt(resultSet.getLong("last_accrued_at"));
+                }
+            }
+        }
+        return null;
+    }
+
+    private Long changeMoney(UUID guildId, long delta, UUID actorId) {
+        Long balance;
+        GuildStorageLedger.Batch committedJournal;
+        try (Connection connection = databaseManager.getConnection()) {
+            connection.setAutoCommit(false);
+            try (GuildStorageLedger.Batch journal = ledger.batch(connection)) {
+                balance = applyMoneyDelta(connection, guildId, delta);
+                if (balance == null) {
+                    connection.rollback();
+                    return null;
+                }
+                journal.add(guildId, actorId, delta > 0 ? StorageLedgerEntry.Type.MONEY_DEPOSIT
+                        : StorageLedgerEntry.Type.MONEY_WITHDRAW, null, delta);
+                journal.execute();
+                connection.commit();
+                committedJournal = journal;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Не удалось изменить баланс хранилища для гильдии " + guildId, e);
+            return null;
+        }
+
+        ledger.committed(committedJournal);
+        refreshCachedMoney(guildId, balance);
+        return balance;
+    }
+
+    /**
+     * Атомарно изменяет баланс в базе данных
+     *
+     * @return Новый баланс или null, если хранилище не найдено или денег
+     *         недостаточно для снятия
+     */
+    private Long applyMoneyDelta(Connection connection, UUID guildId, long delta) throws SQLException {
+        if (delta >= 0) {
+            try (PreparedStatement statement = connection.prepareStatement(DEPOSIT_MONEY)) {
+                statement.setLong(1, delta);
+                statement.setString(2, guildId.toString());
+                if (statement.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+        } else {
+            try (PreparedStatement statement = connection.prepareStatement(WITHDRAW_MONEY)) {
+                statement.setLong(1, -delta);
+                statement.setString(2, guildId.toString());
+                statement.setLong(3, -delta);
+                if (statement.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_UPDATED_MONEY);
+                ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : null;
+        }
+    }
+
+    private long selectMoney(Connection connection, UUID guildId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT money FROM guild_storage WHERE guild_id = ?")) {
+            statement.setString(1, guildId.toString());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong("money") : 0L;
+            }
+        }
+    }
+
+    private void refreshCachedMoney(UUID guildId, long balance) {
+        GuildStorage storage = guildStorageCache.get(guildId);
+        if (storage != null) {
+            storage.refreshMoney(balance);
+        }
+    }
+
+    /**
+     * Увеличивает размер хранилища гильдии по ID гильдии
+     *
+     * @param guildId  ID гильдии
+     * @param addSlots Количество добавляемых слотов
+     * @return true, если операция успешна
+     */
+    public boolean expandGuildStorage(UUID guildId, int addSlots) {
+        if (addSlots <= 0) {
             return false;
         }
+
+        int[] maxSlots = new int[1];
+        if (modifyStorage(guildId, null, storage -> {
+            storage.increaseMaxSlots(addSlots);
+            maxSlots[0] = storage.getMaxSlots();
+            return true;
+        })) {
+            logger.info("Увеличен размер хранилища для гильдии " + guildId + " до " + maxSlots[0] + " слотов");
+            return true;
+        }
+        logger.warning("Не удалось расширить хранилище гильдии " + guildId);
+        return false;
     }
 }
\ No newline at end of file
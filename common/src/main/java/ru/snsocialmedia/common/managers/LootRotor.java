@@ -0,0 +1,109 @@
+package ru.snsocialmedia.common.managers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Очередь получателей добычи одной пати.
+ * <p>
+ * Хранит участников в стабильном массиве, который меняется только при
+ * вступлении или выходе игрока, поэтому выбор получателя не выделяет память.
+ * Позиция циклической раздачи сохраняется при изменении состава.
+ */
+final class LootRotor {
+
+    private UUID[] members;
+    private int size;
+    private int cursor = -1;
+
+    LootRotor(Collection<UUID> initialMembers) {
+        this.members = initialMembers.toArray(new UUID[Math.max(initialMembers.size(), 4)]);
+        this.size = initialMembers.size();
+    }
+
+    synchronized void add(UUID playerId) {
+        if (indexOf(playerId) >= 0) {
+            return;
+        }
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size << 1);
+        }
+        members[size++] = playerId;
+    }
+
+    synchronized void remove(UUID playerId) {
+        int index = indexOf(playerId);
+        if (index < 0) {
+            return;
+        }
+
+        System.arraycopy(members, index + 1, members, index, size - index - 1);
+        members[--size] = null;
+
+        // Следующим должен остаться тот же игрок, что и до удаления
+        if (index <= cursor) {
+            cursor--;
+        }
+    }
+
+    /**
+     * @return Следующий участник по кругу или null, если участников нет
+     */
+    synchronized UUID next() {
+        if (size == 0) {
+            return null;
+        }
+        cursor = (cursor + 1) % size;
+        return members[cursor];
+    }
+
+    /**
+     * Раздает несколько предметов по кругу
+     *
+     * @return Количество назначенных получателей
+     */
+    synchronized int next(UUID[] receivers, int count) {
+        if (size == 0) {
+            return 0;
+        }
+        for (int i = 0; i < count; i++) {
+            cursor = (cursor + 1) % size;
+            receivers[i] = members[cursor];
+        }
+        return count;
+    }
+
+    /**
+     * @return Случайный участник или null, если участников нет
+     */
+    synchronized UUID random() {
+        return size == 0 ? null : members[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    /**
+     * Раздает несколько предметов случайным участникам
+     *
+     * @return Количество назначенных получателей
+     */
+    synchronized int random(UUID[] receivers, int count) {
+        if (size == 0) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            receivers[i] = members[random.nextInt(size)];
+        }
+        return count;
+    }
+
+    private int indexOf(UUID playerId) {
+        for (int i = 0; i < size; i++) {
+            if (members[i].equals(playerId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
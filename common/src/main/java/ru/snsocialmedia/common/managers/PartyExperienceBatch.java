@@ -0,0 +1,124 @@
+package ru.snsocialmedia.common.managers;
+
+import ru.snsocialmedia.common.utils.IdRegistry;
+import ru.snsocialmedia.common.utils.IntIntMap;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Буфер событий получения опыта за один тик.
+ * <p>
+ * События (пати, источник, количество) накапливаются в массивах и
+ * распределяются одним вызовом {@link PartyManager#distributeExperience(PartyExperienceBatch,
+ * java.util.function.ToIntFunction, ObjIntConsumer)}. Доли игроков суммируются
+ * в примитивных массивах, поэтому каждый игрок получает один итоговый результат
+ * за тик. Буфер переиспользуется и не предназначен для нескольких потоков.
+ */
+public final class PartyExperienceBatch {
+
+    private UUID[] parties = new UUID[16];
+    private UUID[] sources = new UUID[16];
+    private int[] amounts = new int[16];
+    private int size;
+
+    // Накопитель долей: идентификатор игрока -> позиция в массивах ниже
+    private final IntIntMap slots = new IntIntMap(-1);
+    private int[] slotPlayers = new int[16];
+    private double[] slotShares = new double[16];
+    private int slotCount;
+
+    /**
+     * Добавляет событие получения опыта
+     *
+     * @param partyId        UUID пати
+     * @param sourcePlayerId UUID игрока, получившего опыт
+     * @param amount         Количество опыта
+     */
+    public void add(UUID partyId, UUID sourcePlayerId, int amount) {
+        if (amount <= 0) {
+            return;
+        }
+        if (size == amounts.length) {
+            int capacity = size << 1;
+            parties = Arrays.copyOf(parties, capacity);
+            sources = Arrays.copyOf(sources, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+        }
+        parties[size] = partyId;
+        sources[size] = sourcePlayerId;
+        amounts[size] = amount;
+        size++;
+    }
+
+    /**
+     * @return Количество накопленных событий
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Очищает накопленные события и доли
+     */
+    public void clear() {
+        Arrays.fill(parties, 0, size, null);
+        Arrays.fill(sources, 0, size, null);
+        size = 0;
+        slots.clear();
+        slotCount = 0;
+    }
+
+    UUID partyAt(int index) {
+        return parties[index];
+    }
+
+    UUID sourceAt(int index) {
+        return sources[index];
+    }
+
+    int amountAt(int index) {
+        return amounts[index];
+    }
+
+    /**
+     * Начисляет игроку долю опыта
+     */
+    void credit(UUID playerId, double exp) {
+        int player = IdRegistry.players().intern(playerId);
+        int slot = slots.get(player);
+        if (slot < 0) {
+            if (slotCount == slotShares.length) {
+                slotPlayers = Arrays.copyOf(slotPlayers, slotCount << 1);
+                slotShares = Arrays.copyOf(slotShares, slotCount << 1);
+            }
+            slot = slotCount++;
+            slots.put(player, slot);
+            slotPlayers[slot] = player;
+            slotShares[slot] = 0;
+        }
+        slotShares[slot] += exp;
+    }
+
+    /**
+     * Передает итоговый опыт каждого игрока и очищает буфер
+     *
+     * @param keepZeroShares Передавать и игроков с нулевой долей
+     * @return Количество игроков, получивших опыт
+     */
+    int drain(ObjIntConsumer<UUID> sink, boolean keepZeroShares) {
+        int players = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int exp = (int) slotShares[slot];
+            if (exp > 0) {
+                players++;
+            } else if (!keepZeroShares) {
+                continue;
+            }
+            sink.accept(IdRegistry.players().uuidOf(slotPlayers[slot]), exp);
+        }
+        clear();
+        return players;
+    }
+}
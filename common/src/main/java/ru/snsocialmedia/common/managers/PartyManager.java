@@ -1,8 +1,12 @@
 package ru.snsocialmedia.common.managers;
 
 import ru.snsocialmedia.common.database.DatabaseManager;
+import ru.snsocialmedia.common.models.party.ExpMode;
+import ru.snsocialmedia.common.models.party.LootMode;
 import ru.snsocialmedia.common.models.party.Party;
 import ru.snsocialmedia.common.models.party.PartyRole;
+import ru.snsocialmedia.common.utils.IdRegistry;
+import ru.snsocialmedia.common.utils.IntObjectMap;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -10,6 +14,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,13 +28,11 @@ public class PartyManager {
     private static PartyManager instance;
     private final Logger logger;
     private final Map<UUID, Party> parties = new ConcurrentHashMap<>();
-    private final Map<UUID, UUID> playerParties = new ConcurrentHashMap<>();
+    // Идентификатор игрока (см. IdRegistry) -> UUID пати
+    private final IntObjectMap<UUID> playerParties = new IntObjectMap<>();
+    private final IdRegistry playerIds = IdRegistry.players();
 
-    // Хранение настроек распределения опыта и добычи
-    private final Map<UUID, String> partyLootSettings = new ConcurrentHashMap<>();
-    private final Map<UUID, String> partyExpSettings = new ConcurrentHashMap<>();
-
-    // Константы для режимов распределения
+    // Ключи режимов распределения для команд; совпадают с LootMode#getKey() и ExpMode#getKey()
     public static final String LOOT_MODE_ROUND_ROBIN = "round_robin";
     public static final String LOOT_MODE_FREE_FOR_ALL = "free_for_all";
     public static final String LOOT_MODE_LEADER_FIRST = "leader_first";
@@ -36,6 +41,17 @@ public class PartyManager {
     public static final String EXP_MODE_LEVEL_BASED = "level_based";
     public static final String EXP_MODE_CONTRIBUTION = "contribution";
 
+    private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+
+    // Запись в базу данных; null, если база данных недоступна
+    private PartyPersistence persistence;
+
+    // ID пати -> очередь получателей добычи
+    private final Map<UUID, LootRotor> lootRotors = new ConcurrentHashMap<>();
+
+    // ID пати -> время, когда в ней последний раз был онлайн-участник
+    private final Map<UUID, Long> partyLastActive = new ConcurrentHashMap<>();
+
     private PartyManager(Logger logger) {
         this.logger = logger;
     }
@@ -67,7 +83,93 @@ public class PartyManager {
     private void loadParties() {
         logger.info("Загрузка пати из базы данных...");
 
-        // TODO: Реализовать загрузку пати из базы данных
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        if (dbManager == null || !dbManager.isConnected()) {
+            logger.warning("База данных недоступна, пати будут храниться только в памяти");
+            return;
+        }
+
+        persistence = new PartyPersistence(dbManager, FLUSH_INTERVAL_MILLIS, logger);
+
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        int removed = 0;
+
+        for (Party party : persistence.loadAll()) {
+            UUID partyId = party.getId();
+
+            // Участники, уже привязанные к другой пати, не восстанавливаются
+            party.getMembers().keySet().removeIf(this::isInParty);
+
+            if (party.getMembers().isEmpty()) {
+                // Брошенная пати без участников
+                persistence.markDeleted(partyId);
+                removed++;
+                continue;
+            }
+
+            if (!party.getMembers().containsKey(party.getLeader())) {
+                // Лидер потерян - передаем лидерство первому участнику
+                UUID newLeader = party.getMembers().keySet().iterator().next();
+                party.setLeader(newLeader);
+                party.getMembers().put(newLeader, PartyRole.LEADER);
+                saveParty(party);
+            }
+
+            parties.put(partyId, party);
+            for (UUID memberId : party.getMembers().keySet()) {
+                bindPlayerParty(memberId, partyId);
+            }
+            partyLastActive.put(partyId, now);
+            restored++;
+        }
+
+        logger.info("Загружено пати: " + restored + ", удалено брошенных: " + removed);
+    }
+
+    /**
+     * Записывает несохраненные изменения пати и останавливает фоновую запись
+     */
+    public void shutdown() {
+        if (persistence != null) {
+            persistence.close();
+        }
+    }
+
+    /**
+     * Удаляет пати, в которых дольше заданного времени нет ни одного
+     * онлайн-участника
+     *
+     * @param isOnline   Проверка, находится ли игрок в сети
+     * @param idleMillis Допустимое время без онлайн-участников
+     * @return Количество удаленных пати
+     */
+    public int collectAbandonedParties(Predicate<UUID> isOnline, long idleMillis) {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+
+        for (Party party : new ArrayList<>(parties.values())) {
+            UUID partyId = party.getId();
+            boolean active = false;
+            for (UUID memberId : party.getMembers().keySet()) {
+                if (isOnline.test(memberId)) {
+                    active = true;
+                    break;
+                }
+            }
+
+            if (active) {
+                partyLastActive.put(partyId, now);
+            } else if (now - partyLastActive.computeIfAbsent(partyId, id -> now) > idleMillis) {
+                deleteParty(partyId);
+                removed++;
+            }
+        }
+
+        if (removed > 0) {
+            logger.info("Удалено брошенных пати: " + removed);
+        }
+        return removed;
     }
 
     /**
@@ -78,7 +180,7 @@ public class PartyManager {
      */
     public Party createParty(UUID leaderId) {
         // Проверяем, не состоит ли игрок уже в пати
-        if (playerParties.containsKey(leaderId)) {
+        if (isInParty(leaderId)) {
             return null;
         }
 
@@ -88,7 +190,7 @@ public class PartyManager {
         // Сохраняем пати в базу данных
         if (saveParty(party)) {
             parties.put(party.getId(), party);
-            playerParties.put(leaderId, party.getId());
+            bindPlayerParty(leaderId, party.getId());
             return party;
         }
 
@@ -102,7 +204,10 @@ public class PartyManager {
      * @return true, если сохранение успешно
      */
     public boolean saveParty(Party party) {
-        // TODO: Реализовать сохранение пати в базу данных
+        // Запись выполняется пакетно в фоновом потоке
+        if (persistence != null) {
+            persistence.markDirty(party);
+        }
         return true;
     }
 
@@ -120,13 +225,18 @@ public class PartyManager {
 
         // Удаляем связи игроков с пати
         for (UUID playerId : party.getMembers().keySet()) {
-            playerParties.remove(playerId);
+            unbindPlayerParty(playerId);
         }
 
         // Удаляем пати из кэша
         parties.remove(partyId);
+        partyLastActive.remove(partyId);
+        lootRotors.remove(partyId);
 
-        // TODO: Удаление пати из базы данных
+        // Удаляем пати из базы данных (участники, приглашения и настройки - каскадно)
+        if (persistence != null) {
+            persistence.markDeleted(partyId);
+        }
 
         return true;
     }
@@ -148,7 +258,8 @@ public class PartyManager {
      * @return Пати или null, если игрок не состоит в пати
      */
     public Party getPlayerParty(UUID playerId) {
-        UUID partyId = playerParties.get(playerId);
+        int player = playerIds.indexOf(playerId);
+        UUID partyId = player >= 0 ? playerParties.get(player) : null;
         if (partyId == null) {
             return null;
         }
@@ -170,13 +281,17 @@ public class PartyManager {
         }
 
         // Проверяем, не состоит ли игрок уже в пати
-        if (playerParties.containsKey(playerId)) {
+        if (isInParty(playerId)) {
             return false;
         }
 
         // Добавляем игрока в пати
         if (party.addMember(playerId, role)) {
-            playerParties.put(playerId, partyId);
+            bindPlayerParty(playerId, partyId);
+            LootRotor rotor = lootRotors.get(partyId);
+            if (rotor != null) {
+                rotor.add(playerId);
+            }
             saveParty(party);
             return true;
         }
@@ -199,7 +314,11 @@ public class PartyManager {
 
         // Удаляем игрока из пати
         if (party.removeMember(playerId)) {
-            playerParties.remove(playerId);
+            unbindPlayerParty(playerId);
+            LootRotor rotor = lootRotors.get(partyId);
+            if (rotor != null) {
+                rotor.remove(playerId);
+            }
 
             // Если в пати не осталось игроков, удаляем его
             if (party.getMembers().isEmpty()) {
@@ -235,7 +354,7 @@ public class PartyManager {
         }
 
         // Проверяем, не состоит ли игрок уже в пати
-        if (playerParties.containsKey(playerId)) {
+        if (isInParty(playerId)) {
             return false;
         }
 
@@ -352,7 +471,10 @@ public class PartyManager {
             return false;
         }
 
-        party.setSetting(key, value);
+        if (!party.setSetting(key, value)) {
+            logger.warning("Неизвестная настройка пати или неверное значение: " + key + "=" + value);
+            return false;
+        }
         saveParty(party);
         return true;
     }
@@ -417,10 +539,9 @@ public class PartyManager {
             return false;
         }
 
-        boolean currentState = (boolean) getPartySetting(partyId, "open", false);
-        boolean newState = !currentState;
+        boolean newState = !party.isOpen();
 
-        setPartySetting(partyId, "open", newState);
+        party.setOpen(newState);
         saveParty(party);
 
         return newState;
@@ -440,12 +561,14 @@ public class PartyManager {
             return false;
         }
 
-        if (!isValidLootMode(mode)) {
-            mode = LOOT_MODE_ROUND_ROBIN; // Режим по умолчанию
+        LootMode lootMode = mode != null ? LootMode.fromKey(mode) : null;
+        if (lootMode == null) {
+            lootMode = LootMode.ROUND_ROBIN; // Режим по умолчанию
         }
 
-        partyLootSettings.put(partyId, mode);
-        logger.info("Установлен режим распределения добычи '" + mode + "' для пати " + partyId);
+        party.getSettings().setLootMode(lootMode);
+        saveParty(party);
+        logger.info("Установлен режим распределения добычи '" + lootMode.getKey() + "' для пати " + partyId);
         return true;
     }
 
@@ -456,19 +579,7 @@ public class PartyManager {
      * @return Текущий режим распределения добычи
      */
     public String getLootMode(UUID partyId) {
-        return partyLootSettings.getOrDefault(partyId, LOOT_MODE_ROUND_ROBIN);
-    }
-
-    /**
-     * Проверяет корректность режима распределения добычи
-     * 
-     * @param mode Режим для проверки
-     * @return true, если режим корректен
-     */
-    private boolean isValidLootMode(String mode) {
-        return mode.equals(LOOT_MODE_ROUND_ROBIN) ||
-                mode.equals(LOOT_MODE_FREE_FOR_ALL) ||
-                mode.equals(LOOT_MODE_LEADER_FIRST);
+        return lootModeOf(parties.get(partyId)).getKey();
     }
 
     /**
@@ -484,12 +595,14 @@ public class PartyManager {
             return false;
         }
 
-        if (!isValidExpMode(mode)) {
-            mode = EXP_MODE_EQUAL; // Режим по умолчанию
+        ExpMode expMode = mode != null ? ExpMode.fromKey(mode) : null;
+        if (expMode == null) {
+            expMode = ExpMode.EQUAL; // Режим по умолчанию
         }
 
-        partyExpSettings.put(partyId, mode);
-        logger.info("Установлен режим распределения опыта '" + mode + "' для пати " + partyId);
+        party.getSettings().setExpMode(expMode);
+        saveParty(party);
+        logger.info("Установлен режим распределения опыта '" + expMode.getKey() + "' для пати " + partyId);
         return true;
     }
 
@@ -500,19 +613,8 @@ public class PartyManager {
      * @return Текущий режим распределения опыта
      */
     public String getExpMode(UUID partyId) {
-        return partyExpSettings.getOrDefault(partyId, EXP_MODE_EQUAL);
-    }
-
-    /**
-     * Проверяет корректность режима распределения опыта
-     * 
-     * @param mode Режим для проверки
-     * @return true, если режим корректен
-     */
-    private boolean isValidExpMode(String mode) {
-        return mode.equals(EXP_MODE_EQUAL) ||
-                mode.equals(EXP_MODE_LEVEL_BASED) ||
-                mode.equals(EXP_MODE_CONTRIBUTION);
+        Party party = parties.get(partyId);
+        return party != null ? party.getSettings().getExpMode().getKey() : EXP_MODE_EQUAL;
     }
 
     /**
@@ -527,82 +629,106 @@ public class PartyManager {
      */
     public Map<UUID, Integer> distributeExperience(UUID partyId, int totalExp, UUID sourcePlayerId,
             Map<UUID, Integer> playerLevels) {
-        Party party = parties.get(partyId);
-        if (party == null) {
+        if (!parties.containsKey(partyId)) {
             return Collections.emptyMap();
         }
 
-        Map<UUID, Integer> distributedExp = new HashMap<>();
-        String expMode = getExpMode(partyId);
-        Set<UUID> partyMembers = party.getMembers().keySet();
+        PartyExperienceBatch batch = new PartyExperienceBatch();
+        batch.add(partyId, sourcePlayerId, totalExp);
 
-        // Базовый множитель опыта в пати (можно настроить)
-        double partyExpMultiplier = 1.0 + (partyMembers.size() * 0.1); // +10% за каждого участника
-
-        // Рассчитываем общее количество опыта с учетом множителя
-        int totalExpWithBonus = (int) (totalExp * partyExpMultiplier);
-
-        switch (expMode) {
-            case EXP_MODE_EQUAL:
-                // Равное распределение между всеми участниками
-                int expPerPlayer = totalExpWithBonus / partyMembers.size();
-                for (UUID memberId : partyMembers) {
-                    distributedExp.put(memberId, expPerPlayer);
-                }
-                break;
+        Map<UUID, Integer> distributedExp = new HashMap<>();
+        distributeExperience(batch,
+                playerLevels == null || playerLevels.isEmpty() ? null
+                        : memberId -> playerLevels.getOrDefault(memberId, 1),
+                distributedExp::put, true);
+        return distributedExp;
+    }
 
-            case EXP_MODE_LEVEL_BASED:
-                // Распределение на основе уровней (больше опыта игрокам с низким уровнем)
-                if (playerLevels == null || playerLevels.isEmpty()) {
-                    // Если уровни не предоставлены, используем равное распределение
-                    return distributeExperience(partyId, totalExp, sourcePlayerId, null);
-                }
+    /**
+     * Распределяет накопленные за тик события получения опыта. Доли каждого
+     * игрока суммируются, и для него вызывается один итоговый результат; буфер
+     * очищается.
+     *
+     * @param batch   Накопленные события
+     * @param levelOf Уровень игрока для режима level_based или null, если уровни
+     *                неизвестны (тогда опыт делится поровну)
+     * @param sink    Получатель итогового опыта (UUID игрока, количество)
+     * @return Количество игроков, получивших опыт
+     */
+    public int distributeExperience(PartyExperienceBatch batch, ToIntFunction<UUID> levelOf,
+            ObjIntConsumer<UUID> sink) {
+        return distributeExperience(batch, levelOf, sink, false);
+    }
 
-                // Вычисляем общую сумму инверсированных уровней (чем ниже уровень, тем больше
-                // доля)
-                double totalWeight = 0;
-                Map<UUID, Double> weights = new HashMap<>();
+    /**
+     * Распределяет накопленные события получения опыта
+     *
+     * @param keepZeroShares Передавать получателю и нулевые доли, чтобы в
+     *                       результате были все участники пати
+     */
+    private int distributeExperience(PartyExperienceBatch batch, ToIntFunction<UUID> levelOf,
+            ObjIntConsumer<UUID> sink, boolean keepZeroShares) {
+        for (int i = 0; i < batch.size(); i++) {
+            Party party = parties.get(batch.partyAt(i));
+            if (party != null) {
+                creditExperience(party, batch.sourceAt(i), batch.amountAt(i), levelOf, batch);
+            }
+        }
+        return batch.drain(sink, keepZeroShares);
+    }
 
-                for (UUID memberId : partyMembers) {
-                    int level = playerLevels.getOrDefault(memberId, 1);
-                    double weight = 1.0 / level; // Инверсированный уровень
-                    weights.put(memberId, weight);
-                    totalWeight += weight;
-                }
+    /**
+     * Начисляет доли одного события получения опыта в накопитель
+     */
+    private void creditExperience(Party party, UUID sourcePlayerId, int totalExp, ToIntFunction<UUID> levelOf,
+            PartyExperienceBatch batch) {
+        Map<UUID, PartyRole> members = party.getMembers();
+        int memberCount = members.size();
+        if (memberCount == 0) {
+            return;
+        }
+
+        // Базовый множитель опыта в пати: +10% за каждого участника
+        double totalExpWithBonus = totalExp * (1.0 + memberCount * 0.1);
+
+        ExpMode expMode = party.getSettings().getExpMode();
+        if (expMode == ExpMode.LEVEL_BASED && levelOf != null) {
+            // Больше опыта игрокам с низким уровнем: вес - обратный уровень
+            UUID[] memberIds = members.keySet().toArray(new UUID[0]);
+            double[] weights = new double[memberIds.length];
+            double totalWeight = 0;
+            for (int i = 0; i < memberIds.length; i++) {
+                weights[i] = 1.0 / Math.max(1, levelOf.applyAsInt(memberIds[i]));
+                totalWeight += weights[i];
+            }
+            for (int i = 0; i < memberIds.length; i++) {
+                batch.credit(memberIds[i], totalExpWithBonus * weights[i] / totalWeight);
+            }
+            return;
+        }
 
-                // Распределяем опыт пропорционально весам
-                for (UUID memberId : partyMembers) {
-                    double share = weights.get(memberId) / totalWeight;
-                    int expAmount = (int) (totalExpWithBonus * share);
-                    distributedExp.put(memberId, expAmount);
-                }
-                break;
-
-            case EXP_MODE_CONTRIBUTION:
-                // Больше опыта игроку, который его получил, остаток распределяется равномерно
-                double sourceShare = 0.5; // 50% опыта получателю
-                int sourceExp = (int) (totalExpWithBonus * sourceShare);
-                int remainingExp = totalExpWithBonus - sourceExp;
-                int expPerOtherPlayer = remainingExp / (partyMembers.size() - 1);
-
-                for (UUID memberId : partyMembers) {
-                    if (memberId.equals(sourcePlayerId)) {
-                        distributedExp.put(memberId, sourceExp);
-                    } else {
-                        distributedExp.put(memberId, expPerOtherPlayer);
-                    }
-                }
-                break;
+        if (expMode == ExpMode.CONTRIBUTION && sourcePlayerId != null
+                && members.containsKey(sourcePlayerId)) {
+            if (memberCount == 1) {
+                // В пати из одного игрока весь опыт получает источник
+                batch.credit(sourcePlayerId, totalExpWithBonus);
+                return;
+            }
 
-            default:
-                // Если режим некорректен, используем равное распределение
-                return distributeExperience(partyId, totalExp, sourcePlayerId, null);
+            // 50% опыта получателю, остаток распределяется равномерно
+            double sourceExp = totalExpWithBonus * 0.5;
+            double expPerOtherPlayer = (totalExpWithBonus - sourceExp) / (memberCount - 1);
+            for (UUID memberId : members.keySet()) {
+                batch.credit(memberId, memberId.equals(sourcePlayerId) ? sourceExp : expPerOtherPlayer);
+            }
+            return;
         }
 
-        logger.info("Распределено " + totalExpWithBonus + " опыта между участниками пати " + partyId +
-                " в режиме '" + expMode + "'");
-
-        return distributedExp;
+        // Равное распределение: режим equal, а также запасной вариант для остальных
+        double expPerPlayer = totalExpWithBonus / memberCount;
+        for (UUID memberId : members.keySet()) {
+            batch.credit(memberId, expPerPlayer);
+        }
     }
 
     /**
@@ -615,56 +741,84 @@ public class PartyManager {
      */
     public UUID determineLootReceiver(UUID partyId, String itemId) {
         Party party = parties.get(partyId);
-        if (party == null || party.getMembers().isEmpty()) {
+        if (party == null) {
             return null;
         }
 
-        String lootMode = getLootMode(partyId);
-        List<UUID> memberIds = new ArrayList<>(party.getMembers().keySet());
-
-        switch (lootMode) {
-            case LOOT_MODE_ROUND_ROBIN:
+        switch (lootModeOf(party)) {
+            case ROUND_ROBIN:
                 // Циклический режим - раздаем предметы по очереди
-                // Можно использовать вспомогательное поле для хранения последнего получателя
-                int nextIndex = (getRoundRobinIndex(partyId) + 1) % memberIds.size();
-                setRoundRobinIndex(partyId, nextIndex);
-                return memberIds.get(nextIndex);
-
-            case LOOT_MODE_FREE_FOR_ALL:
-                // Случайный режим - случайный участник пати
-                int randomIndex = new Random().nextInt(memberIds.size());
-                return memberIds.get(randomIndex);
+                return lootRotorOf(party).next();
 
-            case LOOT_MODE_LEADER_FIRST:
+            case LEADER_FIRST:
                 // Приоритет лидера - лидер получает все предметы
                 return party.getLeader();
 
+            case FREE_FOR_ALL:
             default:
-                // Если режим некорректен, используем случайный выбор
-                return determineLootReceiver(partyId, itemId);
+                // Случайный режим - случайный участник пати
+                return lootRotorOf(party).random();
         }
     }
 
-    // Мапа для хранения текущего индекса в round-robin распределении
-    private final Map<UUID, Integer> roundRobinIndices = new ConcurrentHashMap<>();
+    /**
+     * Определяет получателей сразу для нескольких предметов
+     *
+     * @param partyId   UUID пати
+     * @param receivers Массив для получателей, заполняется с начала
+     * @param count     Количество предметов
+     * @return Количество назначенных получателей (0, если пати не найдено или
+     *         пусто)
+     */
+    public int determineLootReceivers(UUID partyId, UUID[] receivers, int count) {
+        Party party = parties.get(partyId);
+        if (party == null || count <= 0) {
+            return 0;
+        }
+        count = Math.min(count, receivers.length);
+
+        switch (lootModeOf(party)) {
+            case ROUND_ROBIN:
+                return lootRotorOf(party).next(receivers, count);
+
+            case LEADER_FIRST:
+                Arrays.fill(receivers, 0, count, party.getLeader());
+                return count;
+
+            case FREE_FOR_ALL:
+            default:
+                return lootRotorOf(party).random(receivers, count);
+        }
+    }
+
+    private static LootMode lootModeOf(Party party) {
+        return party != null ? party.getSettings().getLootMode() : LootMode.ROUND_ROBIN;
+    }
 
     /**
-     * Получает текущий индекс для round-robin распределения
-     * 
-     * @param partyId UUID пати
-     * @return Текущий индекс
+     * Возвращает очередь получателей добычи пати, создавая ее при первом
+     * обращении
      */
-    private int getRoundRobinIndex(UUID partyId) {
-        return roundRobinIndices.getOrDefault(partyId, -1);
+    private LootRotor lootRotorOf(Party party) {
+        return lootRotors.computeIfAbsent(party.getId(), id -> new LootRotor(party.getMembers().keySet()));
     }
 
     /**
-     * Устанавливает текущий индекс для round-robin распределения
-     * 
-     * @param partyId UUID пати
-     * @param index   Новый индекс
+     * Проверяет, состоит ли игрок в каком-либо пати
      */
-    private void setRoundRobinIndex(UUID partyId, int index) {
-        roundRobinIndices.put(partyId, index);
+    private boolean isInParty(UUID playerId) {
+        int player = playerIds.indexOf(playerId);
+        return player >= 0 && playerParties.get(player) != null;
+    }
+
+    private void bindPlayerParty(UUID playerId, UUID partyId) {
+        playerParties.put(playerIds.intern(playerId), partyId);
+    }
+
+    private void unbindPlayerParty(UUID playerId) {
+        int player = playerIds.indexOf(playerId);
+        if (player >= 0) {
+            playerParties.remove(player);
+        }
     }
-}
\ No newline at end of file
+}
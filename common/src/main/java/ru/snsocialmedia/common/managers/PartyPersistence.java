@@ -0,0 +1,388 @@
+package ru.snsocialmedia.common.managers;
+
+import ru.snsocialmedia.common.database.DatabaseManager;
+import ru.snsocialmedia.common.database.DatabaseUtils;
+import ru.snsocialmedia.common.database.SQLQueries;
+import ru.snsocialmedia.common.models.party.Party;
+import ru.snsocialmedia.common.models.party.PartyRole;
+import ru.snsocialmedia.common.models.party.PartySettingKey;
+import ru.snsocialmedia.common.models.party.PartySettings;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Отложенная запись пати в базу данных.
+ * <p>
+ * Изменения пати фиксируются снимком состояния в вызывающем потоке; повторные
+ * изменения одной пати до записи схлопываются. Фоновый поток сравнивает снимки
+ * с последним записанным состоянием и одним пакетом в одной транзакции пишет
+ * разницу в таблицы parties, party_members и party_invites. В party_settings
+ * записываются только настройки, помеченные измененными в {@link PartySettings}.
+ * При ошибке изменения возвращаются в очередь и будут записаны повторно.
+ */
+final class PartyPersistence {
+
+    private final DatabaseManager dbManager;
+    private final Logger logger;
+    private final ScheduledExecutorService writer;
+
+    // ID пати -> последний снимок, ожидающий записи
+    private final Map<UUID, PartySnapshot> pending = new ConcurrentHashMap<>();
+    private final Set<UUID> deleted = ConcurrentHashMap.newKeySet();
+
+    // ID пати -> состояние в базе данных; используется только под flushLock
+    private final Map<UUID, PartySnapshot> persisted = new HashMap<>();
+    private final Object flushLock = new Object();
+
+    PartyPersistence(DatabaseManager dbManager, long flushIntervalMillis, Logger logger) {
+        this.dbManager = dbManager;
+        this.logger = logger;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SNSocialMedia-PartyWriter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = Math.max(flushIntervalMillis, 100L);
+        writer.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Помечает пати измененной
+     *
+     * @param party Пати
+     */
+    void markDirty(Party party) {
+        // Измененные настройки предыдущего, еще не записанного снимка сохраняются
+        pending.merge(party.getId(), PartySnapshot.of(party), (older, newer) -> newer.mergeSettings(older));
+    }
+
+    /**
+     * Помечает пати удаленной; связанные строки удаляются каскадно
+     *
+     * @param partyId ID пати
+     */
+    void markDeleted(UUID partyId) {
+        pending.remove(partyId);
+        deleted.add(partyId);
+    }
+
+    /**
+     * Загружает все пати одним потоковым запросом
+     *
+     * @return Загруженные пати
+     */
+    List<Party> loadAll() {
+        List<Party> loaded = new ArrayList<>();
+
+        try (Connection connection = dbManager.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SQLQueries.SELECT_ALL_PARTY_DATA,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            // Потоковое чтение: драйвер MySQL не держит весь результат в памяти
+            statement.setFetchSize(Integer.MIN_VALUE);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Party current = null;
+                int orphanRows = 0;
+                int unknownSettings = 0;
+
+                while (resultSet.next()) {
+                    int kind = resultSet.getInt("kind");
+                    UUID partyId = DatabaseUtils.getUUID(resultSet, "party_id");
+
+                    if (kind == 0) {
+                        current = new Party();
+                        current.setId(partyId);
+                        current.setLeader(UUID.fromString(resultSet.getString("ref")));
+                        current.setCreationDate(DatabaseUtils.getDate(resultSet, "creation_date"));
+                        current.getSettings().decode(PartySettingKey.OPEN,
+                                String.valueOf(resultSet.getBoolean("open")));
+                        current.setCurrentServer(resultSet.getString("current_server"));
+                        loaded.add(current);
+                        continue;
+                    }
+
+                    if (current == null || !current.getId().equals(partyId)) {
+                        orphanRows++;
+                        continue;
+                    }
+
+                    String ref = resultSet.getString("ref");
+                    String value = resultSet.getString("value");
+                    switch (kind) {
+                        case 1:
+                            current.getMembers().put(UUID.fromString(ref), parseRole(value));
+                            break;
+                        case 2:
+                            current.getInvites().add(UUID.fromString(ref));
+                            break;
+                        case 3:
+                            PartySettingKey settingKey = PartySettingKey.fromKey(ref);
+                            if (settingKey == null || !current.getSettings().decode(settingKey, value)) {
+                                unknownSettings++;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+
+                if (orphanRows > 0) {
+                    logger.warning("Пропущено строк без родительской пати: " + orphanRows);
+                }
+                if (unknownSettings > 0) {
+                    logger.warning("Пропущено неизвестных настроек пати: " + unknownSettings);
+                }
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Ошибка при загрузке пати из базы данных", e);
+            return Collections.emptyList();
+        }
+
+        synchronized (flushLock) {
+            for (Party party : loaded) {
+                persisted.put(party.getId(), PartySnapshot.of(party));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Записывает накопленные изменения одной транзакцией
+     */
+    void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty() && deleted.isEmpty()) {
+                return;
+            }
+
+            Map<UUID, PartySnapshot> batch = new HashMap<>();
+            for (UUID partyId : new ArrayList<>(pending.keySet())) {
+                PartySnapshot snapshot = pending.remove(partyId);
+                if (snapshot != null) {
+                    batch.put(partyId, snapshot);
+                }
+            }
+
+            Set<UUID> deletes = new HashSet<>();
+            for (UUID partyId : new ArrayList<>(deleted)) {
+                if (deleted.remove(partyId)) {
+                    deletes.add(partyId);
+                    batch.remove(partyId);
+                }
+            }
+
+            try {
+                write(batch, deletes);
+                persisted.putAll(batch);
+                persisted.keySet().removeAll(deletes);
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Ошибка при записи пати в базу данных, повтор при следующей записи", e);
+
+                // Более новые снимки, появившиеся за время записи, имеют приоритет,
+                // но незаписанные настройки из пакета к ним добавляются
+                batch.forEach((partyId, snapshot) -> pending.merge(partyId, snapshot,
+                        (newer, failed) -> newer.mergeSettings(failed)));
+                deleted.addAll(deletes);
+            }
+        }
+    }
+
+    /**
+     * Останавливает фоновую запись и записывает оставшиеся изменения
+     */
+    void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private void write(Map<UUID, PartySnapshot> batch, Set<UUID> deletes) throws SQLException {
+        try (Connection connection = dbManager.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement upsertParty = connection.prepareStatement(SQLQueries.UPSERT_PARTY);
+                    PreparedStatement deleteMember = connection.prepareStatement(SQLQueries.DELETE_PARTY_MEMBER);
+                    PreparedStatement upsertMember = connection.prepareStatement(SQLQueries.UPSERT_PARTY_MEMBER);
+                    PreparedStatement deleteInvite = connection.prepareStatement(SQLQueries.DELETE_PARTY_INVITE);
+                    PreparedStatement insertInvite = connection
+                            .prepareStatement(SQLQueries.INSERT_IGNORE_PARTY_INVITE);
+                    PreparedStatement upsertSetting = connection.prepareStatement(SQLQueries.UPSERT_PARTY_SETTING);
+                    PreparedStatement deleteParty = connection.prepareStatement(SQLQueries.DELETE_PARTY)) {
+
+                for (Map.Entry<UUID, PartySnapshot> entry : batch.entrySet()) {
+                    UUID partyId = entry.getKey();
+                    PartySnapshot current = entry.getValue();
+                    PartySnapshot previous = persisted.getOrDefault(partyId, PartySnapshot.EMPTY);
+
+                    if (previous == PartySnapshot.EMPTY || !current.sameHeader(previous)) {
+                        DatabaseUtils.setUUID(upsertParty, 1, partyId);
+                        DatabaseUtils.setUUID(upsertParty, 2, current.leader);
+                        DatabaseUtils.setDate(upsertParty, 3, current.creationDate);
+                        upsertParty.setBoolean(4, current.open);
+                        upsertParty.setString(5, current.currentServer);
+                        upsertParty.addBatch();
+                    }
+
+                    for (UUID memberId : previous.members.keySet()) {
+                        if (!current.members.containsKey(memberId)) {
+                            DatabaseUtils.setUUID(deleteMember, 1, partyId);
+                            DatabaseUtils.setUUID(deleteMember, 2, memberId);
+                            deleteMember.addBatch();
+                        }
+                    }
+                    for (Map.Entry<UUID, PartyRole> member : current.members.entrySet()) {
+                        if (member.getValue() != previous.members.get(member.getKey())) {
+                            DatabaseUtils.setUUID(upsertMember, 1, partyId);
+                            DatabaseUtils.setUUID(upsertMember, 2, member.getKey());
+                            upsertMember.setString(3, member.getValue().name());
+                            upsertMember.addBatch();
+                        }
+                    }
+
+                    for (UUID inviteId : previous.invites) {
+                        if (!current.invites.contains(inviteId)) {
+                            DatabaseUtils.setUUID(deleteInvite, 1, partyId);
+                            DatabaseUtils.setUUID(deleteInvite, 2, inviteId);
+                            deleteInvite.addBatch();
+                        }
+                    }
+                    for (UUID inviteId : current.invites) {
+                        if (!previous.invites.contains(inviteId)) {
+                            DatabaseUtils.setUUID(insertInvite, 1, partyId);
+                            DatabaseUtils.setUUID(insertInvite, 2, inviteId);
+                            insertInvite.addBatch();
+                        }
+                    }
+
+                    for (Map.Entry<PartySettingKey, String> setting : current.settings.entrySet()) {
+                        DatabaseUtils.setUUID(upsertSetting, 1, partyId);
+                        upsertSetting.setString(2, setting.getKey().getKey());
+                        upsertSetting.setString(3, setting.getValue());
+                        upsertSetting.addBatch();
+                    }
+                }
+
+                for (UUID partyId : deletes) {
+                    DatabaseUtils.setUUID(deleteParty, 1, partyId);
+                    deleteParty.addBatch();
+                }
+
+                // Порядок важен: строка пати должна существовать до дочерних строк
+                upsertParty.executeBatch();
+                deleteMember.executeBatch();
+                upsertMember.executeBatch();
+                deleteInvite.executeBatch();
+                insertInvite.executeBatch();
+                upsertSetting.executeBatch();
+                deleteParty.executeBatch();
+
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static PartyRole parseRole(String value) {
+        try {
+            return PartyRole.valueOf(value);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return PartyRole.MEMBER;
+        }
+    }
+
+    /**
+     * Неизменяемый снимок пати для сравнения с записанным состоянием. Настройки
+     * содержат только измененные ключи, которые нужно записать в party_settings.
+     */
+    private static final class PartySnapshot {
+        private static final PartySnapshot EMPTY = new PartySnapshot(null, null, false, null,
+                Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap());
+
+        private final UUID leader;
+        private final Date creationDate;
+        private final boolean open;
+        private final String currentServer;
+        private final Map<UUID, PartyRole> members;
+        private final Set<UUID> invites;
+        private final Map<PartySettingKey, String> settings;
+
+        private PartySnapshot(UUID leader, Date creationDate, boolean open, String currentServer,
+                Map<UUID, PartyRole> members, Set<UUID> invites, Map<PartySettingKey, String> settings) {
+            this.leader = leader;
+            this.creationDate = creationDate;
+            this.open = open;
+            this.currentServer = currentServer;
+            this.members = members;
+            this.invites = invites;
+            this.settings = settings;
+        }
+
+        private static PartySnapshot of(Party party) {
+            synchronized (party) {
+                PartySettings partySettings = party.getSettings();
+                int dirty = partySettings.drainDirty();
+
+                Map<PartySettingKey, String> settings = new EnumMap<>(PartySettingKey.class);
+                for (PartySettingKey key : PartySettingKey.all()) {
+                    if ((dirty & key.mask()) != 0 && key.isStoredInSettingsTable()) {
+                        settings.put(key, partySettings.encode(key));
+                    }
+                }
+
+                return new PartySnapshot(party.getLeader(),
+                        party.getCreationDate() != null ? party.getCreationDate() : new Date(),
+                        party.isOpen(), party.getCurrentServer(), new HashMap<>(party.getMembers()),
+                        new HashSet<>(party.getInvites()), settings);
+            }
+        }
+
+        /**
+         * Добавляет к снимку измененные настройки более старого снимка; значения
+         * этого снимка новее и имеют приоритет
+         */
+        private PartySnapshot mergeSettings(PartySnapshot older) {
+            older.settings.forEach(settings::putIfAbsent);
+            return this;
+        }
+
+        private boolean sameHeader(PartySnapshot other) {
+            return open == other.open
+                    && Objects.equals(leader, other.leader)
+                    && Objects.equals(currentServer, other.currentServer);
+        }
+    }
+}
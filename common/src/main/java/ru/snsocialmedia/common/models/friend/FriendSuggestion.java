@@ -0,0 +1,23 @@
+package ru.snsocialmedia.common.models.friend;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Предложение дружбы: игрок, который еще не является другом, и причины, по
+ * которым он предложен
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendSuggestion {
+
+    private UUID playerId;
+    private int mutualFriends;
+    private boolean sharedGuild;
+    private boolean sharedParty;
+    private int score;
+}
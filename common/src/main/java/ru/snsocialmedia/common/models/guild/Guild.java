@@ -23,7 +23,7 @@ public class Guild {
     private Date creationDate;
     private int level;
     private int experience;
-    private Map<UUID, GuildRole> members = new HashMap<>();
+    private Map<UUID, GuildRole> members = new GuildMemberMap();
     private Set<UUID> invites = new HashSet<>();
     private UUID storageId; // ID хранилища гильдии
     private int maxMembers = 10; // Максимальное количество участников, по умолчанию 10
@@ -193,6 +193,19 @@ public class Guild {
         return level > oldLevel;
     }
 
+    /**
+     * Устанавливает участников гильдии, копируя их в компактное хранилище
+     *
+     * @param members Участники и их роли
+     */
+    public void setMembers(Map<UUID, GuildRole> members) {
+        GuildMemberMap copy = new GuildMemberMap();
+        if (members != null) {
+            copy.putAll(members);
+        }
+        this.members = copy;
+    }
+
     /**
      * Возвращает ID хранилища гильдии
      *
@@ -0,0 +1,22 @@
+package ru.snsocialmedia.common.models.guild;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Запись истории чата гильдии
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GuildChatEntry {
+
+    private UUID guildId;
+    private UUID senderId;
+    private String senderName;
+    private String message;
+    private long timestamp;
+}
@@ -0,0 +1,185 @@
+package ru.snsocialmedia.common.models.guild;
+
+import ru.snsocialmedia.common.utils.IdRegistry;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Компактное хранилище участников гильдии.
+ * <p>
+ * Участники хранятся как отсортированный массив идентификаторов игроков из
+ * {@link IdRegistry#players()} и параллельный массив ролей. Поиск - бинарный,
+ * без выделения памяти. Для совместимости класс реализует
+ * {@code Map<UUID, GuildRole>}; итерация идет по снимку, поэтому изменение
+ * гильдии во время обхода безопасно.
+ */
+public class GuildMemberMap extends AbstractMap<UUID, GuildRole> {
+
+    private static final GuildRole[] ROLES = GuildRole.values();
+
+    private int[] ids = new int[8];
+    private byte[] roles = new byte[8];
+    private int size;
+
+    @Override
+    public synchronized GuildRole get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? ROLES[roles[index]] : null;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public synchronized GuildRole put(UUID playerId, GuildRole role) {
+        if (role == null) {
+            throw new NullPointerException("Роль участника не может быть null");
+        }
+
+        int id = IdRegistry.players().intern(playerId);
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            GuildRole previous = ROLES[roles[index]];
+            roles[index] = (byte) role.ordinal();
+            return previous;
+        }
+
+        int insertAt = -(index + 1);
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size << 1);
+            roles = Arrays.copyOf(roles, size << 1);
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        System.arraycopy(roles, insertAt, roles, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        roles[insertAt] = (byte) role.ordinal();
+        size++;
+        return null;
+    }
+
+    @Override
+    public synchronized GuildRole remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        GuildRole previous = ROLES[roles[index]];
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        System.arraycopy(roles, index + 1, roles, index, size - index - 1);
+        size--;
+        return previous;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        size = 0;
+    }
+
+    /**
+     * Проверяет членство по идентификатору игрока
+     *
+     * @param playerId Идентификатор из {@link IdRegistry#players()}
+     * @return true, если игрок состоит в гильдии
+     */
+    public synchronized boolean containsId(int playerId) {
+        return Arrays.binarySearch(ids, 0, size, playerId) >= 0;
+    }
+
+    /**
+     * Возвращает отсортированную копию идентификаторов участников
+     *
+     * @return Массив идентификаторов из {@link IdRegistry#players()}
+     */
+    public synchronized int[] toIdArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    @Override
+    public Set<Map.Entry<UUID, GuildRole>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<UUID, GuildRole>> iterator() {
+                return new SnapshotIterator();
+            }
+
+            @Override
+            public int size() {
+                return GuildMemberMap.this.size();
+            }
+        };
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof UUID)) {
+            return -1;
+        }
+        int id = IdRegistry.players().indexOf((UUID) key);
+        return id < 0 ? -1 : Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    /**
+     * Итератор по снимку участников на момент создания
+     */
+    private final class SnapshotIterator implements Iterator<Map.Entry<UUID, GuildRole>> {
+        private final int[] snapshotIds;
+        private final byte[] snapshotRoles;
+        private int position;
+        private UUID last;
+
+        private SnapshotIterator() {
+            synchronized (GuildMemberMap.this) {
+                this.snapshotIds = Arrays.copyOf(ids, size);
+                this.snapshotRoles = Arrays.copyOf(roles, size);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < snapshotIds.length;
+        }
+
+        @Override
+        public Map.Entry<UUID, GuildRole> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            UUID playerId = IdRegistry.players().uuidOf(snapshotIds[position]);
+            GuildRole role = ROLES[snapshotRoles[position]];
+            position++;
+            last = playerId;
+
+            return new AbstractMap.SimpleEntry<>(playerId, role) {
+                @Override
+                public GuildRole setValue(GuildRole value) {
+                    put(playerId, value);
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            GuildMemberMap.this.remove(last);
+            last = null;
+        }
+    }
+}
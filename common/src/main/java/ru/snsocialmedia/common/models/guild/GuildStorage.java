@@ -5,14 +5,52 @@ import java.util.Map;
 import java.util.UUID;
 
 /**
- * Класс для хранения предметов гильдии
+ * Класс для хранения предметов гильдии.
+ * <p>
+ * Деньги хранятся целым числом младших единиц ({@link #MONEY_SCALE} на одну
+ * монету), чтобы не накапливать ошибку округления. Изменения баланса
+ * накапливаются разницей, которая при сохранении применяется в базе данных
+ * относительным обновлением, а не перезаписью значения.
+ * <p>
+ * Предметы и размер защищены номером версии строки guild_storage: изменения
+ * записываются, только если версия в базе данных совпадает с версией, от
+ * которой они сделаны. При конфликте несохраненные изменения переносятся на
+ * актуальное состояние через {@link #rebase(int, Map, long)}.
+ * <p>
+ * Хранилище из кэша меняют асинхронные задачи и читает основной поток при
+ * отрисовке меню, поэтому все методы синхронизированы на объекте хранилища.
+ * Чтобы прочитать несколько значений согласованно, достаточно взять ту же
+ * блокировку ({@code synchronized (storage)}).
  */
 public class GuildStorage {
 
+    /**
+     * Количество младших единиц в одной монете
+     */
+    public static final int MONEY_SCALE = 100;
+
     private final UUID guildId;
     private final Map<String, Integer> items = new HashMap<>();
-    private double money;
+    // Тип предмета -> закодированный шаблон предмета с метаданными; для
+    // обычных предметов шаблона нет, тип совпадает с именем материала
+    private final Map<String, byte[]> itemData = new HashMap<>();
+    // Баланс в младших единицах, включая еще не сохраненные изменения
+    private long money;
+    // Изменение баланса в младших единицах с последнего сохранения
+    private long unsavedMoneyDelta;
+    // Время последнего начисления процентов (0, если начислений не было)
+    private long lastAccruedAt;
     private int maxSlots;
+    // Размер хранилища, записанный в базе данных
+    private int persistedMaxSlots;
+    // Версия строки guild_storage, от которой сделаны изменения
+    private long version;
+
+    // Тип предмета -> изменение количества с последнего сохранения; тип
+    // остается в карте, даже если изменения взаимно погасились
+    private final Map<String, Integer> itemChanges = new HashMap<>();
+    // Изменился ли размер хранилища с последнего сохранения
+    private boolean headerChanged;
 
     /**
      * Создает новое хранилище гильдии
@@ -23,6 +61,7 @@ public class GuildStorage {
     public GuildStorage(UUID guildId, int maxSlots) {
         this.guildId = guildId;
         this.maxSlots = maxSlots;
+        this.persistedMaxSlots = maxSlots;
         this.money = 0;
     }
 
@@ -49,7 +88,7 @@ public class GuildStorage {
      * 
      * @return Карта предметов (Тип предмета -> Количество)
      */
-    public Map<String, Integer> getItems() {
+    public synchronized Map<String, Integer> getItems() {
         return new HashMap<>(items);
     }
 
@@ -58,17 +97,162 @@ public class GuildStorage {
      * 
      * @return Количество денег
      */
-    public double getMoney() {
+    public synchronized double getMoney() {
+        return fromMinorUnits(money);
+    }
+
+    /**
+     * Возвращает баланс хранилища в младших единицах
+     * 
+     * @return Баланс в младших единицах
+     */
+    public synchronized long getMoneyMinor() {
         return money;
     }
 
     /**
-     * Устанавливает количество денег в хранилище
+     * Устанавливает количество денег в хранилище. Несохраненные изменения
+     * баланса отбрасываются: значение считается уже записанным в базу данных.
      * 
      * @param money Новое количество денег
      */
-    public void setMoney(double money) {
+    public synchronized void setMoney(double money) {
+        setMoneyMinor(toMinorUnits(money));
+    }
+
+    /**
+     * Устанавливает баланс хранилища в младших единицах. Несохраненные
+     * изменения баланса отбрасываются.
+     * 
+     * @param money Новый баланс в младших единицах
+     */
+    public synchronized void setMoneyMinor(long money) {
         this.money = money;
+        this.unsavedMoneyDelta = 0;
+    }
+
+    /**
+     * Возвращает баланс без учета несохраненных изменений, то есть значение,
+     * которое записано в базе данных
+     * 
+     * @return Сохраненный баланс в младших единицах
+     */
+    public synchronized long getPersistedMoneyMinor() {
+        return money - unsavedMoneyDelta;
+    }
+
+    /**
+     * Возвращает время последнего начисления процентов
+     * 
+     * @return Время в миллисекундах или 0, если начислений не было
+     */
+    public synchronized long getLastAccruedAt() {
+        return lastAccruedAt;
+    }
+
+    /**
+     * Устанавливает время последнего начисления процентов
+     * 
+     * @param lastAccruedAt Время в миллисекундах
+     */
+    public synchronized void setLastAccruedAt(long lastAccruedAt) {
+        this.lastAccruedAt = lastAccruedAt;
+    }
+
+    /**
+     * Обновляет баланс значением из базы данных, сохраняя несохраненные
+     * изменения поверх него
+     * 
+     * @param persistedMoney Баланс в базе данных в младших единицах
+     */
+    public synchronized void refreshMoney(long persistedMoney) {
+        this.money = persistedMoney + unsavedMoneyDelta;
+    }
+
+    /**
+     * Возвращает версию строки хранилища в базе данных
+     * 
+     * @return Номер версии
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Устанавливает версию строки хранилища в базе данных
+     * 
+     * @param version Номер версии
+     */
+    public synchronized void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Отмечает размер хранилища и версию как записанные в базу данных
+     * 
+     * @param version Новый номер версии
+     */
+    public synchronized void markSaved(long version) {
+        this.version = version;
+        this.persistedMaxSlots = maxSlots;
+    }
+
+    /**
+     * Переносит несохраненные изменения предметов и размера на актуальное
+     * состояние из базы данных. Если изменения больше не применимы (например,
+     * предметы уже сняты с другого сервера), хранилище не меняется.
+     * 
+     * @param persistedMaxSlots Размер хранилища в базе данных
+     * @param persistedItems    Предметы в базе данных
+     * @param version           Версия строки в базе данных
+     * @return true, если изменения перенесены
+     */
+    public synchronized boolean rebase(int persistedMaxSlots, Map<String, Integer> persistedItems, long version) {
+        Map<String, Integer> rebased = new HashMap<>(persistedItems);
+        for (Map.Entry<String, Integer> change : itemChanges.entrySet()) {
+            int amount = rebased.getOrDefault(change.getKey(), 0) + change.getValue();
+            if (amount < 0) {
+                return false;
+            }
+            if (amount == 0) {
+                rebased.remove(change.getKey());
+            } else {
+                rebased.put(change.getKey(), amount);
+            }
+        }
+
+        // Увеличение размера переносится как прибавка к актуальному размеру
+        int rebasedMaxSlots = persistedMaxSlots + (maxSlots - this.persistedMaxSlots);
+        if (rebased.size() > rebasedMaxSlots) {
+            return false;
+        }
+
+        items.clear();
+        items.putAll(rebased);
+        itemData.keySet().retainAll(items.keySet());
+        this.maxSlots = rebasedMaxSlots;
+        this.persistedMaxSlots = persistedMaxSlots;
+        this.version = version;
+        return true;
+    }
+
+    /**
+     * Заменяет предметы и размер актуальным состоянием из базы данных,
+     * отбрасывая несохраненные изменения предметов и размера
+     * 
+     * @param persistedMaxSlots Размер хранилища в базе данных
+     * @param persistedItems    Предметы в базе данных
+     * @param version           Версия строки в базе данных
+     */
+    public synchronized void reset(int persistedMaxSlots, Map<String, Integer> persistedItems, long version) {
+        items.clear();
+        items.putAll(persistedItems);
+        itemData.keySet().retainAll(items.keySet());
+        itemChanges.clear();
+        headerChanged = false;
+        this.maxSlots = persistedMaxSlots;
+        this.persistedMaxSlots = persistedMaxSlots;
+        this.version = version;
     }
 
     /**
@@ -76,7 +260,7 @@ public class GuildStorage {
      * 
      * @return Максимальное количество слотов
      */
-    public int getMaxSlots() {
+    public synchronized int getMaxSlots() {
         return maxSlots;
     }
 
@@ -85,8 +269,9 @@ public class GuildStorage {
      * 
      * @param maxSlots Максимальное количество слотов
      */
-    public void setMaxSlots(int maxSlots) {
+    public synchronized void setMaxSlots(int maxSlots) {
         this.maxSlots = maxSlots;
+        headerChanged = true;
     }
 
     /**
@@ -94,9 +279,10 @@ public class GuildStorage {
      * 
      * @param slots Количество добавляемых слотов
      */
-    public void increaseMaxSlots(int slots) {
+    public synchronized void increaseMaxSlots(int slots) {
         if (slots > 0) {
             this.maxSlots += slots;
+            headerChanged = true;
         }
     }
 
@@ -105,7 +291,7 @@ public class GuildStorage {
      * 
      * @return true, если есть свободные слоты
      */
-    public boolean hasFreeSlots() {
+    public synchronized boolean hasFreeSlots() {
         return items.size() < maxSlots;
     }
 
@@ -114,7 +300,7 @@ public class GuildStorage {
      * 
      * @return Количество свободных слотов
      */
-    public int getFreeSlots() {
+    public synchronized int getFreeSlots() {
         return maxSlots - items.size();
     }
 
@@ -125,7 +311,7 @@ public class GuildStorage {
      * @param amount   Количество
      * @return true, если предмет успешно добавлен
      */
-    public boolean addItem(String itemType, int amount) {
+    public synchronized boolean addItem(String itemType, int amount) {
         if (amount <= 0) {
             return false;
         }
@@ -137,9 +323,53 @@ public class GuildStorage {
 
         int current = items.getOrDefault(itemType, 0);
         items.put(itemType, current + amount);
+        itemChanges.merge(itemType, amount, Integer::sum);
         return true;
     }
 
+    /**
+     * Добавляет предмет с закодированным шаблоном в хранилище
+     * 
+     * @param itemType Тип предмета
+     * @param amount   Количество
+     * @param data     Закодированный шаблон предмета или null
+     * @return true, если предмет успешно добавлен
+     */
+    public synchronized boolean addItem(String itemType, int amount, byte[] data) {
+        if (!addItem(itemType, amount)) {
+            return false;
+        }
+        if (data != null) {
+            itemData.putIfAbsent(itemType, data);
+        }
+        return true;
+    }
+
+    /**
+     * Получает закодированный шаблон предмета
+     * 
+     * @param itemType Тип предмета
+     * @return Шаблон или null для обычных предметов
+     */
+    public synchronized byte[] getItemData(String itemType) {
+        return itemData.get(itemType);
+    }
+
+    /**
+     * Устанавливает закодированный шаблон предмета, например при загрузке из
+     * базы данных
+     * 
+     * @param itemType Тип предмета
+     * @param data     Шаблон или null
+     */
+    public synchronized void setItemData(String itemType, byte[] data) {
+        if (data == null) {
+            itemData.remove(itemType);
+        } else {
+            itemData.put(itemType, data);
+        }
+    }
+
     /**
      * Извлекает предмет из хранилища
      * 
@@ -147,7 +377,7 @@ public class GuildStorage {
      * @param amount   Количество
      * @return true, если предмет успешно извлечен
      */
-    public boolean removeItem(String itemType, int amount) {
+    public synchronized boolean removeItem(String itemType, int amount) {
         if (amount <= 0) {
             return false;
         }
@@ -159,9 +389,11 @@ public class GuildStorage {
 
         if (current == amount) {
             items.remove(itemType);
+            itemData.remove(itemType);
         } else {
             items.put(itemType, current - amount);
         }
+        itemChanges.merge(itemType, -amount, Integer::sum);
         return true;
     }
 
@@ -171,7 +403,7 @@ public class GuildStorage {
      * @param itemType Тип предмета
      * @return Количество предмета
      */
-    public int getItemAmount(String itemType) {
+    public synchronized int getItemAmount(String itemType) {
         return items.getOrDefault(itemType, 0);
     }
 
@@ -181,11 +413,22 @@ public class GuildStorage {
      * @param amount Сумма пополнения
      * @return true, если операция успешна
      */
-    public boolean depositMoney(double amount) {
+    public synchronized boolean depositMoney(double amount) {
+        return depositMoneyMinor(toMinorUnits(amount));
+    }
+
+    /**
+     * Пополняет баланс хранилища на сумму в младших единицах
+     * 
+     * @param amount Сумма пополнения в младших единицах
+     * @return true, если операция успешна
+     */
+    public synchronized boolean depositMoneyMinor(long amount) {
         if (amount <= 0) {
             return false;
         }
         money += amount;
+        unsavedMoneyDelta += amount;
         return true;
     }
 
@@ -195,11 +438,22 @@ public class GuildStorage {
      * @param amount Сумма снятия
      * @return true, если операция успешна
      */
-    public boolean withdrawMoney(double amount) {
+    public synchronized boolean withdrawMoney(double amount) {
+        return withdrawMoneyMinor(toMinorUnits(amount));
+    }
+
+    /**
+     * Снимает с баланса хранилища сумму в младших единицах
+     * 
+     * @param amount Сумма снятия в младших единицах
+     * @return true, если операция успешна
+     */
+    public synchronized boolean withdrawMoneyMinor(long amount) {
         if (amount <= 0 || money < amount) {
             return false;
         }
         money -= amount;
+        unsavedMoneyDelta -= amount;
         return true;
     }
 
@@ -209,7 +463,7 @@ public class GuildStorage {
      * @param itemType Тип предмета
      * @return true, если предмет найден
      */
-    public boolean hasItem(String itemType) {
+    public synchronized boolean hasItem(String itemType) {
         return items.containsKey(itemType);
     }
 
@@ -220,15 +474,99 @@ public class GuildStorage {
      * @param amount   Количество
      * @return true, если предмет найден в нужном количестве
      */
-    public boolean hasItem(String itemType, int amount) {
+    public synchronized boolean hasItem(String itemType, int amount) {
         return getItemAmount(itemType) >= amount;
     }
 
     /**
      * Очищает хранилище
      */
-    public void clear() {
+    public synchronized void clear() {
+        for (Map.Entry<String, Integer> entry : items.entrySet()) {
+            itemChanges.merge(entry.getKey(), -entry.getValue(), Integer::sum);
+        }
         items.clear();
+        itemData.clear();
+        unsavedMoneyDelta -= money;
         money = 0;
     }
+
+    /**
+     * Забирает изменения предметов с последнего сохранения и сбрасывает их
+     * 
+     * @return Тип предмета -> изменение количества
+     */
+    public synchronized Map<String, Integer> drainItemChanges() {
+        Map<String, Integer> drained = new HashMap<>(itemChanges);
+        itemChanges.clear();
+        return drained;
+    }
+
+    /**
+     * Забирает отметку изменения размера хранилища и сбрасывает ее
+     * 
+     * @return true, если размер хранилища изменился
+     */
+    public synchronized boolean drainHeaderChanged() {
+        boolean changed = headerChanged;
+        headerChanged = false;
+        return changed;
+    }
+
+    /**
+     * Забирает несохраненное изменение баланса и сбрасывает его
+     * 
+     * @return Изменение баланса в младших единицах
+     */
+    public synchronized long drainMoneyDelta() {
+        long delta = unsavedMoneyDelta;
+        unsavedMoneyDelta = 0;
+        return delta;
+    }
+
+    /**
+     * Возвращает изменения, которые не удалось сохранить, чтобы записать их при
+     * следующем сохранении
+     * 
+     * @param itemChanges   Тип предмета -> изменение количества
+     * @param headerChanged Изменился ли размер хранилища
+     * @param moneyDelta    Изменение баланса в младших единицах
+     */
+    public synchronized void markChanged(Map<String, Integer> itemChanges, boolean headerChanged, long moneyDelta) {
+        for (Map.Entry<String, Integer> entry : itemChanges.entrySet()) {
+            this.itemChanges.merge(entry.getKey(), entry.getValue(), Integer::sum);
+        }
+        this.headerChanged |= headerChanged;
+        this.unsavedMoneyDelta += moneyDelta;
+    }
+
+    /**
+     * Сбрасывает все отметки изменений, например после загрузки из базы данных
+     */
+    public synchronized void clearChanges() {
+        itemChanges.clear();
+        headerChanged = false;
+        unsavedMoneyDelta = 0;
+        persistedMaxSlots = maxSlots;
+    }
+
+    /**
+     * Переводит сумму в монетах в младшие единицы
+     * 
+     * @param amount Сумма в монетах
+     * @return Сумма в младших единицах
+     */
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * MONEY_SCALE);
+    }
+
+    /**
+     * Переводит сумму в младших единицах в монеты
+     * 
+     * @param amount Сумма в младших единицах
+     * @return Сумма в монетах
+     */
+    public static double fromMinorUnits(long amount) {
+        return (double) amount / MONEY_SCALE;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package ru.snsocialmedia.common.models.guild;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Запись журнала операций с хранилищем гильдии
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageLedgerEntry {
+
+    /**
+     * Тип операции. Для предметов количество указывается со знаком, для денег -
+     * изменение баланса в младших единицах со знаком.
+     */
+    public enum Type {
+        /**
+         * Создание хранилища; количество - начальное число слотов
+         */
+        CREATE,
+        ITEM_DEPOSIT,
+        ITEM_WITHDRAW,
+        MONEY_DEPOSIT,
+        MONEY_WITHDRAW,
+        TRANSFER_IN,
+        TRANSFER_OUT,
+        /**
+         * Изменение размера; количество - новое число слотов
+         */
+        UPGRADE,
+        INTEREST,
+        /**
+         * Административная установка баланса; количество - новый баланс
+         */
+        MONEY_SET
+    }
+
+    private long seq;
+    private UUID guildId;
+    private UUID actorId;
+    /**
+     * Ник игрока на момент операции или null, если неизвестен
+     */
+    private String actorName;
+    private Type type;
+    private String itemType;
+    private long amount;
+    private long timestamp;
+}
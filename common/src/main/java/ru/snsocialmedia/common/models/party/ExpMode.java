@@ -0,0 +1,51 @@
+package ru.snsocialmedia.common.models.party;
+
+/**
+ * Режим распределения опыта в пати
+ */
+public enum ExpMode {
+    /**
+     * Опыт делится поровну
+     */
+    EQUAL("equal"),
+
+    /**
+     * Игроки с низким уровнем получают больше опыта
+     */
+    LEVEL_BASED("level_based"),
+
+    /**
+     * Половина опыта достается игроку, который его получил
+     */
+    CONTRIBUTION("contribution");
+
+    private static final ExpMode[] VALUES = values();
+
+    private final String key;
+
+    ExpMode(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return Ключ режима, используемый в командах и базе данных
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Находит режим по ключу
+     *
+     * @param key Ключ режима
+     * @return Режим или null, если ключ неизвестен
+     */
+    public static ExpMode fromKey(String key) {
+        for (ExpMode mode : VALUES) {
+            if (mode.key.equals(key)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
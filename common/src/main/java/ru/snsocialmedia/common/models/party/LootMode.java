@@ -0,0 +1,51 @@
+package ru.snsocialmedia.common.models.party;
+
+/**
+ * Режим распределения добычи в пати
+ */
+public enum LootMode {
+    /**
+     * Предметы раздаются участникам по очереди
+     */
+    ROUND_ROBIN("round_robin"),
+
+    /**
+     * Предмет получает случайный участник
+     */
+    FREE_FOR_ALL("free_for_all"),
+
+    /**
+     * Все предметы получает лидер
+     */
+    LEADER_FIRST("leader_first");
+
+    private static final LootMode[] VALUES = values();
+
+    private final String key;
+
+    LootMode(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return Ключ режима, используемый в командах и базе данных
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Находит режим по ключу
+     *
+     * @param key Ключ режима
+     * @return Режим или null, если ключ неизвестен
+     */
+    public static LootMode fromKey(String key) {
+        for (LootMode mode : VALUES) {
+            if (mode.key.equals(key)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -17,9 +17,8 @@ public class Party {
     private Map<UUID, PartyRole> members = new HashMap<>();
     private Set<UUID> invites = new HashSet<>();
     private Date creationDate;
-    private boolean open;
     private String currentServer;
-    private Map<String, Object> settings = new HashMap<>();
+    private PartySettings settings = new PartySettings();
 
     /**
      * Создает новое пати с указанным лидером
@@ -30,7 +29,6 @@ public class Party {
         this.id = UUID.randomUUID();
         this.leader = leader;
         this.creationDate = new Date();
-        this.open = false;
 
         // Добавляем лидера в список участников
         members.put(leader, PartyRole.LEADER);
@@ -121,14 +119,32 @@ public class Party {
         this.currentServer = server;
     }
 
+    /**
+     * @return true, если пати открыто для вступления без приглашения
+     */
+    public boolean isOpen() {
+        return settings.isOpen();
+    }
+
+    /**
+     * Изменяет открытость пати
+     * 
+     * @param open true, если пати открыто
+     */
+    public void setOpen(boolean open) {
+        settings.setOpen(open);
+    }
+
     /**
      * Изменяет настройку пати
      * 
      * @param key   Ключ настройки
      * @param value Значение настройки
+     * @return true, если ключ входит в схему и значение подходит для него
      */
-    public void setSetting(String key, Object value) {
-        settings.put(key, value);
+    public boolean setSetting(String key, Object value) {
+        PartySettingKey settingKey = PartySettingKey.fromKey(key);
+        return settingKey != null && settings.set(settingKey, value);
     }
 
     /**
@@ -136,9 +152,10 @@ public class Party {
      * 
      * @param key          Ключ настройки
      * @param defaultValue Значение по умолчанию
-     * @return Значение настройки или значение по умолчанию
+     * @return Значение настройки или значение по умолчанию для неизвестного ключа
      */
     public Object getSetting(String key, Object defaultValue) {
-        return settings.getOrDefault(key, defaultValue);
+        PartySettingKey settingKey = PartySettingKey.fromKey(key);
+        return settingKey != null ? settings.get(settingKey) : defaultValue;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package ru.snsocialmedia.common.models.party;
+
+/**
+ * Схема настроек пати: известные ключи и их имена в базе данных
+ */
+public enum PartySettingKey {
+    /**
+     * Открытость пати; хранится в столбце open таблицы parties
+     */
+    OPEN("open", false),
+    LOOT_MODE("loot_mode", true),
+    EXP_MODE("exp_mode", true);
+
+    private static final PartySettingKey[] VALUES = values();
+
+    private final String key;
+    private final boolean storedInSettingsTable;
+
+    PartySettingKey(String key, boolean storedInSettingsTable) {
+        this.key = key;
+        this.storedInSettingsTable = storedInSettingsTable;
+    }
+
+    /**
+     * @return Имя настройки в базе данных
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return true, если настройка хранится строкой в таблице party_settings
+     */
+    public boolean isStoredInSettingsTable() {
+        return storedInSettingsTable;
+    }
+
+    /**
+     * @return Бит настройки в маске измененных настроек
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Находит настройку по имени
+     *
+     * @param key Имя настройки
+     * @return Настройка или null, если имя неизвестно
+     */
+    public static PartySettingKey fromKey(String key) {
+        for (PartySettingKey settingKey : VALUES) {
+            if (settingKey.key.equals(key)) {
+                return settingKey;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Все настройки схемы
+     */
+    public static PartySettingKey[] all() {
+        return VALUES.clone();
+    }
+}
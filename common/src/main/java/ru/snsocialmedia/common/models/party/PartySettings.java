@@ -0,0 +1,184 @@
+package ru.snsocialmedia.common.models.party;
+
+/**
+ * Типизированные настройки одной пати.
+ * <p>
+ * Каждая настройка схемы {@link PartySettingKey} хранится отдельным полем,
+ * поэтому чтение - это обращение к полю без поиска в карте и разбора строк.
+ * Изменение значения выставляет бит настройки в маске измененных настроек;
+ * при записи в базу данных маска забирается целиком, и записываются только
+ * изменившиеся ключи.
+ */
+public class PartySettings {
+
+    private volatile boolean open;
+    private volatile LootMode lootMode = LootMode.ROUND_ROBIN;
+    private volatile ExpMode expMode = ExpMode.EQUAL;
+
+    // Биты PartySettingKey#mask() измененных и еще не записанных настроек
+    private int dirty;
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public LootMode getLootMode() {
+        return lootMode;
+    }
+
+    public ExpMode getExpMode() {
+        return expMode;
+    }
+
+    /**
+     * Изменяет открытость пати
+     *
+     * @param open Новое значение
+     */
+    public synchronized void setOpen(boolean open) {
+        if (this.open != open) {
+            this.open = open;
+            dirty |= PartySettingKey.OPEN.mask();
+        }
+    }
+
+    /**
+     * Изменяет режим распределения добычи
+     *
+     * @param lootMode Новый режим, не null
+     */
+    public synchronized void setLootMode(LootMode lootMode) {
+        if (this.lootMode != lootMode) {
+            this.lootMode = lootMode;
+            dirty |= PartySettingKey.LOOT_MODE.mask();
+        }
+    }
+
+    /**
+     * Изменяет режим распределения опыта
+     *
+     * @param expMode Новый режим, не null
+     */
+    public synchronized void setExpMode(ExpMode expMode) {
+        if (this.expMode != expMode) {
+            this.expMode = expMode;
+            dirty |= PartySettingKey.EXP_MODE.mask();
+        }
+    }
+
+    /**
+     * Получает значение настройки
+     *
+     * @param key Настройка
+     * @return Значение: Boolean для открытости, строковый ключ для режимов
+     */
+    public Object get(PartySettingKey key) {
+        switch (key) {
+            case OPEN:
+                return open;
+            case LOOT_MODE:
+                return lootMode.getKey();
+            case EXP_MODE:
+                return expMode.getKey();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Изменяет настройку по значению из команды или старого API
+     *
+     * @param key   Настройка
+     * @param value Значение: Boolean, ключ режима или значение enum
+     * @return true, если значение подходит для настройки
+     */
+    public boolean set(PartySettingKey key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        switch (key) {
+            case OPEN:
+                if (value instanceof Boolean) {
+                    setOpen((Boolean) value);
+                    return true;
+                }
+                return false;
+            case LOOT_MODE: {
+                LootMode mode = value instanceof LootMode ? (LootMode) value : LootMode.fromKey(value.toString());
+                if (mode == null) {
+                    return false;
+                }
+                setLootMode(mode);
+                return true;
+            }
+            case EXP_MODE: {
+                ExpMode mode = value instanceof ExpMode ? (ExpMode) value : ExpMode.fromKey(value.toString());
+                if (mode == null) {
+                    return false;
+                }
+                setExpMode(mode);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Кодирует значение настройки для записи в базу данных
+     *
+     * @param key Настройка
+     * @return Строковое значение
+     */
+    public String encode(PartySettingKey key) {
+        return String.valueOf(get(key));
+    }
+
+    /**
+     * Восстанавливает значение, загруженное из базы данных. Маска измененных
+     * настроек не меняется: значение уже совпадает с сохраненным.
+     *
+     * @param key   Настройка
+     * @param value Строковое значение из базы данных
+     * @return true, если значение распознано
+     */
+    public synchronized boolean decode(PartySettingKey key, String value) {
+        if (value == null) {
+            return false;
+        }
+        switch (key) {
+            case OPEN:
+                open = Boolean.parseBoolean(value);
+                return true;
+            case LOOT_MODE: {
+                LootMode mode = LootMode.fromKey(value);
+                if (mode != null) {
+                    lootMode = mode;
+                }
+                return mode != null;
+            }
+            case EXP_MODE: {
+                ExpMode mode = ExpMode.fromKey(value);
+                if (mode != null) {
+                    expMode = mode;
+                }
+                return mode != null;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Забирает маску измененных настроек и сбрасывает ее. Если запись не
+     * удалась, значения забранных настроек остаются в снимке пати и
+     * записываются при следующей попытке, поэтому маска не восстанавливается.
+     *
+     * @return Биты PartySettingKey#mask() измененных настроек
+     */
+    public synchronized int drainDirty() {
+        int mask = dirty;
+        dirty = 0;
+        return mask;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.snsocialmedia.common.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр, сопоставляющий UUID плотным целочисленным идентификаторам.
+ * <p>
+ * Идентификаторы выдаются последовательно с нуля и не переиспользуются, поэтому
+ * их можно использовать как индексы массивов и ключи примитивных коллекций.
+ * UUID хранится в реестре один раз, а индексы хранят только int.
+ */
+public final class IdRegistry {
+
+    private static final IdRegistry PLAYERS = new IdRegistry();
+
+    private final Map<UUID, Integer> ids = new ConcurrentHashMap<>();
+    private volatile UUID[] uuids = new UUID[256];
+    private int nextId;
+
+    /**
+     * Общий реестр идентификаторов игроков
+     *
+     * @return Реестр игроков
+     */
+    public static IdRegistry players() {
+        return PLAYERS;
+    }
+
+    /**
+     * Возвращает идентификатор UUID, выдавая новый при необходимости
+     *
+     * @param uuid UUID
+     * @return Целочисленный идентификатор
+     */
+    public int intern(UUID uuid) {
+        Integer id = ids.get(uuid);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = ids.get(uuid);
+            if (id != null) {
+                return id;
+            }
+
+            int newId = nextId++;
+            UUID[] current = uuids;
+            if (newId >= current.length) {
+                current = Arrays.copyOf(current, current.length << 1);
+            }
+            current[newId] = uuid;
+            uuids = current;
+            ids.put(uuid, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * Возвращает идентификатор UUID без выдачи нового
+     *
+     * @param uuid UUID
+     * @return Идентификатор или -1, если UUID еще не зарегистрирован
+     */
+    public int indexOf(UUID uuid) {
+        if (uuid == null) {
+            return -1;
+        }
+        Integer id = ids.get(uuid);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Возвращает UUID по идентификатору
+     *
+     * @param id Идентификатор
+     * @return UUID или null, если идентификатор не выдавался
+     */
+    public UUID uuidOf(int id) {
+        UUID[] current = uuids;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * @return Количество выданных идентификаторов
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,193 @@
+package ru.snsocialmedia.common.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Потокобезопасная хеш-таблица int -&gt; int с открытой адресацией.
+ * <p>
+ * Ключи - неотрицательные идентификаторы из {@link IdRegistry}. Чтение
+ * выполняется оптимистично без блокировок и без выделения памяти, запись
+ * берет эксклюзивную блокировку.
+ */
+public final class IntIntMap {
+
+    private static final int FREE = -1;
+
+    private final StampedLock lock = new StampedLock();
+    private final int missingValue;
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * @param missingValue Значение, возвращаемое для отсутствующих ключей
+     */
+    public IntIntMap(int missingValue) {
+        this.missingValue = missingValue;
+        this.keys = newKeys(16);
+        this.values = new int[16];
+    }
+
+    /**
+     * @param key Ключ
+     * @return Значение или missingValue
+     */
+    public int get(int key) {
+        long stamp = lock.tryOptimisticRead();
+        int result = find(keys, values, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = find(keys, values, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != missingValue;
+    }
+
+    /**
+     * @return Предыдущее значение или missingValue
+     */
+    public int put(int key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Отрицательный ключ: " + key);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(keys, key);
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                resize(keys.length << 1);
+            }
+            return missingValue;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return Удаленное значение или missingValue
+     */
+    public int remove(int key) {
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            int slot = slot(keys, key);
+            if (keys[slot] != key) {
+                return missingValue;
+            }
+
+            int previous = values[slot];
+            // Удаление со сдвигом, чтобы не оставлять "надгробий" в цепочке
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (keys[next] != FREE) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = FREE;
+            size--;
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(keys, FREE);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int find(int[] currentKeys, int[] currentValues, int key) {
+        // При оптимистичном чтении массивы могут быть от разных версий - результат все
+        // равно будет отброшен проверкой штампа
+        if (key < 0 || currentKeys.length != currentValues.length) {
+            return missingValue;
+        }
+
+        int mask = currentKeys.length - 1;
+        int index = hash(key) & mask;
+        for (int probes = 0; probes < currentKeys.length; probes++) {
+            int candidate = currentKeys[index];
+            if (candidate == key) {
+                return currentValues[index];
+            }
+            if (candidate == FREE) {
+                return missingValue;
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] newKeys = newKeys(capacity);
+        int[] newValues = new int[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(newKeys, oldKeys[i]);
+                newKeys[slot] = oldKeys[i];
+                newValues[slot] = oldValues[i];
+            }
+        }
+
+        values = newValues;
+        keys = newKeys;
+    }
+
+    private static int slot(int[] table, int key) {
+        int mask = table.length - 1;
+        int index = hash(key) & mask;
+        while (table[index] != FREE && table[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] newKeys(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+}
@@ -0,0 +1,236 @@
+package ru.snsocialmedia.common.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+
+/**
+ * Потокобезопасная хеш-таблица int -&gt; объект с открытой адресацией.
+ * <p>
+ * Устроена так же, как {@link IntIntMap}: оптимистичное чтение без блокировок
+ * и эксклюзивная запись.
+ *
+ * @param <V> Тип значений
+ */
+public final class IntObjectMap<V> {
+
+    private static final int FREE = -1;
+
+    private final StampedLock lock = new StampedLock();
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntObjectMap() {
+        this.keys = newKeys(16);
+        this.values = new Object[16];
+    }
+
+    /**
+     * @param key Ключ
+     * @return Значение или null
+     */
+    public V get(int key) {
+        long stamp = lock.tryOptimisticRead();
+        Object result = find(keys, values, key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = find(keys, values, key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return cast(result);
+    }
+
+    /**
+     * @return Предыдущее значение или null
+     */
+    public V put(int key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Отрицательный ключ: " + key);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            return putLocked(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Возвращает значение, создавая его при отсутствии
+     *
+     * @param key     Ключ
+     * @param factory Фабрика значения
+     * @return Существующее или созданное значение
+     */
+    public V computeIfAbsent(int key, IntFunction<V> factory) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(keys, key);
+            if (keys[slot] == key) {
+                return cast(values[slot]);
+            }
+            V created = factory.apply(key);
+            putLocked(key, created);
+            return created;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return Удаленное значение или null
+     */
+    public V remove(int key) {
+        long stamp = lock.writeLock();
+        try {
+            int mask = keys.length - 1;
+            int slot = slot(keys, key);
+            if (keys[slot] != key) {
+                return null;
+            }
+
+            Object previous = values[slot];
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (keys[next] != FREE) {
+                int home = IntIntMap.hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = FREE;
+            values[gap] = null;
+            size--;
+            return cast(previous);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return Снимок всех значений
+     */
+    public List<V> values() {
+        long stamp = lock.readLock();
+        try {
+            List<V> result = new ArrayList<>(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) {
+                    result.add(cast(values[i]));
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(keys, FREE);
+            Arrays.fill(values, null);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private V putLocked(int key, V value) {
+        int slot = slot(keys, key);
+        if (keys[slot] == key) {
+            Object previous = values[slot];
+            values[slot] = value;
+            return cast(previous);
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    private static Object find(int[] currentKeys, Object[] currentValues, int key) {
+        if (key < 0 || currentKeys.length != currentValues.length) {
+            return null;
+        }
+
+        int mask = currentKeys.length - 1;
+        int index = IntIntMap.hash(key) & mask;
+        for (int probes = 0; probes < currentKeys.length; probes++) {
+            int candidate = currentKeys[index];
+            if (candidate == key) {
+                return currentValues[index];
+            }
+            if (candidate == FREE) {
+                return null;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] newKeys = newKeys(capacity);
+        Object[] newValues = new Object[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(newKeys, oldKeys[i]);
+                newKeys[slot] = oldKeys[i];
+                newValues[slot] = oldValues[i];
+            }
+        }
+
+        values = newValues;
+        keys = newKeys;
+    }
+
+    private static int slot(int[] table, int key) {
+        int mask = table.length - 1;
+        int index = IntIntMap.hash(key) & mask;
+        while (table[index] != FREE && table[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static int[] newKeys(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+}
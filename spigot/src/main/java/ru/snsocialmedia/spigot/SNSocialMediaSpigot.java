@@ -11,22 +11,24 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import ru.snsocialmedia.common.database.DatabaseManager;
 import ru.snsocialmedia.common.managers.FriendManager;
+import ru.snsocialmedia.common.managers.GuildInterestEngine;
 import ru.snsocialmedia.common.managers.GuildManager;
-import ru.snsocialmedia.common.managers.PartyManager;
 import ru.snsocialmedia.common.messaging.MessageManager;
 import ru.snsocialmedia.spigot.gui.GuildMenuHandler;
 import ru.snsocialmedia.spigot.listeners.GuildMenuListener;
 import ru.snsocialmedia.spigot.listeners.PluginMessageListener;
 import ru.snsocialmedia.common.managers.GuildStorageManager;
 import ru.snsocialmedia.spigot.gui.GuildStorageMenu;
-import ru.snsocialmedia.spigot.listeners.GuildStorageMenuListener;
+import ru.snsocialmedia.spigot.gui.GuildStorageViewers;
 import ru.snsocialmedia.spigot.gui.DepositItemMenu;
 import ru.snsocialmedia.spigot.gui.WithdrawItemMenu;
 import ru.snsocialmedia.spigot.gui.DepositMoneyMenu;
 import ru.snsocialmedia.spigot.gui.WithdrawMoneyMenu;
+import ru.snsocialmedia.spigot.utils.ItemStackCodec;
 import ru.snsocialmedia.spigot.utils.PersistentDataKeys;
 import ru.snsocialmedia.spigot.gui.UpgradeStorageMenu;
 import ru.snsocialmedia.spigot.tasks.InterestSchedulerTask;
@@ -45,7 +47,7 @@ public class SNSocialMediaSpigot extends JavaPlugin {
 
     private GuildStorageManager guildStorageManager;
     private GuildStorageMenu guildStorageMenu;
-    private GuildStorageMenuListener guildStorageMenuListener;
+    private GuildStorageViewers guildStorageViewers;
 
     private GuildManager guildManager;
     private DepositItemMenu depositItemMenu;
@@ -84,7 +86,6 @@ public class SNSocialMediaSpigot extends JavaPlugin {
             // Инициализация обработчика меню гильдий
             initGuildMenuSystem();
 
-            initGuildStorageManager();
             initGuildStorageMenu();
 
             // Инициализация меню работы с хранилищем
@@ -96,6 +97,7 @@ public class SNSocialMediaSpigot extends JavaPlugin {
 
             // Инициализация PersistentDataKeys
             PersistentDataKeys.init(this);
+            ItemStackCodec.init(getConfig().getBoolean("storage.compress-item-data", true));
 
             // Запуск задачи начисления процентов
             startInterestTask();
@@ -119,7 +121,7 @@ public class SNSocialMediaSpigot extends JavaPlugin {
             getLogger().info("GuildMenuHandler успешно создан");
 
             // Регистрация обработчика событий для меню гильдий
-            GuildMenuListener guildMenuListener = new GuildMenuListener(this, guildMenuHandler);
+            GuildMenuListener guildMenuListener = new GuildMenuListener(this);
             getServer().getPluginManager().registerEvents(guildMenuListener, this);
             getLogger().info("GuildMenuListener успешно зарегистрирован");
 
@@ -144,6 +146,11 @@ public class SNSocialMediaSpigot extends JavaPlugin {
                 getLogger().info("Каналы плагина отменены");
             }
 
+            // Останавливаем обновление открытых меню хранилища
+            if (guildStorageViewers != null) {
+                guildStorageViewers.stop();
+            }
+
             // Отменяем задачу начисления процентов
             if (interestTask != null) {
                 interestTask.cancel();
@@ -231,9 +238,6 @@ public class SNSocialMediaSpigot extends JavaPlugin {
 
         // Регистрируем обработчик входа игрока
         getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
-
-        // Регистрируем обработчик меню хранилища гильдии
-        getServer().getPluginManager().registerEvents(guildStorageMenuListener, this);
     }
 
     /**
@@ -295,6 +299,7 @@ public class SNSocialMediaSpigot extends JavaPlugin {
             // Инициализируем менеджеры данных
             GuildManager.initialize(dbLogger);
             this.guildManager = GuildManager.getInstance();
+            initGuildStorageManager();
 
             // Вывод дебаг информации о кеше гильдий
             getLogger().info("Вывод отладочной информации о состоянии кеша гильдий после инициализации:");
@@ -307,7 +312,10 @@ public class SNSocialMediaSpigot extends JavaPlugin {
             }
 
             FriendManager.initialize(dbLogger);
-            PartyManager.initialize(dbLogger);
+            FriendManager.getInstance().setMaxFriends(getConfig().getInt("friends.max-friends", 100));
+            // Пати хранит и записывает в базу данных только прокси: менеджер
+            // пати на сервере создал бы второй фоновый writer и повторял бы
+            // восстановление пати при каждом запуске
             MessageManager.initialize(dbLogger);
 
             getLogger().info("Подключение к базе данных успешно установлено.");
@@ -339,7 +347,8 @@ public class SNSocialMediaSpigot extends JavaPlugin {
                         .getStorage(testGuild);
 
                 if (storage == null) {
-                    storage = this.guildStorageManager.createStorage(testGuild);
+                    storage = this.guildStorageManager.createStorage(testGuild,
+                            getConfig().getInt("storage.initial-slots", 10));
                     if (storage != null) {
                         getLogger().info("Хранилище для тестовой гильдии успешно создано");
                     } else {
@@ -360,8 +369,17 @@ public class SNSocialMediaSpigot extends JavaPlugin {
         }
     }
 
+    /**
+     * Инициализирует менеджер хранилищ гильдий. Используется общий менеджер с
+     * той же базой данных, что и на Velocity, поэтому сохранения с разных
+     * серверов проверяют версию хранилища и попадают в журнал операций.
+     * Журнал сохраняет ник игрока, выполнившего операцию.
+     */
     private void initGuildStorageManager() {
-        this.guildStorageManager = new GuildStorageManager(DatabaseManager.getInstance(), getLogger());
+        GuildStorageManager.initialize(getLogger());
+        this.guildStorageManager = GuildStorageManager.getInstance();
+        guildStorageManager.getLedger()
+                .setActorNameResolver(actorId -> getServer().getOfflinePlayer(actorId).getName());
         getLogger().info("Инициализирован менеджер хранилища гильдий");
     }
 
@@ -384,12 +402,12 @@ public class SNSocialMediaSpigot extends JavaPlugin {
     }
 
     /**
-     * Инициализирует меню хранилища гильдии и его слушатель
+     * Инициализирует меню хранилища гильдии и обновление открытых меню
      */
     private void initGuildStorageMenu() {
         this.guildStorageMenu = new GuildStorageMenu(this);
-        this.guildStorageMenuListener = new GuildStorageMenuListener(this, guildStorageMenu);
-        getServer().getPluginManager().registerEvents(guildStorageMenuListener, this);
+        this.guildStorageViewers = new GuildStorageViewers(this, guildStorageMenu);
+        this.guildStorageViewers.start();
         getLogger().info("Инициализировано меню хранилища гильдии");
     }
 
@@ -402,6 +420,15 @@ public class SNSocialMediaSpigot extends JavaPlugin {
         return guildStorageMenu;
     }
 
+    /**
+     * Получает реестр открытых меню хранилища гильдии
+     *
+     * @return Реестр открытых меню хранилища
+     */
+    public GuildStorageViewers getGuildStorageViewers() {
+        return guildStorageViewers;
+    }
+
     /**
      * Создает NamespacedKey для идентификатора гильдии
      *
@@ -464,7 +491,20 @@ public class SNSocialMediaSpigot extends JavaPlugin {
             // Получаем процентную ставку из конфигурации или используем значение по
             // умолчанию
             double interestRate = getConfig().getDouble("storage.interest_rate", 0.01); // 1% по умолчанию
-            interestTask = new InterestSchedulerTask(this, interestRate);
+            GuildInterestEngine.Mode mode = GuildInterestEngine.Mode.fromConfig(
+                    getConfig().getString("storage.interest-mode"), GuildInterestEngine.Mode.EAGER);
+            long periodMillis = TimeUnit.HOURS.toMillis(getConfig().getLong("storage.interest-period-hours", 24));
+
+            GuildInterestEngine interestEngine = new GuildInterestEngine(mode, interestRate, periodMillis);
+            guildStorageManager.setInterestEngine(interestEngine);
+
+            if (mode == GuildInterestEngine.Mode.LAZY) {
+                // Проценты начисляются при чтении хранилища, расписание не нужно
+                getLogger().info("Проценты начисляются при чтении хранилища, ставка " + (interestRate * 100) + "%");
+                return;
+            }
+
+            interestTask = new InterestSchedulerTask(this, interestEngine);
             interestTask.startTask();
             getLogger().info("Задача начисления процентов запущена с процентной ставкой " + (interestRate * 100) + "%");
         } catch (Exception e) {
@@ -1,8 +1,6 @@
 package ru.snsocialmedia.spigot.gui;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -12,13 +10,14 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildMember;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
 import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+import ru.snsocialmedia.spigot.utils.GuiAssets;
+import ru.snsocialmedia.spigot.utils.ItemStackCodec;
 import ru.snsocialmedia.spigot.utils.MessageUtil;
 
 /**
@@ -70,7 +69,7 @@ public class DepositItemMenu {
                 }
 
                 // Проверяем наличие свободных слотов
-                if (storage.isFull()) {
+                if (!storage.hasFreeSlots()) {
                     MessageUtil.sendErrorMessage(player, "Хранилище гильдии заполнено! Нет свободных слотов.");
                     return;
                 }
@@ -108,7 +107,10 @@ public class DepositItemMenu {
      * @return Инвентарь
      */
     private Inventory createInventory(Guild guild, GuildStorage storage) {
-        Inventory inventory = Bukkit.createInventory(null, MENU_SIZE, MENU_TITLE);
+        MenuHolder menu = new MenuHolder(MENU_SIZE, MENU_TITLE, guild.getId());
+        Inventory inventory = menu.getInventory();
+        // Предметы переносятся из инвентаря игрока
+        menu.setPlayerInventoryClicks(true);
 
         // Информация о хранилище
         ItemStack infoItem = createGuiItem(Material.PAPER, "§f§lИнформация",
@@ -122,13 +124,13 @@ public class DepositItemMenu {
         ItemStack cancelItem = createGuiItem(Material.BARRIER, "§c§lОтмена",
                 "§7Нажмите, чтобы закрыть меню",
                 "§7без внесения предметов");
-        inventory.setItem(CANCEL_SLOT, cancelItem);
+        menu.setButton(CANCEL_SLOT, cancelItem, (p, click) -> p.closeInventory());
 
         // Кнопка подтверждения
         ItemStack confirmItem = createGuiItem(Material.LIME_STAINED_GLASS_PANE, "§a§lПодтвердить",
                 "§7Нажмите, чтобы внести размещенные",
                 "§7предметы в хранилище");
-        inventory.setItem(CONFIRM_SLOT, confirmItem);
+        menu.setButton(CONFIRM_SLOT, confirmItem, (p, click) -> depositItems(p, menu));
 
         // Заполняем слоты для предметов пустыми панелями с подсказкой
         for (int i = DEPOSIT_START_SLOT; i <= DEPOSIT_END_SLOT; i++) {
@@ -142,49 +144,14 @@ public class DepositItemMenu {
         return inventory;
     }
 
-    /**
-     * Обрабатывает клик по элементу меню
-     *
-     * @param player  Игрок
-     * @param slot    Слот
-     * @param guildId ID гильдии
-     */
-    public void handleClick(Player player, int slot, UUID guildId) {
-        try {
-            // Проверяем, что инвентарь открыт
-            if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
-                return;
-            }
-
-            // Обрабатываем клик по кнопке отмены
-            if (slot == CANCEL_SLOT) {
-                player.closeInventory();
-                return;
-            }
-
-            // Обрабатываем клик по кнопке подтверждения
-            if (slot == CONFIRM_SLOT) {
-                depositItems(player, guildId);
-                return;
-            }
-
-            // Разрешаем размещать предметы в слотах для депозита
-            if (slot >= DEPOSIT_START_SLOT && slot <= DEPOSIT_END_SLOT) {
-                // Специальную обработку размещения не делаем - Minecraft сам разместит предметы
-            }
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Ошибка при обработке клика в меню внесения предметов", e);
-            MessageUtil.sendErrorMessage(player, "Произошла ошибка при обработке клика!");
-        }
-    }
-
     /**
      * Вносит предметы в хранилище
      *
-     * @param player  Игрок
-     * @param guildId ID гильдии
+     * @param player Игрок
+     * @param menu   Открытое меню внесения предметов
      */
-    private void depositItems(Player player, UUID guildId) {
+    private void depositItems(Player player, MenuHolder menu) {
+        UUID guildId = menu.getGuildId();
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
             try {
                 // Получаем гильдию
@@ -201,23 +168,29 @@ public class DepositItemMenu {
                     return;
                 }
 
-                // Проверяем инвентарь
-                if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
+                // Проверяем, что меню еще открыто
+                if (!menu.isOpenFor(player)) {
                     return;
                 }
 
-                Inventory inventory = player.getOpenInventory().getTopInventory();
+                Inventory inventory = menu.getInventory();
 
-                // Собираем предметы для внесения
+                // Собираем предметы для внесения; предметы с метаданными
+                // хранятся отдельно от обычных вместе с закодированным шаблоном
                 Map<String, Integer> itemsToDeposit = new HashMap<>();
+                Map<String, byte[]> itemData = new HashMap<>();
                 int totalItems = 0;
 
                 for (int i = DEPOSIT_START_SLOT; i <= DEPOSIT_END_SLOT; i++) {
                     ItemStack item = inventory.getItem(i);
                     if (item != null && item.getType() != Material.AIR
                             && item.getType() != Material.LIGHT_GRAY_STAINED_GLASS_PANE) {
-                        String itemType = item.getType().name();
+                        byte[] data = ItemStackCodec.templateOf(item);
+                        String itemType = ItemStackCodec.keyOf(item.getType(), data);
                         int amount = item.getAmount();
+                        if (data != null) {
+                            itemData.put(itemType, data);
+                        }
 
                         if (itemsToDeposit.containsKey(itemType)) {
                             itemsToDeposit.put(itemType, itemsToDeposit.get(itemType) + amount);
@@ -234,30 +207,32 @@ public class DepositItemMenu {
                     return;
                 }
 
-                // Проверяем, хватит ли места в хранилище
-                if (totalItems > storage.getFreeSlots()) {
+                // Место проверяется и предметы вносятся под блокировкой
+                // хранилища вместе с сохранением; если сохранение отклонено,
+                // предметы остаются у игрока
+                int requiredSlots = totalItems;
+                int[] freeSlots = { -1 };
+                boolean success = plugin.getGuildStorageManager().modifyStorage(guildId, player.getUniqueId(),
+                        current -> {
+                            if (requiredSlots > current.getFreeSlots()) {
+                                freeSlots[0] = current.getFreeSlots();
+                                return false;
+                            }
+                            for (Map.Entry<String, Integer> entry : itemsToDeposit.entrySet()) {
+                                if (!current.addItem(entry.getKey(), entry.getValue(),
+                                        itemData.get(entry.getKey()))) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        });
+                plugin.getGuildStorageViewers().markDirty(plugin.getGuildStorageManager().loadStorage(guildId));
+                if (freeSlots[0] >= 0) {
                     MessageUtil.sendErrorMessage(player, "В хранилище недостаточно свободных слотов! Доступно "
-                            + storage.getFreeSlots() + " слотов.");
+                            + freeSlots[0] + " слотов.");
                     return;
                 }
 
-                // Вносим предметы в хранилище
-                boolean success = true;
-                for (Map.Entry<String, Integer> entry : itemsToDeposit.entrySet()) {
-                    String itemType = entry.getKey();
-                    int amount = entry.getValue();
-
-                    if (!storage.addItem(itemType, amount)) {
-                        success = false;
-                        break;
-                    }
-                }
-
-                // Сохраняем изменения в хранилище
-                if (success) {
-                    plugin.getGuildStorageManager().saveStorage(storage);
-                }
-
                 // Очищаем инвентарь и закрываем его
                 boolean finalSuccess = success;
                 Bukkit.getScheduler().runTask(plugin, () -> {
@@ -309,17 +284,6 @@ public class DepositItemMenu {
      * @return Созданный предмет
      */
     private ItemStack createGuiItem(Material material, String name, String... lore) {
-        ItemStack item = new ItemStack(material, 1);
-        ItemMeta meta = item.getItemMeta();
-        meta.setDisplayName(name);
-
-        List<String> loreList = new ArrayList<>();
-        for (String line : lore) {
-            loreList.add(line);
-        }
-        meta.setLore(loreList);
-
-        item.setItemMeta(meta);
-        return item;
+        return GuiAssets.button(material, name, lore);
     }
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package ru.snsocialmedia.spigot.gui;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 import java.util.logging.Level;
 
@@ -10,13 +8,13 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildMember;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
 import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+import ru.snsocialmedia.spigot.utils.GuiAssets;
 import ru.snsocialmedia.spigot.utils.MessageUtil;
 
 /**
@@ -104,7 +102,9 @@ public class DepositMoneyMenu {
      * @return Инвентарь
      */
     private Inventory createInventory(Guild guild, GuildStorage storage, Player player) {
-        Inventory inventory = Bukkit.createInventory(null, MENU_SIZE, MENU_TITLE);
+        UUID guildId = guild.getId();
+        MenuHolder menu = new MenuHolder(MENU_SIZE, MENU_TITLE, guildId);
+        Inventory inventory = menu.getInventory();
 
         // Информация о хранилище
         double balance = getPlayerBalance(player);
@@ -119,96 +119,53 @@ public class DepositMoneyMenu {
         ItemStack cancelItem = createGuiItem(Material.BARRIER, "§c§lОтмена",
                 "§7Нажмите, чтобы закрыть меню",
                 "§7без внесения денег");
-        inventory.setItem(CANCEL_SLOT, cancelItem);
+        menu.setButton(CANCEL_SLOT, cancelItem, (p, click) -> p.closeInventory());
 
         // Кнопки с суммами
-        inventory.setItem(AMOUNT_100_SLOT, createGuiItem(Material.GOLD_NUGGET, "§e§l100 монет",
+        menu.setButton(AMOUNT_100_SLOT, createGuiItem(Material.GOLD_NUGGET, "§e§l100 монет",
                 "§7Нажмите, чтобы внести",
-                "§7100 монет в хранилище гильдии"));
+                "§7100 монет в хранилище гильдии"),
+                (p, click) -> depositMoney(p, guildId, 100));
 
-        inventory.setItem(AMOUNT_500_SLOT, createGuiItem(Material.GOLD_INGOT, "§e§l500 монет",
+        menu.setButton(AMOUNT_500_SLOT, createGuiItem(Material.GOLD_INGOT, "§e§l500 монет",
                 "§7Нажмите, чтобы внести",
-                "§7500 монет в хранилище гильдии"));
+                "§7500 монет в хранилище гильдии"),
+                (p, click) -> depositMoney(p, guildId, 500));
 
-        inventory.setItem(AMOUNT_1000_SLOT, createGuiItem(Material.GOLD_BLOCK, "§e§l1 000 монет",
+        menu.setButton(AMOUNT_1000_SLOT, createGuiItem(Material.GOLD_BLOCK, "§e§l1 000 монет",
                 "§7Нажмите, чтобы внести",
-                "§71 000 монет в хранилище гильдии"));
+                "§71 000 монет в хранилище гильдии"),
+                (p, click) -> depositMoney(p, guildId, 1000));
 
-        inventory.setItem(AMOUNT_5000_SLOT, createGuiItem(Material.EMERALD, "§a§l5 000 монет",
+        menu.setButton(AMOUNT_5000_SLOT, createGuiItem(Material.EMERALD, "§a§l5 000 монет",
                 "§7Нажмите, чтобы внести",
-                "§75 000 монет в хранилище гильдии"));
+                "§75 000 монет в хранилище гильдии"),
+                (p, click) -> depositMoney(p, guildId, 5000));
 
-        inventory.setItem(AMOUNT_10000_SLOT, createGuiItem(Material.EMERALD_BLOCK, "§a§l10 000 монет",
+        menu.setButton(AMOUNT_10000_SLOT, createGuiItem(Material.EMERALD_BLOCK, "§a§l10 000 монет",
                 "§7Нажмите, чтобы внести",
-                "§710 000 монет в хранилище гильдии"));
+                "§710 000 монет в хранилище гильдии"),
+                (p, click) -> depositMoney(p, guildId, 10000));
 
-        inventory.setItem(AMOUNT_CUSTOM_SLOT, createGuiItem(Material.WRITABLE_BOOK, "§b§lСвоя сумма",
+        menu.setButton(AMOUNT_CUSTOM_SLOT, createGuiItem(Material.WRITABLE_BOOK, "§b§lСвоя сумма",
                 "§7Нажмите, чтобы внести",
                 "§7произвольную сумму монет",
-                "§7(введете в чат)"));
+                "§7(введете в чат)"),
+                (p, click) -> depositCustomAmount(p));
 
         return inventory;
     }
 
     /**
-     * Обрабатывает клик по элементу меню
+     * Начинает процесс внесения произвольной суммы денег
      *
-     * @param player  Игрок
-     * @param slot    Слот
-     * @param guildId ID гильдии
+     * @param player Игрок
      */
-    public void handleClick(Player player, int slot, UUID guildId) {
-        try {
-            // Проверяем, что инвентарь открыт
-            if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
-                return;
-            }
-
-            // Обрабатываем клик по кнопке отмены
-            if (slot == CANCEL_SLOT) {
-                player.closeInventory();
-                return;
-            }
-
-            // Обрабатываем клик по кнопкам с суммами
-            int amount = 0;
-            boolean customAmount = false;
-
-            switch (slot) {
-                case AMOUNT_100_SLOT:
-                    amount = 100;
-                    break;
-                case AMOUNT_500_SLOT:
-                    amount = 500;
-                    break;
-                case AMOUNT_1000_SLOT:
-                    amount = 1000;
-                    break;
-                case AMOUNT_5000_SLOT:
-                    amount = 5000;
-                    break;
-                case AMOUNT_10000_SLOT:
-                    amount = 10000;
-                    break;
-                case AMOUNT_CUSTOM_SLOT:
-                    customAmount = true;
-                    break;
-                default:
-                    return; // Клик по другому слоту
-            }
-
-            if (customAmount) {
-                player.closeInventory();
-                MessageUtil.sendInfoMessage(player, "Введите сумму для внесения в чат (только число):");
-                // Предполагается, что есть система обработки следующего сообщения в чате
-                // TODO: Реализовать обработку ввода произвольной суммы
-            } else if (amount > 0) {
-                depositMoney(player, guildId, amount);
-            }
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Ошибка при обработке клика в меню внесения денег", e);
-            MessageUtil.sendErrorMessage(player, "Произошла ошибка при обработке клика!");
-        }
+    private void depositCustomAmount(Player player) {
+        player.closeInventory();
+        MessageUtil.sendInfoMessage(player, "Введите сумму для внесения в чат (только число):");
+        // Предполагается, что есть система обработки следующего сообщения в чате
+        // TODO: Реализовать обработку ввода произвольной суммы
     }
 
     /**
@@ -243,17 +200,32 @@ public class DepositMoneyMenu {
                     return;
                 }
 
-                // Снимаем деньги с игрока
-                boolean success = withdrawPlayerMoney(player, amount);
-                if (!success) {
-                    MessageUtil.sendErrorMessage(player, "Не удалось снять деньги с вашего баланса!");
+                // Сначала деньги вносятся в хранилище относительным
+                // обновлением в базе данных, чтобы не перезаписать изменения с
+                // других серверов. Деньги игрока списываются только после
+                // этого: если внести их не удалось, игрок ничего не теряет
+                long amountMinor = GuildStorage.toMinorUnits(amount);
+                Long guildBalance = plugin.getGuildStorageManager().depositMoney(guildId, amountMinor,
+                        player.getUniqueId());
+                if (guildBalance == null) {
+                    MessageUtil.sendErrorMessage(player, "Не удалось внести деньги в хранилище гильдии!");
                     player.closeInventory();
                     return;
                 }
 
-                // Вносим деньги в хранилище
-                storage.depositMoney(amount);
-                plugin.getGuildStorageManager().saveStorage(storage);
+                // Снимаем деньги с игрока; если не удалось, внесение отменяется
+                if (!withdrawPlayerMoney(player, amount)) {
+                    if (plugin.getGuildStorageManager().withdrawMoney(guildId, amountMinor,
+                            player.getUniqueId()) == null) {
+                        plugin.getLogger().severe("Не удалось отменить внесение " + amount + " монет игроком "
+                                + player.getName() + " в хранилище гильдии " + guild.getName());
+                    }
+                    plugin.getGuildStorageViewers().markDirty(storage);
+                    MessageUtil.sendErrorMessage(player, "Не удалось снять деньги с вашего баланса!");
+                    player.closeInventory();
+                    return;
+                }
+                plugin.getGuildStorageViewers().markDirty(storage);
 
                 // Отправляем сообщение об успешном внесении денег
                 MessageUtil.sendSuccessMessage(player, "Вы внесли " + amount + " монет в хранилище гильдии!");
@@ -333,17 +305,6 @@ public class DepositMoneyMenu {
      * @return Созданный предмет
      */
     private ItemStack createGuiItem(Material material, String name, String... lore) {
-        ItemStack item = new ItemStack(material, 1);
-        ItemMeta meta = item.getItemMeta();
-        meta.setDisplayName(name);
-
-        List<String> loreList = new ArrayList<>();
-        for (String line : lore) {
-            loreList.add(line);
-        }
-        meta.setLore(loreList);
-
-        item.setItemMeta(meta);
-        return item;
+        return GuiAssets.button(material, name, lore);
     }
 }
\ No newline at end of file
@@ -0,0 +1,300 @@
+package ru.snsocialmedia.spigot.gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.SkullMeta;
+import org.bukkit.profile.PlayerProfile;
+
+import ru.snsocialmedia.common.models.guild.Guild;
+import ru.snsocialmedia.common.models.guild.GuildMember;
+import ru.snsocialmedia.common.models.guild.GuildRole;
+import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+import ru.snsocialmedia.spigot.utils.GuiAssets;
+
+/**
+ * Постраничное меню участников гильдии.
+ * <p>
+ * Все страницы собираются в асинхронной задаче; основной поток только
+ * записывает готовое содержимое страницы в инвентарь. Головы участников, чьи
+ * профили еще не загружены, показываются без текстуры и подменяются, когда
+ * {@link PlayerHeadCache} загрузит профиль. Профили запрашиваются только для
+ * открытой страницы.
+ */
+public class GuildMembersMenu {
+
+    private static final String MENU_TITLE = "§6Участники гильдии";
+    private static final int MENU_SIZE = 54;
+
+    // Слоты меню
+    private static final int TITLE_SLOT = 4;
+    private static final int FIRST_MEMBER_SLOT = 9;
+    private static final int MEMBERS_PER_PAGE = 36;
+    private static final int PREV_PAGE_SLOT = 45;
+    private static final int PAGE_INFO_SLOT = 49;
+    private static final int NEXT_PAGE_SLOT = 53;
+
+    private static final Comparator<GuildMember> MEMBER_ORDER = Comparator
+            .comparing((GuildMember member) -> member.getRole() != null ? member.getRole().ordinal()
+                    : GuildRole.values().length)
+            .thenComparing(member -> member.getPlayerName() != null ? member.getPlayerName() : "",
+                    String.CASE_INSENSITIVE_ORDER);
+
+    private final SNSocialMediaSpigot plugin;
+    private final PlayerHeadCache headCache;
+    private final Function<String, MenuAction> memberAction;
+
+    /**
+     * Собранная страница меню
+     */
+    private static final class Page {
+        private final ItemStack[] contents = new ItemStack[MENU_SIZE];
+        // Участники по слотам страницы; null для слотов без участника
+        private final GuildMember[] members = new GuildMember[MENU_SIZE];
+    }
+
+    /**
+     * Меню, открытое у игрока: страницы и номер текущей страницы
+     */
+    private static final class View {
+        private final MenuHolder menu;
+        private final List<Page> pages;
+        private int current;
+
+        private View(MenuHolder menu, List<Page> pages) {
+            this.menu = menu;
+            this.pages = pages;
+        }
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param plugin       Экземпляр плагина
+     * @param headCache    Кэш профилей для голов
+     * @param memberAction Действие по клику на участника по его имени
+     */
+    public GuildMembersMenu(SNSocialMediaSpigot plugin, PlayerHeadCache headCache,
+            Function<String, MenuAction> memberAction) {
+        this.plugin = plugin;
+        this.headCache = headCache;
+        this.memberAction = memberAction;
+    }
+
+    /**
+     * Открывает меню участников. Страницы собираются асинхронно, инвентарь
+     * открывается на основном потоке, когда они готовы.
+     *
+     * @param player  Игрок
+     * @param guildId ID гильдии
+     */
+    public void openMenu(Player player, UUID guildId) {
+        if (guildId == null) {
+            player.sendMessage("§cОшибка: Не удалось определить ID гильдии");
+            return;
+        }
+
+        UUID viewerId = player.getUniqueId();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                Guild guild = plugin.getGuildManager().getGuild(guildId);
+                List<Page> pages = guild != null ? renderPages(guild) : null;
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    Player viewer = Bukkit.getPlayer(viewerId);
+                    if (viewer == null) {
+                        return;
+                    }
+
+                    if (pages == null) {
+                        viewer.sendMessage("§cГильдия не найдена!");
+                        return;
+                    }
+
+                    show(viewer, guildId, pages);
+                });
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Ошибка при подготовке меню участников гильдии " + guildId, e);
+            }
+        });
+    }
+
+    /**
+     * Открывает первую страницу
+     */
+    private void show(Player player, UUID guildId, List<Page> pages) {
+        View view = new View(new MenuHolder(MENU_SIZE, MENU_TITLE, guildId), pages);
+        showPage(player, view, 0);
+        player.openInventory(view.menu.getInventory());
+    }
+
+    /**
+     * Записывает страницу в открытый инвентарь вместе с действиями слотов и
+     * запускает загрузку недостающих текстур этой страницы
+     */
+    private void showPage(Player player, View view, int index) {
+        Page page = view.pages.get(index);
+        view.current = index;
+        view.menu.getInventory().setContents(page.contents);
+
+        for (int slot = 0; slot < MENU_SIZE; slot++) {
+            GuildMember member = page.members[slot];
+            view.menu.setAction(slot, member != null ? memberAction.apply(member.getPlayerName()) : null);
+        }
+
+        if (index > 0) {
+            view.menu.setAction(PREV_PAGE_SLOT, (p, click) -> showPage(p, view, index - 1));
+        }
+        if (index < view.pages.size() - 1) {
+            view.menu.setAction(NEXT_PAGE_SLOT, (p, click) -> showPage(p, view, index + 1));
+        }
+
+        for (int slot = 0; slot < MENU_SIZE; slot++) {
+            GuildMember member = page.members[slot];
+            if (member == null || member.getPlayerId() == null || isTextured(page.contents[slot])) {
+                continue;
+            }
+
+            int memberSlot = slot;
+            headCache.resolve(member.getPlayerId(), member.getPlayerName(),
+                    profile -> applyProfile(player, view, index, memberSlot, profile));
+        }
+    }
+
+    /**
+     * Подставляет загруженный профиль в голову участника. Вызывается на
+     * основном потоке.
+     */
+    private void applyProfile(Player player, View view, int pageIndex, int slot, PlayerProfile profile) {
+        Page page = view.pages.get(pageIndex);
+        ItemStack item = page.contents[slot].clone();
+        if (!(item.getItemMeta() instanceof SkullMeta)) {
+            return;
+        }
+
+        SkullMeta meta = (SkullMeta) item.getItemMeta();
+        meta.setOwnerProfile(profile);
+        item.setItemMeta(meta);
+        page.contents[slot] = item;
+
+        if (view.current == pageIndex && view.menu.isOpenFor(player)) {
+            view.menu.getInventory().setItem(slot, item);
+        }
+    }
+
+    /**
+     * Собирает все страницы меню. Выполняется вне основного потока.
+     */
+    private List<Page> renderPages(Guild guild) {
+        List<GuildMember> members = new ArrayList<>();
+        if (guild.getMembers() != null) {
+            members.addAll(guild.getMembers());
+        }
+        members.sort(MEMBER_ORDER);
+
+        int pageCount = Math.max(1, (members.size() + MEMBERS_PER_PAGE - 1) / MEMBERS_PER_PAGE);
+        List<Page> pages = new ArrayList<>(pageCount);
+
+        for (int index = 0; index < pageCount; index++) {
+            Page page = new Page();
+
+            page.contents[TITLE_SLOT] = GuiAssets.button(Material.BOOK, "§e§lУчастники гильдии",
+                    "§7Список всех участников вашей гильдии", "§7с указанием их ролей",
+                    "§7Всего участников: §f" + members.size());
+
+            int from = index * MEMBERS_PER_PAGE;
+            int to = Math.min(members.size(), from + MEMBERS_PER_PAGE);
+            for (int i = from; i < to; i++) {
+                int slot = FIRST_MEMBER_SLOT + i - from;
+                page.members[slot] = members.get(i);
+                page.contents[slot] = renderMember(members.get(i));
+            }
+
+            if (index > 0) {
+                page.contents[PREV_PAGE_SLOT] = GuiAssets.button(Material.ARROW, "§e« Предыдущая страница");
+            }
+            if (index < pageCount - 1) {
+                page.contents[NEXT_PAGE_SLOT] = GuiAssets.button(Material.ARROW, "§eСледующая страница »");
+            }
+            page.contents[PAGE_INFO_SLOT] = GuiAssets.button(Material.PAPER,
+                    "§7Страница §f" + (index + 1) + "§7 из §f" + pageCount);
+
+            ItemStack filler = GuiAssets.button(Material.GRAY_STAINED_GLASS_PANE, " ");
+            for (int slot = 0; slot < MENU_SIZE; slot++) {
+                if (page.contents[slot] == null) {
+                    page.contents[slot] = filler;
+                }
+            }
+
+            pages.add(page);
+        }
+
+        return pages;
+    }
+
+    /**
+     * Создает голову участника; текстура ставится, только если профиль уже
+     * есть в кэше
+     */
+    private ItemStack renderMember(GuildMember member) {
+        GuildRole role = member.getRole() != null ? member.getRole() : GuildRole.ROOKIE;
+        String name = member.getPlayerName() != null ? member.getPlayerName() : "?";
+        boolean online = member.getPlayerId() != null && Bukkit.getPlayer(member.getPlayerId()) != null;
+
+        ItemStack item = new ItemStack(Material.PLAYER_HEAD);
+        SkullMeta meta = (SkullMeta) item.getItemMeta();
+        if (meta != null) {
+            PlayerProfile profile = member.getPlayerId() != null ? headCache.getCached(member.getPlayerId()) : null;
+            if (profile != null) {
+                meta.setOwnerProfile(profile);
+            }
+
+            meta.setDisplayName(roleColor(role) + roleName(role) + ": " + name);
+            meta.setLore(Arrays.asList(
+                    "§7Роль: " + roleColor(role) + roleName(role).toUpperCase(Locale.ROOT),
+                    "§7Онлайн: " + (online ? "§aДа" : "§cНет"),
+                    "§7Нажмите для действий"));
+            item.setItemMeta(meta);
+        }
+
+        return item;
+    }
+
+    private static boolean isTextured(ItemStack item) {
+        return item.getItemMeta() instanceof SkullMeta && ((SkullMeta) item.getItemMeta()).getOwnerProfile() != null;
+    }
+
+    private static String roleName(GuildRole role) {
+        switch (role) {
+            case LEADER:
+                return "Лидер";
+            case OFFICER:
+                return "Офицер";
+            case MEMBER:
+                return "Участник";
+            default:
+                return "Новичок";
+        }
+    }
+
+    private static String roleColor(GuildRole role) {
+        switch (role) {
+            case LEADER:
+                return "§6";
+            case OFFICER:
+                return "§e";
+            default:
+                return "§7";
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package ru.snsocialmedia.spigot.gui;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -20,6 +20,7 @@ import ru.snsocialmedia.common.models.guild.GuildMember;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
 import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+import ru.snsocialmedia.spigot.utils.GuiAssets;
 import ru.snsocialmedia.spigot.utils.MessageUtil;
 
 /**
@@ -47,6 +48,19 @@ public class GuildStorageMenu {
     private static final int STORAGE_START_SLOT = 0;
     private static final int STORAGE_END_SLOT = 44;
 
+    // Слоты, содержимое которых зависит от хранилища: все слоты предметов и
+    // информация; последним идет INFO_SLOT
+    static final int[] LIVE_SLOTS = buildLiveSlots();
+
+    private static int[] buildLiveSlots() {
+        int[] slots = new int[STORAGE_END_SLOT - STORAGE_START_SLOT + 2];
+        for (int i = 0; i < slots.length - 1; i++) {
+            slots[i] = STORAGE_START_SLOT + i;
+        }
+        slots[slots.length - 1] = INFO_SLOT;
+        return slots;
+    }
+
     /**
      * Конструктор
      *
@@ -77,7 +91,7 @@ public class GuildStorageMenu {
                     return;
                 }
 
-                GuildStorage storage = plugin.getGuildStorageManager().getStorage(guild);
+                GuildStorage storage = loadOrCreateStorage(guild);
                 if (storage == null) {
                     MessageUtil.sendMessage(player, "§cХранилище гильдии не найдено!");
                     return;
@@ -94,6 +108,7 @@ public class GuildStorageMenu {
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     Inventory inventory = createInventory(guild, storage, member.getRole());
                     player.openInventory(inventory);
+                    plugin.getGuildStorageViewers().register(player, guild, inventory);
                 });
             } catch (Exception e) {
                 plugin.getLogger().log(Level.SEVERE, "Ошибка при открытии меню хранилища гильдии", e);
@@ -102,6 +117,22 @@ public class GuildStorageMenu {
         });
     }
 
+    /**
+     * Загружает хранилище гильдии; хранилище гильдий, созданных до его
+     * появления, создается при первом открытии
+     *
+     * @param guild Гильдия
+     * @return Хранилище гильдии или null, если создать его не удалось
+     */
+    private GuildStorage loadOrCreateStorage(Guild guild) {
+        GuildStorage storage = plugin.getGuildStorageManager().getStorage(guild);
+        if (storage != null) {
+            return storage;
+        }
+        return plugin.getGuildStorageManager().createStorage(guild,
+                plugin.getConfig().getInt("storage.initial-slots", 10));
+    }
+
     /**
      * Создает инвентарь хранилища гильдии
      *
@@ -111,92 +142,132 @@ public class GuildStorageMenu {
      * @return Инвентарь
      */
     private Inventory createInventory(Guild guild, GuildStorage storage, GuildRole role) {
-        Inventory inventory = Bukkit.createInventory(null, MENU_SIZE, MENU_TITLE);
-
-        // Добавляем предметы из хранилища
-        Map<String, Integer> items = storage.getItems();
-        int slot = STORAGE_START_SLOT;
-        for (Map.Entry<String, Integer> entry : items.entrySet()) {
-            if (slot > STORAGE_END_SLOT) {
-                break;
-            }
-
-            String itemType = entry.getKey();
-            int amount = entry.getValue();
-
-            // Преобразуем строковый тип предмета в Material
-            Material material;
-            try {
-                material = Material.valueOf(itemType);
-            } catch (IllegalArgumentException e) {
-                material = Material.STONE; // Значение по умолчанию, если тип предмета не найден
-            }
-
-            ItemStack itemStack = new ItemStack(material);
-            ItemMeta meta = itemStack.getItemMeta();
-            meta.setDisplayName("§e" + itemType);
-
-            List<String> lore = new ArrayList<>();
-            lore.add("§7Количество: §f" + amount);
-            meta.setLore(lore);
-
-            itemStack.setItemMeta(meta);
-            inventory.setItem(slot, itemStack);
-
-            slot++;
+        UUID guildId = guild.getId();
+        MenuHolder menu = new MenuHolder(MENU_SIZE, MENU_TITLE, guildId);
+        Inventory inventory = menu.getInventory();
+
+        // Добавляем предметы из хранилища и информацию о нем
+        ItemStack[] liveItems = renderLiveSlots(guild.getName(), storage);
+        for (int i = 0; i < LIVE_SLOTS.length; i++) {
+            inventory.setItem(LIVE_SLOTS[i], liveItems[i]);
         }
 
         // Добавляем кнопки управления
         // Кнопка для внесения предметов
         if (canDepositItems(role)) {
-            inventory.setItem(DEPOSIT_ITEM_SLOT, createGuiItem(Material.CHEST,
+            menu.setButton(DEPOSIT_ITEM_SLOT, createGuiItem(Material.CHEST,
                     "§a§lВнести предметы",
                     "§7Нажмите, чтобы внести предметы",
-                    "§7в хранилище гильдии"));
+                    "§7в хранилище гильдии"),
+                    (p, click) -> openDepositItemMenu(p, guildId));
         }
 
         // Кнопка для внесения денег
         if (canDepositMoney(role)) {
-            inventory.setItem(DEPOSIT_MONEY_SLOT, createGuiItem(Material.GOLD_INGOT,
+            menu.setButton(DEPOSIT_MONEY_SLOT, createGuiItem(Material.GOLD_INGOT,
                     "§a§lВнести деньги",
                     "§7Нажмите, чтобы внести деньги",
-                    "§7в хранилище гильдии"));
+                    "§7в хранилище гильдии"),
+                    (p, click) -> openDepositMoneyMenu(p, guildId));
         }
 
         // Кнопка для изъятия предметов
         if (canWithdrawItems(role)) {
-            inventory.setItem(WITHDRAW_ITEM_SLOT, createGuiItem(Material.HOPPER,
+            menu.setButton(WITHDRAW_ITEM_SLOT, createGuiItem(Material.HOPPER,
                     "§c§lИзъять предметы",
                     "§7Нажмите, чтобы изъять предметы",
-                    "§7из хранилища гильдии"));
+                    "§7из хранилища гильдии"),
+                    (p, click) -> openWithdrawItemMenu(p, guildId));
         }
 
         // Кнопка для изъятия денег
         if (canWithdrawMoney(role)) {
-            inventory.setItem(WITHDRAW_MONEY_SLOT, createGuiItem(Material.DIAMOND,
+            menu.setButton(WITHDRAW_MONEY_SLOT, createGuiItem(Material.DIAMOND,
                     "§c§lИзъять деньги",
                     "§7Нажмите, чтобы изъять деньги",
-                    "§7из хранилища гильдии"));
+                    "§7из хранилища гильдии"),
+                    (p, click) -> openWithdrawMoneyMenu(p, guildId));
         }
 
         // Кнопка для улучшения хранилища
         if (canUpgradeStorage(role)) {
-            inventory.setItem(UPGRADE_SLOT, createGuiItem(Material.ANVIL,
+            menu.setButton(UPGRADE_SLOT, createGuiItem(Material.ANVIL,
                     "§b§lУлучшить хранилище",
                     "§7Нажмите, чтобы улучшить хранилище",
                     "§7и увеличить количество слотов",
-                    "§7Стоимость: §e10000 монет"));
+                    "§7Стоимость: §e10000 монет"),
+                    (p, click) -> upgradeStorage(p, guildId));
+        }
+
+        // Закрытое меню больше не обновляется при изменении хранилища
+        menu.setCloseHandler(p -> plugin.getGuildStorageViewers().unregister(p, inventory));
+
+        return inventory;
+    }
+
+    /**
+     * Собирает содержимое слотов, которые меняются вместе с хранилищем:
+     * предметы и информация о хранилище. Кнопки зависят только от роли и
+     * здесь не собираются.
+     *
+     * @param guildName Название гильдии
+     * @param storage   Хранилище гильдии
+     * @return Предметы в порядке {@link #LIVE_SLOTS}; null для пустых слотов
+     */
+    ItemStack[] renderLiveSlots(String guildName, GuildStorage storage) {
+        ItemStack[] result = new ItemStack[LIVE_SLOTS.length];
+
+        // Хранилище меняют асинхронные задачи: значения копируются под его
+        // блокировкой, чтобы предметы, шаблоны и баланс были согласованы
+        Map<String, Integer> items;
+        Map<String, byte[]> itemData = new HashMap<>();
+        int maxSlots;
+        double money;
+        synchronized (storage) {
+            items = storage.getItems();
+            for (String itemType : items.keySet()) {
+                itemData.put(itemType, storage.getItemData(itemType));
+            }
+            maxSlots = storage.getMaxSlots();
+            money = storage.getMoney();
+        }
+
+        int slot = STORAGE_START_SLOT;
+        for (Map.Entry<String, Integer> entry : items.entrySet()) {
+            if (slot > STORAGE_END_SLOT) {
+                break;
+            }
+
+            String itemType = entry.getKey();
+            int amount = entry.getValue();
+
+            // Предмет копируется из готового шаблона вместе с названием,
+            // описанием и зачарованиями; остается добавить количество
+            ItemStack itemStack = GuiAssets.storageItem(itemType, itemData.get(itemType), "§e");
+            if (itemStack == null) {
+                itemStack = new ItemStack(Material.STONE); // Значение по умолчанию, если тип предмета не найден
+            }
+
+            ItemMeta meta = itemStack.getItemMeta();
+            List<String> lore = meta.hasLore() ? new ArrayList<>(meta.getLore()) : new ArrayList<>();
+            lore.add("§7Количество: §f" + amount);
+            meta.setLore(lore);
+
+            itemStack.setItemMeta(meta);
+            result[slot - STORAGE_START_SLOT] = itemStack;
+
+            slot++;
         }
 
         // Информация о хранилище
-        inventory.setItem(INFO_SLOT, createGuiItem(Material.PAPER,
+        result[LIVE_SLOTS.length - 1] = createGuiItem(Material.PAPER,
                 "§f§lИнформация о хранилище",
-                "§7Гильдия: §f" + guild.getName(),
-                "§7Слотов: §f" + storage.getItems().size() + "§7/§f" + storage.getMaxSlots(),
-                "§7Свободно: §f" + storage.getFreeSlots() + " §7слотов",
-                "§7Баланс: §f" + storage.getMoney() + " §7монет"));
+                "§7Гильдия: §f" + guildName,
+                "§7Слотов: §f" + items.size() + "§7/§f" + maxSlots,
+                "§7Свободно: §f" + (maxSlots - items.size()) + " §7слотов",
+                "§7Баланс: §f" + money + " §7монет");
 
-        return inventory;
+        return result;
     }
 
     /**
@@ -208,16 +279,7 @@ public class GuildStorageMenu {
      * @return Предмет
      */
     private ItemStack createGuiItem(Material material, String name, String... lore) {
-        ItemStack item = new ItemStack(material, 1);
-        ItemMeta meta = item.getItemMeta();
-        meta.setDisplayName(name);
-
-        if (lore != null && lore.length > 0) {
-            meta.setLore(Arrays.asList(lore));
-        }
-
-        item.setItemMeta(meta);
-        return item;
+        return GuiAssets.button(material, name, lore);
     }
 
     /**
@@ -270,61 +332,6 @@ public class GuildStorageMenu {
         return role == GuildRole.LEADER;
     }
 
-    /**
-     * Обрабатывает клик по элементу меню
-     *
-     * @param player  Игрок
-     * @param slot    Слот
-     * @param guildId ID гильдии
-     */
-    public void handleClick(Player player, int slot, UUID guildId) {
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                // Получаем гильдию и хранилище
-                Guild guild = plugin.getGuildManager().getGuild(guildId);
-                if (guild == null) {
-                    MessageUtil.sendMessage(player, "§cГильдия не найдена!");
-                    return;
-                }
-
-                GuildStorage storage = plugin.getGuildStorageManager().getStorage(guild);
-                if (storage == null) {
-                    MessageUtil.sendMessage(player, "§cХранилище гильдии не найдено!");
-                    return;
-                }
-
-                // Проверяем, является ли игрок членом гильдии
-                GuildMember member = guild.getMember(player.getUniqueId());
-                if (member == null) {
-                    MessageUtil.sendMessage(player, "§cВы не состоите в этой гильдии!");
-                    return;
-                }
-
-                GuildRole role = member.getRole();
-
-                // Обрабатываем клик по слоту
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    if (slot == DEPOSIT_ITEM_SLOT && canDepositItems(role)) {
-                        openDepositItemMenu(player, guildId);
-                    } else if (slot == DEPOSIT_MONEY_SLOT && canDepositMoney(role)) {
-                        openDepositMoneyMenu(player, guildId);
-                    } else if (slot == WITHDRAW_ITEM_SLOT && canWithdrawItems(role)) {
-                        openWithdrawItemMenu(player, guildId);
-                    } else if (slot == WITHDRAW_MONEY_SLOT && canWithdrawMoney(role)) {
-                        openWithdrawMoneyMenu(player, guildId);
-                    } else if (slot == UPGRADE_SLOT && canUpgradeStorage(role)) {
-                        upgradeStorage(player, guildId);
-                    } else if (slot >= STORAGE_START_SLOT && slot <= STORAGE_END_SLOT) {
-                        // Клик по предмету хранилища - пока ничего не делаем
-                    }
-                });
-            } catch (Exception e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка при обработке клика в меню хранилища гильдии", e);
-                MessageUtil.sendMessage(player, "§cПроизошла ошибка при обработке клика!");
-            }
-        });
-    }
-
     /**
      * Открывает меню для внесения предметов
      *
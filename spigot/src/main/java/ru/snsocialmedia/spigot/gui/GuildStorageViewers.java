@@ -0,0 +1,219 @@
+package ru.snsocialmedia.spigot.gui;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+
+import ru.snsocialmedia.common.models.guild.Guild;
+import ru.snsocialmedia.common.models.guild.GuildStorage;
+import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+
+/**
+ * Реестр открытых меню хранилища гильдии.
+ * <p>
+ * Изменения хранилища отмечаются из любого потока через
+ * {@link #markDirty(GuildStorage)}. Раз в {@code gui.update-interval} тиков
+ * на основном потоке содержимое каждой измененной гильдии собирается один раз,
+ * сравнивается с предыдущим по слотам, и во все открытые у ее участников
+ * инвентари записываются только изменившиеся слоты. Несколько изменений одной
+ * гильдии между обновлениями объединяются в одно.
+ */
+public class GuildStorageViewers {
+
+    private final SNSocialMediaSpigot plugin;
+    private final GuildStorageMenu storageMenu;
+    private final boolean enabled;
+    private final long updateInterval;
+
+    // ID гильдии -> открытые меню; используется только на основном потоке
+    private final Map<UUID, ViewGroup> groups = new HashMap<>();
+    // Гильдии с открытыми меню; читается из асинхронных задач
+    private final Set<UUID> viewedGuilds = ConcurrentHashMap.newKeySet();
+    // ID гильдии -> хранилище, изменившееся с последнего обновления
+    private final Map<UUID, GuildStorage> dirty = new ConcurrentHashMap<>();
+
+    private BukkitTask task;
+
+    /**
+     * Открытые меню одной гильдии
+     */
+    private static final class ViewGroup {
+        private final String guildName;
+        private final Map<UUID, Inventory> inventories = new HashMap<>();
+        // Последнее записанное содержимое в порядке GuildStorageMenu.LIVE_SLOTS;
+        // null, если при следующем обновлении нужно записать все слоты
+        private ItemStack[] rendered;
+
+        private ViewGroup(String guildName) {
+            this.guildName = guildName;
+        }
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param plugin      Экземпляр плагина
+     * @param storageMenu Меню хранилища, которое собирает содержимое слотов
+     */
+    public GuildStorageViewers(SNSocialMediaSpigot plugin, GuildStorageMenu storageMenu) {
+        this.plugin = plugin;
+        this.storageMenu = storageMenu;
+        this.enabled = plugin.getConfig().getBoolean("gui.auto-update", true);
+        this.updateInterval = Math.max(1L, plugin.getConfig().getLong("gui.update-interval", 20L));
+    }
+
+    /**
+     * Запускает периодическое обновление открытых меню
+     */
+    public void start() {
+        if (!enabled || task != null) {
+            return;
+        }
+
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::flush, updateInterval, updateInterval);
+        plugin.getLogger().info("Обновление открытых меню хранилища запущено с интервалом " + updateInterval
+                + " тиков");
+    }
+
+    /**
+     * Останавливает обновление и забывает все открытые меню
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        groups.clear();
+        viewedGuilds.clear();
+        dirty.clear();
+    }
+
+    /**
+     * Регистрирует открытое меню хранилища. Вызывается на основном потоке
+     * после открытия инвентаря.
+     *
+     * @param player    Игрок
+     * @param guild     Гильдия
+     * @param inventory Открытый инвентарь
+     */
+    public void register(Player player, Guild guild, Inventory inventory) {
+        if (!enabled) {
+            return;
+        }
+
+        ViewGroup group = groups.computeIfAbsent(guild.getId(), id -> new ViewGroup(guild.getName()));
+        group.inventories.put(player.getUniqueId(), inventory);
+        // Новый инвентарь мог быть собран из другого состояния, чем остальные,
+        // поэтому следующее обновление записывает все слоты
+        group.rendered = null;
+        viewedGuilds.add(guild.getId());
+    }
+
+    /**
+     * Убирает меню из реестра при его закрытии. Вызывается на основном
+     * потоке.
+     *
+     * @param player    Игрок
+     * @param inventory Закрытый инвентарь
+     */
+    public void unregister(Player player, Inventory inventory) {
+        if (!enabled) {
+            return;
+        }
+
+        Iterator<Map.Entry<UUID, ViewGroup>> iterator = groups.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, ViewGroup> entry = iterator.next();
+            ViewGroup group = entry.getValue();
+            if (group.inventories.get(player.getUniqueId()) != inventory) {
+                continue;
+            }
+
+            group.inventories.remove(player.getUniqueId());
+            if (group.inventories.isEmpty()) {
+                iterator.remove();
+                viewedGuilds.remove(entry.getKey());
+                dirty.remove(entry.getKey());
+            }
+            return;
+        }
+    }
+
+    /**
+     * Отмечает хранилище измененным; открытые меню гильдии обновятся при
+     * следующем обновлении. Можно вызывать из любого потока.
+     *
+     * @param storage Хранилище гильдии
+     */
+    public void markDirty(GuildStorage storage) {
+        if (!enabled || storage == null || !viewedGuilds.contains(storage.getGuildId())) {
+            return;
+        }
+
+        dirty.put(storage.getGuildId(), storage);
+    }
+
+    /**
+     * Получает гильдии, у которых сейчас открыто меню хранилища
+     *
+     * @return Неизменяемый набор ID гильдий
+     */
+    public Set<UUID> getViewedGuilds() {
+        return Collections.unmodifiableSet(viewedGuilds);
+    }
+
+    /**
+     * Записывает изменившиеся слоты во все открытые меню измененных гильдий
+     */
+    private void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        Iterator<Map.Entry<UUID, GuildStorage>> iterator = dirty.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, GuildStorage> entry = iterator.next();
+            iterator.remove();
+
+            ViewGroup group = groups.get(entry.getKey());
+            if (group == null) {
+                continue;
+            }
+
+            try {
+                patch(group, storageMenu.renderLiveSlots(group.guildName, entry.getValue()));
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Ошибка при обновлении открытых меню хранилища гильдии "
+                        + group.guildName, e);
+            }
+        }
+    }
+
+    private void patch(ViewGroup group, ItemStack[] current) {
+        ItemStack[] previous = group.rendered;
+        int[] slots = GuildStorageMenu.LIVE_SLOTS;
+
+        for (int i = 0; i < slots.length; i++) {
+            if (previous != null && Objects.equals(previous[i], current[i])) {
+                continue;
+            }
+
+            for (Inventory inventory : group.inventories.values()) {
+                inventory.setItem(slots[i], current[i]);
+            }
+        }
+
+        group.rendered = current;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.snsocialmedia.spigot.gui;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+
+/**
+ * Действие, выполняемое при клике по слоту меню
+ */
+@FunctionalInterface
+public interface MenuAction {
+
+    /**
+     * Выполняет действие. Вызывается на основном потоке из обработчика клика.
+     *
+     * @param player Игрок, кликнувший по слоту
+     * @param click  Тип клика
+     */
+    void onClick(Player player, ClickType click);
+}
@@ -0,0 +1,136 @@
+package ru.snsocialmedia.spigot.gui;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Владелец инвентаря меню плагина.
+ * <p>
+ * Хранит сессию меню (гильдию и обработчик закрытия) и заранее собранный
+ * массив действий по слотам, поэтому слушатель определяет меню одной
+ * проверкой {@code instanceof} и находит действие по индексу слота, не
+ * сравнивая заголовки.
+ */
+public class MenuHolder implements InventoryHolder {
+
+    private final Inventory inventory;
+    private final MenuAction[] actions;
+    private final UUID guildId;
+
+    private Consumer<Player> closeHandler;
+    // Можно ли перемещать предметы в инвентаре игрока, пока открыто меню
+    private boolean playerInventoryClicks;
+
+    /**
+     * Конструктор
+     *
+     * @param size    Размер инвентаря
+     * @param title   Заголовок
+     * @param guildId ID гильдии, к которой относится меню, или null
+     */
+    public MenuHolder(int size, String title, UUID guildId) {
+        this.inventory = Bukkit.createInventory(this, size, title);
+        this.actions = new MenuAction[size];
+        this.guildId = guildId;
+    }
+
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Получает ID гильдии, к которой относится меню
+     *
+     * @return ID гильдии или null
+     */
+    public UUID getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * Устанавливает предмет и действие для слота
+     *
+     * @param slot   Слот
+     * @param item   Предмет
+     * @param action Действие или null
+     */
+    public void setButton(int slot, ItemStack item, MenuAction action) {
+        inventory.setItem(slot, item);
+        actions[slot] = action;
+    }
+
+    /**
+     * Устанавливает действие для слота, не меняя предмет
+     *
+     * @param slot   Слот
+     * @param action Действие или null
+     */
+    public void setAction(int slot, MenuAction action) {
+        actions[slot] = action;
+    }
+
+    /**
+     * Получает действие для слота
+     *
+     * @param slot Слот верхнего инвентаря
+     * @return Действие или null, если слот не обрабатывается
+     */
+    public MenuAction getAction(int slot) {
+        return slot >= 0 && slot < actions.length ? actions[slot] : null;
+    }
+
+    /**
+     * Устанавливает обработчик закрытия меню
+     *
+     * @param closeHandler Обработчик или null
+     */
+    public void setCloseHandler(Consumer<Player> closeHandler) {
+        this.closeHandler = closeHandler;
+    }
+
+    /**
+     * Вызывается при закрытии меню
+     *
+     * @param player Игрок
+     */
+    public void handleClose(Player player) {
+        if (closeHandler != null) {
+            closeHandler.accept(player);
+        }
+    }
+
+    /**
+     * Разрешает или запрещает клики в инвентаре игрока, пока открыто меню
+     *
+     * @param allowed true, чтобы разрешить
+     */
+    public void setPlayerInventoryClicks(boolean allowed) {
+        this.playerInventoryClicks = allowed;
+    }
+
+    /**
+     * Проверяет, разрешены ли клики в инвентаре игрока
+     *
+     * @return true, если разрешены
+     */
+    public boolean isPlayerInventoryClicks() {
+        return playerInventoryClicks;
+    }
+
+    /**
+     * Проверяет, открыто ли у игрока именно это меню
+     *
+     * @param player Игрок
+     * @return true, если открыто
+     */
+    public boolean isOpenFor(Player player) {
+        return player.getOpenInventory().getTopInventory().getHolder() == this;
+    }
+}
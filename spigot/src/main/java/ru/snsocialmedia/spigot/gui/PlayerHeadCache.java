@@ -0,0 +1,150 @@
+package ru.snsocialmedia.spigot.gui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.profile.PlayerProfile;
+
+import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+
+/**
+ * Кэш профилей игроков с текстурами для голов в меню.
+ * <p>
+ * Профили онлайн-игроков берутся у сервера сразу. Профили остальных
+ * запрашиваются через {@link PlayerProfile#update()}, который работает вне
+ * основного потока; пока запрос не завершен, меню показывает голову без
+ * текстуры и подменяет ее по готовности. Кэш ограничен по размеру и
+ * вытесняет давно не использованные профили. Неудачный запрос запоминается на
+ * {@link #FAILURE_TTL_MILLIS}, чтобы меню не повторяли его при каждом открытии.
+ */
+public class PlayerHeadCache {
+
+    /**
+     * Сколько не повторять запрос профиля после неудачи
+     */
+    public static final long FAILURE_TTL_MILLIS = 5 * 60 * 1000L;
+
+    private final SNSocialMediaSpigot plugin;
+    private final Map<UUID, PlayerProfile> profiles;
+    // UUID -> время, до которого запрос профиля не повторяется
+    private final Map<UUID, Long> failures;
+    // UUID -> обработчики, ожидающие завершения запроса профиля
+    private final Map<UUID, List<Consumer<PlayerProfile>>> pending = new HashMap<>();
+
+    /**
+     * Конструктор
+     *
+     * @param plugin   Экземпляр плагина
+     * @param capacity Максимальное количество профилей в кэше
+     */
+    public PlayerHeadCache(SNSocialMediaSpigot plugin, int capacity) {
+        this.plugin = plugin;
+        int limit = Math.max(16, capacity);
+        this.profiles = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, PlayerProfile> eldest) {
+                return size() > limit;
+            }
+        };
+        this.failures = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    /**
+     * Получает профиль с текстурами без обращения к сети
+     *
+     * @param playerId UUID игрока
+     * @return Профиль или null, если он еще не загружен
+     */
+    public PlayerProfile getCached(UUID playerId) {
+        Player online = Bukkit.getPlayer(playerId);
+        if (online != null) {
+            PlayerProfile profile = online.getPlayerProfile();
+            synchronized (profiles) {
+                profiles.put(playerId, profile);
+            }
+            return profile;
+        }
+
+        synchronized (profiles) {
+            return profiles.get(playerId);
+        }
+    }
+
+    /**
+     * Загружает профиль с текстурами. Если профиль уже в кэше или недавно не
+     * удалось его загрузить, обработчик не вызывается.
+     *
+     * @param playerId   UUID игрока
+     * @param playerName Имя игрока
+     * @param onResolved Обработчик загруженного профиля; вызывается на
+     *                   основном потоке
+     */
+    public void resolve(UUID playerId, String playerName, Consumer<PlayerProfile> onResolved) {
+        if (getCached(playerId) != null) {
+            return;
+        }
+
+        synchronized (failures) {
+            Long retryAt = failures.get(playerId);
+            if (retryAt != null) {
+                if (retryAt > System.currentTimeMillis()) {
+                    return;
+                }
+                failures.remove(playerId);
+            }
+        }
+
+        synchronized (pending) {
+            List<Consumer<PlayerProfile>> waiting = pending.get(playerId);
+            if (waiting != null) {
+                // Запрос уже выполняется
+                waiting.add(onResolved);
+                return;
+            }
+
+            waiting = new ArrayList<>();
+            waiting.add(onResolved);
+            pending.put(playerId, waiting);
+        }
+
+        Bukkit.createPlayerProfile(playerId, playerName).update().whenComplete((profile, error) -> {
+            List<Consumer<PlayerProfile>> waiting;
+            synchronized (pending) {
+                waiting = pending.remove(playerId);
+            }
+
+            if (error != null || profile == null) {
+                plugin.getLogger().log(Level.FINE, "Не удалось загрузить профиль игрока " + playerName, error);
+                synchronized (failures) {
+                    failures.put(playerId, System.currentTimeMillis() + FAILURE_TTL_MILLIS);
+                }
+                return;
+            }
+
+            synchronized (profiles) {
+                profiles.put(playerId, profile);
+            }
+
+            if (waiting != null && plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    for (Consumer<PlayerProfile> handler : waiting) {
+                        handler.accept(profile);
+                    }
+                });
+            }
+        });
+    }
+}
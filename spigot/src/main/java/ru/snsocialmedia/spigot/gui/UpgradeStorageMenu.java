@@ -10,13 +10,13 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildMember;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
 import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+import ru.snsocialmedia.spigot.utils.GuiAssets;
 import ru.snsocialmedia.spigot.utils.MessageUtil;
 
 /**
@@ -143,7 +143,9 @@ public class UpgradeStorageMenu {
      * @return Инвентарь
      */
     private Inventory createInventory(Guild guild, GuildStorage storage) {
-        Inventory inventory = Bukkit.createInventory(null, MENU_SIZE, MENU_TITLE);
+        UUID guildId = guild.getId();
+        MenuHolder menu = new MenuHolder(MENU_SIZE, MENU_TITLE, guildId);
+        Inventory inventory = menu.getInventory();
 
         // Информация о хранилище
         ItemStack infoItem = createGuiItem(Material.PAPER, "§f§lИнформация о хранилище",
@@ -159,7 +161,10 @@ public class UpgradeStorageMenu {
         ItemStack cancelItem = createGuiItem(Material.BARRIER, "§c§lНазад",
                 "§7Нажмите, чтобы вернуться",
                 "§7в меню хранилища гильдии");
-        inventory.setItem(CANCEL_SLOT, cancelItem);
+        menu.setButton(CANCEL_SLOT, cancelItem, (p, click) -> {
+            p.closeInventory();
+            plugin.getGuildStorageMenu().openMenu(p, guildId);
+        });
 
         // Добавляем все доступные улучшения
         for (UpgradeType upgradeType : UpgradeType.values()) {
@@ -173,7 +178,8 @@ public class UpgradeStorageMenu {
                 ItemStack item = createGuiItem(Material.BARRIER, "§c§l" + upgradeType.getName() + " §8(скоро)",
                         "§7Эта функция пока недоступна",
                         "§7и появится в следующих обновлениях");
-                inventory.setItem(upgradeType.getSlot(), item);
+                menu.setButton(upgradeType.getSlot(), item, (p, click) -> MessageUtil.sendInfoMessage(p,
+                        "Эта функция будет доступна в будущих обновлениях!"));
                 continue;
             }
 
@@ -217,53 +223,12 @@ public class UpgradeStorageMenu {
 
             Material material = canAfford ? upgradeType.getMaterial() : Material.RED_STAINED_GLASS_PANE;
             ItemStack item = createGuiItem(material, itemName, lore.toArray(new String[0]));
-            inventory.setItem(upgradeType.getSlot(), item);
+            menu.setButton(upgradeType.getSlot(), item, (p, click) -> purchaseUpgrade(p, guildId, upgradeType));
         }
 
         return inventory;
     }
 
-    /**
-     * Обрабатывает клик по элементу меню
-     *
-     * @param player  Игрок
-     * @param slot    Слот
-     * @param guildId ID гильдии
-     */
-    public void handleClick(Player player, int slot, UUID guildId) {
-        try {
-            // Проверяем, что инвентарь открыт
-            if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
-                return;
-            }
-
-            // Обрабатываем клик по кнопке отмены
-            if (slot == CANCEL_SLOT) {
-                player.closeInventory();
-                plugin.getGuildStorageMenu().openMenu(player, guildId);
-                return;
-            }
-
-            // Проверяем, был ли клик по улучшению
-            UpgradeType upgradeType = getUpgradeTypeBySlot(slot);
-            if (upgradeType == null) {
-                return;
-            }
-
-            // Если это не улучшение слотов и функция недоступна, ничего не делаем
-            if (upgradeType.getSlots() == 0 && !isFeatureEnabled(upgradeType)) {
-                MessageUtil.sendInfoMessage(player, "Эта функция будет доступна в будущих обновлениях!");
-                return;
-            }
-
-            // Покупаем улучшение
-            purchaseUpgrade(player, guildId, upgradeType);
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Ошибка при обработке клика в меню улучшения хранилища", e);
-            MessageUtil.sendErrorMessage(player, "Произошла ошибка при обработке клика!");
-        }
-    }
-
     /**
      * Покупает улучшение для хранилища гильдии
      *
@@ -296,8 +261,10 @@ public class UpgradeStorageMenu {
                     return;
                 }
 
-                // Снимаем деньги из хранилища
-                if (!storage.withdrawMoney(upgradeType.getCost())) {
+                // Снимаем деньги из хранилища в базе данных; снятие выполняется,
+                // только если денег достаточно с учетом изменений с других серверов
+                long costMinor = GuildStorage.toMinorUnits(upgradeType.getCost());
+                if (plugin.getGuildStorageManager().withdrawMoney(guildId, costMinor, player.getUniqueId()) == null) {
                     MessageUtil.sendErrorMessage(player, "Не удалось снять деньги из хранилища гильдии!");
                     player.closeInventory();
                     return;
@@ -307,14 +274,15 @@ public class UpgradeStorageMenu {
                 boolean success = false;
                 if (upgradeType.getSlots() > 0) {
                     // Увеличиваем количество слотов
-                    success = plugin.getGuildStorageManager().upgradeStorage(guild, upgradeType.getSlots());
+                    success = plugin.getGuildStorageManager().upgradeStorage(guild, upgradeType.getSlots(),
+                            player.getUniqueId());
                 } else {
                     // Применяем другие улучшения
                     success = applyFeatureUpgrade(guild, storage, upgradeType);
                 }
 
                 if (success) {
-                    plugin.getGuildStorageManager().saveStorage(storage);
+                    plugin.getGuildStorageViewers().markDirty(storage);
                     MessageUtil.sendSuccessMessage(player, "Вы успешно приобрели улучшение "
                             + upgradeType.getName() + " для хранилища гильдии!");
 
@@ -327,9 +295,11 @@ public class UpgradeStorageMenu {
                     // Оповещаем членов гильдии
                     notifyGuildMembers(guild, player, upgradeType);
                 } else {
-                    // Возвращаем деньги, если улучшение не удалось
-                    storage.depositMoney(upgradeType.getCost());
-                    plugin.getGuildStorageManager().saveStorage(storage);
+                    // Возвращаем деньги, если улучшение не удалось, и сбрасываем
+                    // несохраненный размер хранилища
+                    plugin.getGuildStorageManager().depositMoney(guildId, costMinor, player.getUniqueId());
+                    plugin.getGuildStorageManager().clearCache(guildId);
+                    plugin.getGuildStorageViewers().markDirty(plugin.getGuildStorageManager().loadStorage(guildId));
                     MessageUtil.sendErrorMessage(player, "Не удалось применить улучшение!");
                     player.closeInventory();
                 }
@@ -384,21 +354,6 @@ public class UpgradeStorageMenu {
         return role == GuildRole.LEADER;
     }
 
-    /**
-     * Получает тип улучшения по номеру слота
-     *
-     * @param slot Номер слота
-     * @return Тип улучшения или null, если не найден
-     */
-    private UpgradeType getUpgradeTypeBySlot(int slot) {
-        for (UpgradeType upgradeType : UpgradeType.values()) {
-            if (upgradeType.getSlot() == slot) {
-                return upgradeType;
-            }
-        }
-        return null;
-    }
-
     /**
      * Проверяет, доступна ли функция
      *
@@ -419,17 +374,6 @@ public class UpgradeStorageMenu {
      * @return Созданный предмет
      */
     private ItemStack createGuiItem(Material material, String name, String... lore) {
-        ItemStack item = new ItemStack(material, 1);
-        ItemMeta meta = item.getItemMeta();
-        meta.setDisplayName(name);
-
-        List<String> loreList = new ArrayList<>();
-        for (String line : lore) {
-            loreList.add(line);
-        }
-        meta.setLore(loreList);
-
-        item.setItemMeta(meta);
-        return item;
+        return GuiAssets.button(material, name, lore);
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.bukkit.Bukkit;
@@ -13,13 +14,17 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
 
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildMember;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
 import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+import ru.snsocialmedia.spigot.utils.GuiAssets;
+import ru.snsocialmedia.spigot.utils.ItemStackCodec;
 import ru.snsocialmedia.spigot.utils.MessageUtil;
+import ru.snsocialmedia.spigot.utils.PersistentDataKeys;
 
 /**
  * Меню для снятия предметов из хранилища гильдии
@@ -37,9 +42,6 @@ public class WithdrawItemMenu {
     private static final int ITEM_START_SLOT = 9;
     private static final int ITEM_END_SLOT = 44;
 
-    // Карта выбранных предметов для снятия: слот -> количество
-    private final Map<Player, Map<Integer, Integer>> selectedItems = new HashMap<>();
-
     /**
      * Конструктор
      *
@@ -87,10 +89,6 @@ public class WithdrawItemMenu {
 
                 // Создаем и открываем инвентарь
                 Bukkit.getScheduler().runTask(plugin, () -> {
-                    // Инициализируем карту выбранных предметов
-                    selectedItems.put(player, new HashMap<>());
-
-                    // Создаем и открываем инвентарь
                     Inventory inventory = createInventory(guild, storage);
                     player.openInventory(inventory);
                 });
@@ -109,7 +107,10 @@ public class WithdrawItemMenu {
      * @return Инвентарь
      */
     private Inventory createInventory(Guild guild, GuildStorage storage) {
-        Inventory inventory = Bukkit.createInventory(null, MENU_SIZE, MENU_TITLE);
+        MenuHolder menu = new MenuHolder(MENU_SIZE, MENU_TITLE, guild.getId());
+        Inventory inventory = menu.getInventory();
+        // Выбранные для снятия предметы этого меню: слот -> количество
+        Map<Integer, Integer> selection = new ConcurrentHashMap<>();
 
         // Информация о хранилище
         ItemStack infoItem = createGuiItem(Material.PAPER, "§f§lИнформация",
@@ -123,13 +124,13 @@ public class WithdrawItemMenu {
         ItemStack cancelItem = createGuiItem(Material.BARRIER, "§c§lОтмена",
                 "§7Нажмите, чтобы закрыть меню",
                 "§7без снятия предметов");
-        inventory.setItem(CANCEL_SLOT, cancelItem);
+        menu.setButton(CANCEL_SLOT, cancelItem, (p, click) -> p.closeInventory());
 
         // Кнопка подтверждения
         ItemStack confirmItem = createGuiItem(Material.LIME_STAINED_GLASS_PANE, "§a§lПодтвердить",
                 "§7Нажмите, чтобы снять выбранные",
                 "§7предметы из хранилища гильдии");
-        inventory.setItem(CONFIRM_SLOT, confirmItem);
+        menu.setButton(CONFIRM_SLOT, confirmItem, (p, click) -> withdrawItems(p, menu, selection));
 
         // Отображаем предметы из хранилища
         int slot = ITEM_START_SLOT;
@@ -140,86 +141,44 @@ public class WithdrawItemMenu {
             String itemType = entry.getKey();
             int amount = entry.getValue();
 
-            try {
-                Material material = Material.valueOf(itemType);
-                ItemStack item = new ItemStack(material, 1);
-                ItemMeta meta = item.getItemMeta();
-
-                meta.setDisplayName("§f" + formatMaterialName(material.name()));
-
-                List<String> lore = new ArrayList<>();
-                lore.add("§7Количество: §f" + amount);
-                lore.add("§7Левый клик - выбрать 1 шт.");
-                lore.add("§7Правый клик - выбрать 8 шт.");
-                lore.add("§7Шифт + клик - выбрать 64 шт.");
-                meta.setLore(lore);
-
-                item.setItemMeta(meta);
-                inventory.setItem(slot, item);
-                slot++;
-            } catch (IllegalArgumentException e) {
+            ItemStack item = GuiAssets.storageItem(itemType, storage.getItemData(itemType), "§f");
+            if (item == null) {
                 plugin.getLogger().warning("Неизвестный материал в хранилище: " + itemType);
+                continue;
             }
+
+            ItemMeta meta = item.getItemMeta();
+            List<String> lore = new ArrayList<>();
+            lore.add("§7Количество: §f" + amount);
+            lore.add("§7Левый клик - выбрать 1 шт.");
+            lore.add("§7Правый клик - выбрать 8 шт.");
+            lore.add("§7Шифт + клик - выбрать 64 шт.");
+            meta.setLore(lore);
+
+            item.setItemMeta(meta);
+            int itemSlot = slot;
+            menu.setButton(slot, item, (p, click) -> toggleItemSelection(p, menu, selection, itemSlot,
+                    click.isRightClick(), click.isShiftClick()));
+            slot++;
         }
 
         return inventory;
     }
 
-    /**
-     * Обрабатывает клик по элементу меню
-     *
-     * @param player       Игрок
-     * @param slot         Слот
-     * @param guildId      ID гильдии
-     * @param isRightClick Правый ли клик
-     * @param isShiftClick Зажат ли шифт
-     */
-    public void handleClick(Player player, int slot, UUID guildId, boolean isRightClick, boolean isShiftClick) {
-        try {
-            // Проверяем, что инвентарь открыт
-            if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
-                return;
-            }
-
-            // Обрабатываем клик по кнопке отмены
-            if (slot == CANCEL_SLOT) {
-                player.closeInventory();
-                selectedItems.remove(player);
-                return;
-            }
-
-            // Обрабатываем клик по кнопке подтверждения
-            if (slot == CONFIRM_SLOT) {
-                withdrawItems(player, guildId);
-                return;
-            }
-
-            // Обрабатываем клик по предмету
-            if (slot >= ITEM_START_SLOT && slot <= ITEM_END_SLOT) {
-                toggleItemSelection(player, slot, isRightClick, isShiftClick);
-            }
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Ошибка при обработке клика в меню снятия предметов", e);
-            MessageUtil.sendErrorMessage(player, "Произошла ошибка при обработке клика!");
-        }
-    }
-
     /**
      * Переключает выбор предмета в слоте
      *
      * @param player       Игрок
+     * @param menu         Открытое меню снятия предметов
+     * @param selection    Выбранные предметы меню
      * @param slot         Слот
      * @param isRightClick Правый ли клик
      * @param isShiftClick Зажат ли шифт
      */
-    private void toggleItemSelection(Player player, int slot, boolean isRightClick, boolean isShiftClick) {
+    private void toggleItemSelection(Player player, MenuHolder menu, Map<Integer, Integer> selection, int slot,
+            boolean isRightClick, boolean isShiftClick) {
         try {
-            // Проверяем инвентарь
-            if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
-                return;
-            }
-
-            Inventory inventory = player.getOpenInventory().getTopInventory();
+            Inventory inventory = menu.getInventory();
             ItemStack item = inventory.getItem(slot);
 
             // Проверяем, что в слоте есть предмет
@@ -228,13 +187,12 @@ public class WithdrawItemMenu {
             }
 
             // Получаем тип предмета
-            Material material = item.getType();
-            String itemType = material.name();
+            String itemType = storageKeyOf(item);
 
             // Получаем хранилище и проверяем наличие предмета
             plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
                 try {
-                    Guild guild = plugin.getGuildManager().getGuild(player.getUniqueId());
+                    Guild guild = plugin.getGuildManager().getGuild(menu.getGuildId());
                     if (guild == null) {
                         MessageUtil.sendErrorMessage(player, "Гильдия не найдена!");
                         return;
@@ -266,21 +224,17 @@ public class WithdrawItemMenu {
                     }
 
                     // Проверяем, выбран ли уже этот предмет
-                    Map<Integer, Integer> playerSelectedItems = selectedItems.getOrDefault(player, new HashMap<>());
-                    int currentSelectedAmount = playerSelectedItems.getOrDefault(slot, 0);
+                    int currentSelectedAmount = selection.getOrDefault(slot, 0);
 
                     // Если предмет уже выбран, снимаем выбор
                     if (currentSelectedAmount > 0) {
-                        playerSelectedItems.remove(slot);
+                        selection.remove(slot);
                     } else {
                         // Иначе выбираем предмет, учитывая доступное количество
                         amountToToggle = Math.min(amountToToggle, availableAmount);
-                        playerSelectedItems.put(slot, amountToToggle);
+                        selection.put(slot, amountToToggle);
                     }
 
-                    // Обновляем карту выбранных предметов
-                    selectedItems.put(player, playerSelectedItems);
-
                     // Обновляем отображение в инвентаре
                     int finalAmountToToggle = amountToToggle;
                     Bukkit.getScheduler().runTask(plugin, () -> {
@@ -320,21 +274,23 @@ public class WithdrawItemMenu {
     /**
      * Снимает предметы из хранилища гильдии
      *
-     * @param player  Игрок
-     * @param guildId ID гильдии
+     * @param player    Игрок
+     * @param menu      Открытое меню снятия предметов
+     * @param selection Выбранные предметы меню
      */
-    private void withdrawItems(Player player, UUID guildId) {
+    private void withdrawItems(Player player, MenuHolder menu, Map<Integer, Integer> selection) {
+        UUID guildId = menu.getGuildId();
         plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
             try {
-                // Проверяем инвентарь
-                if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
+                // Проверяем, что меню еще открыто
+                if (!menu.isOpenFor(player)) {
                     return;
                 }
 
-                Inventory inventory = player.getOpenInventory().getTopInventory();
+                Inventory inventory = menu.getInventory();
 
                 // Получаем выбранные предметы
-                Map<Integer, Integer> playerSelectedItems = selectedItems.getOrDefault(player, new HashMap<>());
+                Map<Integer, Integer> playerSelectedItems = new HashMap<>(selection);
                 if (playerSelectedItems.isEmpty()) {
                     MessageUtil.sendWarningMessage(player, "Вы не выбрали ни одного предмета для снятия!");
                     return;
@@ -366,14 +322,14 @@ public class WithdrawItemMenu {
                         continue;
                     }
 
-                    String itemType = item.getType().name();
+                    String itemType = storageKeyOf(item);
 
                     // Проверяем, достаточно ли предметов в хранилище
                     int availableAmount = storage.getItemAmount(itemType);
                     if (availableAmount < amount) {
                         MessageUtil.sendErrorMessage(player, "Недостаточно предметов в хранилище: " +
-                                formatMaterialName(itemType) + " (доступно: " + availableAmount + ", требуется: "
-                                + amount + ")");
+                                formatMaterialName(item.getType().name()) + " (доступно: " + availableAmount
+                                + ", требуется: " + amount + ")");
                         return;
                     }
 
@@ -400,34 +356,38 @@ public class WithdrawItemMenu {
                     return;
                 }
 
-                // Снимаем предметы из хранилища и добавляем их в инвентарь игрока
-                boolean success = true;
-                for (Map.Entry<String, Integer> entry : itemsToWithdraw.entrySet()) {
-                    String itemType = entry.getKey();
-                    int amount = entry.getValue();
-
-                    // Снимаем предмет из хранилища
-                    if (!storage.removeItem(itemType, amount)) {
-                        success = false;
-                        break;
-                    }
-
-                    // Добавляем предмет в инвентарь игрока
-                    Material material = Material.valueOf(itemType);
-                    ItemStack itemToAdd = new ItemStack(material, amount);
-
-                    // Добавление предмета в инвентарь игрока должно выполняться в основном потоке
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        player.getInventory().addItem(itemToAdd);
-                    });
-                }
-
-                // Сохраняем изменения в хранилище
+                // Снимаем предметы из хранилища под его блокировкой; шаблон
+                // берется до снятия, так как вместе с последним предметом
+                // удаляется и он. Предметы выдаются только после сохранения:
+                // если хранилище изменено с другого сервера и предметов уже
+                // нет, сохранение отклоняется и ничего не выдается
+                Map<String, Integer> removedItems = new HashMap<>();
+                Map<String, byte[]> removedData = new HashMap<>();
+                boolean success = plugin.getGuildStorageManager().modifyStorage(guildId, player.getUniqueId(),
+                        current -> {
+                            for (Map.Entry<String, Integer> entry : itemsToWithdraw.entrySet()) {
+                                byte[] data = current.getItemData(entry.getKey());
+                                if (!current.removeItem(entry.getKey(), entry.getValue())) {
+                                    return false;
+                                }
+                                removedItems.put(entry.getKey(), entry.getValue());
+                                if (data != null) {
+                                    removedData.put(entry.getKey(), data);
+                                }
+                            }
+                            return true;
+                        });
+                plugin.getGuildStorageViewers().markDirty(plugin.getGuildStorageManager().loadStorage(guildId));
                 if (success) {
-                    plugin.getGuildStorageManager().saveStorage(storage);
-
                     Bukkit.getScheduler().runTask(plugin, () -> {
-                        selectedItems.remove(player);
+                        for (Map.Entry<String, Integer> entry : removedItems.entrySet()) {
+                            ItemStack itemToAdd = ItemStackCodec.toItemStack(entry.getKey(),
+                                    removedData.get(entry.getKey()), entry.getValue());
+                            if (itemToAdd != null) {
+                                player.getInventory().addItem(itemToAdd);
+                            }
+                        }
+                        selection.clear();
                         MessageUtil.sendSuccessMessage(player, "Предметы успешно сняты из хранилища гильдии!");
                         player.closeInventory();
                     });
@@ -441,15 +401,6 @@ public class WithdrawItemMenu {
         });
     }
 
-    /**
-     * Обрабатывает закрытие инвентаря
-     *
-     * @param player Игрок
-     */
-    public void handleClose(Player player) {
-        selectedItems.remove(player);
-    }
-
     /**
      * Проверяет, может ли игрок с указанной ролью снимать предметы
      *
@@ -460,6 +411,20 @@ public class WithdrawItemMenu {
         return role == GuildRole.LEADER || role == GuildRole.OFFICER;
     }
 
+    /**
+     * Получает ключ предмета в хранилище по предмету из меню
+     *
+     * @param item Предмет из меню
+     * @return Ключ предмета в хранилище
+     */
+    private String storageKeyOf(ItemStack item) {
+        ItemMeta meta = item.getItemMeta();
+        String key = meta != null
+                ? meta.getPersistentDataContainer().get(PersistentDataKeys.STORAGE_ITEM, PersistentDataType.STRING)
+                : null;
+        return key != null ? key : item.getType().name();
+    }
+
     /**
      * Форматирует название материала
      *
@@ -467,18 +432,7 @@ public class WithdrawItemMenu {
      * @return Отформатированное название
      */
     private String formatMaterialName(String materialName) {
-        String[] words = materialName.toLowerCase().split("_");
-        StringBuilder result = new StringBuilder();
-
-        for (String word : words) {
-            if (word.length() > 0) {
-                result.append(Character.toUpperCase(word.charAt(0)))
-                        .append(word.substring(1))
-                        .append(" ");
-            }
-        }
-
-        return result.toString().trim();
+        return GuiAssets.displayName(materialName);
     }
 
     /**
@@ -490,17 +444,6 @@ public class WithdrawItemMenu {
      * @return Созданный предмет
      */
     private ItemStack createGuiItem(Material material, String name, String... lore) {
-        ItemStack item = new ItemStack(material, 1);
-        ItemMeta meta = item.getItemMeta();
-        meta.setDisplayName(name);
-
-        List<String> loreList = new ArrayList<>();
-        for (String line : lore) {
-            loreList.add(line);
-        }
-        meta.setLore(loreList);
-
-        item.setItemMeta(meta);
-        return item;
+        return GuiAssets.button(material, name, lore);
     }
 }
\ No newline at end of file
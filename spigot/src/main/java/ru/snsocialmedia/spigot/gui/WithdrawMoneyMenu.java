@@ -10,13 +10,13 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
 
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildMember;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.common.models.guild.GuildStorage;
 import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
+import ru.snsocialmedia.spigot.utils.GuiAssets;
 import ru.snsocialmedia.spigot.utils.MessageUtil;
 
 /**
@@ -103,7 +103,8 @@ public class WithdrawMoneyMenu {
      * @return Инвентарь
      */
     private Inventory createInventory(Guild guild, GuildStorage storage) {
-        Inventory inventory = Bukkit.createInventory(null, MENU_SIZE, MENU_TITLE);
+        MenuHolder menu = new MenuHolder(MENU_SIZE, MENU_TITLE, guild.getId());
+        Inventory inventory = menu.getInventory();
 
         // Информация о хранилище
         double money = storage.getMoney();
@@ -117,14 +118,14 @@ public class WithdrawMoneyMenu {
         ItemStack cancelItem = createGuiItem(Material.BARRIER, "§c§lОтмена",
                 "§7Нажмите, чтобы закрыть меню",
                 "§7без снятия денег");
-        inventory.setItem(CANCEL_SLOT, cancelItem);
+        menu.setButton(CANCEL_SLOT, cancelItem, (p, click) -> p.closeInventory());
 
         // Кнопки с суммами
-        addAmountButton(inventory, AMOUNT_100_SLOT, Material.GOLD_NUGGET, 100, money);
-        addAmountButton(inventory, AMOUNT_500_SLOT, Material.GOLD_INGOT, 500, money);
-        addAmountButton(inventory, AMOUNT_1000_SLOT, Material.GOLD_BLOCK, 1000, money);
-        addAmountButton(inventory, AMOUNT_5000_SLOT, Material.EMERALD, 5000, money);
-        addAmountButton(inventory, AMOUNT_10000_SLOT, Material.EMERALD_BLOCK, 10000, money);
+        addAmountButton(menu, AMOUNT_100_SLOT, Material.GOLD_NUGGET, 100, money);
+        addAmountButton(menu, AMOUNT_500_SLOT, Material.GOLD_INGOT, 500, money);
+        addAmountButton(menu, AMOUNT_1000_SLOT, Material.GOLD_BLOCK, 1000, money);
+        addAmountButton(menu, AMOUNT_5000_SLOT, Material.EMERALD, 5000, money);
+        addAmountButton(menu, AMOUNT_10000_SLOT, Material.EMERALD_BLOCK, 10000, money);
 
         // Кнопка для своей суммы
         boolean canCustom = money > 0;
@@ -141,7 +142,7 @@ public class WithdrawMoneyMenu {
         }
 
         ItemStack customItem = createGuiItem(customMaterial, customName, customLore.toArray(new String[0]));
-        inventory.setItem(AMOUNT_CUSTOM_SLOT, customItem);
+        menu.setButton(AMOUNT_CUSTOM_SLOT, customItem, (p, click) -> withdrawCustomAmount(p, menu.getGuildId()));
 
         return inventory;
     }
@@ -149,13 +150,13 @@ public class WithdrawMoneyMenu {
     /**
      * Добавляет кнопку с суммой в инвентарь
      *
-     * @param inventory Инвентарь
+     * @param menu      Меню
      * @param slot      Слот
      * @param material  Материал
      * @param amount    Сумма
      * @param available Доступная сумма в хранилище
      */
-    private void addAmountButton(Inventory inventory, int slot, Material material, int amount, double available) {
+    private void addAmountButton(MenuHolder menu, int slot, Material material, int amount, double available) {
         boolean canWithdraw = available >= amount;
         Material buttonMaterial = canWithdraw ? material : Material.BARRIER;
         String buttonName = canWithdraw ? "§e§l" + amount + " монет" : "§c§lНедоступно";
@@ -173,65 +174,7 @@ public class WithdrawMoneyMenu {
         }
 
         ItemStack item = createGuiItem(buttonMaterial, buttonName, lore.toArray(new String[0]));
-        inventory.setItem(slot, item);
-    }
-
-    /**
-     * Обрабатывает клик по элементу меню
-     *
-     * @param player  Игрок
-     * @param slot    Слот
-     * @param guildId ID гильдии
-     */
-    public void handleClick(Player player, int slot, UUID guildId) {
-        try {
-            // Проверяем, что инвентарь открыт
-            if (player.getOpenInventory() == null || !MENU_TITLE.equals(player.getOpenInventory().getTitle())) {
-                return;
-            }
-
-            // Обрабатываем клик по кнопке отмены
-            if (slot == CANCEL_SLOT) {
-                player.closeInventory();
-                return;
-            }
-
-            // Обрабатываем клик по кнопкам с суммами
-            int amount = 0;
-            boolean customAmount = false;
-
-            switch (slot) {
-                case AMOUNT_100_SLOT:
-                    amount = 100;
-                    break;
-                case AMOUNT_500_SLOT:
-                    amount = 500;
-                    break;
-                case AMOUNT_1000_SLOT:
-                    amount = 1000;
-                    break;
-                case AMOUNT_5000_SLOT:
-                    amount = 5000;
-                    break;
-                case AMOUNT_10000_SLOT:
-                    amount = 10000;
-                    break;
-                case AMOUNT_CUSTOM_SLOT:
-                    customAmount = true;
-                    break;
-                default:
-                    return; // Клик по другому слоту
-            }
-
-            if (customAmount) {
-                withdrawCustomAmount(player, guildId);
-            } else if (amount > 0) {
-                withdrawMoney(player, guildId, amount);
-            }
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Ошибка при обработке клика в меню снятия денег", e);
-            MessageUtil.sendErrorMessage(player, "Произошла ошибка при обработке клика!");
-        }
+        menu.setButton(slot, item, (p, click) -> withdrawMoney(p, menu.getGuildId(), amount));
     }
 
     /**
@@ -277,16 +220,28 @@ public class WithdrawMoneyMenu {
                     return;
                 }
 
-                // Снимаем деньги из хранилища
-                storage.withdrawMoney(amount);
-                plugin.getGuildStorageManager().saveStorage(storage);
+                // Снимаем деньги из хранилища в базе данных; снятие выполняется,
+                // только если денег достаточно с учетом изменений с других серверов
+                long amountMinor = GuildStorage.toMinorUnits(amount);
+                Long guildBalance = plugin.getGuildStorageManager().withdrawMoney(guildId, amountMinor,
+                        player.getUniqueId());
+                plugin.getGuildStorageViewers().markDirty(storage);
+                if (guildBalance == null) {
+                    MessageUtil.sendErrorMessage(player, "В хранилище гильдии недостаточно денег!");
+                    player.closeInventory();
+                    return;
+                }
 
                 // Добавляем деньги игроку
                 boolean success = depositPlayerMoney(player, amount);
                 if (!success) {
                     // Возвращаем деньги в хранилище в случае ошибки
-                    storage.depositMoney(amount);
-                    plugin.getGuildStorageManager().saveStorage(storage);
+                    if (plugin.getGuildStorageManager().depositMoney(guildId, amountMinor,
+                            player.getUniqueId()) == null) {
+                        plugin.getLogger().severe("Не удалось вернуть " + amount + " монет в хранилище гильдии "
+                                + guild.getName() + " после ошибки зачисления игроку " + player.getName());
+                    }
+                    plugin.getGuildStorageViewers().markDirty(storage);
 
                     MessageUtil.sendErrorMessage(player, "Не удалось зачислить деньги на ваш баланс!");
                     player.closeInventory();
@@ -358,17 +313,6 @@ public class WithdrawMoneyMenu {
      * @return Созданный предмет
      */
     private ItemStack createGuiItem(Material material, String name, String... lore) {
-        ItemStack item = new ItemStack(material, 1);
-        ItemMeta meta = item.getItemMeta();
-        meta.setDisplayName(name);
-
-        List<String> loreList = new ArrayList<>();
-        for (String line : lore) {
-            loreList.add(line);
-        }
-        meta.setLore(loreList);
-
-        item.setItemMeta(meta);
-        return item;
+        return GuiAssets.button(material, name, lore);
     }
 }
\ No newline at end of file
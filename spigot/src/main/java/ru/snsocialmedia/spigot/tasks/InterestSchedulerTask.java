@@ -1,34 +1,43 @@
 package ru.snsocialmedia.spigot.tasks;
 
 import org.bukkit.scheduler.BukkitRunnable;
+import ru.snsocialmedia.common.managers.GuildInterestEngine;
 import ru.snsocialmedia.common.managers.GuildStorageManager;
 import ru.snsocialmedia.spigot.SNSocialMediaSpigot;
-import ru.snsocialmedia.common.managers.GuildManager;
-import ru.snsocialmedia.common.models.guild.Guild;
-import ru.snsocialmedia.common.models.guild.GuildStorage;
+import ru.snsocialmedia.spigot.gui.GuildStorageViewers;
 
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Задача для автоматического начисления процентов на баланс гильдий
+ * Задача для автоматического начисления процентов на баланс гильдий.
+ * <p>
+ * Используется в режиме {@link GuildInterestEngine.Mode#EAGER}: проценты
+ * начисляются всем гильдиям одним вызовом менеджера хранилищ. Задача
+ * запускается чаще периода начисления, а база данных пропускает хранилища,
+ * которым проценты за период уже начислены, поэтому перезапуск сервера не
+ * сдвигает начисление на целый период. В режиме
+ * {@link GuildInterestEngine.Mode#LAZY} задача не запускается.
  */
 public class InterestSchedulerTask extends BukkitRunnable {
-    private static final long TICKS_PER_DAY = 1728000L; // 24 часа * 60 минут * 60 секунд * 20 тиков
+    private static final long MILLIS_PER_TICK = 50L;
+    // Как часто проверяется, не пора ли начислить проценты
+    private static final long CHECK_INTERVAL_MILLIS = 5 * 60 * 1000L;
 
     private final SNSocialMediaSpigot plugin;
-    private final double interestRate;
+    private final GuildInterestEngine interestEngine;
     private final Logger logger;
 
     /**
      * Конструктор задачи
      *
-     * @param plugin       экземпляр плагина
-     * @param interestRate процентная ставка (например, 0.01 для 1%)
+     * @param plugin         экземпляр плагина
+     * @param interestEngine правила начисления процентов
      */
-    public InterestSchedulerTask(SNSocialMediaSpigot plugin, double interestRate) {
+    public InterestSchedulerTask(SNSocialMediaSpigot plugin, GuildInterestEngine interestEngine) {
         this.plugin = plugin;
-        this.interestRate = interestRate;
+        this.interestEngine = interestEngine;
         this.logger = plugin.getLogger();
     }
 
@@ -41,55 +50,20 @@ public class InterestSchedulerTask extends BukkitRunnable {
                 return;
             }
 
-            logger.info("Начинаем начисление процентов на баланс гильдий со ставкой " + (interestRate * 100) + "%");
-
-            // Получаем список всех гильдий с деньгами в хранилище
-            int updatedGuilds = 0;
-            GuildManager guildManager = plugin.getGuildManager();
-            if (guildManager == null) {
-                logger.warning("GuildManager не инициализирован, пропускаем начисление процентов");
-                return;
+            double interestRate = interestEngine.getRate();
+            int updatedGuilds = storageManager.applyInterest(interestRate, interestEngine.getPeriodMillis());
+            if (updatedGuilds > 0) {
+                logger.info("Начислены проценты для " + updatedGuilds + " гильдий со ставкой "
+                        + (interestRate * 100) + "%");
             }
 
-            // Проходим по всем гильдиям и обновляем их баланс
-            for (Guild guild : guildManager.getAllGuilds()) {
-                if (guild == null)
-                    continue;
-
-                // Получаем хранилище гильдии
-                GuildStorage storage = storageManager.getStorage(guild);
-                if (storage == null)
-                    continue;
-
-                // Проверяем наличие денег в хранилище
-                double money = storage.getMoney();
-                if (money <= 0)
-                    continue;
-
-                // Рассчитываем проценты и обновляем баланс
-                double interest = money * interestRate;
-                double newMoney = money + interest;
-
-                try {
-                    // Пытаемся использовать метод напрямую
-                    java.lang.reflect.Field moneyField = GuildStorage.class.getDeclaredField("money");
-                    moneyField.setAccessible(true);
-                    moneyField.set(storage, newMoney);
-
-                    // Сохраняем изменения
-                    if (storageManager.saveStorage(storage)) {
-                        updatedGuilds++;
-                        if (logger.isLoggable(Level.FINE)) {
-                            logger.fine("Начислены проценты для гильдии " + guild.getName() +
-                                    ": " + money + " -> " + newMoney + " (+" + interest + ")");
-                        }
-                    }
-                } catch (Exception e) {
-                    logger.log(Level.WARNING, "Не удалось обновить баланс для гильдии " + guild.getName(), e);
+            // Баланс изменился и в открытых меню хранилища
+            GuildStorageViewers viewers = plugin.getGuildStorageViewers();
+            if (viewers != null && updatedGuilds > 0) {
+                for (UUID guildId : viewers.getViewedGuilds()) {
+                    viewers.markDirty(storageManager.loadStorage(guildId));
                 }
             }
-
-            logger.info("Начислены проценты для " + updatedGuilds + " гильдий");
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Ошибка при начислении процентов на баланс гильдий", e);
         }
@@ -99,9 +73,12 @@ public class InterestSchedulerTask extends BukkitRunnable {
      * Запускает задачу по расписанию
      */
     public void startTask() {
-        // Запускаем асинхронно раз в день
-        this.runTaskTimerAsynchronously(plugin, TICKS_PER_DAY, TICKS_PER_DAY);
+        long checkTicks = Math.max(1L,
+                Math.min(interestEngine.getPeriodMillis(), CHECK_INTERVAL_MILLIS) / MILLIS_PER_TICK);
+
+        // Запускаем асинхронно; первая проверка сразу после запуска сервера
+        this.runTaskTimerAsynchronously(plugin, 1L, checkTicks);
         logger.info("Задача начисления процентов на баланс гильдий запущена с периодом в "
-                + (TICKS_PER_DAY / 20 / 60 / 60) + " часов");
+                + (interestEngine.getPeriodMillis() / 1000 / 60 / 60) + " часов");
     }
 }
\ No newline at end of file
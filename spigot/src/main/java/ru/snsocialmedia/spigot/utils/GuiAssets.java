@@ -0,0 +1,171 @@
+package ru.snsocialmedia.spigot.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+
+/**
+ * Кэш готовых предметов для меню.
+ * <p>
+ * Кнопки и предметы хранилища собираются один раз и хранятся как неизменяемые
+ * шаблоны: наружу всегда отдается копия, поэтому меню могут менять выданный
+ * предмет, не затрагивая кэш. Имена материалов ищутся в заранее построенной
+ * таблице, а отображаемые названия материалов вычисляются один раз.
+ */
+public final class GuiAssets {
+
+    // Размер кэша кнопок; кнопки с изменяемым текстом вытесняют друг друга
+    private static final int BUTTON_CACHE_LIMIT = 1024;
+    // Размер кэша предметов хранилища
+    private static final int STORAGE_ITEM_CACHE_LIMIT = 4096;
+
+    private static final Map<String, ItemStack> buttons = new ConcurrentHashMap<>();
+    private static final Map<String, ItemStack> storageItems = new ConcurrentHashMap<>();
+    private static final Map<Material, String> displayNames = new ConcurrentHashMap<>();
+    private static final Map<String, Material> materials = buildMaterialTable();
+
+    private GuiAssets() {
+    }
+
+    private static Map<String, Material> buildMaterialTable() {
+        Map<String, Material> table = new HashMap<>();
+        for (Material material : Material.values()) {
+            if (!material.name().startsWith("LEGACY_")) {
+                table.put(material.name(), material);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Получает кнопку меню
+     *
+     * @param material Материал
+     * @param name     Название
+     * @param lore     Описание
+     * @return Копия закэшированной кнопки
+     */
+    public static ItemStack button(Material material, String name, String... lore) {
+        if (lore == null) {
+            lore = new String[0];
+        }
+        String key = material.name() + '\u0000' + name + '\u0000' + String.join("\n", lore);
+        ItemStack template = buttons.get(key);
+        if (template == null) {
+            template = new ItemStack(material, 1);
+            ItemMeta meta = template.getItemMeta();
+            if (meta != null) {
+                meta.setDisplayName(name);
+                if (lore.length > 0) {
+                    meta.setLore(Arrays.asList(lore));
+                }
+                template.setItemMeta(meta);
+            }
+
+            if (buttons.size() >= BUTTON_CACHE_LIMIT) {
+                buttons.clear();
+            }
+            buttons.put(key, template);
+        }
+        return template.clone();
+    }
+
+    /**
+     * Получает предмет хранилища гильдии для отображения в меню: с
+     * метаданными из шаблона, названием и ключом хранилища в
+     * {@link PersistentDataKeys#STORAGE_ITEM}
+     *
+     * @param key        Ключ предмета в хранилище
+     * @param data       Закодированный шаблон или null
+     * @param namePrefix Цвет названия для предметов без собственного названия
+     * @return Копия закэшированного предмета или null, если материал неизвестен
+     */
+    public static ItemStack storageItem(String key, byte[] data, String namePrefix) {
+        String cacheKey = namePrefix + key;
+        ItemStack template = storageItems.get(cacheKey);
+        if (template == null) {
+            template = ItemStackCodec.toItemStack(key, data, 1);
+            if (template == null) {
+                return null;
+            }
+
+            ItemMeta meta = template.getItemMeta();
+            if (meta != null) {
+                if (!meta.hasDisplayName()) {
+                    meta.setDisplayName(namePrefix + displayName(template.getType()));
+                }
+                meta.getPersistentDataContainer().set(PersistentDataKeys.STORAGE_ITEM, PersistentDataType.STRING,
+                        key);
+                template.setItemMeta(meta);
+            }
+
+            if (storageItems.size() >= STORAGE_ITEM_CACHE_LIMIT) {
+                storageItems.clear();
+            }
+            storageItems.put(cacheKey, template);
+        }
+        return template.clone();
+    }
+
+    /**
+     * Находит материал по имени без учета регистра
+     *
+     * @param name Имя материала
+     * @return Материал или null, если он неизвестен
+     */
+    public static Material material(String name) {
+        if (name == null) {
+            return null;
+        }
+        Material material = materials.get(name);
+        return material != null ? material : materials.get(name.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Получает отображаемое название материала ("DIAMOND_SWORD" ->
+     * "Diamond Sword")
+     *
+     * @param material Материал
+     * @return Название
+     */
+    public static String displayName(Material material) {
+        return displayNames.computeIfAbsent(material, GuiAssets::formatMaterialName);
+    }
+
+    /**
+     * Получает отображаемое название материала по имени
+     *
+     * @param materialName Имя материала
+     * @return Название
+     */
+    public static String displayName(String materialName) {
+        Material material = material(materialName);
+        return material != null ? displayName(material) : formatMaterialName(materialName);
+    }
+
+    private static String formatMaterialName(Material material) {
+        return formatMaterialName(material.name());
+    }
+
+    private static String formatMaterialName(String materialName) {
+        String[] words = materialName.toLowerCase(Locale.ROOT).split("_");
+        StringBuilder result = new StringBuilder();
+
+        for (String word : words) {
+            if (word.length() > 0) {
+                result.append(Character.toUpperCase(word.charAt(0)))
+                        .append(word.substring(1))
+                        .append(" ");
+            }
+        }
+
+        return result.toString().trim();
+    }
+}
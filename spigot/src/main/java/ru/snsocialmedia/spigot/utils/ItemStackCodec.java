@@ -0,0 +1,576 @@
+package ru.snsocialmedia.spigot.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+/**
+ * Компактная двоичная сериализация предметов.
+ * <p>
+ * Массив слотов кодируется одним блоком: словарь материалов (каждое имя
+ * записывается один раз, слоты ссылаются на номер), таблица метаданных
+ * (одинаковые метаданные записываются один раз, повторяющиеся слоты ссылаются
+ * на уже записанные) и записи непустых слотов с разницей номеров слотов.
+ * Числа пишутся в формате varint. Метаданные записываются через
+ * {@link ConfigurationSerializable} с тегами типов, поэтому сохраняются
+ * название, описание, зачарования и прочие данные предмета. Большие блоки
+ * дополнительно сжимаются, если это уменьшает их размер.
+ * <p>
+ * В хранилище гильдии предмет без метаданных хранится под именем материала,
+ * а предмет с метаданными - под ключом "МАТЕРИАЛ#хеш" вместе с блоком
+ * шаблона (один слот, количество 1). Расшифрованные шаблоны кэшируются, и
+ * построение инвентаря сводится к копированию готовых предметов.
+ */
+public final class ItemStackCodec {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte FLAG_DEFLATE = 1;
+
+    // Блоки меньше этого размера не сжимаются
+    private static final int COMPRESSION_THRESHOLD = 256;
+    // Размер кэша расшифрованных шаблонов
+    private static final int TEMPLATE_CACHE_LIMIT = 4096;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INT = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_DOUBLE = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_SHORT = 6;
+    private static final byte TAG_BYTE = 7;
+    private static final byte TAG_TRUE = 8;
+    private static final byte TAG_FALSE = 9;
+    private static final byte TAG_LIST = 10;
+    private static final byte TAG_MAP = 11;
+    private static final byte TAG_SERIALIZABLE = 12;
+
+    private static volatile boolean compressionEnabled = true;
+
+    // Ключ предмета -> расшифрованный шаблон
+    private static final Map<String, ItemStack> templates = new ConcurrentHashMap<>();
+
+    private ItemStackCodec() {
+    }
+
+    /**
+     * Включает или отключает сжатие больших блоков
+     *
+     * @param enabled true, чтобы сжимать блоки
+     */
+    public static void init(boolean enabled) {
+        compressionEnabled = enabled;
+    }
+
+    /**
+     * Кодирует массив слотов в двоичный блок
+     *
+     * @param slots Слоты; пустые слоты - null или AIR
+     * @return Двоичный блок
+     * @throws IOException Если метаданные содержат значения неизвестного типа
+     */
+    public static byte[] encode(ItemStack[] slots) throws IOException {
+        Map<Material, Integer> materialIds = new LinkedHashMap<>();
+        List<ItemMeta> metas = new ArrayList<>();
+        int[] materialOf = new int[slots.length];
+        int[] metaOf = new int[slots.length];
+        int used = 0;
+
+        for (int slot = 0; slot < slots.length; slot++) {
+            ItemStack item = slots[slot];
+            if (item == null || item.getType() == Material.AIR) {
+                materialOf[slot] = -1;
+                continue;
+            }
+            used++;
+            materialOf[slot] = materialIds.computeIfAbsent(item.getType(), material -> materialIds.size());
+
+            metaOf[slot] = 0;
+            if (item.hasItemMeta()) {
+                ItemMeta meta = item.getItemMeta();
+                int index = metas.indexOf(meta);
+                if (index < 0) {
+                    index = metas.size();
+                    metas.add(meta);
+                }
+                metaOf[slot] = index + 1;
+            }
+        }
+
+        Output body = new Output(64 + used * 4);
+        body.writeVarInt(materialIds.size());
+        for (Material material : materialIds.keySet()) {
+            body.writeString(material.name());
+        }
+        body.writeVarInt(metas.size());
+        for (ItemMeta meta : metas) {
+            writeValue(body, meta);
+        }
+        body.writeVarInt(slots.length);
+        body.writeVarInt(used);
+        int previous = -1;
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (materialOf[slot] < 0) {
+                continue;
+            }
+            body.writeVarInt(slot - previous - 1);
+            body.writeVarInt(materialOf[slot]);
+            body.writeVarInt(slots[slot].getAmount());
+            body.writeVarInt(metaOf[slot]);
+            previous = slot;
+        }
+
+        byte flags = 0;
+        byte[] payload = body.toByteArray();
+        if (compressionEnabled && payload.length >= COMPRESSION_THRESHOLD) {
+            byte[] compressed = deflate(payload);
+            if (compressed.length < payload.length) {
+                payload = compressed;
+                flags |= FLAG_DEFLATE;
+            }
+        }
+
+        byte[] result = new byte[payload.length + 2];
+        result[0] = FORMAT_VERSION;
+        result[1] = flags;
+        System.arraycopy(payload, 0, result, 2, payload.length);
+        return result;
+    }
+
+    /**
+     * Расшифровывает двоичный блок в массив слотов. Слоты с материалами,
+     * которых нет на этой версии сервера, остаются пустыми.
+     *
+     * @param data Двоичный блок
+     * @return Слоты
+     * @throws IOException Если блок поврежден
+     */
+    public static ItemStack[] decode(byte[] data) throws IOException {
+        if (data == null || data.length < 2 || data[0] != FORMAT_VERSION) {
+            throw new IOException("Неизвестный формат блока предметов");
+        }
+
+        byte[] payload = Arrays.copyOfRange(data, 2, data.length);
+        if ((data[1] & FLAG_DEFLATE) != 0) {
+            payload = inflate(payload);
+        }
+
+        Input in = new Input(payload);
+        Material[] materials = new Material[in.readVarInt()];
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = GuiAssets.material(in.readString());
+        }
+        ItemMeta[] metas = new ItemMeta[in.readVarInt()];
+        for (int i = 0; i < metas.length; i++) {
+            Object meta = readValue(in);
+            metas[i] = meta instanceof ItemMeta ? (ItemMeta) meta : null;
+        }
+
+        ItemStack[] slots = new ItemStack[in.readVarInt()];
+        int used = in.readVarInt();
+        int slot = -1;
+        for (int i = 0; i < used; i++) {
+            slot += in.readVarInt() + 1;
+            Material material = materials[in.readVarInt()];
+            int amount = in.readVarInt();
+            int metaIndex = in.readVarInt();
+            if (material == null || slot >= slots.length) {
+                continue;
+            }
+
+            ItemStack item = new ItemStack(material, amount);
+            if (metaIndex > 0 && metas[metaIndex - 1] != null) {
+                item.setItemMeta(metas[metaIndex - 1]);
+            }
+            slots[slot] = item;
+        }
+        return slots;
+    }
+
+    /**
+     * Определяет ключ предмета в хранилище гильдии
+     *
+     * @param item Предмет
+     * @return Имя материала или "МАТЕРИАЛ#хеш" для предметов с метаданными
+     */
+    public static String keyOf(ItemStack item) {
+        return keyOf(item.getType(), templateOf(item));
+    }
+
+    /**
+     * Определяет ключ предмета в хранилище гильдии по уже закодированному
+     * шаблону
+     *
+     * @param material Материал предмета
+     * @param data     Блок шаблона из {@link #templateOf(ItemStack)} или null
+     * @return Имя материала или "МАТЕРИАЛ#хеш" для предметов с метаданными
+     */
+    public static String keyOf(Material material, byte[] data) {
+        if (data == null) {
+            return material.name();
+        }
+
+        // 64-битный FNV-1a от блока шаблона
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return material.name() + '#' + Long.toHexString(hash);
+    }
+
+    /**
+     * Определяет материал по ключу предмета в хранилище гильдии
+     *
+     * @param key Ключ предмета
+     * @return Материал или null, если он неизвестен
+     */
+    public static Material materialOf(String key) {
+        int separator = key.indexOf('#');
+        return GuiAssets.material(separator < 0 ? key : key.substring(0, separator));
+    }
+
+    /**
+     * Кодирует шаблон предмета (количество 1) для хранилища гильдии
+     *
+     * @param item Предмет
+     * @return Блок шаблона или null, если у предмета нет метаданных либо их
+     *         нельзя закодировать
+     */
+    public static byte[] templateOf(ItemStack item) {
+        if (item == null || !item.hasItemMeta()) {
+            return null;
+        }
+
+        ItemStack template = item.clone();
+        template.setAmount(1);
+        try {
+            return encode(new ItemStack[] { template });
+        } catch (IOException | RuntimeException e) {
+            // Предмет хранится как обычный материал
+            return null;
+        }
+    }
+
+    /**
+     * Создает предмет из ключа хранилища и блока шаблона
+     *
+     * @param key    Ключ предмета в хранилище
+     * @param data   Блок шаблона или null
+     * @param amount Количество
+     * @return Предмет или null, если материал неизвестен
+     */
+    public static ItemStack toItemStack(String key, byte[] data, int amount) {
+        ItemStack template = template(key, data);
+        if (template == null) {
+            return null;
+        }
+
+        ItemStack item = template.clone();
+        item.setAmount(amount);
+        return item;
+    }
+
+    private static ItemStack template(String key, byte[] data) {
+        ItemStack cached = templates.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        ItemStack template = null;
+        if (data != null) {
+            try {
+                ItemStack[] slots = decode(data);
+                template = slots.length > 0 ? slots[0] : null;
+            } catch (IOException | RuntimeException e) {
+                template = null;
+            }
+        }
+        if (template == null) {
+            Material material = materialOf(key);
+            if (material == null) {
+                return null;
+            }
+            template = new ItemStack(material, 1);
+        }
+
+        if (templates.size() >= TEMPLATE_CACHE_LIMIT) {
+            templates.clear();
+        }
+        templates.put(key, template);
+        return template;
+    }
+
+    private static void writeValue(Output out, Object value) throws IOException {
+        if (value == null) {
+            out.write(TAG_NULL);
+        } else if (value instanceof String) {
+            out.write(TAG_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.write(TAG_INT);
+            out.writeVarLong(zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            out.write(TAG_LONG);
+            out.writeVarLong(zigZag((Long) value));
+        } else if (value instanceof Short) {
+            out.write(TAG_SHORT);
+            out.writeVarLong(zigZag((Short) value));
+        } else if (value instanceof Byte) {
+            out.write(TAG_BYTE);
+            out.write((Byte) value);
+        } else if (value instanceof Double) {
+            out.write(TAG_DOUBLE);
+            out.writeLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.write(TAG_FLOAT);
+            out.writeVarInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(TAG_LIST);
+            out.writeVarInt(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            out.write(TAG_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            out.write(TAG_SERIALIZABLE);
+            out.writeString(ConfigurationSerialization.getAlias(serializable.getClass()));
+            writeMap(out, serializable.serialize());
+        } else {
+            throw new IOException("Неподдерживаемый тип значения: " + value.getClass().getName());
+        }
+    }
+
+    private static void writeMap(Output out, Map<?, ?> map) throws IOException {
+        out.writeVarInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            out.writeString(String.valueOf(entry.getKey()));
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Object readValue(Input in) throws IOException {
+        byte tag = in.read();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return in.readString();
+            case TAG_INT:
+                return (int) unZigZag(in.readVarLong());
+            case TAG_LONG:
+                return unZigZag(in.readVarLong());
+            case TAG_SHORT:
+                return (short) unZigZag(in.readVarLong());
+            case TAG_BYTE:
+                return in.read();
+            case TAG_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TAG_FLOAT:
+                return Float.intBitsToFloat(in.readVarInt());
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_LIST: {
+                int size = in.readVarInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case TAG_MAP:
+                return readMap(in, null);
+            case TAG_SERIALIZABLE: {
+                String alias = in.readString();
+                return ConfigurationSerialization.deserializeObject(readMap(in, alias));
+            }
+            default:
+                throw new IOException("Неизвестный тег значения: " + tag);
+        }
+    }
+
+    private static Map<String, Object> readMap(Input in, String alias) throws IOException {
+        int size = in.readVarInt();
+        Map<String, Object> map = new LinkedHashMap<>(size * 2 + 2);
+        if (alias != null) {
+            map.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, alias);
+        }
+        for (int i = 0; i < size; i++) {
+            String key = in.readString();
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Блок предметов обрезан");
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Блок предметов поврежден", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Буфер записи с varint и строками UTF-8
+     */
+    private static final class Output {
+        private byte[] buffer;
+        private int size;
+
+        Output(int capacity) {
+            buffer = new byte[Math.max(capacity, 16)];
+        }
+
+        void write(int value) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size << 1);
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xffffffffL);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            if (size + bytes.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(size + bytes.length, size << 1));
+            }
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    /**
+     * Буфер чтения, парный {@link Output}
+     */
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte read() throws IOException {
+            if (position >= buffer.length) {
+                throw new IOException("Неожиданный конец блока предметов");
+            }
+            return buffer[position++];
+        }
+
+        int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = read();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Слишком длинное число в блоке предметов");
+        }
+
+        long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (read() & 0xff);
+            }
+            return value;
+        }
+
+        String readString() throws IOException {
+            int length = readVarInt();
+            if (length < 0 || position + length > buffer.length) {
+                throw new IOException("Неожиданный конец блока предметов");
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
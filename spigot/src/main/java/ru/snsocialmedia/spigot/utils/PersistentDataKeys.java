@@ -11,6 +11,9 @@ public class PersistentDataKeys {
     // Ключ для текущей гильдии игрока
     public static NamespacedKey CURRENT_GUILD;
 
+    // Ключ предмета хранилища гильдии на предметах в меню
+    public static NamespacedKey STORAGE_ITEM;
+
     /**
      * Инициализирует ключи с помощью плагина
      * 
@@ -18,5 +21,6 @@ public class PersistentDataKeys {
      */
     public static void init(Plugin plugin) {
         CURRENT_GUILD = new NamespacedKey(plugin, "current_guild");
+        STORAGE_ITEM = new NamespacedKey(plugin, "storage_item");
     }
 }
\ No newline at end of file
@@ -8,19 +8,29 @@ import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
 import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import lombok.Getter;
 import org.slf4j.Logger;
 import ru.snsocialmedia.common.database.DatabaseManager;
 import ru.snsocialmedia.common.managers.FriendManager;
 import ru.snsocialmedia.common.managers.GuildManager;
+import ru.snsocialmedia.common.managers.GuildChatHistory;
 import ru.snsocialmedia.common.managers.GuildChatManager;
+import ru.snsocialmedia.common.managers.GuildStorageManager;
 import ru.snsocialmedia.common.managers.PartyManager;
 import ru.snsocialmedia.common.messaging.MessageManager;
+import ru.snsocialmedia.velocity.chat.GuildChatFanout;
+import ru.snsocialmedia.velocity.chat.MemberBroadcaster;
+import ru.snsocialmedia.velocity.commands.CommandPipeline;
 import ru.snsocialmedia.velocity.commands.friend.FriendCommand;
 import ru.snsocialmedia.velocity.commands.guild.GuildCommand;
 import ru.snsocialmedia.velocity.commands.party.PartyCommand;
 import ru.snsocialmedia.velocity.config.ConfigManager;
+import ru.snsocialmedia.velocity.presence.FriendPresenceAggregator;
+import ru.snsocialmedia.velocity.presence.OnlinePlayerIndex;
+import ru.snsocialmedia.velocity.ratelimit.RateLimiter;
+import ru.snsocialmedia.velocity.transfer.PartyTransferOrchestrator;
 import com.velocitypowered.api.event.EventManager;
 import ru.snsocialmedia.velocity.listeners.PlayerJoinListener;
 import ru.snsocialmedia.velocity.listeners.ProxyMessageListener;
@@ -31,6 +41,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 @Plugin(id = "snsocialmedia", name = "SNSocialMedia", version = "1.0-SNAPSHOT", description = "Система Гильдий, Друзей и Пати для Minecraft", authors = {
         "SNSocialMedia Team" })
@@ -56,6 +67,27 @@ public class SNSocialMediaVelocity {
 
     private GuildChatManager guildChatManager;
 
+    @Getter
+    private GuildChatFanout guildChatFanout;
+
+    @Getter
+    private RateLimiter rateLimiter;
+
+    @Getter
+    private CommandPipeline commandPipeline;
+
+    @Getter
+    private FriendPresenceAggregator friendPresenceAggregator;
+
+    @Getter
+    private PartyTransferOrchestrator partyTransferOrchestrator;
+
+    @Getter
+    private OnlinePlayerIndex onlinePlayerIndex;
+
+    @Getter
+    private MemberBroadcaster memberBroadcaster;
+
     @Inject
     public SNSocialMediaVelocity(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
         instance = this;
@@ -89,6 +121,26 @@ public class SNSocialMediaVelocity {
             return;
         }
 
+        // Инициализируем ограничитель частоты действий игроков
+        rateLimiter = new RateLimiter(configManager);
+
+        // Инициализируем конвейер выполнения команд
+        commandPipeline = new CommandPipeline(configManager, logger);
+
+        // Инициализируем параллельное перемещение участников пати
+        partyTransferOrchestrator = new PartyTransferOrchestrator(this, configManager);
+
+        // Инициализируем индекс имен онлайн-игроков для автодополнения
+        onlinePlayerIndex = new OnlinePlayerIndex(server);
+
+        // Инициализируем рассылку уведомлений участникам гильдий и пати
+        memberBroadcaster = new MemberBroadcaster(this);
+
+        // Инициализируем агрегатор уведомлений о входе и выходе друзей
+        friendPresenceAggregator = new FriendPresenceAggregator(this,
+                configManager.getInt("friend.presence.window-ms", 2000),
+                configManager.getInt("friend.presence.max-names", 10));
+
         // Инициализируем базу данных
         initDatabase();
 
@@ -103,6 +155,11 @@ public class SNSocialMediaVelocity {
         // Инициализируем менеджер чата гильдии
         initGuildChatManager();
 
+        friendPresenceAggregator.start();
+
+        // Периодически удаляем брошенные пати
+        scheduleAbandonedPartyCleanup();
+
         logger.info("SNSocialMedia успешно инициализирован!");
     }
 
@@ -110,6 +167,33 @@ public class SNSocialMediaVelocity {
     public void onProxyShutdown(ProxyShutdownEvent event) {
         logger.info("Отключение SNSocialMedia...");
 
+        if (rateLimiter != null) {
+            logger.info("Статистика ограничения частоты (разрешено/отклонено): " + rateLimiter.describeMetrics());
+        }
+
+        logger.info("Конфликты версий хранилищ гильдий: "
+                + GuildStorageManager.getInstance().describeConcurrencyMetrics());
+
+        if (friendPresenceAggregator != null) {
+            friendPresenceAggregator.stop();
+        }
+
+        // Дожидаемся команд, которые еще работают с базой данных
+        if (commandPipeline != null) {
+            commandPipeline.shutdown();
+            logger.info("Статистика выполнения команд: " + commandPipeline.describeMetrics());
+        }
+
+        // Записываем несохраненные изменения пати
+        if (PartyManager.getInstance() != null) {
+            PartyManager.getInstance().shutdown();
+        }
+
+        // Дописываем историю чата гильдий
+        if (guildChatManager != null) {
+            guildChatManager.shutdown();
+        }
+
         // Закрываем соединение с базой данных
         if (DatabaseManager.getInstance() != null) {
             DatabaseManager.getInstance().close();
@@ -182,7 +266,11 @@ public class SNSocialMediaVelocity {
 
             // Инициализируем менеджеры данных
             GuildManager.initialize(dbLogger);
+            // Ник игрока сохраняется в журнале хранилища вместе с операцией
+            GuildStorageManager.getInstance().getLedger().setActorNameResolver(
+                    actorId -> server.getPlayer(actorId).map(Player::getUsername).orElse(null));
             FriendManager.initialize(dbLogger);
+            FriendManager.getInstance().setMaxFriends(configManager.getInt("friend.max-friends", 100));
             PartyManager.initialize(dbLogger);
             MessageManager.initialize(dbLogger);
 
@@ -240,9 +328,34 @@ public class SNSocialMediaVelocity {
         // Создаем адаптер для преобразования SLF4J Logger в java.util.logging.Logger
         java.util.logging.Logger javaLogger = java.util.logging.Logger.getLogger("GuildChatManager");
         guildChatManager = new GuildChatManager(DatabaseManager.getInstance(), guildManager, javaLogger);
+        guildChatFanout = new GuildChatFanout(this);
+
+        if (configManager.getBoolean("guild.chat-history.enabled", true)) {
+            GuildChatHistory chatHistory = new GuildChatHistory(
+                    dataDirectory.resolve("chat-history"),
+                    configManager.getInt("guild.chat-history.buffer-size", 50),
+                    configManager.getInt("guild.chat-history.segment-minutes", 60) * 60_000L,
+                    configManager.getInt("guild.chat-history.retention-hours", 72) * 3_600_000L,
+                    configManager.getInt("guild.chat-history.flush-interval-ms", 500),
+                    javaLogger);
+            guildChatManager.setChatHistory(chatHistory);
+        }
         logger.info("Менеджер чата гильдии инициализирован");
     }
 
+    /**
+     * Запускает периодическое удаление пати без онлайн-участников
+     */
+    private void scheduleAbandonedPartyCleanup() {
+        long timeoutMillis = configManager.getInt("party.abandoned-timeout-minutes", 30) * 60_000L;
+        server.getScheduler().buildTask(this, () -> {
+            PartyManager partyManager = PartyManager.getInstance();
+            if (partyManager != null) {
+                partyManager.collectAbandonedParties(id -> server.getPlayer(id).isPresent(), timeoutMillis);
+            }
+        }).delay(1, TimeUnit.MINUTES).repeat(1, TimeUnit.MINUTES).schedule();
+    }
+
     /**
      * Получает менеджер чата гильдии
      * 
@@ -0,0 +1,232 @@
+package ru.snsocialmedia.velocity.chat;
+
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import ru.snsocialmedia.common.managers.GuildManager;
+import ru.snsocialmedia.common.models.guild.Guild;
+import ru.snsocialmedia.common.models.guild.GuildChatEntry;
+import ru.snsocialmedia.common.models.guild.GuildRole;
+import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рассылка сообщений чата гильдии онлайн-участникам.
+ * <p>
+ * Для каждой гильдии хранится набор участников, находящихся на прокси, поэтому
+ * стоимость рассылки зависит от числа онлайн-участников, а не от размера
+ * гильдии. Сообщение собирается один раз, префиксы ролей и тегов кешируются.
+ */
+public class GuildChatFanout {
+
+    private static final Component SEPARATOR = Component.text(": ").color(NamedTextColor.WHITE);
+    private static final Component HISTORY_HEADER = Component.text("--- Последние сообщения гильдии ---")
+            .color(NamedTextColor.DARK_GRAY);
+
+    private final SNSocialMediaVelocity plugin;
+
+    // ID гильдии -> (UUID игрока -> игрок) для онлайн-участников
+    private final Map<UUID, Map<UUID, Player>> onlineMembers = new ConcurrentHashMap<>();
+
+    // UUID игрока -> ID гильдии, в наборе которой он учтен
+    private final Map<UUID, UUID> trackedPlayers = new ConcurrentHashMap<>();
+
+    // Тег гильдии -> готовый компонент "[TAG] "
+    private final Map<String, Component> tagPrefixes = new ConcurrentHashMap<>();
+
+    private final Map<GuildRole, Component> rolePrefixes = new EnumMap<>(GuildRole.class);
+
+    public GuildChatFanout(SNSocialMediaVelocity plugin) {
+        this.plugin = plugin;
+
+        Component memberPrefix = Component.text("[Участник] ").color(NamedTextColor.GRAY);
+        rolePrefixes.put(GuildRole.LEADER, Component.text("[Лидер] ").color(NamedTextColor.GOLD));
+        rolePrefixes.put(GuildRole.OFFICER, Component.text("[Офицер] ").color(NamedTextColor.YELLOW));
+        rolePrefixes.put(GuildRole.MEMBER, memberPrefix);
+        rolePrefixes.put(GuildRole.ROOKIE, memberPrefix);
+    }
+
+    /**
+     * Учитывает игрока, вошедшего на прокси
+     *
+     * @param player Игрок
+     */
+    public void trackPlayer(Player player) {
+        Guild guild = GuildManager.getInstance().getPlayerGuild(player.getUniqueId());
+        if (guild != null) {
+            addOnlineMember(guild.getId(), player);
+        }
+    }
+
+    /**
+     * Убирает игрока, покинувшего прокси, из набора онлайн-участников
+     *
+     * @param playerId UUID игрока
+     */
+    public void untrackPlayer(UUID playerId) {
+        UUID guildId = trackedPlayers.remove(playerId);
+        if (guildId != null) {
+            Map<UUID, Player> members = onlineMembers.get(guildId);
+            if (members != null) {
+                members.remove(playerId);
+            }
+        }
+    }
+
+    /**
+     * Вызывается после вступления игрока в гильдию
+     *
+     * @param guildId  ID гильдии
+     * @param playerId UUID игрока
+     */
+    public void onMemberJoined(UUID guildId, UUID playerId) {
+        plugin.getServer().getPlayer(playerId).ifPresent(player -> addOnlineMember(guildId, player));
+    }
+
+    /**
+     * Вызывается после выхода или исключения игрока из гильдии
+     *
+     * @param guildId  ID гильдии
+     * @param playerId UUID игрока
+     */
+    public void onMemberLeft(UUID guildId, UUID playerId) {
+        trackedPlayers.remove(playerId, guildId);
+        Map<UUID, Player> members = onlineMembers.get(guildId);
+        if (members != null) {
+            members.remove(playerId);
+        }
+    }
+
+    /**
+     * Сбрасывает данные удаленной гильдии
+     *
+     * @param guildId ID гильдии
+     */
+    public void invalidateGuild(UUID guildId) {
+        Map<UUID, Player> members = onlineMembers.remove(guildId);
+        if (members != null) {
+            for (UUID playerId : members.keySet()) {
+                trackedPlayers.remove(playerId, guildId);
+            }
+        }
+    }
+
+    /**
+     * Возвращает онлайн-участников гильдии
+     *
+     * @param guild Гильдия
+     * @return Неизменяемое представление онлайн-участников
+     */
+    public Collection<Player> getOnlineMembers(Guild guild) {
+        return Collections.unmodifiableCollection(resolveOnlineMembers(guild).values());
+    }
+
+    /**
+     * Отправляет сообщение чата гильдии всем онлайн-участникам
+     *
+     * @param guild      Гильдия
+     * @param senderId   UUID отправителя
+     * @param senderName Имя отправителя
+     * @param message    Текст сообщения
+     * @return Количество получателей
+     */
+    public int broadcast(Guild guild, UUID senderId, String senderName, String message) {
+        Component rendered = render(guild, senderId, senderName, message);
+
+        int delivered = 0;
+        for (Player member : resolveOnlineMembers(guild).values()) {
+            if (member.isActive()) {
+                member.sendMessage(rendered);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Показывает игроку сохраненные сообщения чата гильдии
+     *
+     * @param player  Игрок
+     * @param guild   Гильдия
+     * @param entries Сообщения в хронологическом порядке
+     */
+    public void replay(Player player, Guild guild, List<GuildChatEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        player.sendMessage(HISTORY_HEADER);
+        for (GuildChatEntry entry : entries) {
+            player.sendMessage(render(guild, entry.getSenderId(), entry.getSenderName(), entry.getMessage()));
+        }
+    }
+
+    /**
+     * Очищает все наборы и кеши
+     */
+    public void clear() {
+        onlineMembers.clear();
+        trackedPlayers.clear();
+        tagPrefixes.clear();
+    }
+
+    private Component render(Guild guild, UUID senderId, String senderName, String message) {
+        GuildRole role = senderId.equals(guild.getLeader()) ? GuildRole.LEADER : guild.getMembers().get(senderId);
+        Component rolePrefix = rolePrefixes.getOrDefault(role, rolePrefixes.get(GuildRole.MEMBER));
+
+        return Component.empty()
+                .append(tagPrefixes.computeIfAbsent(guild.getTag(), GuildChatFanout::buildTagPrefix))
+                .append(rolePrefix)
+                .append(Component.text(senderName).color(NamedTextColor.YELLOW))
+                .append(SEPARATOR)
+                .append(Component.text(message).color(NamedTextColor.WHITE));
+    }
+
+    private static Component buildTagPrefix(String tag) {
+        return Component.text("[").color(NamedTextColor.DARK_GRAY)
+                .append(Component.text(tag).color(NamedTextColor.GOLD))
+                .append(Component.text("] ").color(NamedTextColor.DARK_GRAY));
+    }
+
+    private void addOnlineMember(UUID guildId, Player player) {
+        UUID previous = trackedPlayers.put(player.getUniqueId(), guildId);
+        if (previous != null && !previous.equals(guildId)) {
+            Map<UUID, Player> old = onlineMembers.get(previous);
+            if (old != null) {
+                old.remove(player.getUniqueId());
+            }
+        }
+
+        // Если набор гильдии еще не построен, игрок попадет в него при первой рассылке
+        Map<UUID, Player> members = onlineMembers.get(guildId);
+        if (members != null) {
+            members.put(player.getUniqueId(), player);
+        }
+    }
+
+    private Map<UUID, Player> resolveOnlineMembers(Guild guild) {
+        Map<UUID, Player> members = onlineMembers.get(guild.getId());
+        if (members != null) {
+            return members;
+        }
+
+        // Набор еще не построен (например, после перезагрузки) - собираем его один раз
+        return onlineMembers.computeIfAbsent(guild.getId(), id -> {
+            Map<UUID, Player> built = new ConcurrentHashMap<>();
+            for (UUID memberId : guild.getMembers().keySet()) {
+                plugin.getServer().getPlayer(memberId).ifPresent(player -> {
+                    built.put(memberId, player);
+                    trackedPlayers.put(memberId, id);
+                });
+            }
+            return built;
+        });
+    }
+}
@@ -0,0 +1,224 @@
+package ru.snsocialmedia.velocity.chat;
+
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import ru.snsocialmedia.common.managers.PartyManager;
+import ru.snsocialmedia.common.models.guild.Guild;
+import ru.snsocialmedia.common.models.party.Party;
+import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Рассылка уведомлений онлайн-участникам гильдий и пати.
+ * <p>
+ * Онлайн-участники гильдий берутся из наборов {@link GuildChatFanout}, для
+ * пати такие же наборы хранятся здесь и обновляются при входе, выходе,
+ * вступлении и исключении игроков. Поэтому стоимость рассылки зависит от
+ * числа онлайн-получателей, а не от размера гильдии или пати. Сообщение
+ * собирается вызывающим кодом один раз и отправляется всем получателям;
+ * игроков, которым уведомление уже отправлено отдельно (инициатора действия,
+ * его цель), можно исключить.
+ */
+public class MemberBroadcaster {
+
+    private final SNSocialMediaVelocity plugin;
+
+    // ID пати -> (UUID игрока -> игрок) для онлайн-участников
+    private final Map<UUID, Map<UUID, Player>> partyMembers = new ConcurrentHashMap<>();
+
+    // UUID игрока -> ID пати, в наборе которой он учтен
+    private final Map<UUID, UUID> trackedPlayers = new ConcurrentHashMap<>();
+
+    public MemberBroadcaster(SNSocialMediaVelocity plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Отправляет сообщение онлайн-участникам гильдии
+     *
+     * @param guild    Гильдия
+     * @param message  Сообщение
+     * @param excluded Игроки, которым сообщение не отправляется
+     * @return Количество получателей
+     */
+    public int toGuild(Guild guild, Component message, UUID... excluded) {
+        int delivered = 0;
+        for (Player member : plugin.getGuildChatFanout().getOnlineMembers(guild)) {
+            if (isRecipient(member, excluded) && guild.getMembers().containsKey(member.getUniqueId())) {
+                member.sendMessage(message);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Отправляет сообщение онлайн-участникам пати
+     *
+     * @param party    Пати
+     * @param message  Сообщение
+     * @param excluded Игроки, которым сообщение не отправляется
+     * @return Количество получателей
+     */
+    public int toParty(Party party, Component message, UUID... excluded) {
+        int delivered = 0;
+        for (Player member : resolvePartyMembers(party).values()) {
+            if (isRecipient(member, excluded) && party.getMembers().containsKey(member.getUniqueId())) {
+                member.sendMessage(message);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Получает аудиторию онлайн-участников гильдии для отправки нескольких
+     * сообщений подряд
+     *
+     * @param guild    Гильдия
+     * @param excluded Игроки, не входящие в аудиторию
+     * @return Аудитория
+     */
+    public Audience guild(Guild guild, UUID... excluded) {
+        List<Player> recipients = new ArrayList<>();
+        for (Player member : plugin.getGuildChatFanout().getOnlineMembers(guild)) {
+            if (isRecipient(member, excluded) && guild.getMembers().containsKey(member.getUniqueId())) {
+                recipients.add(member);
+            }
+        }
+        return Audience.audience(recipients);
+    }
+
+    /**
+     * Получает аудиторию онлайн-участников пати для отправки нескольких
+     * сообщений подряд
+     *
+     * @param party    Пати
+     * @param excluded Игроки, не входящие в аудиторию
+     * @return Аудитория
+     */
+    public Audience party(Party party, UUID... excluded) {
+        return Audience.audience(getOnlinePartyMembers(party, excluded));
+    }
+
+    /**
+     * Получает онлайн-участников пати
+     *
+     * @param party    Пати
+     * @param excluded Игроки, которых не нужно возвращать
+     * @return Новый список игроков
+     */
+    public List<Player> getOnlinePartyMembers(Party party, UUID... excluded) {
+        List<Player> recipients = new ArrayList<>();
+        for (Player member : resolvePartyMembers(party).values()) {
+            if (isRecipient(member, excluded) && party.getMembers().containsKey(member.getUniqueId())) {
+                recipients.add(member);
+            }
+        }
+        return recipients;
+    }
+
+    /**
+     * Учитывает игрока, вошедшего на прокси
+     *
+     * @param player Игрок
+     */
+    public void trackPlayer(Player player) {
+        PartyManager partyManager = PartyManager.getInstance();
+        Party party = partyManager != null ? partyManager.getPlayerParty(player.getUniqueId()) : null;
+        if (party != null) {
+            addOnlineMember(party.getId(), player);
+        }
+    }
+
+    /**
+     * Убирает игрока, покинувшего прокси, из набора онлайн-участников
+     *
+     * @param playerId UUID игрока
+     */
+    public void untrackPlayer(UUID playerId) {
+        UUID partyId = trackedPlayers.remove(playerId);
+        if (partyId != null) {
+            removeOnlineMember(partyId, playerId);
+        }
+    }
+
+    /**
+     * Вызывается после вступления игрока в пати
+     *
+     * @param partyId  ID пати
+     * @param playerId UUID игрока
+     */
+    public void onPartyMemberJoined(UUID partyId, UUID playerId) {
+        plugin.getServer().getPlayer(playerId).ifPresent(player -> addOnlineMember(partyId, player));
+    }
+
+    /**
+     * Вызывается после выхода или исключения игрока из пати
+     *
+     * @param partyId  ID пати
+     * @param playerId UUID игрока
+     */
+    public void onPartyMemberLeft(UUID partyId, UUID playerId) {
+        trackedPlayers.remove(playerId, partyId);
+        removeOnlineMember(partyId, playerId);
+    }
+
+    private static boolean isRecipient(Player member, UUID[] excluded) {
+        if (!member.isActive()) {
+            return false;
+        }
+        for (UUID id : excluded) {
+            if (member.getUniqueId().equals(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addOnlineMember(UUID partyId, Player player) {
+        UUID previous = trackedPlayers.put(player.getUniqueId(), partyId);
+        if (previous != null && !previous.equals(partyId)) {
+            removeOnlineMember(previous, player.getUniqueId());
+        }
+
+        // Если набор пати еще не построен, игрок попадет в него при первой рассылке
+        Map<UUID, Player> members = partyMembers.get(partyId);
+        if (members != null) {
+            members.put(player.getUniqueId(), player);
+        }
+    }
+
+    private void removeOnlineMember(UUID partyId, UUID playerId) {
+        // Пустой набор удаляется, чтобы не копить наборы распущенных пати
+        partyMembers.computeIfPresent(partyId, (id, members) -> {
+            members.remove(playerId);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private Map<UUID, Player> resolvePartyMembers(Party party) {
+        Map<UUID, Player> members = partyMembers.get(party.getId());
+        if (members != null) {
+            return members;
+        }
+
+        // Набор еще не построен - собираем его один раз
+        return partyMembers.computeIfAbsent(party.getId(), id -> {
+            Map<UUID, Player> built = new ConcurrentHashMap<>();
+            for (UUID memberId : party.getMembers().keySet()) {
+                plugin.getServer().getPlayer(memberId).ifPresent(player -> {
+                    built.put(memberId, player);
+                    trackedPlayers.put(memberId, id);
+                });
+            }
+            return built;
+        });
+    }
+}
@@ -0,0 +1,204 @@
+package ru.snsocialmedia.velocity.commands;
+
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.slf4j.Logger;
+import ru.snsocialmedia.velocity.config.ConfigManager;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Конвейер выполнения подкоманд.
+ * <p>
+ * Подкоманды, работающие только с памятью, выполняются сразу в потоке
+ * команды. Подкоманды, обращающиеся к базе данных или файлам, передаются в
+ * отдельный пул потоков, а ответы игроку отправляются по завершении задачи.
+ * Количество одновременно выполняющихся I/O-подкоманд одного игрока
+ * ограничено. Для каждой подкоманды собирается число вызовов, среднее и
+ * максимальное время выполнения.
+ */
+public class CommandPipeline {
+
+    // Максимальное количество подкоманд в статистике
+    private static final int MAX_METRICS = 128;
+
+    private final Logger logger;
+    private final ExecutorService ioExecutor;
+    private final int maxInFlight;
+
+    // UUID игрока -> количество выполняющихся I/O-подкоманд
+    private final Map<UUID, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    // "команда подкоманда" -> статистика выполнения
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Статистика выполнения одной подкоманды
+     */
+    private static final class Metric {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder failures = new LongAdder();
+
+        private void record(long nanos, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            if (failed) {
+                failures.increment();
+            }
+        }
+    }
+
+    /**
+     * Создает конвейер, читая настройки commands.io-threads и
+     * commands.max-in-flight
+     *
+     * @param configManager Менеджер конфигурации
+     * @param logger        Логгер
+     */
+    public CommandPipeline(ConfigManager configManager, Logger logger) {
+        this.logger = logger;
+        this.maxInFlight = Math.max(1, configManager.getInt("commands.max-in-flight", 2));
+
+        int threads = Math.max(1, configManager.getInt("commands.io-threads", 4));
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "SNSocialMedia-Command-IO-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Выполняет подкоманду
+     *
+     * @param player     Игрок
+     * @param command    Название команды
+     * @param subCommand Подкоманда
+     * @param io         true, если подкоманда обращается к базе данных или
+     *                   файлам
+     * @param task       Обработчик подкоманды
+     * @return Future, завершающийся после выполнения обработчика; сразу
+     *         завершенный, если подкоманда отклонена
+     */
+    public CompletableFuture<Void> execute(Player player, String command, String subCommand, boolean io,
+            Runnable task) {
+        String key = command + " " + subCommand;
+
+        if (!io) {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                task.run();
+                failed = false;
+            } catch (Exception e) {
+                logger.error("Ошибка при выполнении команды /" + key + " игроком " + player.getUsername(), e);
+                sendError(player);
+            } finally {
+                record(key, System.nanoTime() - start, failed);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        AtomicInteger counter = inFlight.computeIfAbsent(player.getUniqueId(), id -> new AtomicInteger());
+        if (counter.incrementAndGet() > maxInFlight) {
+            counter.decrementAndGet();
+            rejected.increment();
+            player.sendMessage(Component.text("Предыдущие команды еще выполняются. Подождите немного.")
+                    .color(NamedTextColor.RED));
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long submitted = System.nanoTime();
+        return CompletableFuture.runAsync(task, ioExecutor).whenComplete((ignored, error) -> {
+            // Время считается с момента постановки в очередь: игрок ждет и
+            // ее тоже
+            record(key, System.nanoTime() - submitted, error != null);
+            if (counter.decrementAndGet() <= 0) {
+                inFlight.remove(player.getUniqueId(), counter);
+            }
+
+            if (error != null) {
+                logger.error("Ошибка при выполнении команды /" + key + " игроком " + player.getUsername(),
+                        error);
+                sendError(player);
+            }
+        });
+    }
+
+    /**
+     * Останавливает пул, дожидаясь выполняющихся команд
+     */
+    public void shutdown() {
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Не все команды завершились до отключения");
+                ioExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            ioExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Формирует краткую сводку по подкомандам для логов
+     *
+     * @return Строка вида "friend list: 12 вызовов, ср. 3.1 мс, макс. 9.0 мс, ..."
+     */
+    public String describeMetrics() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Metric> entry : new TreeMap<>(metrics).entrySet()) {
+            Metric metric = entry.getValue();
+            long count = metric.count.sum();
+            if (count == 0) {
+                continue;
+            }
+
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append(": ").append(count).append(" вызовов")
+                    .append(String.format(", ср. %.1f мс", metric.totalNanos.sum() / (double) count / 1_000_000))
+                    .append(String.format(", макс. %.1f мс", metric.maxNanos.get() / 1_000_000.0));
+            long failures = metric.failures.sum();
+            if (failures > 0) {
+                builder.append(", ошибок ").append(failures);
+            }
+        }
+        builder.append(builder.length() > 0 ? "; " : "").append("отклонено: ").append(rejected.sum());
+        return builder.toString();
+    }
+
+    private void record(String key, long nanos, boolean failed) {
+        Metric metric = metrics.get(key);
+        if (metric == null) {
+            // Подкоманда берется из ввода игрока; неизвестные подкоманды
+            // сверх лимита учитываются вместе
+            if (metrics.size() >= MAX_METRICS) {
+                key = key.substring(0, key.indexOf(' ')) + " ?";
+            }
+            metric = metrics.computeIfAbsent(key, k -> new Metric());
+        }
+        metric.record(nanos, failed);
+    }
+
+    private void sendError(Player player) {
+        player.sendMessage(Component.text("Произошла ошибка при выполнении команды. Попробуйте позже.")
+                .color(NamedTextColor.RED));
+    }
+}
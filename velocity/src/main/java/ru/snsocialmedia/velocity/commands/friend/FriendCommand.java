@@ -7,13 +7,19 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import ru.snsocialmedia.common.FriendManager;
 import ru.snsocialmedia.common.database.DatabaseManager;
+import ru.snsocialmedia.common.models.friend.FriendSuggestion;
 import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+import ru.snsocialmedia.velocity.presence.OnlinePlayerIndex;
+import ru.snsocialmedia.velocity.ratelimit.RateLimitChannel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.slf4j.LoggerFactory;
@@ -29,6 +35,10 @@ import java.util.Map;
  */
 public class FriendCommand implements SimpleCommand {
 
+    // Подкоманды, обращающиеся к базе данных; выполняются в пуле конвейера
+    private static final Set<String> IO_SUBCOMMANDS = Set.of("add", "accept", "decline", "remove", "list",
+            "requests", "suggest", "mutual", "join");
+
     private final SNSocialMediaVelocity plugin;
     private final FriendManager friendManager;
     private final java.util.logging.Logger logger;
@@ -51,6 +61,18 @@ public class FriendCommand implements SimpleCommand {
         }
 
         Player player = (Player) source;
+        String subCommand = args.length > 0 ? args[0].toLowerCase() : "help";
+        plugin.getCommandPipeline().execute(player, "friend", subCommand, IO_SUBCOMMANDS.contains(subCommand),
+                () -> dispatch(player, args));
+    }
+
+    /**
+     * Выполняет подкоманду
+     *
+     * @param player Игрок
+     * @param args   Аргументы команды
+     */
+    private void dispatch(Player player, String[] args) {
         UUID playerId = player.getUniqueId();
 
         if (args.length == 0) {
@@ -99,6 +121,17 @@ public class FriendCommand implements SimpleCommand {
             case "requests":
                 handleListRequests(player);
                 break;
+            case "suggest":
+                handleSuggestFriends(player);
+                break;
+            case "mutual":
+                if (args.length < 2) {
+                    player.sendMessage(
+                            Component.text("Использование: /friend mutual <игрок>").color(NamedTextColor.RED));
+                    return;
+                }
+                handleMutualFriends(player, args[1]);
+                break;
             case "join":
                 if (args.length < 2) {
                     player.sendMessage(Component.text("Использование: /friend join <игрок>").color(NamedTextColor.RED));
@@ -124,31 +157,33 @@ public class FriendCommand implements SimpleCommand {
             suggestions.add("remove");
             suggestions.add("list");
             suggestions.add("requests");
+            suggestions.add("suggest");
+            suggestions.add("mutual");
             suggestions.add("join");
             return CompletableFuture.completedFuture(suggestions);
         }
 
         // Для подкоманд, требующих имя игрока, предлагаем онлайн игроков
-        if (args.length == 2) {
+        if (args.length == 2 && invocation.source() instanceof Player) {
             String subCommand = args[0].toLowerCase();
-            if (subCommand.equals("add") || subCommand.equals("accept") ||
-                    subCommand.equals("decline") || subCommand.equals("remove") || subCommand.equals("join")) {
-
-                CommandSource source = invocation.source();
-                if (source instanceof Player) {
-                    Player sender = (Player) source;
-
-                    // Получаем список всех онлайн игроков
-                    List<String> onlinePlayers = plugin.getServer().getAllPlayers().stream()
-                            .map(Player::getUsername)
-                            .filter(name -> !name.equals(sender.getUsername())) // Исключаем самого себя
-                            .collect(Collectors.toList());
-
-                    String prefix = args[1].toLowerCase();
-                    return CompletableFuture.completedFuture(onlinePlayers.stream()
-                            .filter(name -> name.toLowerCase().startsWith(prefix))
-                            .collect(Collectors.toList()));
-                }
+            UUID senderId = ((Player) invocation.source()).getUniqueId();
+            Predicate<UUID> friends = OnlinePlayerIndex.friendsOf(senderId);
+            OnlinePlayerIndex index = plugin.getOnlinePlayerIndex();
+
+            switch (subCommand) {
+                case "add":
+                    // Друзей добавлять не нужно
+                    return CompletableFuture.completedFuture(
+                            index.complete(args[1], friends.or(senderId::equals), null));
+                case "accept":
+                case "decline":
+                    return CompletableFuture.completedFuture(index.complete(args[1], senderId::equals, null));
+                case "remove":
+                case "join":
+                case "mutual":
+                    return CompletableFuture.completedFuture(index.complete(args[1], senderId::equals, friends));
+                default:
+                    break;
             }
         }
 
@@ -171,6 +206,10 @@ public class FriendCommand implements SimpleCommand {
         player.sendMessage(Component.text("/friend remove <игрок> - Удалить из друзей").color(NamedTextColor.YELLOW));
         player.sendMessage(Component.text("/friend list - Показать список друзей").color(NamedTextColor.YELLOW));
         player.sendMessage(Component.text("/friend requests - Показать запросы дружбы").color(NamedTextColor.YELLOW));
+        player.sendMessage(
+                Component.text("/friend suggest - Показать возможных друзей").color(NamedTextColor.YELLOW));
+        player.sendMessage(
+                Component.text("/friend mutual <игрок> - Показать общих друзей").color(NamedTextColor.YELLOW));
         player.sendMessage(
                 Component.text("/friend join <игрок> - Присоединиться к серверу друга").color(NamedTextColor.YELLOW));
         player.sendMessage(
@@ -199,6 +238,24 @@ public class FriendCommand implements SimpleCommand {
         UUID playerId = player.getUniqueId();
         UUID targetId = targetPlayer.get().getUniqueId();
 
+        if (!plugin.getRateLimiter().tryAcquire(playerId, RateLimitChannel.FRIEND_REQUEST)) {
+            player.sendMessage(Component.text("Вы слишком часто отправляете запросы дружбы. Подождите немного.")
+                    .color(NamedTextColor.RED));
+            return;
+        }
+
+        if (friendManager.hasReachedFriendLimit(playerId)) {
+            player.sendMessage(Component.text("Вы достигли максимального количества друзей ("
+                    + friendManager.getMaxFriends() + ")").color(NamedTextColor.RED));
+            return;
+        }
+
+        if (friendManager.hasReachedFriendLimit(targetId)) {
+            player.sendMessage(Component.text("У игрока " + targetName + " уже максимальное количество друзей")
+                    .color(NamedTextColor.RED));
+            return;
+        }
+
         if (friendManager.sendFriendRequest(playerId, targetId)) {
             player.sendMessage(
                     Component.text("Запрос дружбы отправлен игроку " + targetName).color(NamedTextColor.GREEN));
@@ -316,23 +373,37 @@ public class FriendCommand implements SimpleCommand {
             return;
         }
 
-        player.sendMessage(Component.text("=== Ваши друзья ===").color(NamedTextColor.GOLD));
+        int maxFriends = friendManager.getMaxFriends();
+        String counter = maxFriends > 0 ? " (" + friends.size() + "/" + maxFriends + ")" : " (" + friends.size() + ")";
+        player.sendMessage(Component.text("=== Ваши друзья" + counter + " ===").color(NamedTextColor.GOLD));
 
         DatabaseManager dbManager = DatabaseManager.getInstance();
         Map<UUID, String> playerNames = new HashMap<>();
 
-        // Получаем имена всех игроков из базы данных
-        try (Connection connection = dbManager.getConnection();
-                PreparedStatement statement = connection.prepareStatement("SELECT uuid, last_name FROM players")) {
+        // Имена из базы данных нужны только оффлайн-друзьям
+        List<UUID> offlineFriends = friends.stream()
+                .filter(friendId -> !plugin.getServer().getPlayer(friendId).isPresent())
+                .collect(Collectors.toList());
+
+        if (!offlineFriends.isEmpty()) {
+            String placeholders = String.join(",", Collections.nCopies(offlineFriends.size(), "?"));
+            try (Connection connection = dbManager.getConnection();
+                    PreparedStatement statement = connection.prepareStatement(
+                            "SELECT uuid, last_name FROM players WHERE uuid IN (" + placeholders + ")")) {
+
+                for (int i = 0; i < offlineFriends.size(); i++) {
+                    statement.setString(i + 1, offlineFriends.get(i).toString());
+                }
 
-            ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                UUID uuid = UUID.fromString(resultSet.getString("uuid"));
-                String name = resultSet.getString("last_name");
-                playerNames.put(uuid, name);
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    UUID uuid = UUID.fromString(resultSet.getString("uuid"));
+                    String name = resultSet.getString("last_name");
+                    playerNames.put(uuid, name);
+                }
+            } catch (SQLException e) {
+                logger.warning("Не удалось получить имена игроков из базы данных: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            logger.warning("Не удалось получить имена игроков из базы данных: " + e.getMessage());
         }
 
         for (UUID friendId : friends) {
@@ -390,6 +461,85 @@ public class FriendCommand implements SimpleCommand {
         }
     }
 
+    /**
+     * Обрабатывает команду показа общих друзей
+     *
+     * @param player     Игрок, который выполняет команду
+     * @param targetName Имя игрока, с которым нужно найти общих друзей
+     */
+    private void handleMutualFriends(Player player, String targetName) {
+        Optional<Player> targetPlayer = plugin.getServer().getPlayer(targetName);
+
+        if (!targetPlayer.isPresent()) {
+            player.sendMessage(Component.text("Игрок " + targetName + " не найден!").color(NamedTextColor.RED));
+            return;
+        }
+
+        List<UUID> mutual = friendManager.getMutualFriends(player.getUniqueId(),
+                targetPlayer.get().getUniqueId());
+
+        if (mutual.isEmpty()) {
+            player.sendMessage(Component.text("У вас нет общих друзей с игроком " + targetName)
+                    .color(NamedTextColor.YELLOW));
+            return;
+        }
+
+        player.sendMessage(Component.text("=== Общие друзья с " + targetName + " (" + mutual.size() + ") ===")
+                .color(NamedTextColor.GOLD));
+
+        for (UUID friendId : mutual) {
+            Optional<Player> friendOptional = plugin.getServer().getPlayer(friendId);
+
+            if (friendOptional.isPresent()) {
+                player.sendMessage(
+                        Component.text(friendOptional.get().getUsername() + " - онлайн").color(NamedTextColor.GREEN));
+            } else {
+                player.sendMessage(Component.text(friendId.toString().substring(0, 8) + "... - оффлайн")
+                        .color(NamedTextColor.GRAY));
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает команду показа предложений дружбы
+     *
+     * @param player Игрок, который выполняет команду
+     */
+    private void handleSuggestFriends(Player player) {
+        int limit = plugin.getConfigManager().getInt("friend.suggestions-limit", 5);
+        List<FriendSuggestion> suggestions = friendManager.getFriendSuggestions(player.getUniqueId(), limit);
+
+        if (suggestions.isEmpty()) {
+            player.sendMessage(
+                    Component.text("Пока нет игроков, которых можно предложить").color(NamedTextColor.YELLOW));
+            return;
+        }
+
+        player.sendMessage(Component.text("=== Возможные друзья ===").color(NamedTextColor.GOLD));
+
+        for (FriendSuggestion suggestion : suggestions) {
+            UUID candidateId = suggestion.getPlayerId();
+            Optional<Player> candidate = plugin.getServer().getPlayer(candidateId);
+            String name = candidate.map(Player::getUsername)
+                    .orElse(candidateId.toString().substring(0, 8) + "...");
+
+            StringBuilder reasons = new StringBuilder();
+            if (suggestion.getMutualFriends() > 0) {
+                reasons.append("общих друзей: ").append(suggestion.getMutualFriends());
+            }
+            if (suggestion.isSharedGuild()) {
+                reasons.append(reasons.length() > 0 ? ", " : "").append("гильдия");
+            }
+            if (suggestion.isSharedParty()) {
+                reasons.append(reasons.length() > 0 ? ", " : "").append("пати");
+            }
+
+            NamedTextColor nameColor = candidate.isPresent() ? NamedTextColor.GREEN : NamedTextColor.GRAY;
+            player.sendMessage(Component.text(name).color(nameColor)
+                    .append(Component.text(" - " + reasons).color(NamedTextColor.YELLOW)));
+        }
+    }
+
     /**
      * Обрабатывает команду присоединения к серверу друга
      *
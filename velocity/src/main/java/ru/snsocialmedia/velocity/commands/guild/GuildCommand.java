@@ -6,14 +6,21 @@ import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+import ru.snsocialmedia.common.managers.GuildStorageManager;
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildRole;
+import ru.snsocialmedia.common.models.guild.GuildStorage;
+import ru.snsocialmedia.common.models.guild.StorageLedgerEntry;
+import ru.snsocialmedia.velocity.presence.OnlinePlayerIndex;
+import ru.snsocialmedia.velocity.ratelimit.RateLimitChannel;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 import java.util.Map;
 
 /**
@@ -21,6 +28,15 @@ import java.util.Map;
  */
 public class GuildCommand implements SimpleCommand {
 
+    // Подкоманды, обращающиеся к базе данных; выполняются в пуле конвейера
+    private static final Set<String> IO_SUBCOMMANDS = Set.of("create", "bank");
+
+    // Количество записей истории хранилища на одной странице
+    private static final int BANK_HISTORY_PAGE_SIZE = 10;
+
+    private static final Component GLOW_MESSAGE = Component
+            .text("Вы светитесь для согильдийцев! Это временный эффект.").color(NamedTextColor.AQUA);
+
     private final SNSocialMediaVelocity plugin;
     private final GuildMenu guildMenu;
 
@@ -42,7 +58,18 @@ public class GuildCommand implements SimpleCommand {
         }
 
         Player player = (Player) source;
+        String subCommand = args.length > 0 ? args[0].toLowerCase() : "menu";
+        plugin.getCommandPipeline().execute(player, "guild", subCommand, IO_SUBCOMMANDS.contains(subCommand),
+                () -> dispatch(player, args));
+    }
 
+    /**
+     * Выполняет подкоманду
+     *
+     * @param player Игрок
+     * @param args   Аргументы команды
+     */
+    private void dispatch(Player player, String[] args) {
         if (args.length == 0) {
             // Открываем GUI меню вместо показа справки
             guildMenu.openMenu(player);
@@ -116,6 +143,11 @@ public class GuildCommand implements SimpleCommand {
                             .color(NamedTextColor.RED));
                     return;
                 }
+                if (!plugin.getRateLimiter().tryAcquire(player.getUniqueId(), RateLimitChannel.INVITE)) {
+                    player.sendMessage(Component.text("Вы слишком часто отправляете приглашения. Подождите немного.")
+                            .color(NamedTextColor.RED));
+                    return;
+                }
                 if (guild.invitePlayer(invitee.getUniqueId())) {
                     // Сообщение для приглашенного игрока
                     invitee.sendMessage(Component.text("Вы были приглашены в гильдию " + guild.getName() + "!")
@@ -153,6 +185,7 @@ public class GuildCommand implements SimpleCommand {
                 }
 
                 if (plugin.getGuildManager().addPlayerToGuild(guild.getId(), player.getUniqueId(), GuildRole.MEMBER)) {
+                    plugin.getGuildChatFanout().onMemberJoined(guild.getId(), player.getUniqueId());
                     player.sendMessage(
                             Component.text("Вы успешно вступили в гильдию " + guild.getName() + "! Поздравляем!")
                                     .color(NamedTextColor.GREEN));
@@ -235,6 +268,7 @@ public class GuildCommand implements SimpleCommand {
 
                 // Исключаем игрока
                 if (plugin.getGuildManager().removePlayerFromGuild(playerGuild.getId(), kickPlayer.getUniqueId())) {
+                    plugin.getGuildChatFanout().onMemberLeft(playerGuild.getId(), kickPlayer.getUniqueId());
                     player.sendMessage(Component.text("Игрок " + kickPlayerName + " исключен из гильдии!")
                             .color(NamedTextColor.GREEN));
 
@@ -243,15 +277,10 @@ public class GuildCommand implements SimpleCommand {
                             .color(NamedTextColor.RED));
 
                     // Уведомляем всех членов гильдии
-                    for (UUID memberId : playerGuild.getMembers().keySet()) {
-                        plugin.getServer().getPlayer(memberId).ifPresent(member -> {
-                            if (!member.equals(player) && !member.equals(kickPlayer)) {
-                                member.sendMessage(
-                                        Component.text("Игрок " + kickPlayerName + " был исключен из гильдии!")
-                                                .color(NamedTextColor.YELLOW));
-                            }
-                        });
-                    }
+                    plugin.getMemberBroadcaster().toGuild(playerGuild,
+                            Component.text("Игрок " + kickPlayerName + " был исключен из гильдии!")
+                                    .color(NamedTextColor.YELLOW),
+                            player.getUniqueId(), kickPlayer.getUniqueId());
                 } else {
                     player.sendMessage(Component.text("Не удалось исключить игрока из гильдии! Попробуйте позже.")
                             .color(NamedTextColor.RED));
@@ -323,15 +352,10 @@ public class GuildCommand implements SimpleCommand {
                                 .color(NamedTextColor.GREEN));
 
                         // Уведомляем всех членов гильдии
-                        for (UUID memberId : promotingGuild.getMembers().keySet()) {
-                            plugin.getServer().getPlayer(memberId).ifPresent(member -> {
-                                if (!member.equals(player) && !member.equals(promotePlayer)) {
-                                    member.sendMessage(
-                                            Component.text("Игрок " + promotePlayerName + " повышен до роли ОФИЦЕР!")
-                                                    .color(NamedTextColor.YELLOW));
-                                }
-                            });
-                        }
+                        plugin.getMemberBroadcaster().toGuild(promotingGuild,
+                                Component.text("Игрок " + promotePlayerName + " повышен до роли ОФИЦЕР!")
+                                        .color(NamedTextColor.YELLOW),
+                                player.getUniqueId(), promotePlayer.getUniqueId());
                     } else {
                         player.sendMessage(Component.text("Не удалось повысить игрока! Попробуйте позже.")
                                 .color(NamedTextColor.RED));
@@ -400,15 +424,10 @@ public class GuildCommand implements SimpleCommand {
                                 .color(NamedTextColor.YELLOW));
 
                         // Уведомляем всех членов гильдии
-                        for (UUID memberId : demotingGuild.getMembers().keySet()) {
-                            plugin.getServer().getPlayer(memberId).ifPresent(member -> {
-                                if (!member.equals(player) && !member.equals(demotePlayer)) {
-                                    member.sendMessage(
-                                            Component.text("Игрок " + demotePlayerName + " понижен до роли УЧАСТНИК!")
-                                                    .color(NamedTextColor.YELLOW));
-                                }
-                            });
-                        }
+                        plugin.getMemberBroadcaster().toGuild(demotingGuild,
+                                Component.text("Игрок " + demotePlayerName + " понижен до роли УЧАСТНИК!")
+                                        .color(NamedTextColor.YELLOW),
+                                player.getUniqueId(), demotePlayer.getUniqueId());
                     } else {
                         player.sendMessage(Component.text("Не удалось понизить игрока! Попробуйте позже.")
                                 .color(NamedTextColor.RED));
@@ -453,6 +472,10 @@ public class GuildCommand implements SimpleCommand {
                 handleLeaveCommand(player, args);
                 break;
 
+            case "bank":
+                handleBankHistoryCommand(player, args);
+                break;
+
             default:
                 // Для неизвестных команд показываем помощь
                 showHelp(player);
@@ -479,10 +502,32 @@ public class GuildCommand implements SimpleCommand {
             suggestions.add("info");
             suggestions.add("top");
             suggestions.add("leave");
+            suggestions.add("bank");
             return CompletableFuture.completedFuture(suggestions);
         }
 
-        // TODO: Добавить подсказки для аргументов подкоманд
+        // Предлагаем имена игроков для подкоманд, которым они требуются
+        if (args.length == 2 && invocation.source() instanceof Player) {
+            String subCommand = args[0].toLowerCase();
+            UUID senderId = ((Player) invocation.source()).getUniqueId();
+            OnlinePlayerIndex index = plugin.getOnlinePlayerIndex();
+
+            switch (subCommand) {
+                case "invite":
+                    // Пригласить можно только игрока без гильдии, друзей - первыми
+                    return CompletableFuture.completedFuture(index.complete(args[1],
+                            id -> id.equals(senderId) || plugin.getGuildManager().getPlayerGuild(id) != null,
+                            OnlinePlayerIndex.friendsOf(senderId)));
+                case "kick":
+                case "promote":
+                case "demote":
+                    Predicate<UUID> members = OnlinePlayerIndex.guildMembersOf(plugin.getGuildManager(), senderId);
+                    return CompletableFuture.completedFuture(
+                            index.complete(args[1], members.negate().or(senderId::equals), null));
+                default:
+                    break;
+            }
+        }
 
         return CompletableFuture.completedFuture(suggestions);
     }
@@ -518,16 +563,101 @@ public class GuildCommand implements SimpleCommand {
         player.sendMessage(Component.text("/guild info - Информация о гильдии").color(NamedTextColor.YELLOW));
         player.sendMessage(Component.text("/guild top - Топ гильдий").color(NamedTextColor.YELLOW));
         player.sendMessage(Component.text("/guild leave - Покинуть гильдию").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("/guild bank [номер] - История операций хранилища гильдии")
+                .color(NamedTextColor.YELLOW));
     }
 
-    private void applyGlowEffectToGuildMembers(Guild guild) {
-        for (UUID memberId : guild.getMembers().keySet()) {
-            plugin.getServer().getPlayer(memberId).ifPresent(player -> {
-                player.sendMessage(Component.text("Вы светитесь для согильдийцев! Это временный эффект.")
-                        .color(NamedTextColor.AQUA));
-                // TODO: Реализовать логику свечения
-            });
+    /**
+     * Показывает страницу истории операций с хранилищем гильдии. Страницы
+     * листаются по номеру записи: следующая страница начинается с номера,
+     * указанного внизу текущей.
+     *
+     * @param player Игрок
+     * @param args   Аргументы команды
+     */
+    private void handleBankHistoryCommand(Player player, String[] args) {
+        Guild guild = plugin.getGuildManager().getPlayerGuild(player.getUniqueId());
+        if (guild == null) {
+            player.sendMessage(Component.text("Вы не состоите в гильдии!").color(NamedTextColor.RED));
+            return;
+        }
+
+        GuildRole role = guild.getMembers().get(player.getUniqueId());
+        if (role != GuildRole.LEADER && role != GuildRole.OFFICER) {
+            player.sendMessage(Component.text("У вас недостаточно прав для просмотра истории хранилища!")
+                    .color(NamedTextColor.RED));
+            return;
         }
+
+        long beforeSeq = 0;
+        if (args.length > 1) {
+            try {
+                beforeSeq = Long.parseLong(args[1]);
+            } catch (NumberFormatException e) {
+                player.sendMessage(Component.text("Использование: /guild bank [номер записи]")
+                        .color(NamedTextColor.RED));
+                return;
+            }
+        }
+
+        // Команда выполняется в пуле ввода-вывода (см. IO_SUBCOMMANDS)
+        List<StorageLedgerEntry> entries = GuildStorageManager.getInstance().getLedger()
+                .getHistory(guild.getId(), beforeSeq, BANK_HISTORY_PAGE_SIZE);
+        if (entries.isEmpty()) {
+            player.sendMessage(Component.text("История операций хранилища пуста.")
+                    .color(NamedTextColor.YELLOW));
+            return;
+        }
+
+        player.sendMessage(Component.text("=== История хранилища гильдии " + guild.getName() + " ===")
+                .color(NamedTextColor.GOLD));
+        for (StorageLedgerEntry entry : entries) {
+            player.sendMessage(Component.text("#" + entry.getSeq() + " " + describeLedgerEntry(entry))
+                    .color(NamedTextColor.YELLOW));
+        }
+        if (entries.size() == BANK_HISTORY_PAGE_SIZE) {
+            player.sendMessage(Component.text("Следующая страница: /guild bank "
+                    + entries.get(entries.size() - 1).getSeq()).color(NamedTextColor.GRAY));
+        }
+    }
+
+    private String describeLedgerEntry(StorageLedgerEntry entry) {
+        String actor = entry.getActorId() == null ? "система"
+                : plugin.getServer().getPlayer(entry.getActorId()).map(Player::getUsername)
+                        .orElse(entry.getActorName() != null ? entry.getActorName() : entry.getActorId().toString());
+        if (entry.getType() == null) {
+            return "неизвестная операция";
+        }
+
+        switch (entry.getType()) {
+            case CREATE:
+                return "создание хранилища на " + entry.getAmount() + " слотов";
+            case ITEM_DEPOSIT:
+                return actor + " внес " + entry.getItemType() + " x" + entry.getAmount();
+            case ITEM_WITHDRAW:
+                return actor + " снял " + entry.getItemType() + " x" + -entry.getAmount();
+            case MONEY_DEPOSIT:
+                return actor + " внес " + GuildStorage.fromMinorUnits(entry.getAmount()) + " монет";
+            case MONEY_WITHDRAW:
+                return actor + " снял " + GuildStorage.fromMinorUnits(-entry.getAmount()) + " монет";
+            case TRANSFER_IN:
+                return "получен перевод " + GuildStorage.fromMinorUnits(entry.getAmount()) + " монет";
+            case TRANSFER_OUT:
+                return actor + " перевел " + GuildStorage.fromMinorUnits(-entry.getAmount()) + " монет";
+            case UPGRADE:
+                return actor + " увеличил хранилище до " + entry.getAmount() + " слотов";
+            case INTEREST:
+                return "начислены проценты " + GuildStorage.fromMinorUnits(entry.getAmount()) + " монет";
+            case MONEY_SET:
+                return "баланс установлен на " + GuildStorage.fromMinorUnits(entry.getAmount()) + " монет";
+            default:
+                return entry.getType().name();
+        }
+    }
+
+    private void applyGlowEffectToGuildMembers(Guild guild) {
+        plugin.getMemberBroadcaster().toGuild(guild, GLOW_MESSAGE);
+        // TODO: Реализовать логику свечения
     }
 
     // Метод для переключения режима чата гильдии
@@ -628,6 +758,8 @@ public class GuildCommand implements SimpleCommand {
         // Если других участников нет, удаляем гильдию
         if (newLeaderId == null) {
             if (plugin.getGuildManager().deleteGuild(guild.getId())) {
+                plugin.getGuildChatFanout().invalidateGuild(guild.getId());
+                plugin.getGuildChatManager().deleteHistory(guild.getId());
                 player.sendMessage(Component
                         .text("Вы покинули гильдию и она была удалена, так как вы были единственным участником!")
                         .color(NamedTextColor.YELLOW));
@@ -647,21 +779,16 @@ public class GuildCommand implements SimpleCommand {
                 });
 
                 if (plugin.getGuildManager().removePlayerFromGuild(guildId, player.getUniqueId())) {
+                    plugin.getGuildChatFanout().onMemberLeft(guildId, player.getUniqueId());
                     player.sendMessage(Component.text("Вы покинули гильдию " + guildName + "!")
                             .color(NamedTextColor.YELLOW));
 
                     // Уведомляем всех членов гильдии
-                    final UUID finalNewLeaderId = newLeaderId;
-                    for (UUID memberId : guild.getMembers().keySet()) {
-                        plugin.getServer().getPlayer(memberId).ifPresent(member -> {
-                            member.sendMessage(Component.text("Игрок " + player.getUsername() + " покинул гильдию!")
+                    plugin.getMemberBroadcaster().toGuild(guild,
+                            Component.text("Игрок " + player.getUsername() + " покинул гильдию!")
                                     .color(NamedTextColor.YELLOW));
-                            if (memberId.equals(finalNewLeaderId)) {
-                                member.sendMessage(Component.text("Вы стали новым лидером гильдии!")
-                                        .color(NamedTextColor.GREEN));
-                            }
-                        });
-                    }
+                    plugin.getServer().getPlayer(newLeaderId).ifPresent(newLeader -> newLeader.sendMessage(
+                            Component.text("Вы стали новым лидером гильдии!").color(NamedTextColor.GREEN)));
                 } else {
                     player.sendMessage(Component.text("Не удалось покинуть гильдию! Попробуйте позже.")
                             .color(NamedTextColor.RED));
@@ -683,16 +810,14 @@ public class GuildCommand implements SimpleCommand {
     private void handleMemberLeaving(Player player, Guild guild) {
         final String guildName = guild.getName();
         if (plugin.getGuildManager().removePlayerFromGuild(guild.getId(), player.getUniqueId())) {
+            plugin.getGuildChatFanout().onMemberLeft(guild.getId(), player.getUniqueId());
             player.sendMessage(Component.text("Вы покинули гильдию " + guildName + "!")
                     .color(NamedTextColor.YELLOW));
 
             // Уведомляем всех членов гильдии
-            for (UUID memberId : guild.getMembers().keySet()) {
-                plugin.getServer().getPlayer(memberId).ifPresent(member -> {
-                    member.sendMessage(Component.text("Игрок " + player.getUsername() + " покинул гильдию!")
+            plugin.getMemberBroadcaster().toGuild(guild,
+                    Component.text("Игрок " + player.getUsername() + " покинул гильдию!")
                             .color(NamedTextColor.YELLOW));
-                });
-            }
         } else {
             player.sendMessage(Component.text("Не удалось покинуть гильдию! Попробуйте позже.")
                     .color(NamedTextColor.RED));
@@ -7,13 +7,13 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextDecoration;
 import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+import ru.snsocialmedia.velocity.presence.OnlinePlayerIndex;
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.common.models.guild.GuildRole;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,6 +25,8 @@ public class GuildMenu {
         private final SNSocialMediaVelocity plugin;
         private static final MinecraftChannelIdentifier CHANNEL = MinecraftChannelIdentifier.create("snsm",
                         "guild_gui");
+        // Сколько игроков без гильдии выводится в меню приглашения
+        private static final int INVITE_LIST_SIZE = 10;
 
         public GuildMenu(SNSocialMediaVelocity plugin) {
                 this.plugin = plugin;
@@ -158,26 +160,24 @@ public class GuildMenu {
                 player.sendMessage(Component.text("/guild invite <игрок>")
                                 .color(NamedTextColor.AQUA));
 
-                // Получаем список онлайн игроков для приглашения
-                List<String> onlinePlayers = new ArrayList<>();
-                for (Player onlinePlayer : plugin.getServer().getAllPlayers()) {
-                        if (!onlinePlayer.getUniqueId().equals(player.getUniqueId()) &&
-                                        plugin.getGuildManager().getPlayerGuild(onlinePlayer.getUniqueId()) == null) {
-                                onlinePlayers.add(onlinePlayer.getUsername());
-                        }
-                }
+                // Получаем онлайн игроков без гильдии из индекса, друзей - первыми.
+                // Запрашивается на одного игрока больше, чем выводится: этого
+                // достаточно, чтобы понять, есть ли еще игроки, без полного списка
+                UUID playerId = player.getUniqueId();
+                List<Player> onlinePlayers = plugin.getOnlinePlayerIndex().find("",
+                                id -> id.equals(playerId) || plugin.getGuildManager().getPlayerGuild(id) != null,
+                                OnlinePlayerIndex.friendsOf(playerId), INVITE_LIST_SIZE + 1);
 
                 if (!onlinePlayers.isEmpty()) {
                         player.sendMessage(Component.text("Доступные игроки:")
                                         .color(NamedTextColor.GREEN));
-                        for (int i = 0; i < Math.min(10, onlinePlayers.size()); i++) {
-                                player.sendMessage(Component.text(" - " + onlinePlayers.get(i))
+                        for (int i = 0; i < Math.min(INVITE_LIST_SIZE, onlinePlayers.size()); i++) {
+                                player.sendMessage(Component.text(" - " + onlinePlayers.get(i).getUsername())
                                                 .color(NamedTextColor.GRAY));
                         }
-                        if (onlinePlayers.size() > 10) {
-                                player.sendMessage(
-                                                Component.text("...и еще " + (onlinePlayers.size() - 10) + " игроков")
-                                                                .color(NamedTextColor.GRAY));
+                        if (onlinePlayers.size() > INVITE_LIST_SIZE) {
+                                player.sendMessage(Component.text("...и другие игроки")
+                                                .color(NamedTextColor.GRAY));
                         }
                 } else {
                         player.sendMessage(Component.text("Нет доступных игроков для приглашения")
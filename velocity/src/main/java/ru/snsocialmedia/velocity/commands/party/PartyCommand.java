@@ -6,6 +6,7 @@ import com.velocitypowered.api.command.SimpleCommand;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.event.ClickEvent;
@@ -15,20 +16,29 @@ import ru.snsocialmedia.common.managers.PartyManager;
 import ru.snsocialmedia.common.models.party.Party;
 import ru.snsocialmedia.common.models.party.PartyRole;
 import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+import ru.snsocialmedia.velocity.presence.OnlinePlayerIndex;
+import ru.snsocialmedia.velocity.ratelimit.RateLimitChannel;
+import ru.snsocialmedia.velocity.transfer.PartyTransferOrchestrator;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * Основная команда для управления пати
  */
 public class PartyCommand implements SimpleCommand {
 
+    // Подкоманды, обращающиеся к базе данных. Пати хранятся в памяти и
+    // сохраняются отложенно, поэтому все подкоманды выполняются сразу
+    private static final Set<String> IO_SUBCOMMANDS = Set.of();
+
     private final SNSocialMediaVelocity plugin;
     private final ProxyServer proxyServer;
     private final Logger logger;
@@ -52,7 +62,18 @@ public class PartyCommand implements SimpleCommand {
         }
 
         Player player = (Player) source;
+        String subCommand = args.length > 0 ? args[0].toLowerCase() : "help";
+        plugin.getCommandPipeline().execute(player, "party", subCommand, IO_SUBCOMMANDS.contains(subCommand),
+                () -> dispatch(player, args));
+    }
 
+    /**
+     * Выполняет подкоманду
+     *
+     * @param player Игрок
+     * @param args   Аргументы команды
+     */
+    private void dispatch(Player player, String[] args) {
         if (args.length == 0) {
             // Показываем помощь по команде
             showHelp(player);
@@ -163,6 +184,8 @@ public class PartyCommand implements SimpleCommand {
         // Создаем новое пати
         Party party = partyManager.createParty(playerId);
         if (party != null) {
+            plugin.getMemberBroadcaster().onPartyMemberJoined(party.getId(), playerId);
+
             // Отправляем красивое уведомление о создании пати
             player.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
             player.sendMessage(Component.text("✦ Пати успешно создано! ✦").color(NamedTextColor.GREEN));
@@ -223,6 +246,12 @@ public class PartyCommand implements SimpleCommand {
 
         UUID targetId = target.getUniqueId();
 
+        if (!plugin.getRateLimiter().tryAcquire(playerId, RateLimitChannel.INVITE)) {
+            player.sendMessage(Component.text("❌ Вы слишком часто отправляете приглашения. Подождите немного")
+                    .color(NamedTextColor.RED));
+            return;
+        }
+
         // Приглашаем игрока в пати
         if (partyManager.invitePlayerToParty(party.getId(), targetId, playerId)) {
             // Уведомляем отправителя
@@ -323,15 +352,12 @@ public class PartyCommand implements SimpleCommand {
             player.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
 
             // Уведомляем всех участников пати о новом игроке
-            for (UUID memberId : invitingParty.getMembers().keySet()) {
-                Optional<Player> memberPlayer = proxyServer.getPlayer(memberId);
-                if (memberPlayer.isPresent() && !memberId.equals(playerId)) {
-                    memberPlayer.get().sendMessage(
-                            Component.text("✦ ").color(NamedTextColor.GOLD)
-                                    .append(Component.text(player.getUsername()).color(NamedTextColor.GREEN))
-                                    .append(Component.text(" присоединился к пати!").color(NamedTextColor.YELLOW)));
-                }
-            }
+            plugin.getMemberBroadcaster().onPartyMemberJoined(invitingPartyId, playerId);
+            plugin.getMemberBroadcaster().toParty(invitingParty,
+                    Component.text("✦ ").color(NamedTextColor.GOLD)
+                            .append(Component.text(player.getUsername()).color(NamedTextColor.GREEN))
+                            .append(Component.text(" присоединился к пати!").color(NamedTextColor.YELLOW)),
+                    playerId);
         } else {
             player.sendMessage(
                     Component.text("❌ Не удалось присоединиться к пати. Возможно, приглашение устарело.")
@@ -453,6 +479,8 @@ public class PartyCommand implements SimpleCommand {
 
         // Исключаем игрока из пати
         if (partyManager.removePlayerFromParty(party.getId(), targetId)) {
+            plugin.getMemberBroadcaster().onPartyMemberLeft(party.getId(), targetId);
+
             // Уведомляем лидера об успешном исключении
             player.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
             player.sendMessage(Component.text("✓ Игрок ").color(NamedTextColor.GREEN)
@@ -469,17 +497,12 @@ public class PartyCommand implements SimpleCommand {
                 targetPlayer.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
             });
 
-            // Уведомляем остальных участников пати
-            for (UUID memberId : party.getMembers().keySet()) {
-                if (!memberId.equals(playerId)) { // Исключаем лидера, т.к. ему уже отправлено уведомление
-                    Optional<Player> memberPlayer = proxyServer.getPlayer(memberId);
-                    memberPlayer.ifPresent(member -> {
-                        member.sendMessage(Component.text("⚠ Игрок ").color(NamedTextColor.YELLOW)
-                                .append(Component.text(targetName).color(NamedTextColor.RED))
-                                .append(Component.text(" был исключен из пати").color(NamedTextColor.YELLOW)));
-                    });
-                }
-            }
+            // Уведомляем остальных участников пати (лидеру уведомление уже отправлено)
+            plugin.getMemberBroadcaster().toParty(party,
+                    Component.text("⚠ Игрок ").color(NamedTextColor.YELLOW)
+                            .append(Component.text(targetName).color(NamedTextColor.RED))
+                            .append(Component.text(" был исключен из пати").color(NamedTextColor.YELLOW)),
+                    playerId, targetId);
         } else {
             player.sendMessage(Component.text("❌ Не удалось исключить игрока из пати").color(NamedTextColor.RED));
         }
@@ -564,16 +587,11 @@ public class PartyCommand implements SimpleCommand {
             });
 
             // Уведомляем остальных участников пати
-            for (UUID memberId : party.getMembers().keySet()) {
-                if (!memberId.equals(playerId) && !memberId.equals(targetId)) {
-                    Optional<Player> memberPlayer = proxyServer.getPlayer(memberId);
-                    memberPlayer.ifPresent(member -> {
-                        member.sendMessage(Component.text("ℹ ").color(NamedTextColor.AQUA)
-                                .append(Component.text(targetName).color(NamedTextColor.GREEN))
-                                .append(Component.text(" стал новым лидером пати").color(NamedTextColor.YELLOW)));
-                    });
-                }
-            }
+            plugin.getMemberBroadcaster().toParty(party,
+                    Component.text("ℹ ").color(NamedTextColor.AQUA)
+                            .append(Component.text(targetName).color(NamedTextColor.GREEN))
+                            .append(Component.text(" стал новым лидером пати").color(NamedTextColor.YELLOW)),
+                    playerId, targetId);
         } else {
             player.sendMessage(Component.text("❌ Не удалось передать лидерство").color(NamedTextColor.RED));
         }
@@ -595,6 +613,11 @@ public class PartyCommand implements SimpleCommand {
             return;
         }
 
+        if (!plugin.getRateLimiter().tryAcquire(playerId, RateLimitChannel.PARTY_CHAT)) {
+            player.sendMessage(Component.text("❌ Вы отправляете сообщения слишком часто").color(NamedTextColor.RED));
+            return;
+        }
+
         // Определяем роль игрока в пати для форматирования сообщения
         PartyRole role = party.getMembers().get(playerId);
         String rolePrefix = role == PartyRole.LEADER ? "⭐" : "•";
@@ -605,10 +628,7 @@ public class PartyCommand implements SimpleCommand {
                 .append(Component.text(message).color(NamedTextColor.WHITE));
 
         // Отправляем сообщение всем участникам пати
-        for (UUID memberId : party.getMembers().keySet()) {
-            Optional<Player> memberPlayer = proxyServer.getPlayer(memberId);
-            memberPlayer.ifPresent(member -> member.sendMessage(chatMessage));
-        }
+        plugin.getMemberBroadcaster().toParty(party, chatMessage);
     }
 
     /**
@@ -642,54 +662,45 @@ public class PartyCommand implements SimpleCommand {
 
             // Передаем лидерство перед выходом
             if (newLeaderId != null) {
-                final UUID finalNewLeaderId = newLeaderId; // Создаем final копию для использования в лямбда-выражении
                 partyManager.changePartyLeader(party.getId(), newLeaderId, playerId);
 
                 // Находим ник нового лидера
                 Optional<Player> newLeaderPlayer = plugin.getServer().getPlayer(newLeaderId);
                 String newLeaderName = newLeaderPlayer.map(Player::getUsername).orElse("другой игрок");
 
-                // Уведомляем всех участников о смене лидера
-                for (UUID memberId : party.getMembers().keySet()) {
-                    if (!memberId.equals(playerId)) {
-                        Optional<Player> memberPlayer = plugin.getServer().getPlayer(memberId);
-                        memberPlayer.ifPresent(member -> {
-                            if (memberId.equals(finalNewLeaderId)) {
-                                member.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
-                                member.sendMessage(Component
-                                        .text("★ Вы стали новым лидером пати, т.к. предыдущий лидер покинул пати! ★")
-                                        .color(NamedTextColor.GREEN));
-                                member.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
-                            } else {
-                                member.sendMessage(Component.text("ℹ ").color(NamedTextColor.AQUA)
-                                        .append(Component.text(newLeaderName).color(NamedTextColor.GREEN))
-                                        .append(Component.text(" стал новым лидером пати")
-                                                .color(NamedTextColor.YELLOW)));
-                            }
-                        });
-                    }
-                }
+                // Уведомляем нового лидера
+                newLeaderPlayer.ifPresent(newLeader -> {
+                    newLeader.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
+                    newLeader.sendMessage(Component
+                            .text("★ Вы стали новым лидером пати, т.к. предыдущий лидер покинул пати! ★")
+                            .color(NamedTextColor.GREEN));
+                    newLeader.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
+                });
+
+                // Уведомляем остальных участников о смене лидера
+                plugin.getMemberBroadcaster().toParty(party,
+                        Component.text("ℹ ").color(NamedTextColor.AQUA)
+                                .append(Component.text(newLeaderName).color(NamedTextColor.GREEN))
+                                .append(Component.text(" стал новым лидером пати").color(NamedTextColor.YELLOW)),
+                        playerId, newLeaderId);
             }
         }
 
         // Удаляем игрока из пати
         if (partyManager.removePlayerFromParty(party.getId(), playerId)) {
+            plugin.getMemberBroadcaster().onPartyMemberLeft(party.getId(), playerId);
+
             // Уведомляем игрока об успешном выходе
             player.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
             player.sendMessage(Component.text("✓ Вы покинули пати").color(NamedTextColor.GREEN));
             player.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
 
             // Уведомляем остальных участников пати
-            for (UUID memberId : party.getMembers().keySet()) {
-                if (!memberId.equals(playerId)) {
-                    Optional<Player> memberPlayer = plugin.getServer().getPlayer(memberId);
-                    memberPlayer.ifPresent(member -> {
-                        member.sendMessage(Component.text("⚠ ").color(NamedTextColor.GOLD)
-                                .append(Component.text(player.getUsername()).color(NamedTextColor.RED))
-                                .append(Component.text(" покинул пати").color(NamedTextColor.YELLOW)));
-                    });
-                }
-            }
+            plugin.getMemberBroadcaster().toParty(party,
+                    Component.text("⚠ ").color(NamedTextColor.GOLD)
+                            .append(Component.text(player.getUsername()).color(NamedTextColor.RED))
+                            .append(Component.text(" покинул пати").color(NamedTextColor.YELLOW)),
+                    playerId);
         } else {
             player.sendMessage(Component.text("❌ Не удалось покинуть пати").color(NamedTextColor.RED));
         }
@@ -719,11 +730,12 @@ public class PartyCommand implements SimpleCommand {
         }
 
         // Получаем текущий сервер игрока
-        String currentServer = player.getCurrentServer().map(server -> server.getServerInfo().getName()).orElse(null);
-        if (currentServer == null) {
+        Optional<RegisteredServer> targetServer = player.getCurrentServer().map(server -> server.getServer());
+        if (!targetServer.isPresent()) {
             player.sendMessage(Component.text("❌ Не удалось определить текущий сервер").color(NamedTextColor.RED));
             return;
         }
+        String currentServer = targetServer.get().getServerInfo().getName();
 
         // Обновляем текущий сервер пати
         partyManager.setPartyServer(party.getId(), currentServer);
@@ -733,48 +745,60 @@ public class PartyCommand implements SimpleCommand {
         player.sendMessage(Component.text("✓ Участники пати телепортируются к вам...").color(NamedTextColor.GREEN));
         player.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
 
-        // Телепортируем участников к лидеру (на тот же сервер)
-        int teleportCount = 0;
-        for (UUID memberId : party.getMembers().keySet()) {
-            if (!memberId.equals(playerId)) { // Исключаем лидера
-                Optional<Player> memberPlayer = plugin.getServer().getPlayer(memberId);
-                if (memberPlayer.isPresent()) {
-                    Player member = memberPlayer.get();
-
-                    // Проверяем, находится ли игрок на другом сервере
-                    String memberServer = member.getCurrentServer().map(server -> server.getServerInfo().getName())
-                            .orElse(null);
-                    if (memberServer == null || !memberServer.equals(currentServer)) {
-                        // Получаем информацию о целевом сервере
-                        Optional<com.velocitypowered.api.proxy.server.RegisteredServer> targetServer = plugin
-                                .getServer().getServer(currentServer);
-                        if (targetServer.isPresent()) {
-                            // Телепортируем игрока на сервер лидера
-                            member.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
-                            member.sendMessage(
-                                    Component.text("★ Телепортация к лидеру пати... ★").color(NamedTextColor.GREEN));
-                            member.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
-
-                            member.createConnectionRequest(targetServer.get()).connect();
-                            teleportCount++;
-                        }
-                    } else {
-                        // Игрок уже на нужном сервере
-                        member.sendMessage(
-                                Component.text("ℹ Лидер пати использовал команду warp, но вы уже на нужном сервере")
-                                        .color(NamedTextColor.AQUA));
-                    }
-                }
+        // Собираем онлайн-участников, которых нужно переместить к лидеру
+        List<Player> members = plugin.getMemberBroadcaster().getOnlinePartyMembers(party, playerId);
+        List<Player> moving = new ArrayList<>();
+        for (Player member : members) {
+            boolean onTarget = member.getCurrentServer()
+                    .map(server -> server.getServer().equals(targetServer.get()))
+                    .orElse(false);
+            if (onTarget) {
+                // Игрок уже на нужном сервере
+                member.sendMessage(
+                        Component.text("ℹ Лидер пати использовал команду warp, но вы уже на нужном сервере")
+                                .color(NamedTextColor.AQUA));
+            } else {
+                moving.add(member);
             }
         }
+        Audience movingAudience = Audience.audience(moving);
+        movingAudience.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
+        movingAudience.sendMessage(Component.text("★ Телепортация к лидеру пати... ★").color(NamedTextColor.GREEN));
+        movingAudience.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
+
+        // Телепортируем участников параллельно и сообщаем лидеру итог
+        plugin.getPartyTransferOrchestrator().transfer(members, targetServer.get())
+                .thenAccept(summary -> reportTransfer(player, summary, currentServer));
+    }
 
-        // Отправляем сообщение о результате телепортации
-        if (teleportCount > 0) {
-            player.sendMessage(
-                    Component.text("✓ Телепортировано игроков: " + teleportCount).color(NamedTextColor.GREEN));
-        } else {
-            player.sendMessage(
+    /**
+     * Сообщает лидеру итог перемещения пати и уведомляет участников, которых
+     * переместить не удалось
+     *
+     * @param leader     Лидер пати
+     * @param summary    Итог перемещения
+     * @param serverName Имя целевого сервера
+     */
+    private void reportTransfer(Player leader, PartyTransferOrchestrator.TransferSummary summary, String serverName) {
+        for (Player failed : summary.getFailed()) {
+            failed.sendMessage(Component.text("❌ Не удалось подключиться к серверу " + serverName)
+                    .color(NamedTextColor.RED));
+        }
+
+        if (summary.getMoved() == 0 && summary.getFailed().isEmpty()) {
+            leader.sendMessage(
                     Component.text("ℹ Все участники пати уже находятся на этом сервере").color(NamedTextColor.AQUA));
+            return;
+        }
+
+        leader.sendMessage(Component.text("✓ Перемещено: " + summary.getMoved()).color(NamedTextColor.GREEN)
+                .append(Component.text(", уже на сервере: " + summary.getAlreadyThere()).color(NamedTextColor.AQUA))
+                .append(Component.text(", не удалось: " + summary.getFailed().size())
+                        .color(summary.getFailed().isEmpty() ? NamedTextColor.GRAY : NamedTextColor.RED)));
+
+        if (!summary.getFailed().isEmpty()) {
+            String names = summary.getFailed().stream().map(Player::getUsername).collect(Collectors.joining(", "));
+            leader.sendMessage(Component.text("❌ Не перемещены: " + names).color(NamedTextColor.RED));
         }
     }
 
@@ -803,8 +827,7 @@ public class PartyCommand implements SimpleCommand {
         }
 
         // Получаем информацию о целевом сервере
-        Optional<com.velocitypowered.api.proxy.server.RegisteredServer> targetServer = plugin.getServer()
-                .getServer(serverName);
+        Optional<RegisteredServer> targetServer = plugin.getServer().getServer(serverName);
         if (!targetServer.isPresent()) {
             player.sendMessage(Component.text("❌ Сервер " + serverName + " не найден").color(NamedTextColor.RED));
             return;
@@ -814,28 +837,17 @@ public class PartyCommand implements SimpleCommand {
         partyManager.setPartyServer(party.getId(), serverName);
 
         // Уведомляем всех участников о переносе пати на другой сервер
-        for (UUID memberId : party.getMembers().keySet()) {
-            Optional<Player> memberPlayer = plugin.getServer().getPlayer(memberId);
-            memberPlayer.ifPresent(member -> {
-                member.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
-                member.sendMessage(Component.text("★ Пати перемещается на сервер ").color(NamedTextColor.YELLOW)
-                        .append(Component.text(serverName).color(NamedTextColor.AQUA))
-                        .append(Component.text("...").color(NamedTextColor.YELLOW)));
-
-                // Создаем и отправляем запрос на подключение к серверу
-                member.createConnectionRequest(targetServer.get()).connect().thenAccept(result -> {
-                    if (result.isSuccessful()) {
-                        // Успешное подключение
-                    } else {
-                        // Неудачное подключение
-                        member.sendMessage(Component.text("❌ Не удалось подключиться к серверу " + serverName)
-                                .color(NamedTextColor.RED));
-                    }
-                });
-
-                member.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
-            });
-        }
+        List<Player> members = plugin.getMemberBroadcaster().getOnlinePartyMembers(party);
+        Audience audience = Audience.audience(members);
+        audience.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
+        audience.sendMessage(Component.text("★ Пати перемещается на сервер ").color(NamedTextColor.YELLOW)
+                .append(Component.text(serverName).color(NamedTextColor.AQUA))
+                .append(Component.text("...").color(NamedTextColor.YELLOW)));
+        audience.sendMessage(Component.text("▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅▅").color(NamedTextColor.GOLD));
+
+        // Перемещаем участников параллельно и сообщаем лидеру итог
+        plugin.getPartyTransferOrchestrator().transfer(members, targetServer.get())
+                .thenAccept(summary -> reportTransfer(player, summary, serverName));
     }
 
     /**
@@ -981,18 +993,14 @@ public class PartyCommand implements SimpleCommand {
                 .append(getExpModeText(expMode)));
 
         // Отправляем уведомление другим членам пати
-        for (UUID memberId : party.getMembers().keySet()) {
-            if (!memberId.equals(playerId)) {
-                Optional<Player> member = proxyServer.getPlayer(memberId);
-                member.ifPresent(m -> m.sendMessage(
-                        Component.text("Лидер пати ")
-                                .color(NamedTextColor.YELLOW)
-                                .append(Component.text(player.getUsername()).color(NamedTextColor.GREEN))
-                                .append(Component.text(" изменил режим распределения опыта на: ")
-                                        .color(NamedTextColor.YELLOW))
-                                .append(getExpModeText(expMode))));
-            }
-        }
+        plugin.getMemberBroadcaster().toParty(party,
+                Component.text("Лидер пати ")
+                        .color(NamedTextColor.YELLOW)
+                        .append(Component.text(player.getUsername()).color(NamedTextColor.GREEN))
+                        .append(Component.text(" изменил режим распределения опыта на: ")
+                                .color(NamedTextColor.YELLOW))
+                        .append(getExpModeText(expMode)),
+                playerId);
     }
 
     private void handlePartyLootSettings(Player player, String mode) {
@@ -1032,18 +1040,14 @@ public class PartyCommand implements SimpleCommand {
                 .append(getLootModeText(lootMode)));
 
         // Отправляем уведомление другим членам пати
-        for (UUID memberId : party.getMembers().keySet()) {
-            if (!memberId.equals(playerId)) {
-                Optional<Player> member = proxyServer.getPlayer(memberId);
-                member.ifPresent(m -> m.sendMessage(
-                        Component.text("Лидер пати ")
-                                .color(NamedTextColor.YELLOW)
-                                .append(Component.text(player.getUsername()).color(NamedTextColor.GREEN))
-                                .append(Component.text(" изменил режим распределения добычи на: ")
-                                        .color(NamedTextColor.YELLOW))
-                                .append(getLootModeText(lootMode))));
-            }
-        }
+        plugin.getMemberBroadcaster().toParty(party,
+                Component.text("Лидер пати ")
+                        .color(NamedTextColor.YELLOW)
+                        .append(Component.text(player.getUsername()).color(NamedTextColor.GREEN))
+                        .append(Component.text(" изменил режим распределения добычи на: ")
+                                .color(NamedTextColor.YELLOW))
+                        .append(getLootModeText(lootMode)),
+                playerId);
     }
 
     private Component getExpModeText(String mode) {
@@ -1177,12 +1181,16 @@ public class PartyCommand implements SimpleCommand {
             if (subCommand.equals("invite") || subCommand.equals("kick") || subCommand.equals("leader")) {
                 CommandSource source = invocation.source();
                 if (source instanceof Player) {
-                    String prefix = args[1].toLowerCase();
-                    return CompletableFuture.completedFuture(
-                            plugin.getServer().getAllPlayers().stream()
-                                    .map(Player::getUsername)
-                                    .filter(name -> name.toLowerCase().startsWith(prefix))
-                                    .collect(Collectors.toList()));
+                    UUID senderId = ((Player) source).getUniqueId();
+                    Predicate<UUID> party = OnlinePlayerIndex.partyMembersOf(senderId);
+                    if (subCommand.equals("invite")) {
+                        // Приглашаем только тех, кого еще нет в пати, друзей - первыми
+                        return CompletableFuture.completedFuture(plugin.getOnlinePlayerIndex()
+                                .complete(args[1], party, OnlinePlayerIndex.friendsOf(senderId)));
+                    }
+                    // Исключить или назначить лидером можно только участника пати
+                    return CompletableFuture.completedFuture(plugin.getOnlinePlayerIndex()
+                            .complete(args[1], party.negate().or(senderId::equals), null));
                 }
             } else if (subCommand.equals("server")) {
                 String prefix = args[1].toLowerCase();
@@ -6,11 +6,8 @@ import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import ru.snsocialmedia.common.models.guild.Guild;
-import ru.snsocialmedia.common.models.guild.GuildRole;
 import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
-
-import java.util.Optional;
-import java.util.UUID;
+import ru.snsocialmedia.velocity.ratelimit.RateLimitChannel;
 
 /**
  * Обработчик событий чата для перенаправления сообщений в чат гильдии
@@ -25,7 +22,7 @@ public class ChatListener {
 
     /**
      * Обрабатывает события чата
-     * 
+     *
      * @param event Событие чата игрока
      */
     @Subscribe
@@ -41,28 +38,16 @@ public class ChatListener {
                     // Отменяем отправку сообщения в общий чат
                     event.setResult(PlayerChatEvent.ChatResult.denied());
 
-                    // Определяем роль игрока в гильдии
-                    String rolePrefix = "§7[Участник] ";
-                    if (guild.getLeader().equals(player.getUniqueId())) {
-                        rolePrefix = "§6[Лидер] ";
-                    } else if (guild.getMembers().containsKey(player.getUniqueId()) &&
-                            guild.getMembers().get(player.getUniqueId()) == GuildRole.OFFICER) {
-                        rolePrefix = "§e[Офицер] ";
+                    // Ограничиваем частоту сообщений до рассылки всем участникам
+                    if (!plugin.getRateLimiter().tryAcquire(player.getUniqueId(), RateLimitChannel.GUILD_CHAT)) {
+                        player.sendMessage(Component.text("Вы отправляете сообщения слишком часто!")
+                                .color(NamedTextColor.RED));
+                        return;
                     }
 
-                    // Формируем сообщение с префиксом гильдии и ролью отправителя
-                    String formattedMessage = String.format("§8[§6%s§8] %s§e%s§f: %s",
-                            guild.getTag(), rolePrefix, player.getUsername(), event.getMessage());
-
-                    Component message = Component.text(formattedMessage);
-
-                    // Отправляем сообщение всем членам гильдии
-                    for (UUID memberId : guild.getMembers().keySet()) {
-                        Optional<Player> memberOptional = plugin.getServer().getPlayer(memberId);
-                        if (memberOptional.isPresent()) {
-                            memberOptional.get().sendMessage(message);
-                        }
-                    }
+                    // Отправляем сообщение онлайн-участникам гильдии
+                    plugin.getGuildChatFanout().broadcast(guild, player.getUniqueId(), player.getUsername(),
+                            event.getMessage());
 
                     // Отправляем в систему гильдий для обработки
                     plugin.getGuildChatManager().sendGuildChatMessage(
@@ -78,4 +63,4 @@ public class ChatListener {
             }
         }
     }
-}
\ No newline at end of file
+}
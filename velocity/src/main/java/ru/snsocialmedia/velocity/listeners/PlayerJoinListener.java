@@ -6,12 +6,9 @@ import com.velocitypowered.api.event.connection.PostLoginEvent;
 import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
-import ru.snsocialmedia.common.FriendManager;
 import ru.snsocialmedia.common.models.guild.Guild;
 import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
 
-import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 import java.util.logging.Logger;
 
@@ -21,13 +18,11 @@ import java.util.logging.Logger;
 public class PlayerJoinListener {
 
     private final SNSocialMediaVelocity plugin;
-    private final FriendManager friendManager;
     private final Logger logger;
 
     public PlayerJoinListener(SNSocialMediaVelocity plugin) {
         this.plugin = plugin;
         this.logger = Logger.getLogger(PlayerJoinListener.class.getName());
-        this.friendManager = FriendManager.getInstance(logger);
     }
 
     /**
@@ -41,18 +36,27 @@ public class PlayerJoinListener {
         UUID playerId = player.getUniqueId();
         String playerName = player.getUsername();
 
+        plugin.getOnlinePlayerIndex().add(player);
+        plugin.getMemberBroadcaster().trackPlayer(player);
+
         // Отправляем уведомление всем друзьям о входе
         sendFriendLoginNotifications(playerId, playerName);
 
         // Если игрок состоит в гильдии, отправляем приветствие
         Guild playerGuild = plugin.getGuildManager().getPlayerGuild(playerId);
         if (playerGuild != null) {
+            plugin.getGuildChatFanout().trackPlayer(player);
             player.sendMessage(Component.text("Добро пожаловать в гильдию ")
                     .color(NamedTextColor.GRAY)
                     .append(Component.text(playerGuild.getName())
                             .color(NamedTextColor.GOLD))
                     .append(Component.text("!")
                             .color(NamedTextColor.GRAY)));
+
+            // Показываем последние сообщения чата гильдии, пропущенные игроком
+            int replayLines = plugin.getConfigManager().getInt("guild.chat-history.replay-lines", 10);
+            plugin.getGuildChatFanout().replay(player, playerGuild,
+                    plugin.getGuildChatManager().getRecentMessages(playerGuild.getId(), replayLines));
         }
 
         logger.info("Игрок " + playerName + " подключился к серверу");
@@ -68,6 +72,9 @@ public class PlayerJoinListener {
         Player player = event.getPlayer();
         UUID playerId = player.getUniqueId();
 
+        plugin.getOnlinePlayerIndex().remove(player);
+        plugin.getMemberBroadcaster().untrackPlayer(playerId);
+
         // Отправляем уведомление всем друзьям о выходе
         sendFriendDisconnectNotifications(playerId, player.getUsername());
 
@@ -75,6 +82,8 @@ public class PlayerJoinListener {
 
         // Выключаем режим чата гильдии при выходе игрока
         plugin.getGuildChatManager().disableGuildChat(playerId);
+        plugin.getGuildChatFanout().untrackPlayer(playerId);
+        plugin.getRateLimiter().clear(playerId);
 
         // Проверяем, состоит ли игрок в гильдии
         Guild guild = plugin.getGuildManager().getPlayerGuild(playerId);
@@ -85,56 +94,26 @@ public class PlayerJoinListener {
     }
 
     /**
-     * Отправляет уведомления друзьям о входе игрока
+     * Передает вход игрока агрегатору уведомлений друзей
      * 
      * @param playerId   UUID игрока, который вошел
      * @param playerName Имя игрока, который вошел
      */
     private void sendFriendLoginNotifications(UUID playerId, String playerName) {
-        List<UUID> friends = friendManager.getFriends(playerId);
-
-        for (UUID friendId : friends) {
-            Optional<Player> friendPlayer = plugin.getServer().getPlayer(friendId);
-            if (friendPlayer.isPresent()) {
-                // Формируем красивое сообщение с кнопкой телепортации
-                Component teleportButton = Component.text("[Перейти]")
-                        .color(NamedTextColor.GREEN)
-                        .hoverEvent(Component.text("Нажмите, чтобы перейти на сервер к другу")
-                                .color(NamedTextColor.GRAY))
-                        .clickEvent(net.kyori.adventure.text.event.ClickEvent.runCommand("/friend join " + playerName));
-
-                friendPlayer.get().sendMessage(
-                        Component.text("♦ Друг ")
-                                .color(NamedTextColor.GOLD)
-                                .append(Component.text(playerName)
-                                        .color(NamedTextColor.GREEN))
-                                .append(Component.text(" вошел в игру! ")
-                                        .color(NamedTextColor.GOLD))
-                                .append(teleportButton));
-            }
+        if (plugin.getConfigManager().getBoolean("friend.show-join-notifications", true)) {
+            plugin.getFriendPresenceAggregator().playerJoined(playerId, playerName);
         }
     }
 
     /**
-     * Отправляет уведомления друзьям о выходе игрока
+     * Передает выход игрока агрегатору уведомлений друзей
      * 
      * @param playerId   UUID игрока, который вышел
      * @param playerName Имя игрока, который вышел
      */
     private void sendFriendDisconnectNotifications(UUID playerId, String playerName) {
-        List<UUID> friends = friendManager.getFriends(playerId);
-
-        for (UUID friendId : friends) {
-            Optional<Player> friendPlayer = plugin.getServer().getPlayer(friendId);
-            if (friendPlayer.isPresent()) {
-                friendPlayer.get().sendMessage(
-                        Component.text("♦ Друг ")
-                                .color(NamedTextColor.GOLD)
-                                .append(Component.text(playerName)
-                                        .color(NamedTextColor.RED))
-                                .append(Component.text(" вышел из игры")
-                                        .color(NamedTextColor.GOLD)));
-            }
+        if (plugin.getConfigManager().getBoolean("friend.show-join-notifications", true)) {
+            plugin.getFriendPresenceAggregator().playerLeft(playerId, playerName);
         }
     }
 
@@ -148,11 +127,7 @@ public class PlayerJoinListener {
         Component message = Component.text("Участник гильдии " + player.getUsername() + " зашел на сервер")
                 .color(NamedTextColor.GREEN);
 
-        for (java.util.UUID memberId : guild.getMembers().keySet()) {
-            if (!memberId.equals(player.getUniqueId())) {
-                plugin.getServer().getPlayer(memberId).ifPresent(member -> member.sendMessage(message));
-            }
-        }
+        plugin.getMemberBroadcaster().toGuild(guild, message, player.getUniqueId());
     }
 
     /**
@@ -165,10 +140,6 @@ public class PlayerJoinListener {
         Component message = Component.text("Участник гильдии " + player.getUsername() + " вышел с сервера")
                 .color(NamedTextColor.YELLOW);
 
-        for (java.util.UUID memberId : guild.getMembers().keySet()) {
-            if (!memberId.equals(player.getUniqueId())) {
-                plugin.getServer().getPlayer(memberId).ifPresent(member -> member.sendMessage(message));
-            }
-        }
+        plugin.getMemberBroadcaster().toGuild(guild, message, player.getUniqueId());
     }
 }
\ No newline at end of file
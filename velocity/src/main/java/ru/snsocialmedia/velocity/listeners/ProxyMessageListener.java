@@ -2,11 +2,11 @@ package ru.snsocialmedia.velocity.listeners;
 
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.PluginMessageEvent;
-import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ServerConnection;
 import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
 import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+import ru.snsocialmedia.velocity.ratelimit.RateLimitChannel;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
@@ -114,41 +114,18 @@ public class ProxyMessageListener {
             return;
         }
 
-        // Формируем и отправляем сообщение всем онлайн-участникам гильдии
-        plugin.getGuildChatManager().sendGuildChatMessage(guildId, senderName, senderId, message);
-
-        // Отправляем сообщение всем игрокам, находящимся на Velocity прокси
-        String formattedMessage = formatGuildChatMessage(guild, senderName, senderId, message);
-        for (UUID memberId : guild.getMembers().keySet()) {
-            Player player = plugin.getServer().getPlayer(memberId).orElse(null);
-            if (player != null && player.isActive()) {
-                player.sendMessage(net.kyori.adventure.text.Component.text(formattedMessage));
-            }
+        if (!plugin.getRateLimiter().tryAcquire(senderId, RateLimitChannel.GUILD_CHAT)) {
+            plugin.getServer().getPlayer(senderId).ifPresent(sender -> sender.sendMessage(
+                    net.kyori.adventure.text.Component.text("Вы отправляете сообщения слишком часто!")
+                            .color(net.kyori.adventure.text.format.NamedTextColor.RED)));
+            return;
         }
-    }
 
-    /**
-     * Форматирует сообщение для чата гильдии
-     * 
-     * @param guild      Гильдия
-     * @param senderName Имя отправителя
-     * @param senderId   ID отправителя
-     * @param message    Текст сообщения
-     * @return Отформатированное сообщение
-     */
-    private String formatGuildChatMessage(ru.snsocialmedia.common.models.guild.Guild guild, String senderName,
-            UUID senderId, String message) {
-        // Определяем роль игрока в гильдии
-        String rolePrefix = "§7[Участник] ";
-        if (guild.getLeader().equals(senderId)) {
-            rolePrefix = "§6[Лидер] ";
-        } else if (guild.getMembers().containsKey(senderId) &&
-                guild.getMembers().get(senderId) == ru.snsocialmedia.common.models.guild.GuildRole.OFFICER) {
-            rolePrefix = "§e[Офицер] ";
-        }
+        // Формируем и отправляем сообщение всем онлайн-участникам гильдии
+        plugin.getGuildChatManager().sendGuildChatMessage(guildId, senderName, senderId, message);
 
-        // Формируем сообщение
-        return String.format("§8[§6%s§8] %s§e%s§f: %s", guild.getTag(), rolePrefix, senderName, message);
+        // Отправляем сообщение онлайн-участникам гильдии, находящимся на Velocity прокси
+        plugin.getGuildChatFanout().broadcast(guild, senderId, senderName, message);
     }
 
     /**
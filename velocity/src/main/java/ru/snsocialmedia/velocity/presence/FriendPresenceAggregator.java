@@ -0,0 +1,257 @@
+package ru.snsocialmedia.velocity.presence;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import ru.snsocialmedia.common.managers.FriendManager;
+import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Агрегатор уведомлений о входе и выходе друзей.
+ * <p>
+ * Изменения присутствия накапливаются в течение короткого окна. По его
+ * окончании учитывается только итоговое состояние игрока: вход и выход внутри
+ * одного окна взаимно гасятся. Каждый получатель получает не больше одного
+ * сообщения о входах и одного о выходах за окно, а список друзей берется из
+ * графа в памяти, без запросов к базе данных.
+ */
+public class FriendPresenceAggregator {
+
+    private final SNSocialMediaVelocity plugin;
+    private final Logger logger;
+    private final long windowMillis;
+    private final int maxNames;
+
+    // UUID игрока -> накопленное изменение присутствия в текущем окне
+    private final Map<UUID, PresenceChange> pending = new ConcurrentHashMap<>();
+
+    private volatile ScheduledTask flushTask;
+
+    public FriendPresenceAggregator(SNSocialMediaVelocity plugin, long windowMillis, int maxNames) {
+        this.plugin = plugin;
+        this.logger = Logger.getLogger(FriendPresenceAggregator.class.getName());
+        this.windowMillis = Math.max(windowMillis, 50L);
+        this.maxNames = Math.max(maxNames, 1);
+    }
+
+    /**
+     * Запускает периодическую рассылку накопленных уведомлений
+     */
+    public void start() {
+        if (flushTask == null) {
+            flushTask = plugin.getServer().getScheduler().buildTask(plugin, this::flush)
+                    .delay(windowMillis, TimeUnit.MILLISECONDS)
+                    .repeat(windowMillis, TimeUnit.MILLISECONDS)
+                    .schedule();
+        }
+    }
+
+    /**
+     * Останавливает рассылку; накопленные изменения отбрасываются
+     */
+    public void stop() {
+        ScheduledTask task = flushTask;
+        flushTask = null;
+        if (task != null) {
+            task.cancel();
+        }
+        pending.clear();
+    }
+
+    /**
+     * Регистрирует вход игрока
+     *
+     * @param playerId   UUID игрока
+     * @param playerName Имя игрока
+     */
+    public void playerJoined(UUID playerId, String playerName) {
+        record(playerId, playerName, true);
+    }
+
+    /**
+     * Регистрирует выход игрока
+     *
+     * @param playerId   UUID игрока
+     * @param playerName Имя игрока
+     */
+    public void playerLeft(UUID playerId, String playerName) {
+        record(playerId, playerName, false);
+    }
+
+    private void record(UUID playerId, String playerName, boolean online) {
+        pending.compute(playerId, (id, change) -> {
+            if (change == null) {
+                // До первого события в окне игрок был в противоположном состоянии
+                return new PresenceChange(playerName, !online, online);
+            }
+            change.name = playerName;
+            change.online = online;
+            return change;
+        });
+    }
+
+    /**
+     * Рассылает накопленные уведомления: по одному сообщению о входах и выходах
+     * на получателя
+     */
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, Digest> digests = new HashMap<>();
+        int suppressed = 0;
+
+        for (UUID playerId : new ArrayList<>(pending.keySet())) {
+            PresenceChange change = pending.remove(playerId);
+            if (change == null) {
+                continue;
+            }
+            if (change.online == change.initiallyOnline) {
+                // Игрок зашел и вышел (или наоборот) в пределах окна
+                suppressed++;
+                continue;
+            }
+
+            for (UUID friendId : friendsOf(playerId)) {
+                plugin.getServer().getPlayer(friendId).ifPresent(friend -> {
+                    Digest digest = digests.computeIfAbsent(friendId, id -> new Digest(friend));
+                    (change.online ? digest.joined : digest.left).add(change.name);
+                });
+            }
+        }
+
+        for (Digest digest : digests.values()) {
+            if (!digest.recipient.isActive()) {
+                continue;
+            }
+            if (!digest.joined.isEmpty()) {
+                digest.recipient.sendMessage(renderJoined(digest.joined));
+            }
+            if (!digest.left.isEmpty()) {
+                digest.recipient.sendMessage(renderLeft(digest.left));
+            }
+        }
+
+        if (suppressed > 0) {
+            logger.fine("Подавлено повторных входов/выходов: " + suppressed);
+        }
+    }
+
+    private List<UUID> friendsOf(UUID playerId) {
+        FriendManager graph = FriendManager.getInstance();
+        if (graph != null) {
+            return graph.getPlayerFriends(playerId);
+        }
+        return Collections.emptyList();
+    }
+
+    private Component renderJoined(List<String> names) {
+        if (names.size() == 1) {
+            String name = names.get(0);
+            return Component.text("♦ Друг ")
+                    .color(NamedTextColor.GOLD)
+                    .append(Component.text(name).color(NamedTextColor.GREEN))
+                    .append(Component.text(" вошел в игру! ").color(NamedTextColor.GOLD))
+                    .append(joinButton(name, "[Перейти]"));
+        }
+
+        TextComponent.Builder message = Component.text()
+                .append(Component.text("♦ " + names.size() + " " + friendsWord(names.size()) + " вошли в игру: ")
+                        .color(NamedTextColor.GOLD));
+        appendNames(message, names, true);
+        return message.build();
+    }
+
+    private Component renderLeft(List<String> names) {
+        if (names.size() == 1) {
+            return Component.text("♦ Друг ")
+                    .color(NamedTextColor.GOLD)
+                    .append(Component.text(names.get(0)).color(NamedTextColor.RED))
+                    .append(Component.text(" вышел из игры").color(NamedTextColor.GOLD));
+        }
+
+        TextComponent.Builder message = Component.text()
+                .append(Component.text("♦ " + names.size() + " " + friendsWord(names.size()) + " вышли из игры: ")
+                        .color(NamedTextColor.GOLD));
+        appendNames(message, names, false);
+        return message.build();
+    }
+
+    private void appendNames(TextComponent.Builder message, List<String> names, boolean clickable) {
+        int shown = Math.min(names.size(), maxNames);
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) {
+                message.append(Component.text(", ").color(NamedTextColor.GRAY));
+            }
+            String name = names.get(i);
+            message.append(clickable ? joinButton(name, name) : Component.text(name).color(NamedTextColor.RED));
+        }
+        if (names.size() > shown) {
+            message.append(Component.text(" и еще " + (names.size() - shown)).color(NamedTextColor.GRAY));
+        }
+    }
+
+    private static Component joinButton(String friendName, String label) {
+        return Component.text(label)
+                .color(NamedTextColor.GREEN)
+                .hoverEvent(Component.text("Нажмите, чтобы перейти на сервер к другу").color(NamedTextColor.GRAY))
+                .clickEvent(ClickEvent.runCommand("/friend join " + friendName));
+    }
+
+    private static String friendsWord(int count) {
+        int lastTwo = count % 100;
+        int last = count % 10;
+        if (lastTwo >= 11 && lastTwo <= 14) {
+            return "друзей";
+        }
+        if (last == 1) {
+            return "друг";
+        }
+        if (last >= 2 && last <= 4) {
+            return "друга";
+        }
+        return "друзей";
+    }
+
+    /**
+     * Изменение присутствия игрока за окно
+     */
+    private static final class PresenceChange {
+        private final boolean initiallyOnline;
+        private String name;
+        private boolean online;
+
+        private PresenceChange(String name, boolean initiallyOnline, boolean online) {
+            this.name = name;
+            this.initiallyOnline = initiallyOnline;
+            this.online = online;
+        }
+    }
+
+    /**
+     * Сводка для одного получателя
+     */
+    private static final class Digest {
+        private final Player recipient;
+        private final List<String> joined = new ArrayList<>();
+        private final List<String> left = new ArrayList<>();
+
+        private Digest(Player recipient) {
+            this.recipient = recipient;
+        }
+    }
+}
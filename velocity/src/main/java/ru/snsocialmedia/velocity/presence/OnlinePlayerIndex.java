@@ -0,0 +1,190 @@
+package ru.snsocialmedia.velocity.presence;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import ru.snsocialmedia.common.managers.FriendManager;
+import ru.snsocialmedia.common.managers.GuildManager;
+import ru.snsocialmedia.common.managers.PartyManager;
+import ru.snsocialmedia.common.models.guild.Guild;
+import ru.snsocialmedia.common.models.party.Party;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * Индекс имен онлайн-игроков для автодополнения.
+ * <p>
+ * Имена хранятся в нижнем регистре в отсортированной карте, поэтому поиск по
+ * префиксу - это поиск диапазона: O(log n + k), где k - число совпадений,
+ * вместо обхода всех игроков прокси. Индекс обновляется при входе и выходе
+ * игроков. Фильтры позволяют исключить часть игроков (например, участников
+ * своей пати) и показать часть первыми (например, друзей).
+ */
+public class OnlinePlayerIndex {
+
+    // Максимальное количество вариантов автодополнения
+    public static final int SUGGESTION_LIMIT = 100;
+
+    // Имя в нижнем регистре -> игрок
+    private final ConcurrentSkipListMap<String, Player> players = new ConcurrentSkipListMap<>();
+
+    /**
+     * Создает индекс и заполняет его игроками, уже находящимися на прокси
+     *
+     * @param server Прокси-сервер
+     */
+    public OnlinePlayerIndex(ProxyServer server) {
+        for (Player player : server.getAllPlayers()) {
+            add(player);
+        }
+    }
+
+    /**
+     * Добавляет игрока в индекс (при входе)
+     *
+     * @param player Игрок
+     */
+    public void add(Player player) {
+        players.put(key(player.getUsername()), player);
+    }
+
+    /**
+     * Удаляет игрока из индекса (при выходе). Запись, уже замененная новым
+     * входом с тем же именем, не удаляется.
+     *
+     * @param player Игрок
+     */
+    public void remove(Player player) {
+        players.remove(key(player.getUsername()), player);
+    }
+
+    /**
+     * @return Количество игроков в индексе
+     */
+    public int size() {
+        return players.size();
+    }
+
+    /**
+     * Находит онлайн-игроков, имя которых начинается с префикса
+     *
+     * @param prefix    Префикс имени без учета регистра
+     * @param excluded  Игроки, которых не нужно возвращать, или null
+     * @param preferred Игроки, которых нужно вернуть первыми, или null
+     * @param limit     Максимальное количество игроков
+     * @return Игроки: сначала предпочтительные, затем остальные; внутри
+     *         каждой группы по алфавиту
+     */
+    public List<Player> find(String prefix, Predicate<UUID> excluded, Predicate<UUID> preferred, int limit) {
+        List<Player> first = new ArrayList<>();
+        List<Player> rest = new ArrayList<>();
+
+        for (Player player : range(prefix).values()) {
+            UUID playerId = player.getUniqueId();
+            if (excluded != null && excluded.test(playerId)) {
+                continue;
+            }
+
+            if (preferred != null && preferred.test(playerId)) {
+                first.add(player);
+                if (first.size() >= limit) {
+                    break;
+                }
+            } else if (first.size() + rest.size() < limit) {
+                // Остальные нужны, только пока есть место после
+                // предпочтительных
+                rest.add(player);
+            } else if (preferred == null) {
+                break;
+            }
+        }
+
+        int restCount = Math.min(rest.size(), limit - first.size());
+        first.addAll(rest.subList(0, restCount));
+        return first;
+    }
+
+    /**
+     * Находит имена онлайн-игроков для автодополнения
+     *
+     * @param prefix    Префикс имени без учета регистра
+     * @param excluded  Игроки, которых не нужно предлагать, или null
+     * @param preferred Игроки, которых нужно предложить первыми, или null
+     * @return Имена игроков, не более {@link #SUGGESTION_LIMIT}
+     */
+    public List<String> complete(String prefix, Predicate<UUID> excluded, Predicate<UUID> preferred) {
+        List<Player> found = find(prefix, excluded, preferred, SUGGESTION_LIMIT);
+        List<String> names = new ArrayList<>(found.size());
+        for (Player player : found) {
+            names.add(player.getUsername());
+        }
+        return names;
+    }
+
+    /**
+     * Фильтр друзей игрока по графу друзей в памяти
+     *
+     * @param playerId UUID игрока
+     * @return Фильтр; если граф не загружен, не выбирает никого
+     */
+    public static Predicate<UUID> friendsOf(UUID playerId) {
+        FriendManager graph = FriendManager.getInstance();
+        if (graph == null) {
+            return id -> false;
+        }
+        return id -> graph.areFriends(playerId, id);
+    }
+
+    /**
+     * Фильтр участников пати игрока, включая его самого
+     *
+     * @param playerId UUID игрока
+     * @return Фильтр по составу пати на момент вызова
+     */
+    public static Predicate<UUID> partyMembersOf(UUID playerId) {
+        PartyManager partyManager = PartyManager.getInstance();
+        Party party = partyManager != null ? partyManager.getPlayerParty(playerId) : null;
+        if (party == null) {
+            return playerId::equals;
+        }
+
+        Set<UUID> members = Set.copyOf(party.getMembers().keySet());
+        return id -> id.equals(playerId) || members.contains(id);
+    }
+
+    /**
+     * Фильтр участников гильдии игрока, включая его самого
+     *
+     * @param guildManager Менеджер гильдий
+     * @param playerId     UUID игрока
+     * @return Фильтр по составу гильдии на момент вызова
+     */
+    public static Predicate<UUID> guildMembersOf(GuildManager guildManager, UUID playerId) {
+        Guild guild = guildManager != null ? guildManager.getPlayerGuild(playerId) : null;
+        if (guild == null) {
+            return playerId::equals;
+        }
+
+        Set<UUID> members = Set.copyOf(guild.getMembers().keySet());
+        return id -> id.equals(playerId) || members.contains(id);
+    }
+
+    private ConcurrentNavigableMap<String, Player> range(String prefix) {
+        String from = key(prefix != null ? prefix : "");
+        if (from.isEmpty()) {
+            return players;
+        }
+        // Все строки с префиксом from лежат в [from, from + Character.MAX_VALUE)
+        return players.subMap(from, true, from + Character.MAX_VALUE, false);
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
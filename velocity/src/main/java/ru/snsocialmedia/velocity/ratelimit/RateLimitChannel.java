@@ -0,0 +1,36 @@
+package ru.snsocialmedia.velocity.ratelimit;
+
+/**
+ * Каналы, для которых действует ограничение частоты действий игрока
+ */
+public enum RateLimitChannel {
+    GUILD_CHAT("guild-chat", 5, 1000),
+    PARTY_CHAT("party-chat", 5, 1000),
+    INVITE("invite", 3, 5000),
+    FRIEND_REQUEST("friend-request", 3, 10000);
+
+    private final String configKey;
+    private final int defaultCapacity;
+    private final long defaultRefillMillis;
+
+    RateLimitChannel(String configKey, int defaultCapacity, long defaultRefillMillis) {
+        this.configKey = configKey;
+        this.defaultCapacity = defaultCapacity;
+        this.defaultRefillMillis = defaultRefillMillis;
+    }
+
+    /**
+     * @return Часть ключа конфигурации ratelimit.&lt;ключ&gt;.*
+     */
+    public String getConfigKey() {
+        return configKey;
+    }
+
+    public int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+
+    public long getDefaultRefillMillis() {
+        return defaultRefillMillis;
+    }
+}
@@ -0,0 +1,144 @@
+package ru.snsocialmedia.velocity.ratelimit;
+
+import ru.snsocialmedia.velocity.config.ConfigManager;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ограничитель частоты действий игроков без блокировок.
+ * <p>
+ * Для каждого игрока и канала хранится корзина токенов емкостью
+ * {@code capacity}, один токен восстанавливается за {@code refillMillis}.
+ * Состояние корзины - одно число в {@link AtomicLongArray}: момент, когда
+ * корзина снова станет полной (в наносекундах). Списание токена выполняется
+ * одной операцией compare-and-set.
+ */
+public class RateLimiter {
+
+    private final long[] refillNanos;
+    private final long[] burstNanos;
+    private final boolean enabled;
+
+    // UUID игрока -> состояние корзин по каналам (индекс - ordinal канала)
+    private final Map<UUID, AtomicLongArray> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong[] allowed = new AtomicLong[RateLimitChannel.values().length];
+    private final AtomicLong[] violations = new AtomicLong[RateLimitChannel.values().length];
+
+    /**
+     * Создает ограничитель, читая настройки ratelimit.&lt;канал&gt;.capacity и
+     * ratelimit.&lt;канал&gt;.refill-ms
+     *
+     * @param configManager Менеджер конфигурации
+     */
+    public RateLimiter(ConfigManager configManager) {
+        RateLimitChannel[] channels = RateLimitChannel.values();
+        this.refillNanos = new long[channels.length];
+        this.burstNanos = new long[channels.length];
+        this.enabled = configManager.getBoolean("ratelimit.enabled", true);
+
+        for (RateLimitChannel channel : channels) {
+            String prefix = "ratelimit." + channel.getConfigKey();
+            int capacity = Math.max(1, configManager.getInt(prefix + ".capacity", channel.getDefaultCapacity()));
+            long refillMillis = Math.max(1, configManager.getInt(prefix + ".refill-ms",
+                    (int) channel.getDefaultRefillMillis()));
+
+            int index = channel.ordinal();
+            refillNanos[index] = TimeUnit.MILLISECONDS.toNanos(refillMillis);
+            burstNanos[index] = refillNanos[index] * capacity;
+            allowed[index] = new AtomicLong();
+            violations[index] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Пытается списать токен
+     *
+     * @param playerId UUID игрока
+     * @param channel  Канал
+     * @return true, если действие разрешено
+     */
+    public boolean tryAcquire(UUID playerId, RateLimitChannel channel) {
+        if (!enabled) {
+            return true;
+        }
+
+        int index = channel.ordinal();
+        long refill = refillNanos[index];
+        long burst = burstNanos[index];
+        AtomicLongArray state = buckets.computeIfAbsent(playerId,
+                id -> new AtomicLongArray(RateLimitChannel.values().length));
+
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = state.get(index);
+
+            // Корзина уже полная - отсчитываем от текущего момента
+            long base = fullAt == 0L || fullAt - now < 0 ? now : fullAt;
+            long next = base + refill;
+            if (next - now > burst) {
+                violations[index].incrementAndGet();
+                return false;
+            }
+
+            if (state.compareAndSet(index, fullAt, next)) {
+                allowed[index].incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Удаляет состояние игрока (при выходе с прокси)
+     *
+     * @param playerId UUID игрока
+     */
+    public void clear(UUID playerId) {
+        buckets.remove(playerId);
+    }
+
+    /**
+     * @param channel Канал
+     * @return Количество отклоненных действий с момента запуска
+     */
+    public long getViolations(RateLimitChannel channel) {
+        return violations[channel.ordinal()].get();
+    }
+
+    /**
+     * @param channel Канал
+     * @return Количество разрешенных действий с момента запуска
+     */
+    public long getAllowed(RateLimitChannel channel) {
+        return allowed[channel.ordinal()].get();
+    }
+
+    /**
+     * @return Количество игроков с активным состоянием
+     */
+    public int getTrackedPlayers() {
+        return buckets.size();
+    }
+
+    /**
+     * Формирует краткую сводку по каналам для логов
+     *
+     * @return Строка вида "guild-chat: 10/2, ..."
+     */
+    public String describeMetrics() {
+        StringBuilder builder = new StringBuilder();
+        for (RateLimitChannel channel : RateLimitChannel.values()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(channel.getConfigKey()).append(": ")
+                    .append(getAllowed(channel)).append('/').append(getViolations(channel));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,193 @@
+package ru.snsocialmedia.velocity.transfer;
+
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.snsocialmedia.velocity.SNSocialMediaVelocity;
+import ru.snsocialmedia.velocity.config.ConfigManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельное перемещение группы игроков на один сервер.
+ * <p>
+ * Запросы на подключение отправляются одновременно, но число запросов к одному
+ * серверу, находящихся в процессе, ограничено: остальные ждут в очереди этого
+ * сервера. Временные ошибки (подключение уже идет, сервер разорвал соединение,
+ * исключение) повторяются с задержкой. Итог возвращается одной сводкой.
+ */
+public class PartyTransferOrchestrator {
+
+    private final SNSocialMediaVelocity plugin;
+    private final int maxConcurrentPerServer;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+
+    // Имя сервера -> очередь подключений к нему
+    private final Map<String, ServerLane> lanes = new ConcurrentHashMap<>();
+
+    public PartyTransferOrchestrator(SNSocialMediaVelocity plugin, ConfigManager configManager) {
+        this.plugin = plugin;
+        this.maxConcurrentPerServer = Math.max(1, configManager.getInt("party.warp.max-concurrent-per-server", 4));
+        this.maxRetries = Math.max(0, configManager.getInt("party.warp.max-retries", 2));
+        this.retryDelayMillis = Math.max(0, configManager.getInt("party.warp.retry-delay-ms", 500));
+    }
+
+    /**
+     * Перемещает игроков на сервер
+     *
+     * @param players Игроки для перемещения
+     * @param target  Целевой сервер
+     * @return Сводка, завершающаяся после обработки всех игроков
+     */
+    public CompletableFuture<TransferSummary> transfer(Collection<Player> players, RegisteredServer target) {
+        Transfer transfer = new Transfer(players.size());
+        if (players.isEmpty()) {
+            transfer.result.complete(transfer.summary());
+            return transfer.result;
+        }
+
+        ServerLane lane = lanes.computeIfAbsent(target.getServerInfo().getName(), name -> new ServerLane());
+        for (Player player : players) {
+            boolean alreadyThere = player.getCurrentServer()
+                    .map(connection -> connection.getServer().equals(target))
+                    .orElse(false);
+            if (alreadyThere) {
+                transfer.alreadyThere.incrementAndGet();
+                transfer.completeOne();
+            } else {
+                lane.submit(() -> attempt(lane, transfer, player, target, 0));
+            }
+        }
+        return transfer.result;
+    }
+
+    private void attempt(ServerLane lane, Transfer transfer, Player player, RegisteredServer target, int retry) {
+        if (!player.isActive()) {
+            lane.release();
+            transfer.failed.add(player);
+            transfer.completeOne();
+            return;
+        }
+
+        CompletableFuture<ConnectionRequestBuilder.Result> connection;
+        try {
+            connection = player.createConnectionRequest(target).connect();
+        } catch (RuntimeException e) {
+            // Ошибка до начала подключения: слот освобождается так же, как при неудаче
+            connection = CompletableFuture.failedFuture(e);
+        }
+        connection.whenComplete((result, error) -> finish(lane, transfer, player, target, retry, result, error));
+    }
+
+    private void finish(ServerLane lane, Transfer transfer, Player player, RegisteredServer target, int retry,
+            ConnectionRequestBuilder.Result result, Throwable error) {
+        lane.release();
+
+        if (error == null && result.isSuccessful()) {
+            transfer.moved.incrementAndGet();
+            transfer.completeOne();
+        } else if (error == null && result.getStatus() == ConnectionRequestBuilder.Status.ALREADY_CONNECTED) {
+            transfer.alreadyThere.incrementAndGet();
+            transfer.completeOne();
+        } else if (retry < maxRetries && player.isActive() && isTransient(result, error)) {
+            plugin.getServer().getScheduler()
+                    .buildTask(plugin, () -> lane.submit(() -> attempt(lane, transfer, player, target, retry + 1)))
+                    .delay(retryDelayMillis * (retry + 1), TimeUnit.MILLISECONDS)
+                    .schedule();
+        } else {
+            transfer.failed.add(player);
+            transfer.completeOne();
+        }
+    }
+
+    private static boolean isTransient(ConnectionRequestBuilder.Result result, Throwable error) {
+        if (error != null) {
+            return true;
+        }
+        ConnectionRequestBuilder.Status status = result.getStatus();
+        return status == ConnectionRequestBuilder.Status.CONNECTION_IN_PROGRESS
+                || status == ConnectionRequestBuilder.Status.SERVER_DISCONNECTED;
+    }
+
+    /**
+     * Итог перемещения группы
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class TransferSummary {
+        private final int moved;
+        private final int alreadyThere;
+        private final List<Player> failed;
+    }
+
+    /**
+     * Состояние одного перемещения
+     */
+    private static final class Transfer {
+        private final AtomicInteger remaining;
+        private final AtomicInteger moved = new AtomicInteger();
+        private final AtomicInteger alreadyThere = new AtomicInteger();
+        private final Queue<Player> failed = new ConcurrentLinkedQueue<>();
+        private final CompletableFuture<TransferSummary> result = new CompletableFuture<>();
+
+        private Transfer(int players) {
+            this.remaining = new AtomicInteger(players);
+        }
+
+        private void completeOne() {
+            if (remaining.decrementAndGet() == 0) {
+                result.complete(summary());
+            }
+        }
+
+        private TransferSummary summary() {
+            return new TransferSummary(moved.get(), alreadyThere.get(), new ArrayList<>(failed));
+        }
+    }
+
+    /**
+     * Ограничение одновременных подключений к одному серверу
+     */
+    private final class ServerLane {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        private void submit(Runnable attempt) {
+            synchronized (this) {
+                if (inFlight >= maxConcurrentPerServer) {
+                    waiting.add(attempt);
+                    return;
+                }
+                inFlight++;
+            }
+            attempt.run();
+        }
+
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    inFlight--;
+                }
+            }
+            // Освободившееся место сразу занимает следующий игрок из очереди
+            if (next != null) {
+                next.run();
+            }
+        }
+    }
+}